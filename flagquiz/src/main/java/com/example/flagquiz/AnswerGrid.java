@@ -0,0 +1,147 @@
+package com.example.flagquiz;
+
+import android.graphics.drawable.Drawable;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.LinearLayout;
+
+import java.util.Arrays;
+
+/**
+ * The guess Buttons, two per row. The rows from the layout are reused for every question,
+ * and rows are added in code when more choices are wanted than the layout has, so any
+ * number of choices works without another layout. Each Button remembers the flag it
+ * shows; binding a question only rewrites the Buttons whose flag changed, and a guess is
+ * reported as a flag id rather than as the Button's text.
+ */
+public class AnswerGrid {
+    private static final int COLUMNS = 2;
+    private static final int NO_FLAG = -1;
+
+    // receives the flag id of the Button the user touched
+    public interface Listener {
+        void onGuess(int flag, Button button);
+    }
+
+    private final ViewGroup parent;     // layout holding the rows
+    private final Listener listener;
+    private LinearLayout[] rows;        // rows of Buttons, shown and hidden as needed
+    private Button[] buttons;           // all Buttons, row by row
+    private int[] boundFlags;           // flag shown on each Button, or NO_FLAG
+    private int choices;                // Buttons in use
+
+    /**
+     * @param rows the pre-inflated rows of the layout, COLUMNS Buttons each; they must
+     *             be consecutive children of the same parent
+     */
+    public AnswerGrid(LinearLayout[] rows, Listener listener) {
+        this.parent = (ViewGroup) rows[0].getParent();
+        this.listener = listener;
+        this.rows = rows.clone();
+        this.buttons = new Button[rows.length * COLUMNS];
+        for (int row = 0; row < rows.length; row++) {
+            for (int column = 0; column < COLUMNS; column++)
+                buttons[row * COLUMNS + column] = (Button) rows[row].getChildAt(column);
+        }
+        this.boundFlags = new int[buttons.length];
+        Arrays.fill(boundFlags, NO_FLAG);
+        for (int i = 0; i < buttons.length; i++)
+            attach(i);
+    }
+
+    // tags Button i with its position and listens for guesses
+    private void attach(int i) {
+        buttons[i].setTag(i);
+        buttons[i].setOnClickListener(clickListener);
+    }
+
+    private final View.OnClickListener clickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            int i = (Integer) v.getTag();
+            if (boundFlags[i] != NO_FLAG)
+                listener.onGuess(boundFlags[i], (Button) v);
+        }
+    };
+
+    public int getChoiceCount() {
+        return choices;
+    }
+
+    // show count Buttons, adding rows if the layout doesn't have enough
+    public void setChoiceCount(int count) {
+        int rowsNeeded = (count + COLUMNS - 1) / COLUMNS;
+        while (rows.length < rowsNeeded)
+            addRow();
+        for (int row = 0; row < rows.length; row++)
+            rows[row].setVisibility(row < rowsNeeded ? View.VISIBLE : View.GONE);
+        // an odd count leaves the last Button of the last row empty
+        for (int i = 0; i < buttons.length; i++)
+            buttons[i].setVisibility(i < count || i >= rowsNeeded * COLUMNS ?
+                    View.VISIBLE : View.INVISIBLE);
+        choices = count;
+    }
+
+    // adds a row after the last one, copying the look of the layout's first row
+    private void addRow() {
+        LinearLayout template = rows[0];
+        LinearLayout row = new LinearLayout(template.getContext());
+        row.setOrientation(LinearLayout.HORIZONTAL);
+        row.setLayoutParams(template.getLayoutParams());
+        for (int column = 0; column < COLUMNS; column++) {
+            Button templateButton = buttons[column];
+            Button button = new Button(template.getContext());
+            button.setLayoutParams(templateButton.getLayoutParams());
+            button.setLines(templateButton.getMaxLines());
+            button.setTextColor(templateButton.getTextColors());
+            Drawable background = templateButton.getBackground();
+            if (background != null && background.getConstantState() != null)
+                button.setBackground(background.getConstantState().newDrawable());
+            row.addView(button);
+        }
+        parent.addView(row, parent.indexOfChild(rows[rows.length - 1]) + 1);
+
+        rows = Arrays.copyOf(rows, rows.length + 1);
+        rows[rows.length - 1] = row;
+        int first = buttons.length;
+        buttons = Arrays.copyOf(buttons, buttons.length + COLUMNS);
+        boundFlags = Arrays.copyOf(boundFlags, buttons.length);
+        for (int column = 0; column < COLUMNS; column++) {
+            buttons[first + column] = (Button) row.getChildAt(column);
+            boundFlags[first + column] = NO_FLAG;
+            attach(first + column);
+        }
+    }
+
+    /**
+     * show a question's choices and enable their Buttons
+     * @param flags  ids of the flags to offer, at most getChoiceCount()
+     * @param source supplies the country names
+     * @return the number of Buttons whose text changed
+     */
+    public int bind(int[] flags, FlagSource source) {
+        int changed = 0;
+        for (int i = 0; i < choices; i++) {
+            int flag = i < flags.length ? flags[i] : NO_FLAG;
+            if (flag != boundFlags[i]) {
+                buttons[i].setText(flag != NO_FLAG ? source.getCountryName(flag) : "");
+                boundFlags[i] = flag;
+                ++changed;
+            }
+            buttons[i].setEnabled(flag != NO_FLAG);
+        }
+        return changed;
+    }
+
+    // disables the Button of choice i, e.g. a wrong guess
+    public void disableChoice(int i) {
+        buttons[i].setEnabled(false);
+    }
+
+    // disables all Buttons, e.g. once the question is answered
+    public void disableAll() {
+        for (int i = 0; i < choices; i++)
+            buttons[i].setEnabled(false);
+    }
+}
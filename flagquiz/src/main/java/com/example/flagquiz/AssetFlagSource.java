@@ -0,0 +1,70 @@
+package com.example.flagquiz;
+
+import android.content.res.AssetManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+
+/**
+ * The flags bundled in the app's assets, listed by the prebuilt FlagIndex.
+ */
+public class AssetFlagSource implements FlagSource {
+    private final AssetManager assets;
+    private final FlagIndex index;
+
+    public AssetFlagSource(AssetManager assets) throws IOException {
+        this.assets = assets;
+        InputStream stream = assets.open(FlagIndex.ASSET);
+        try {
+            index = FlagIndex.read(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public int regionMask(Collection<String> regionNames) {
+        return index.regionMask(regionNames);
+    }
+
+    @Override
+    public int[] select(int mask) {
+        return index.select(mask);
+    }
+
+    @Override
+    public int getRegionCount() {
+        return index.getRegionCount();
+    }
+
+    @Override
+    public String getRegion(int region) {
+        return index.getRegion(region);
+    }
+
+    @Override
+    public int getRegionOf(int flag) {
+        return index.getRegionOf(flag);
+    }
+
+    @Override
+    public String getFileName(int flag) {
+        return index.getFileName(flag);
+    }
+
+    @Override
+    public String getCountryName(int flag) {
+        return index.getCountryName(flag);
+    }
+
+    @Override
+    public InputStream open(int flag) throws IOException {
+        return assets.open(index.getAssetPath(flag));
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.flagquiz;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Coalesces bursts of changes, e.g. several regions toggled in the settings, into one
+ * piece of work. Each change restarts a short quiet window. When the window passes, the
+ * result is computed on a worker and then applied on the UI thread once, for all the
+ * keys that changed. If more changes arrive while the worker is busy, its result is
+ * dropped and the new burst is computed instead.
+ * <p>
+ * changed must be called on the UI thread.
+ *
+ * @param <T> the result computed on the worker
+ */
+public class Debouncer<T> {
+    // the work to do for a burst of changes
+    public interface Work<T> {
+        // on the worker thread
+        T compute(Set<String> keys);
+
+        // on the UI thread
+        void apply(T result, Set<String> keys);
+    }
+
+    private final QuizTransition.Clock clock;  // the UI thread's Handler
+    private final Executor worker;
+    private final long windowMillis;
+    private final Work<T> work;
+    private Set<String> keys = new HashSet<>(); // changed since the last burst started
+    private int generation;                     // incremented by every change
+
+    public Debouncer(QuizTransition.Clock clock, Executor worker, long windowMillis,
+                     Work<T> work) {
+        this.clock = clock;
+        this.worker = worker;
+        this.windowMillis = windowMillis;
+        this.work = work;
+    }
+
+    // key changed; the work runs windowMillis after the last change
+    public void changed(String key) {
+        keys.add(key);
+        ++generation;
+        clock.removeCallbacks(windowPassed);
+        clock.postDelayed(windowPassed, windowMillis);
+    }
+
+    // drops pending changes, e.g. when the activity goes away
+    public void cancel() {
+        ++generation;
+        keys = new HashSet<>();
+        clock.removeCallbacks(windowPassed);
+    }
+
+    private final Runnable windowPassed = new Runnable() {
+        @Override
+        public void run() {
+            final Set<String> burst = Collections.unmodifiableSet(keys);
+            keys = new HashSet<>();
+            final int burstGeneration = generation;
+            worker.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final T result = work.compute(burst);
+                    clock.postDelayed(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (burstGeneration == generation)
+                                work.apply(result, burst);
+                            else
+                                keys.addAll(burst); // redone with the newer changes
+                        }
+                    }, 0);
+                }
+            });
+        }
+    };
+}
@@ -0,0 +1,125 @@
+package com.example.flagquiz;
+
+/**
+ * Picks the choices shown for a question, drawing more or fewer of the wrong answers
+ * from the answer's own region depending on the difficulty. Neighbouring countries
+ * often have similar flags (e.g. the pan-African or Nordic cross designs), so they
+ * make harder distractors than flags from the other side of the world.
+ * <p>
+ * The flags are grouped into one bucket per region once, when the pool changes. Each
+ * question then takes its distractors with partial Fisher-Yates shuffles over the
+ * answer's bucket and over the whole pool, so picking k choices costs O(k) however
+ * many flags there are, and never needs to retry on a duplicate.
+ */
+public class DistractorPicker {
+    public enum Difficulty {
+        EASY(0),     // distractors from every region alike
+        MEDIUM(50),  // half of them from the answer's region
+        HARD(100);   // all of them from the answer's region, as far as it has flags
+
+        final int sameRegionPercent;
+
+        Difficulty(int sameRegionPercent) {
+            this.sameRegionPercent = sameRegionPercent;
+        }
+    }
+
+    private final FlagSource source;
+    private final int[] pool;          // candidate flag ids, permuted in place
+    private final int[] positions;     // positions[flag] is the flag's index in pool
+    private final int[] buckets;       // the candidates grouped by region, each region
+                                       // permuted in place
+    private final int[] bucketPositions; // bucketPositions[flag] is its index in buckets
+    private final int[] bucketStart;   // region r is buckets[bucketStart[r] .. bucketStart[r + 1])
+    private final QuizRandom random;
+
+    /**
+     * @param flags ids of the flags to choose from, e.g. from FlagSource.select
+     */
+    public DistractorPicker(int[] flags, FlagSource source, QuizRandom random) {
+        this.source = source;
+        this.random = random;
+        pool = flags.clone();
+        positions = new int[source.size()];
+        for (int i = 0; i < pool.length; i++)
+            positions[pool[i]] = i;
+
+        // counting sort of the flags by region
+        int regions = source.getRegionCount();
+        bucketStart = new int[regions + 1];
+        for (int flag : flags)
+            ++bucketStart[source.getRegionOf(flag) + 1];
+        for (int r = 0; r < regions; r++)
+            bucketStart[r + 1] += bucketStart[r];
+        int[] next = bucketStart.clone();
+        buckets = new int[flags.length];
+        bucketPositions = new int[source.size()];
+        for (int flag : flags) {
+            int i = next[source.getRegionOf(flag)]++;
+            buckets[i] = flag;
+            bucketPositions[flag] = i;
+        }
+    }
+
+    public int size() {
+        return pool.length;
+    }
+
+    // number of candidate flags in region
+    public int getBucketSize(int region) {
+        return bucketStart[region + 1] - bucketStart[region];
+    }
+
+    /**
+     * pick the choices for a question: correctFlag plus distinct other flags, in random
+     * order
+     * @param choices number of choices wanted (fewer if there aren't that many flags)
+     */
+    public int[] pickChoices(int correctFlag, int choices, Difficulty difficulty) {
+        choices = Math.min(choices, pool.length);
+        int distractors = choices - 1;
+        int[] flags = new int[choices];
+
+        // the share of distractors from the answer's region, as far as it has flags
+        int region = source.getRegionOf(correctFlag);
+        int start = bucketStart[region];
+        int end = bucketStart[region + 1] - 1;
+        swap(buckets, bucketPositions, bucketPositions[correctFlag], end); // keep the answer out
+        int near = Math.min((distractors * difficulty.sameRegionPercent + 50) / 100, end - start);
+        shuffleFront(buckets, bucketPositions, start, near, end);
+        System.arraycopy(buckets, start, flags, 0, near);
+
+        // the rest from the whole pool, apart from the answer and the flags already taken
+        int last = pool.length;
+        swap(pool, positions, positions[correctFlag], --last);
+        for (int i = 0; i < near; i++)
+            swap(pool, positions, positions[flags[i]], --last);
+        shuffleFront(pool, positions, 0, distractors - near, last);
+        System.arraycopy(pool, 0, flags, near, distractors - near);
+
+        // put the answer in and mix it with the distractors so neither the answer nor
+        // the similar flags always come first
+        flags[distractors] = correctFlag;
+        for (int i = choices - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int flag = flags[i];
+            flags[i] = flags[j];
+            flags[j] = flag;
+        }
+        return flags;
+    }
+
+    // moves a uniformly random selection of count of the entries from .. end - 1 to from
+    private void shuffleFront(int[] flags, int[] indexes, int from, int count, int end) {
+        for (int i = from; i < from + count; i++)
+            swap(flags, indexes, i, i + random.nextInt(end - i));
+    }
+
+    private static void swap(int[] flags, int[] indexes, int i, int j) {
+        int flag = flags[i];
+        flags[i] = flags[j];
+        flags[j] = flag;
+        indexes[flags[i]] = i;
+        indexes[flags[j]] = j;
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.flagquiz;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Every flag of a FlagSource scaled to one width and stored as raw RGB 565 pixels in a
+ * single memory-mapped strip: flag i is the sub-rectangle (0, top, tileWidth, height)
+ * of the strip. Showing a flag copies its rows into a Bitmap that is reused from
+ * question to question, so no PNG is decoded and no Bitmap is created per question.
+ * <p>
+ * File layout (big-endian header and index; pixels in the order Bitmap.copyPixelsToBuffer
+ * writes them):
+ * <pre>
+ * header (32 bytes)
+ *   int   MAGIC
+ *   int   VERSION
+ *   int   flag count
+ *   short tile width in pixels
+ *   short height of the tallest tile
+ *   long  length of the file the flags came from (a flag pack or the app's APK)
+ *   long  its last-modified time
+ * flags (8 bytes each)
+ *   int   top row of the flag in the strip
+ *   int   height of the flag in pixels
+ * pixels
+ *   the strip, tileWidth * 2 bytes per row, followed by as many rows of padding as
+ *   the tallest tile so that every tile can be read as a tallest-tile-sized block
+ * </pre>
+ * The source file's length and last-modified time identify the flags the atlas was
+ * built from, so an atlas left over from a replaced pack or an older app is rebuilt.
+ */
+public class FlagAtlas {
+    public static final int MAGIC = 0x4641544C; // "FATL"
+    public static final int VERSION = 2;
+    public static final int MAX_TILE_WIDTH = 480; // about the size of the bundled PNGs
+    public static final int BYTES_PER_PIXEL = 2;  // RGB 565
+    private static final int HEADER_SIZE = 32;
+    private static final int FLAG_SIZE = 8;
+
+    private final ByteBuffer buffer;  // the whole atlas
+    private final int count;          // number of flags
+    private final int tileWidth;
+    private final int maxHeight;
+    private final long sourceLength;  // identify the file the flags came from
+    private final long sourceModified;
+    private final int pixelsStart;    // position of the strip's first row
+
+    public FlagAtlas(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a flag atlas");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported flag atlas version " + buffer.getInt(4));
+        count = buffer.getInt(8);
+        tileWidth = buffer.getShort(12) & 0xFFFF;
+        maxHeight = buffer.getShort(14) & 0xFFFF;
+        sourceLength = buffer.getLong(16);
+        sourceModified = buffer.getLong(24);
+        if (count < 0 || tileWidth == 0)
+            throw new IOException("Corrupt flag atlas");
+        pixelsStart = HEADER_SIZE + count * FLAG_SIZE;
+        for (int flag = 0; flag < count; flag++) {
+            int height = getHeight(flag);
+            if (getTop(flag) < 0 || height < 0 || height > maxHeight ||
+                    tileOffset(flag) + (long) tileBytes() > buffer.limit())
+                throw new IOException("Truncated flag atlas");
+        }
+    }
+
+    // memory-maps the atlas in file
+    public static FlagAtlas open(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            return new FlagAtlas(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            input.close(); // the mapping stays valid
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    // true if the atlas was built from source as it is now
+    public boolean isBuiltFrom(File source) {
+        return source.length() == sourceLength && source.lastModified() == sourceModified;
+    }
+
+    // height of the tallest flag; the Bitmaps flags are copied into have this height
+    public int getMaxHeight() {
+        return maxHeight;
+    }
+
+    public int getTop(int flag) {
+        return buffer.getInt(entry(flag));
+    }
+
+    public int getHeight(int flag) {
+        return buffer.getInt(entry(flag) + 4);
+    }
+
+    // bytes in a tileWidth by maxHeight Bitmap
+    public int tileBytes() {
+        return tileWidth * maxHeight * BYTES_PER_PIXEL;
+    }
+
+    /**
+     * the pixels of flag as a tileWidth by maxHeight block for Bitmap.copyPixelsFromBuffer;
+     * the rows below getHeight(flag) belong to the next flag and aren't drawn
+     */
+    public ByteBuffer getTile(int flag) {
+        ByteBuffer tile = buffer.duplicate();
+        int offset = (int) tileOffset(flag);
+        tile.position(offset);
+        tile.limit(offset + tileBytes());
+        return tile.slice().order(ByteOrder.nativeOrder());
+    }
+
+    private long tileOffset(int flag) {
+        return pixelsStart + (long) getTop(flag) * tileWidth * BYTES_PER_PIXEL;
+    }
+
+    private int entry(int flag) {
+        if (flag < 0 || flag >= count)
+            throw new IndexOutOfBoundsException("flag " + flag + " of " + count);
+        return HEADER_SIZE + flag * FLAG_SIZE;
+    }
+
+    // height of a flag of width by height pixels scaled to tileWidth, keeping its shape
+    public static int tileHeight(int width, int height, int tileWidth) {
+        return Math.max(1, Math.round(height * (float) tileWidth / width));
+    }
+
+    /**
+     * writes an atlas one flag at a time, in flag id order
+     */
+    public static class Writer {
+        private final RandomAccessFile output;
+        private final int[] tops;
+        private final int[] heights;
+        private final int tileWidth;
+        private final long sourceLength;
+        private final long sourceModified;
+        private int added;      // flags written so far
+        private int rows;       // rows of the strip written so far
+        private int maxHeight;
+
+        /**
+         * @param source the file the flags are read from, recorded so isBuiltFrom can
+         *               tell when it changes
+         */
+        public Writer(File file, int count, int tileWidth, File source) throws IOException {
+            if (tileWidth <= 0 || tileWidth > 0xFFFF)
+                throw new IllegalArgumentException("tile width " + tileWidth);
+            this.tops = new int[count];
+            this.heights = new int[count];
+            this.tileWidth = tileWidth;
+            this.sourceLength = source.length();
+            this.sourceModified = source.lastModified();
+            output = new RandomAccessFile(file, "rw");
+            output.setLength(0);
+            output.seek(HEADER_SIZE + count * FLAG_SIZE); // the index is written at the end
+        }
+
+        /**
+         * @param pixels height rows of tileWidth RGB 565 pixels, as copied from a Bitmap
+         */
+        public void add(int height, ByteBuffer pixels) throws IOException {
+            if (added == tops.length)
+                throw new IllegalStateException("atlas is full");
+            int bytes = tileWidth * height * BYTES_PER_PIXEL;
+            if (height > 0xFFFF || pixels.remaining() < bytes)
+                throw new IllegalArgumentException("tile of " + pixels.remaining() + " bytes");
+            byte[] tile = new byte[bytes];
+            pixels.get(tile);
+            output.write(tile);
+            tops[added] = rows;
+            heights[added] = height;
+            rows += height;
+            maxHeight = Math.max(maxHeight, height);
+            ++added;
+        }
+
+        // writes the padding and the index
+        public void close() throws IOException {
+            try {
+                if (added != tops.length)
+                    throw new IOException("Only " + added + " of " + tops.length + " flags added");
+                output.write(new byte[tileWidth * maxHeight * BYTES_PER_PIXEL]);
+                output.seek(0);
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(tops.length);
+                output.writeShort(tileWidth);
+                output.writeShort(maxHeight);
+                output.writeLong(sourceLength);
+                output.writeLong(sourceModified);
+                ByteBuffer index = ByteBuffer.allocate(tops.length * FLAG_SIZE);
+                for (int i = 0; i < tops.length; i++) {
+                    index.putInt(tops[i]);
+                    index.putInt(heights[i]);
+                }
+                output.write(index.array());
+            } finally {
+                output.close();
+            }
+        }
+    }
+}
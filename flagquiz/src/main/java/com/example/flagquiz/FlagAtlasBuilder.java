@@ -0,0 +1,81 @@
+package com.example.flagquiz;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Builds a FlagAtlas from a FlagSource on the device, once, at the width the flags are
+ * displayed at. Every PNG is decoded one last time here instead of on every question.
+ */
+public class FlagAtlasBuilder {
+    private FlagAtlasBuilder() {
+    }
+
+    /**
+     * writes an atlas of all of source's flags scaled to tileWidth; call on a
+     * background thread. A partially built atlas is never left at atlasFile.
+     * @param sourceFile the flag pack or APK source reads its flags from
+     */
+    public static void build(FlagSource source, File sourceFile, int tileWidth,
+                             File atlasFile) throws IOException {
+        File temporary = new File(atlasFile.getPath() + ".tmp");
+        FlagAtlas.Writer writer = new FlagAtlas.Writer(temporary, source.size(), tileWidth,
+                sourceFile);
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        try {
+            for (int flag = 0; flag < source.size(); flag++) {
+                Bitmap image = decode(source, flag, tileWidth);
+                if (image == null)
+                    throw new IOException("Unable to decode " + source.getFileName(flag));
+                int height = FlagAtlas.tileHeight(image.getWidth(), image.getHeight(), tileWidth);
+                // RGB 565 has no alpha; flags that aren't rectangular (e.g. Nepal) are
+                // drawn on white like on the quiz's background
+                Bitmap tile = Bitmap.createBitmap(tileWidth, height, Bitmap.Config.RGB_565);
+                Canvas canvas = new Canvas(tile);
+                canvas.drawColor(Color.WHITE);
+                canvas.drawBitmap(image, null, new Rect(0, 0, tileWidth, height), paint);
+                ByteBuffer pixels = ByteBuffer.allocate(tile.getByteCount());
+                tile.copyPixelsToBuffer(pixels);
+                pixels.flip();
+                writer.add(height, pixels);
+                image.recycle();
+                tile.recycle();
+            }
+        } finally {
+            writer.close();
+        }
+        if (!temporary.renameTo(atlasFile))
+            throw new IOException("Unable to replace " + atlasFile);
+    }
+
+    // decodes flag at no less than tileWidth, skipping pixels of much larger images
+    private static Bitmap decode(FlagSource source, int flag, int tileWidth) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        InputStream bounds = source.open(flag);
+        try {
+            BitmapFactory.decodeStream(bounds, null, options);
+        } finally {
+            bounds.close();
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = 1;
+        while (options.outWidth / (options.inSampleSize * 2) >= tileWidth)
+            options.inSampleSize *= 2;
+        InputStream image = source.open(flag);
+        try {
+            return BitmapFactory.decodeStream(image, null, options);
+        } finally {
+            image.close();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.flagquiz;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The flags bundled in assets/&lt;Region&gt;/&lt;Region&gt;-&lt;Country&gt;.png, listed once at
+ * build time so the quiz never has to call AssetManager.list.
+ * <p>
+ * File layout (big-endian):
+ * <pre>
+ * int    MAGIC
+ * int    VERSION
+ * int    region count (at most 32)
+ * int    flag count
+ * regions
+ *   short length, followed by that many UTF-8 bytes (the asset folder name)
+ * flags (12 bytes each)
+ *   byte  region (index into the regions)
+ *   byte  reserved (0)
+ *   short length of the country name
+ *   int   offset of the country name in the name block
+ *   int   size in bytes of the flag's PNG asset
+ * byte[] names   UTF-8 country names as they appear in the file names
+ * </pre>
+ * The asset is rebuilt whenever flags are added or removed with
+ * {@code java com.example.flagquiz.FlagIndex src/main/assets src/main/assets/flags.idx}.
+ */
+public class FlagIndex {
+    public static final String ASSET = "flags.idx";
+    public static final int MAGIC = 0x464C4147; // "FLAG"
+    public static final int VERSION = 1;
+    public static final int MAX_REGIONS = 32;   // regions are selected with an int bit mask
+    private static final int HEADER_SIZE = 16;
+    private static final int FLAG_SIZE = 12;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final String[] regions;    // region asset folder names
+    private final byte[] regionOf;     // region index of each flag
+    private final String[] fileNames;  // "Region-Country" as used by the quiz
+    private final String[] countryNames; // names shown on the guess Buttons
+    private final int[] assetLengths;  // size of each flag's PNG
+
+    private FlagIndex(String[] regions, byte[] regionOf, String[] fileNames,
+                      String[] countryNames, int[] assetLengths) {
+        this.regions = regions;
+        this.regionOf = regionOf;
+        this.fileNames = fileNames;
+        this.countryNames = countryNames;
+        this.assetLengths = assetLengths;
+    }
+
+    /**
+     * read an index in the format described above
+     * @throws IOException if the data is not a flag index, has another version or is corrupt
+     */
+    public static FlagIndex read(InputStream input) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int count;
+        while ((count = input.read(chunk)) != -1)
+            bytes.write(chunk, 0, count);
+        return decode(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    public static FlagIndex decode(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt(0) != MAGIC)
+                throw new IOException("Not a flag index");
+            if (buffer.getInt(4) != VERSION)
+                throw new IOException("Unsupported flag index version " + buffer.getInt(4));
+            int regionCount = buffer.getInt(8);
+            int flagCount = buffer.getInt(12);
+            if (regionCount < 0 || regionCount > MAX_REGIONS || flagCount < 0)
+                throw new IOException("Corrupt flag index");
+
+            buffer.position(HEADER_SIZE);
+            String[] regions = new String[regionCount];
+            for (int r = 0; r < regionCount; r++) {
+                int length = buffer.getShort() & 0xFFFF;
+                regions[r] = readString(buffer, buffer.position(), length);
+            }
+
+            int flagsStart = buffer.position();
+            int namesStart = flagsStart + flagCount * FLAG_SIZE;
+            byte[] regionOf = new byte[flagCount];
+            String[] fileNames = new String[flagCount];
+            String[] countryNames = new String[flagCount];
+            int[] assetLengths = new int[flagCount];
+            for (int i = 0; i < flagCount; i++) {
+                int flag = flagsStart + i * FLAG_SIZE;
+                regionOf[i] = buffer.get(flag);
+                if (regionOf[i] < 0 || regionOf[i] >= regionCount)
+                    throw new IOException("Corrupt flag index");
+                int nameLength = buffer.getShort(flag + 2) & 0xFFFF;
+                String country = readString(buffer, namesStart + buffer.getInt(flag + 4), nameLength);
+                // the names are built once here instead of on every quiz reset or question
+                fileNames[i] = regions[regionOf[i]] + "-" + country;
+                countryNames[i] = country.replace('_', ' ');
+                assetLengths[i] = buffer.getInt(flag + 8);
+            }
+            return new FlagIndex(regions, regionOf, fileNames, countryNames, assetLengths);
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException("Truncated flag index");
+        }
+    }
+
+    private static String readString(ByteBuffer buffer, int position, int length) {
+        byte[] bytes = new byte[length];
+        for (int k = 0; k < length; k++)
+            bytes[k] = buffer.get(position + k);
+        buffer.position(position + length);
+        return new String(bytes, UTF8);
+    }
+
+    public int size() {
+        return fileNames.length;
+    }
+
+    public int getRegionCount() {
+        return regions.length;
+    }
+
+    public String getRegion(int region) {
+        return regions[region];
+    }
+
+    public int getRegionOf(int flag) {
+        return regionOf[flag];
+    }
+
+    // "Region-Country", the name the quiz uses for a flag
+    public String getFileName(int flag) {
+        return fileNames[flag];
+    }
+
+    // the country's name with spaces, e.g. "Bosnia and Herzegovina"
+    public String getCountryName(int flag) {
+        return countryNames[flag];
+    }
+
+    // path of the flag's PNG within the app's assets
+    public String getAssetPath(int flag) {
+        return regions[regionOf[flag]] + "/" + fileNames[flag] + ".png";
+    }
+
+    public int getAssetLength(int flag) {
+        return assetLengths[flag];
+    }
+
+    // bit mask with a bit set for each named region; unknown names are ignored
+    public int regionMask(Collection<String> regionNames) {
+        int mask = 0;
+        for (int r = 0; r < regions.length; r++) {
+            if (regionNames.contains(regions[r]))
+                mask |= 1 << r;
+        }
+        return mask;
+    }
+
+    // ids of the flags in the regions of mask
+    public int[] select(int mask) {
+        int count = 0;
+        for (byte region : regionOf) {
+            if ((mask & (1 << region)) != 0)
+                ++count;
+        }
+        int[] flags = new int[count];
+        int next = 0;
+        for (int i = 0; i < regionOf.length; i++) {
+            if ((mask & (1 << regionOf[i])) != 0)
+                flags[next++] = i;
+        }
+        return flags;
+    }
+
+    /**
+     * writes an index of the flags in assetsDir's region folders
+     * @param assetsDir folder containing one sub folder of PNGs per region
+     */
+    public static void write(File assetsDir, OutputStream output) throws IOException {
+        File[] regionDirs = assetsDir.listFiles();
+        if (regionDirs == null)
+            throw new IOException("Not a folder: " + assetsDir);
+        Arrays.sort(regionDirs);
+
+        ByteArrayOutputStream regionBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream flagBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream nameBytes = new ByteArrayOutputStream();
+        DataOutputStream regionOut = new DataOutputStream(regionBytes);
+        DataOutputStream flagOut = new DataOutputStream(flagBytes);
+        int regionCount = 0;
+        int flagCount = 0;
+        for (File regionDir : regionDirs) {
+            File[] files = regionDir.listFiles();
+            if (files == null)
+                continue; // e.g. the index itself
+            if (regionCount == MAX_REGIONS)
+                throw new IOException("More than " + MAX_REGIONS + " regions");
+            String region = regionDir.getName();
+            Arrays.sort(files);
+            for (File file : files) {
+                String name = file.getName();
+                if (!name.startsWith(region + "-") || !name.endsWith(".png"))
+                    continue;
+                byte[] country = name.substring(region.length() + 1, name.length() - 4).getBytes(UTF8);
+                flagOut.writeByte(regionCount);
+                flagOut.writeByte(0);
+                flagOut.writeShort(country.length);
+                flagOut.writeInt(nameBytes.size());
+                flagOut.writeInt((int) file.length());
+                nameBytes.write(country);
+                ++flagCount;
+            }
+            byte[] regionName = region.getBytes(UTF8);
+            regionOut.writeShort(regionName.length);
+            regionOut.write(regionName);
+            ++regionCount;
+        }
+
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(regionCount);
+        out.writeInt(flagCount);
+        regionBytes.writeTo(out);
+        flagBytes.writeTo(out);
+        nameBytes.writeTo(out);
+        out.flush();
+    }
+
+    // builds the flag index asset: java FlagIndex assetsDir index
+    public static void main(String[] args) throws IOException {
+        File index = new File(args[1]);
+        FileOutputStream output = new FileOutputStream(index);
+        try {
+            write(new File(args[0]), output);
+        } finally {
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.flagquiz;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A downloadable or sideloaded flag pack: any number of flag images with their index
+ * in one file that is memory-mapped and read in place. Opening a pack reads only its
+ * header, and each flag's name and image are read when the quiz needs them, so neither
+ * the time to open a pack nor the memory it takes grows with the number of flags.
+ * <p>
+ * File layout (big-endian, at most 2 GB):
+ * <pre>
+ * header (16 bytes)
+ *   int   MAGIC
+ *   int   VERSION
+ *   int   region count (at most 32)
+ *   int   flag count
+ * regions
+ *   short length, followed by that many UTF-8 bytes
+ * flags (16 bytes each)
+ *   byte  region (index into the regions)
+ *   byte  reserved (0)
+ *   short length of the country name
+ *   int   offset of the country name from the start of the file
+ *   int   offset of the PNG image from the start of the file
+ *   int   length of the PNG image
+ * names and images, where the flags point
+ * </pre>
+ * A pack is built from folders laid out like the app's assets with
+ * {@code java com.example.flagquiz.FlagPack flagsDir flags.pack}.
+ */
+public class FlagPack implements FlagSource {
+    public static final String FILE_NAME = "flags.pack"; // looked for in the app's files
+    public static final int MAGIC = 0x4650414B; // "FPAK"
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int FLAG_SIZE = 16;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;  // the whole pack
+    private final String[] regions;   // region names
+    private final int count;          // number of flags
+    private final int flagsStart;     // position of the first flag entry
+
+    public FlagPack(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        int length = buffer.limit();
+        if (length < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a flag pack");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported flag pack version " + buffer.getInt(4));
+        int regionCount = buffer.getInt(8);
+        count = buffer.getInt(12);
+        if (regionCount < 0 || regionCount > FlagIndex.MAX_REGIONS || count < 0)
+            throw new IOException("Corrupt flag pack");
+
+        regions = new String[regionCount];
+        int position = HEADER_SIZE;
+        for (int r = 0; r < regionCount; r++) {
+            if (position + 2 > length)
+                throw new IOException("Truncated flag pack");
+            int regionLength = buffer.getShort(position) & 0xFFFF;
+            regions[r] = readString(position + 2, regionLength);
+            position += 2 + regionLength;
+        }
+        flagsStart = position;
+        if ((long) flagsStart + (long) count * FLAG_SIZE > length)
+            throw new IOException("Truncated flag pack");
+    }
+
+    // memory-maps the pack in file
+    public static FlagPack open(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            return new FlagPack(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            input.close(); // the mapping stays valid
+        }
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public int regionMask(Collection<String> regionNames) {
+        int mask = 0;
+        for (int r = 0; r < regions.length; r++) {
+            if (regionNames.contains(regions[r]))
+                mask |= 1 << r;
+        }
+        return mask;
+    }
+
+    @Override
+    public int[] select(int mask) {
+        int selected = 0;
+        for (int i = 0; i < count; i++) {
+            if ((mask & (1 << buffer.get(flagsStart + i * FLAG_SIZE))) != 0)
+                ++selected;
+        }
+        int[] flags = new int[selected];
+        int next = 0;
+        for (int i = 0; i < count; i++) {
+            if ((mask & (1 << buffer.get(flagsStart + i * FLAG_SIZE))) != 0)
+                flags[next++] = i;
+        }
+        return flags;
+    }
+
+    @Override
+    public int getRegionCount() {
+        return regions.length;
+    }
+
+    @Override
+    public String getRegion(int region) {
+        return regions[region];
+    }
+
+    @Override
+    public int getRegionOf(int flag) {
+        return buffer.get(entry(flag));
+    }
+
+    @Override
+    public String getFileName(int flag) {
+        int entry = entry(flag);
+        int region = buffer.get(entry);
+        String country = readString(buffer.getInt(entry + 4), buffer.getShort(entry + 2) & 0xFFFF);
+        return (region >= 0 && region < regions.length ? regions[region] : "") + "-" + country;
+    }
+
+    @Override
+    public String getCountryName(int flag) {
+        int entry = entry(flag);
+        return readString(buffer.getInt(entry + 4), buffer.getShort(entry + 2) & 0xFFFF)
+                .replace('_', ' ');
+    }
+
+    @Override
+    public InputStream open(int flag) throws IOException {
+        int entry = entry(flag);
+        int offset = buffer.getInt(entry + 8);
+        int length = buffer.getInt(entry + 12);
+        if (offset < 0 || length < 0 || (long) offset + length > buffer.limit())
+            throw new IOException("Corrupt flag pack entry " + flag);
+        ByteBuffer image = buffer.duplicate();
+        image.position(offset);
+        image.limit(offset + length);
+        return new ByteBufferInputStream(image);
+    }
+
+    private int entry(int flag) {
+        if (flag < 0 || flag >= count)
+            throw new IndexOutOfBoundsException("flag " + flag + " of " + count);
+        return flagsStart + flag * FLAG_SIZE;
+    }
+
+    private String readString(int position, int length) {
+        if (position < 0 || position + length > buffer.limit())
+            return ""; // corrupt entry; only its name is lost
+        byte[] bytes = new byte[length];
+        for (int k = 0; k < length; k++)
+            bytes[k] = buffer.get(position + k);
+        return new String(bytes, UTF8);
+    }
+
+    // reads a slice of the mapped pack without copying it to the heap first
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0)
+                return 0;
+            if (!buffer.hasRemaining())
+                return -1;
+            length = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * writes a pack of the flags in flagsDir, which holds one folder of
+     * Region-Country.png images per region like the app's assets
+     */
+    public static void write(File flagsDir, File pack) throws IOException {
+        File[] regionDirs = flagsDir.listFiles();
+        if (regionDirs == null)
+            throw new IOException("Not a folder: " + flagsDir);
+        Arrays.sort(regionDirs);
+
+        // collect the regions and flags first; the images are copied afterwards
+        ByteArrayOutputStream regionBytes = new ByteArrayOutputStream();
+        DataOutputStream regionOut = new DataOutputStream(regionBytes);
+        ByteArrayOutputStream nameBytes = new ByteArrayOutputStream();
+        int regionCount = 0;
+        int flagCount = 0;
+        File[][] images = new File[regionDirs.length][];
+        int[] nameOffsets = new int[0];
+        int[] nameLengths = new int[0];
+        for (int r = 0; r < regionDirs.length; r++) {
+            File[] files = regionDirs[r].listFiles();
+            if (files == null)
+                continue;
+            if (regionCount == FlagIndex.MAX_REGIONS)
+                throw new IOException("More than " + FlagIndex.MAX_REGIONS + " regions");
+            String region = regionDirs[r].getName();
+            Arrays.sort(files);
+            int kept = 0;
+            for (File file : files) {
+                String name = file.getName();
+                if (!name.startsWith(region + "-") || !name.endsWith(".png"))
+                    continue;
+                files[kept++] = file;
+                byte[] country = name.substring(region.length() + 1, name.length() - 4).getBytes(UTF8);
+                if (flagCount == nameOffsets.length) {
+                    nameOffsets = Arrays.copyOf(nameOffsets, Math.max(16, flagCount * 2));
+                    nameLengths = Arrays.copyOf(nameLengths, nameOffsets.length);
+                }
+                nameOffsets[flagCount] = nameBytes.size();
+                nameLengths[flagCount] = country.length;
+                nameBytes.write(country);
+                ++flagCount;
+            }
+            images[regionCount] = Arrays.copyOf(files, kept);
+            byte[] regionName = region.getBytes(UTF8);
+            regionOut.writeShort(regionName.length);
+            regionOut.write(regionName);
+            ++regionCount;
+        }
+
+        long namesStart = HEADER_SIZE + regionBytes.size() + (long) flagCount * FLAG_SIZE;
+        long imagesStart = namesStart + nameBytes.size();
+        RandomAccessFile output = new RandomAccessFile(pack, "rw");
+        try {
+            output.setLength(0);
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(regionCount);
+            output.writeInt(flagCount);
+            output.write(regionBytes.toByteArray());
+
+            // the flag entries, with the images laid out one after another
+            ByteArrayOutputStream entryBytes = new ByteArrayOutputStream(flagCount * FLAG_SIZE);
+            DataOutputStream entries = new DataOutputStream(entryBytes);
+            long imageOffset = imagesStart;
+            int flag = 0;
+            for (int r = 0; r < regionCount; r++) {
+                for (File image : images[r]) {
+                    if (imageOffset + image.length() > Integer.MAX_VALUE)
+                        throw new IOException("Flag pack larger than 2 GB");
+                    entries.writeByte(r);
+                    entries.writeByte(0);
+                    entries.writeShort(nameLengths[flag]);
+                    entries.writeInt((int) (namesStart + nameOffsets[flag]));
+                    entries.writeInt((int) imageOffset);
+                    entries.writeInt((int) image.length());
+                    imageOffset += image.length();
+                    ++flag;
+                }
+            }
+            output.write(entryBytes.toByteArray());
+            output.write(nameBytes.toByteArray());
+
+            byte[] chunk = new byte[64 * 1024];
+            for (int r = 0; r < regionCount; r++) {
+                for (File image : images[r]) {
+                    FileInputStream input = new FileInputStream(image);
+                    try {
+                        int read;
+                        while ((read = input.read(chunk)) != -1)
+                            output.write(chunk, 0, read);
+                    } finally {
+                        input.close();
+                    }
+                }
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    // builds a flag pack: java FlagPack flagsDir pack
+    public static void main(String[] args) throws IOException {
+        write(new File(args[0]), new File(args[1]));
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.flagquiz;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decodes the upcoming flags on a worker thread while the user is answering the current
+ * one, so the next question's flag is ready when the transition starts. Decoded flags
+ * are kept in a small LRU cache; a flag that is not ready yet is decoded on the worker
+ * too and handed back when it is done, so the caller's (UI) thread never waits.
+ * <p>
+ * With a FlagAtlas, "decoding" a flag is copying its pixels from the atlas into a Bitmap
+ * left over from an earlier question, so steady-state questions create no Bitmaps.
+ */
+public class FlagPrefetcher {
+    private static final String TAG = "FlagPrefetcher";
+
+    // receives a flag asked for with get, on the callback thread
+    public interface Callback {
+        /**
+         * @param flag the decoded flag, or null if it could not be read
+         */
+        void onFlag(int flagId, Bitmap flag);
+    }
+
+    private final FlagSource source;
+    private final FlagAtlas atlas;                  // null to decode the PNGs
+    private final LruCache<Integer, Bitmap> flags;  // decoded flags by flag id
+    // atlas Bitmaps of evicted flags, reused for the next flags
+    private final List<Bitmap> spareBitmaps = new ArrayList<>();
+    private final Set<Integer> pending = new HashSet<>(); // queued or being decoded
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Executor callbackExecutor; // delivers flags to the caller's thread
+    private volatile boolean shutDown;       // drops deliveries once the quiz went away
+    private int hits;    // flags that were ready or being decoded when needed
+    private int misses;  // flags decoded only once they were needed
+    private int decodes;            // flags decoded, to compare PNGs with the atlas
+    private long decodeNanos;       // time spent decoding them
+    private int bitmapsCreated;     // Bitmaps allocated for them
+    private long bitmapBytes;       // and their size
+
+    /**
+     * @param source   where the flag images are read from
+     * @param atlas    the flags of source prepared at display size, or null
+     * @param maxFlags decoded flags kept at most
+     * @param callbackExecutor delivers the flags asked for with get (the UI thread)
+     */
+    public FlagPrefetcher(FlagSource source, FlagAtlas atlas, int maxFlags,
+                          Executor callbackExecutor) {
+        this.source = source;
+        this.atlas = atlas;
+        this.callbackExecutor = callbackExecutor;
+        this.flags = new LruCache<Integer, Bitmap>(maxFlags) {
+            @Override
+            protected void entryRemoved(boolean evicted, Integer key, Bitmap oldValue,
+                                        Bitmap newValue) {
+                if (evicted && FlagPrefetcher.this.atlas != null) {
+                    synchronized (spareBitmaps) {
+                        spareBitmaps.add(oldValue);
+                    }
+                }
+            }
+        };
+    }
+
+    // starts decoding the flags that are neither cached nor already queued
+    public void prefetch(List<Integer> flagIds) {
+        for (final Integer flagId : flagIds) {
+            synchronized (pending) {
+                if (flags.get(flagId) != null || !pending.add(flagId))
+                    continue;
+            }
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Bitmap flag = decode(flagId);
+                    synchronized (pending) {
+                        if (flag != null)
+                            flags.put(flagId, flag);
+                        pending.remove(flagId);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * get the decoded flag flagId: a cached flag is handed to callback at once;
+     * otherwise it is handed over on the callback thread once the worker has finished
+     * the decode already queued for it, or decoded it. Never blocks
+     */
+    public void get(final int flagId, final Callback callback) {
+        Bitmap cached;
+        synchronized (pending) {
+            cached = flags.get(flagId);
+            if (cached != null || pending.contains(flagId))
+                ++hits; // ready, or on its way; the worker finishes it before this request
+            else
+                ++misses;
+        }
+        if (cached != null) {
+            callback.onFlag(flagId, cached);
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap flag = flags.get(flagId);
+                if (flag == null) {
+                    flag = decode(flagId);
+                    if (flag != null)
+                        flags.put(flagId, flag);
+                }
+                final Bitmap decoded = flag;
+                callbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!shutDown)
+                            callback.onFlag(flagId, decoded);
+                    }
+                });
+            }
+        });
+    }
+
+    public String getStats() {
+        synchronized (pending) {
+            return String.format("prefetched %d, decoded on demand %d; %s: %.2f ms per flag, " +
+                            "%d Bitmaps (%d KB) for %d flags", hits, misses,
+                    atlas != null ? "atlas" : "PNG",
+                    decodes == 0 ? 0 : decodeNanos / 1e6 / decodes,
+                    bitmapsCreated, bitmapBytes / 1024, decodes);
+        }
+    }
+
+    // stops the worker and drops flags still on their way; call when the quiz goes away
+    public void shutdown() {
+        shutDown = true;
+        executor.shutdownNow();
+        flags.evictAll();
+        synchronized (spareBitmaps) {
+            spareBitmaps.clear();
+        }
+    }
+
+    // decodes flag flagId from its PNG image or copies it from the atlas
+    private Bitmap decode(int flagId) {
+        long start = System.nanoTime();
+        Bitmap flag = atlas != null ? copyFromAtlas(flagId) : decodeImage(flagId);
+        synchronized (pending) {
+            ++decodes;
+            decodeNanos += System.nanoTime() - start;
+            if (flag != null && atlas == null) {
+                ++bitmapsCreated;
+                bitmapBytes += flag.getByteCount();
+            }
+        }
+        return flag;
+    }
+
+    private Bitmap copyFromAtlas(int flagId) {
+        Bitmap flag = null;
+        synchronized (spareBitmaps) {
+            if (!spareBitmaps.isEmpty())
+                flag = spareBitmaps.remove(spareBitmaps.size() - 1);
+        }
+        if (flag == null) {
+            flag = Bitmap.createBitmap(atlas.getTileWidth(), atlas.getMaxHeight(),
+                    Bitmap.Config.RGB_565);
+            synchronized (pending) {
+                ++bitmapsCreated;
+                bitmapBytes += flag.getByteCount();
+            }
+        }
+        flag.copyPixelsFromBuffer(atlas.getTile(flagId));
+        return flag;
+    }
+
+    private Bitmap decodeImage(int flagId) {
+        try {
+            InputStream stream = source.open(flagId);
+            try {
+                return BitmapFactory.decodeStream(stream);
+            } finally {
+                stream.close();
+            }
+        } catch (IOException exception) {
+            Log.e(TAG, "Error loading " + source.getFileName(flagId), exception);
+            return null;
+        }
+    }
+}
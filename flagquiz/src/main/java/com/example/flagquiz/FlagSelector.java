@@ -0,0 +1,73 @@
+package com.example.flagquiz;
+
+/**
+ * Picks the flags of a quiz and the choices shown for each question with a partial
+ * Fisher-Yates shuffle over an array of flag ids. Picking k flags costs O(k) no matter
+ * how many flags there are, and never needs to retry on a duplicate.
+ */
+public class FlagSelector {
+    private final int[] pool;       // candidate flag ids, permuted in place
+    private final int[] positions;  // positions[flag] is the flag's index in pool
+    private final QuizRandom random;
+
+    /**
+     * @param flags   ids of the flags to choose from, e.g. from FlagIndex.select
+     * @param idLimit every id in flags is less than this
+     */
+    public FlagSelector(int[] flags, int idLimit, QuizRandom random) {
+        this.pool = flags.clone();
+        this.positions = new int[idLimit];
+        for (int i = 0; i < pool.length; i++)
+            positions[pool[i]] = i;
+        this.random = random;
+    }
+
+    public int size() {
+        return pool.length;
+    }
+
+    /**
+     * pick count distinct flags (fewer if there aren't that many) in random order
+     */
+    public int[] pickQuiz(int count) {
+        count = Math.min(count, pool.length);
+        shuffleFront(count, pool.length);
+        int[] flags = new int[count];
+        System.arraycopy(pool, 0, flags, 0, count);
+        return flags;
+    }
+
+    /**
+     * pick the choices for a question: correctFlag plus distinct other flags, with
+     * correctFlag at a random position
+     * @param choices number of choices wanted (fewer if there aren't that many flags)
+     */
+    public int[] pickChoices(int correctFlag, int choices) {
+        choices = Math.min(choices, pool.length);
+        int last = pool.length - 1;
+        swap(positions[correctFlag], last); // keep the answer out of the distractors
+        shuffleFront(choices - 1, last);
+
+        int[] flags = new int[choices];
+        System.arraycopy(pool, 0, flags, 0, choices - 1);
+        // put the answer in a random position
+        int answer = random.nextInt(choices);
+        flags[choices - 1] = flags[answer];
+        flags[answer] = correctFlag;
+        return flags;
+    }
+
+    // moves a uniformly random selection of count of the first n pool entries to the front
+    private void shuffleFront(int count, int n) {
+        for (int i = 0; i < count; i++)
+            swap(i, i + random.nextInt(n - i));
+    }
+
+    private void swap(int i, int j) {
+        int flag = pool[i];
+        pool[i] = pool[j];
+        pool[j] = flag;
+        positions[pool[i]] = i;
+        positions[pool[j]] = j;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.flagquiz;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+
+/**
+ * The flags a quiz is built from: the flags bundled with the app or a flag pack.
+ * Flags are identified by ids from 0 to size() - 1.
+ */
+public interface FlagSource {
+    // number of flags
+    int size();
+
+    // bit mask with a bit set for each named region; unknown names are ignored
+    int regionMask(Collection<String> regionNames);
+
+    // ids of the flags in the regions of mask
+    int[] select(int mask);
+
+    // number of regions; region r is bit r of a region mask
+    int getRegionCount();
+
+    // the region's name, e.g. "North_America"
+    String getRegion(int region);
+
+    // the region flag belongs to
+    int getRegionOf(int flag);
+
+    // "Region-Country", the name the quiz uses for a flag
+    String getFileName(int flag);
+
+    // the country's name as shown on the guess Buttons
+    String getCountryName(int flag);
+
+    // the flag's PNG image
+    InputStream open(int flag) throws IOException;
+}
@@ -0,0 +1,240 @@
+package com.example.flagquiz;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * What the user has shown they know about each flag, kept between quizzes in a small
+ * binary file. Only the records that changed since the last save are written back, from a
+ * snapshot that can be written off the UI thread.
+ * <p>
+ * File layout (big-endian):
+ * <pre>
+ * header (16 bytes)
+ *   int   MAGIC
+ *   short VERSION
+ *   short reserved (0)
+ *   int   flag count
+ *   int   sessions (quizzes) started so far
+ * flags (12 bytes each)
+ *   short times asked
+ *   short times missed (not guessed right the first time)
+ *   int   session the flag was last asked in
+ *   short correct answers in a row
+ *   short reserved (0)
+ * </pre>
+ */
+public class FlagStats {
+    public static final int MAGIC = 0x46535441; // "FSTA"
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 12;
+
+    private final short[] attempts;
+    private final short[] misses;
+    private final int[] lastSeen;
+    private final short[] streaks;
+    private final boolean[] dirty;  // records changed since the last save
+    private final int[] dirtyFlags; // the flags of those records
+    private int dirtyCount;
+    private int session;            // the current session's number
+    private boolean headerDirty;
+
+    // empty statistics for count flags
+    public FlagStats(int count) {
+        attempts = new short[count];
+        misses = new short[count];
+        lastSeen = new int[count];
+        streaks = new short[count];
+        dirty = new boolean[count];
+        dirtyFlags = new int[count];
+        Arrays.fill(lastSeen, -1); // never asked
+        headerDirty = true;
+    }
+
+    public int size() {
+        return attempts.length;
+    }
+
+    public int getSession() {
+        return session;
+    }
+
+    // starts a new quiz
+    public void beginSession() {
+        ++session;
+        headerDirty = true;
+    }
+
+    public int getAttempts(int flag) {
+        return attempts[flag];
+    }
+
+    public int getMisses(int flag) {
+        return misses[flag];
+    }
+
+    // session the flag was last asked in, or -1 if it never was
+    public int getLastSeen(int flag) {
+        return lastSeen[flag];
+    }
+
+    // number of times in a row the flag was guessed right the first time
+    public int getStreak(int flag) {
+        return streaks[flag];
+    }
+
+    // records that flag was asked in the current session
+    public void record(int flag, boolean missed) {
+        if (attempts[flag] < Short.MAX_VALUE)
+            ++attempts[flag];
+        if (missed && misses[flag] < Short.MAX_VALUE)
+            ++misses[flag];
+        streaks[flag] = missed ? 0 : (short) Math.min(streaks[flag] + 1, Short.MAX_VALUE);
+        lastSeen[flag] = session;
+        markDirty(flag);
+    }
+
+    private void markDirty(int flag) {
+        if (!dirty[flag]) {
+            dirty[flag] = true;
+            dirtyFlags[dirtyCount++] = flag;
+        }
+    }
+
+    /**
+     * reads statistics saved for count flags
+     * @return the saved statistics, or empty ones if there are none or they belong to a
+     * different set of flags
+     */
+    public static FlagStats load(File file, int count) {
+        FlagStats stats = new FlagStats(count);
+        if (!file.isFile() || file.length() != HEADER_SIZE + (long) count * RECORD_SIZE)
+            return stats;
+        try {
+            RandomAccessFile input = new RandomAccessFile(file, "r");
+            try {
+                byte[] bytes = new byte[(int) file.length()];
+                input.readFully(bytes);
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION ||
+                        buffer.getInt(8) != count)
+                    return stats;
+                stats.session = buffer.getInt(12);
+                for (int flag = 0; flag < count; flag++) {
+                    int record = HEADER_SIZE + flag * RECORD_SIZE;
+                    stats.attempts[flag] = buffer.getShort(record);
+                    stats.misses[flag] = buffer.getShort(record + 2);
+                    stats.lastSeen[flag] = buffer.getInt(record + 4);
+                    stats.streaks[flag] = buffer.getShort(record + 8);
+                }
+                stats.headerDirty = false;
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            return new FlagStats(count); // unreadable; start over
+        }
+        return stats;
+    }
+
+    /**
+     * writes the records that changed since the last save
+     * @return the number of bytes written
+     */
+    public int save(File file) throws IOException {
+        Snapshot changes = snapshot();
+        try {
+            return changes.write(file);
+        } catch (IOException exception) {
+            restore(changes);
+            throw exception;
+        }
+    }
+
+    /**
+     * copies the statistics and marks the records that changed since the last save as
+     * saved, so the copy can be written on another thread while the quiz goes on
+     * @see #restore(Snapshot) if writing the copy fails
+     */
+    public Snapshot snapshot() {
+        Snapshot changes = new Snapshot(this);
+        for (int i = 0; i < dirtyCount; i++)
+            dirty[dirtyFlags[i]] = false;
+        dirtyCount = 0;
+        headerDirty = false;
+        return changes;
+    }
+
+    // marks the records of a snapshot that could not be written as changed again
+    public void restore(Snapshot changes) {
+        for (int flag : changes.dirtyFlags)
+            markDirty(flag);
+        headerDirty = true;
+    }
+
+    // the statistics as they were when snapshot was called
+    public static class Snapshot {
+        private final short[] attempts;
+        private final short[] misses;
+        private final int[] lastSeen;
+        private final short[] streaks;
+        private final int[] dirtyFlags;
+        private final int session;
+        private final boolean headerDirty;
+
+        private Snapshot(FlagStats stats) {
+            // 12 bytes a flag; cheap enough for the UI thread
+            attempts = stats.attempts.clone();
+            misses = stats.misses.clone();
+            lastSeen = stats.lastSeen.clone();
+            streaks = stats.streaks.clone();
+            dirtyFlags = Arrays.copyOf(stats.dirtyFlags, stats.dirtyCount);
+            session = stats.session;
+            headerDirty = stats.headerDirty;
+        }
+
+        /**
+         * writes the records that changed, or every record if file is missing or
+         * doesn't have the expected size
+         * @return the number of bytes written
+         */
+        public int write(File file) throws IOException {
+            int size = attempts.length;
+            boolean complete = file.isFile() &&
+                    file.length() == HEADER_SIZE + (long) size * RECORD_SIZE;
+            int written = 0;
+            RandomAccessFile output = new RandomAccessFile(file, "rw");
+            try {
+                if (!complete) // new file: write every record
+                    output.setLength(HEADER_SIZE + (long) size * RECORD_SIZE);
+                if (headerDirty || !complete) {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                    header.putInt(MAGIC).putShort((short) VERSION).putShort((short) 0)
+                            .putInt(size).putInt(session);
+                    output.seek(0);
+                    output.write(header.array());
+                    written += HEADER_SIZE;
+                }
+
+                ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+                int count = complete ? dirtyFlags.length : size;
+                for (int i = 0; i < count; i++) {
+                    int flag = complete ? dirtyFlags[i] : i;
+                    record.clear();
+                    record.putShort(attempts[flag]).putShort(misses[flag])
+                            .putInt(lastSeen[flag]).putShort(streaks[flag]).putShort((short) 0);
+                    output.seek(HEADER_SIZE + (long) flag * RECORD_SIZE);
+                    output.write(record.array());
+                    written += RECORD_SIZE;
+                }
+            } finally {
+                output.close();
+            }
+            return written;
+        }
+    }
+}
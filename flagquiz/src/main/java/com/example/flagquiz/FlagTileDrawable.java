@@ -0,0 +1,57 @@
+package com.example.flagquiz;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Draws the top width by height pixels of a Bitmap, the part of a reused FlagAtlas tile
+ * Bitmap that holds the current flag.
+ */
+public class FlagTileDrawable extends Drawable {
+    private final Bitmap bitmap;
+    private final Rect source;  // the flag within bitmap
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    public FlagTileDrawable(Bitmap bitmap, int width, int height) {
+        this.bitmap = bitmap;
+        this.source = new Rect(0, 0, width, height);
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        canvas.drawBitmap(bitmap, source, getBounds(), paint);
+    }
+
+    // the ImageView scales the flag by these, not by the Bitmap's size
+    @Override
+    public int getIntrinsicWidth() {
+        return source.width();
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return source.height();
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        paint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        paint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.OPAQUE;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.flagquiz;
+
+import android.util.Log;
+import android.view.Choreographer;
+
+/**
+ * Measures the frames drawn between start and stop (e.g. a question transition) with
+ * Choreographer and logs how many of them missed their vsync deadline. It only runs
+ * when debug logging is enabled for its tag (adb shell setprop log.tag.FrameJankMeter
+ * DEBUG), so release builds pay nothing per transition.
+ */
+public class FrameJankMeter implements Choreographer.FrameCallback {
+    private static final String TAG = "FrameJankMeter";
+    private static final long FRAME_NANOS = 16666667; // one frame at 60 fps
+
+    private final String name;    // what is being measured, for the log
+    private boolean running;
+    private long startNanos;      // when start was called
+    private long lastFrameNanos;  // vsync time of the previous frame
+    private int frames;           // frames drawn since start
+    private int jankyFrames;      // frames that took longer than 1.5 vsync intervals
+    private long longestFrameNanos;
+
+    public FrameJankMeter(String name) {
+        this.name = name;
+    }
+
+    // starts counting frames; call on the UI thread
+    public void start() {
+        if (!Log.isLoggable(TAG, Log.DEBUG))
+            return;
+        running = true;
+        startNanos = System.nanoTime();
+        lastFrameNanos = 0;
+        frames = 0;
+        jankyFrames = 0;
+        longestFrameNanos = 0;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    // stops counting and logs the result; call on the UI thread
+    public void stop() {
+        if (!running)
+            return;
+        running = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+        Log.d(TAG, String.format("%s: %d frames in %.1f ms, %d janky, longest %.1f ms", name,
+                frames, (System.nanoTime() - startNanos) / 1e6, jankyFrames,
+                longestFrameNanos / 1e6));
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running)
+            return;
+        // the first frame is measured from start, which includes work done on the UI
+        // thread before the first frame (such as decoding the next flag)
+        long previous = lastFrameNanos != 0 ? lastFrameNanos : startNanos;
+        long frameNanos = Math.max(0, frameTimeNanos - previous);
+        ++frames;
+        if (frameNanos > FRAME_NANOS * 3 / 2)
+            ++jankyFrames;
+        longestFrameNanos = Math.max(longestFrameNanos, frameNanos);
+        lastFrameNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.flagquiz;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records every guess in a ring buffer of primitive arrays and appends them in batches
+ * to a binary log on a background thread. Recording a guess only stores four numbers
+ * under a lock; nothing is allocated and no I/O happens on the caller's thread. If the
+ * writer falls a whole ring behind, the oldest guesses are dropped and counted.
+ * <p>
+ * File layout (big-endian):
+ * <pre>
+ * header (8 bytes)
+ *   int   MAGIC
+ *   int   VERSION
+ * guesses (24 bytes each), appended in the order they were made
+ *   long  time of the guess (ms since the epoch)
+ *   int   id of the flag shown
+ *   int   id of the flag guessed (the same as the flag shown if correct)
+ *   int   time from the flag's reveal to the guess (ms)
+ *   int   reserved (0)
+ * </pre>
+ * A guess cut off by the app being killed mid-write is ignored when the log is read.
+ */
+public class GuessLog {
+    public static final String FILE_NAME = "guesses.log";
+    public static final int MAGIC = 0x464C4F47; // "FLOG"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 8;
+    public static final int RECORD_SIZE = 24;
+    private static final int CAPACITY = 256;  // guesses held until written
+    private static final int BATCH = 32;      // guesses that trigger a write
+
+    private final File file;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    private final Object lock = new Object();
+    // the ring; guess i of the pending ones is at (head + i) % CAPACITY
+    private final long[] times = new long[CAPACITY];
+    private final int[] flags = new int[CAPACITY];
+    private final int[] guesses = new int[CAPACITY];
+    private final int[] latencies = new int[CAPACITY];
+    private int head;
+    private int pending;
+    private boolean writeQueued;
+    private int dropped;
+    // used only on the writer thread
+    private final ByteBuffer batch = ByteBuffer.allocate(CAPACITY * RECORD_SIZE);
+    private FileChannel channel;
+    private IOException error;        // the last write failure, if any
+
+    public GuessLog(File file) {
+        this.file = file;
+    }
+
+    /**
+     * record a guess; cheap enough for the guess Button's click listener
+     * @param flag          the flag shown
+     * @param guess         the flag the user picked
+     * @param latencyMillis time from the flag's reveal to the guess
+     */
+    public void record(int flag, int guess, long latencyMillis) {
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            if (pending == CAPACITY) { // the writer is behind; lose the oldest guess
+                head = (head + 1) % CAPACITY;
+                --pending;
+                ++dropped;
+            }
+            int slot = (head + pending) % CAPACITY;
+            times[slot] = now;
+            flags[slot] = flag;
+            guesses[slot] = guess;
+            latencies[slot] = (int) Math.min(Integer.MAX_VALUE, Math.max(0, latencyMillis));
+            ++pending;
+            if (pending >= BATCH)
+                queueWrite();
+        }
+    }
+
+    // writes the recorded guesses soon, e.g. when the app goes to the background
+    public void flush() {
+        synchronized (lock) {
+            if (pending > 0)
+                queueWrite();
+        }
+    }
+
+    // writes what's left and closes the file; no guesses may be recorded afterwards
+    public void close() {
+        flush();
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (channel != null)
+                        channel.close();
+                } catch (IOException exception) {
+                    error = exception;
+                }
+            }
+        });
+        writer.shutdown();
+    }
+
+    // waits for close to finish; for tests
+    public boolean awaitClosed(long timeoutMillis) throws InterruptedException {
+        return writer.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public int getDropped() {
+        synchronized (lock) {
+            return dropped;
+        }
+    }
+
+    // the last error writing the log, or null
+    public IOException getError() {
+        return error;
+    }
+
+    // caller holds lock
+    private void queueWrite() {
+        if (!writeQueued) {
+            writeQueued = true;
+            writer.execute(writeTask);
+        }
+    }
+
+    // moves the pending guesses into batch and appends it to the file
+    private final Runnable writeTask = new Runnable() {
+        @Override
+        public void run() {
+            batch.clear();
+            synchronized (lock) {
+                for (int i = 0; i < pending; i++) {
+                    int slot = (head + i) % CAPACITY;
+                    batch.putLong(times[slot]);
+                    batch.putInt(flags[slot]);
+                    batch.putInt(guesses[slot]);
+                    batch.putInt(latencies[slot]);
+                    batch.putInt(0);
+                }
+                head = (head + pending) % CAPACITY;
+                pending = 0;
+                writeQueued = false;
+            }
+            batch.flip();
+            try {
+                if (channel == null)
+                    channel = openForAppend();
+                while (batch.hasRemaining())
+                    channel.write(batch);
+            } catch (IOException exception) {
+                error = exception; // the batch is lost, later ones are still tried
+            }
+        }
+    };
+
+    // opens the log at its end, writing the header to a new log
+    private FileChannel openForAppend() throws IOException {
+        FileChannel output = new FileOutputStream(file, true).getChannel();
+        if (output.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            while (header.hasRemaining())
+                output.write(header);
+        }
+        return output;
+    }
+
+    /**
+     * per-region accuracy and reveal-to-guess times of every guess in file; call on
+     * a background thread
+     * @throws IOException if file is not a guess log
+     */
+    public static GuessStats aggregate(File file, FlagSource source) throws IOException {
+        GuessStats stats = new GuessStats(source.getRegionCount());
+        if (!file.isFile())
+            return stats; // nothing logged yet
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            ByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (log.limit() < HEADER_SIZE || log.getInt(0) != MAGIC)
+                throw new IOException("Not a guess log");
+            if (log.getInt(4) != VERSION)
+                throw new IOException("Unsupported guess log version " + log.getInt(4));
+            int count = (log.limit() - HEADER_SIZE) / RECORD_SIZE; // drops a torn last guess
+            for (int i = 0; i < count; i++) {
+                int record = HEADER_SIZE + i * RECORD_SIZE;
+                int flag = log.getInt(record + 8);
+                if (flag < 0 || flag >= source.size())
+                    continue; // logged with another flag pack
+                stats.add(source.getRegionOf(flag), flag == log.getInt(record + 12),
+                        log.getInt(record + 16));
+            }
+        } finally {
+            input.close();
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.flagquiz;
+
+import java.util.Arrays;
+
+/**
+ * Accuracy and response times of logged guesses, per region and over all regions.
+ * Built by GuessLog.aggregate.
+ */
+public class GuessStats {
+    public static final int ALL_REGIONS = -1;
+
+    private final int[] guesses;       // per region, the last entry for all regions
+    private final int[] correct;
+    private final int[][] latencies;   // response times in ms, sorted once added
+    private boolean sorted = true;
+
+    public GuessStats(int regionCount) {
+        guesses = new int[regionCount + 1];
+        correct = new int[regionCount + 1];
+        latencies = new int[regionCount + 1][16];
+    }
+
+    void add(int region, boolean isCorrect, int latencyMillis) {
+        addTo(index(region), isCorrect, latencyMillis);
+        addTo(guesses.length - 1, isCorrect, latencyMillis);
+        sorted = false;
+    }
+
+    private void addTo(int i, boolean isCorrect, int latencyMillis) {
+        if (guesses[i] == latencies[i].length)
+            latencies[i] = Arrays.copyOf(latencies[i], guesses[i] * 2);
+        latencies[i][guesses[i]++] = latencyMillis;
+        if (isCorrect)
+            ++correct[i];
+    }
+
+    // guesses in region, or in every region for ALL_REGIONS
+    public int getGuesses(int region) {
+        return guesses[index(region)];
+    }
+
+    // fraction of region's guesses that were right, 0 if there were none
+    public double getAccuracy(int region) {
+        int i = index(region);
+        return guesses[i] == 0 ? 0 : correct[i] / (double) guesses[i];
+    }
+
+    /**
+     * the response time that percentile percent of region's guesses were at least as
+     * fast as (nearest rank), e.g. 50 for the median
+     * @return the time in ms, or -1 if region has no guesses
+     */
+    public int getLatencyPercentile(int region, double percentile) {
+        int i = index(region);
+        if (guesses[i] == 0)
+            return -1;
+        if (!sorted) {
+            for (int r = 0; r < guesses.length; r++)
+                Arrays.sort(latencies[r], 0, guesses[r]);
+            sorted = true;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * guesses[i]);
+        return latencies[i][Math.min(guesses[i], Math.max(1, rank)) - 1];
+    }
+
+    private int index(int region) {
+        return region == ALL_REGIONS ? guesses.length - 1 : region;
+    }
+}
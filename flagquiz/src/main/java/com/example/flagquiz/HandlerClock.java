@@ -0,0 +1,30 @@
+package com.example.flagquiz;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * Runs QuizTransition and Debouncer callbacks on a Handler's thread.
+ */
+public class HandlerClock implements QuizTransition.Clock {
+    private final Handler handler;
+
+    public HandlerClock(Handler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return SystemClock.uptimeMillis();
+    }
+
+    @Override
+    public void postDelayed(Runnable runnable, long delayMillis) {
+        handler.postDelayed(runnable, delayMillis);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable runnable) {
+        handler.removeCallbacks(runnable);
+    }
+}
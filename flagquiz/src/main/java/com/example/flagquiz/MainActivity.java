@@ -5,6 +5,7 @@ import android.content.SharedPreferences;
 import android.content.pm.ActivityInfo;
 import android.content.res.Configuration;
 import android.os.Bundle;
+import android.os.Handler;
 import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
@@ -12,15 +13,27 @@ import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.Toast;
 
+import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
     // keys for reading data from SharedPreferences
     public static final String CHOICES = "pref_numberOfChoices";
     public static final String REGIONS = "pref_regionsToInclude";
+    public static final String QUESTIONS = "pref_numberOfQuestions";
+    public static final String ATLAS = "pref_flagAtlas";
+    public static final String DIFFICULTY = "pref_difficulty";
+
+    private static final long SETTINGS_WINDOW_MILLIS = 300; // quiet time before a rebuild
 
     private boolean phoneDevice = true; // used to force portrait mode
     private boolean preferencesChanged = true; // did preferences change?
+    // resolves changed settings in the background
+    private final ExecutorService settingsWorker = Executors.newSingleThreadExecutor();
+    private Debouncer<QuizConfig> settingsDebouncer; // one quiz rebuild per burst of changes
+    private volatile FlagSource settingsFlagSource;  // the quiz's flags, for settingsWorker
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -31,6 +44,8 @@ public class MainActivity extends AppCompatActivity {
 
         // set default values in the app's SharedPreferences
         PreferenceManager.setDefaultValues(this, R.xml.preferences, false);
+        settingsDebouncer = new Debouncer<>(new HandlerClock(new Handler()), settingsWorker,
+                SETTINGS_WINDOW_MILLIS, settingsWork);
         // register listener for SharedPreferences changes
         PreferenceManager.getDefaultSharedPreferences(this).
                 registerOnSharedPreferenceChangeListener(preferencesChangeListener);
@@ -54,34 +69,75 @@ public class MainActivity extends AppCompatActivity {
             = new SharedPreferences.OnSharedPreferenceChangeListener() {
         @Override
         public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-            preferencesChanged = true; // user changed app settings
             MainActivityFragment quizFragment = (MainActivityFragment)
                     getSupportFragmentManager().findFragmentById(
                             R.id.quizFragment);
-            if (key.equals(CHOICES)) { // # of choices to display changed
-                quizFragment.updateGuessRows(sharedPreferences);
-                quizFragment.resetQuiz();
-            } else if (key.equals(REGIONS)) { // regions to include changed
+            if (key.equals(ATLAS)) { // changes how flags are loaded, not the quiz
+                quizFragment.updateFlagAtlas(sharedPreferences);
+                return;
+            }
+            if (key.equals(REGIONS)) { // regions to include changed
                 Set<String> regions = sharedPreferences.getStringSet(REGIONS, null);
 
-                if (regions != null && regions.size() > 0) {
-                    quizFragment.updateRegions(sharedPreferences);
-                    quizFragment.resetQuiz();
-                } else {// must select one region--set North America as default
+                if (regions == null || regions.size() == 0) {
+                    // must select one region--set North America as default
                     SharedPreferences.Editor editor = sharedPreferences.edit();
+                    regions = new HashSet<>();
                     regions.add(getString(R.string.default_region));
                     editor.putStringSet(REGIONS, regions);
-                    editor.apply();
+                    editor.apply(); // comes back here as another change
 
                     Toast.makeText(MainActivity.this, R.string.default_region_message,
                             Toast.LENGTH_SHORT).show();
+                    return;
                 }
             }
+            // rebuild the quiz once the user stops changing settings, e.g. after
+            // toggling several regions, instead of once per change
+            if (key.equals(CHOICES) || key.equals(QUESTIONS) || key.equals(REGIONS) ||
+                    key.equals(DIFFICULTY)) {
+                settingsFlagSource = quizFragment.getFlagSource();
+                settingsDebouncer.changed(key);
+            }
+        }
+    };
+
+    // reads the settings and resolves the regions' flags on settingsWorker, then
+    // applies them to the quiz on the UI thread
+    private final Debouncer.Work<QuizConfig> settingsWork = new Debouncer.Work<QuizConfig>() {
+        @Override
+        public QuizConfig compute(Set<String> keys) {
+            SharedPreferences preferences =
+                    PreferenceManager.getDefaultSharedPreferences(MainActivity.this);
+            return QuizConfig.compute(preferences.getString(CHOICES, null),
+                    preferences.getString(QUESTIONS, null),
+                    MainActivityFragment.DEFAULT_FLAGS_IN_QUIZ,
+                    preferences.getStringSet(REGIONS, null),
+                    preferences.getString(DIFFICULTY, null), settingsFlagSource);
+        }
+
+        @Override
+        public void apply(QuizConfig config, Set<String> keys) {
+            quizFragment().applyConfig(config);
             Toast.makeText(MainActivity.this, R.string.restarting_quiz,
                     Toast.LENGTH_SHORT).show();
         }
     };
 
+    private MainActivityFragment quizFragment() {
+        return (MainActivityFragment)
+                getSupportFragmentManager().findFragmentById(R.id.quizFragment);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        PreferenceManager.getDefaultSharedPreferences(this).
+                unregisterOnSharedPreferenceChangeListener(preferencesChangeListener);
+        settingsDebouncer.cancel();
+        settingsWorker.shutdown();
+    }
+
     /**
      * 1. ensure that the quiz is configured correctly based on the app’s default
      * preferences when the app is installed and executes for the first time or
@@ -100,7 +156,15 @@ public class MainActivity extends AppCompatActivity {
                     PreferenceManager.getDefaultSharedPreferences(this));
             quizFragment.updateRegions(
                     PreferenceManager.getDefaultSharedPreferences(this));
-            quizFragment.resetQuiz();
+            quizFragment.updateQuizLength(
+                    PreferenceManager.getDefaultSharedPreferences(this));
+            quizFragment.updateDifficulty(
+                    PreferenceManager.getDefaultSharedPreferences(this));
+            quizFragment.updateFlagAtlas(
+                    PreferenceManager.getDefaultSharedPreferences(this));
+            // continue a quiz saved before a rotation or process death, if any
+            if (!quizFragment.resumeQuiz())
+                quizFragment.resetQuiz();
             preferencesChanged = false;
         }
     }
@@ -119,6 +183,10 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_race) { // start a local multiplayer race
+            startActivity(new Intent(this, RaceActivity.class));
+            return true;
+        }
         Intent preferencesIntent = new Intent(this, SettingsActivity.class);
         startActivity(preferencesIntent);
         // Handle action bar item clicks here. The action bar will
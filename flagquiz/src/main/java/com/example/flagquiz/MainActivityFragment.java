@@ -6,12 +6,14 @@ import android.annotation.TargetApi;
 import android.app.Dialog;
 import android.content.DialogInterface;
 import android.content.SharedPreferences;
-import android.content.res.AssetManager;
+import android.graphics.Bitmap;
 import android.graphics.Color;
-import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.AsyncTask;
 import android.os.Handler;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
 import android.support.v4.app.DialogFragment;
 import android.support.v4.app.Fragment;
 import android.support.v7.app.AlertDialog;
@@ -27,13 +29,16 @@ import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * A placeholder fragment containing a simple view.
@@ -41,23 +46,58 @@ import java.util.Set;
 public class MainActivityFragment extends Fragment {
     // String used when logging error messages
     private static final String TAG = "FlagQuiz Activity";
-    private static final int FLAGS_IN_QUIZ = 10;
-
-    private List<String> fileNameList;          // flag file names
-    private List<String> quizCountriesList;     // countries in current quiz
+    public static final int DEFAULT_FLAGS_IN_QUIZ = 10;
+    private static final int FLAGS_TO_PREFETCH = 2; // upcoming flags decoded in advance
+    private static final String QUIZ_STATE = "quiz_state"; // saved instance state key
+    // loads and saves FlagStats off the UI thread; shared, so the save of a fragment
+    // being replaced, e.g. on rotation, is written before its replacement loads
+    private static final ExecutorService statsWorker = Executors.newSingleThreadExecutor();
+
+    private FlagSource flagSource;              // the bundled flags or a flag pack
+    private FlagAtlas flagAtlas;                // flagSource's flags at display size, or null
+    private File atlasFile;                     // where flagAtlas is built
+    private File flagSourceFile;                // the pack or APK flagSource reads from
+    private int flagsInQuiz = DEFAULT_FLAGS_IN_QUIZ; // number of questions in a quiz
+    private DistractorPicker distractorPicker;  // picks answer choices from the enabled regions
+    private DistractorPicker.Difficulty difficulty = DistractorPicker.Difficulty.EASY;
+    private FlagStats flagStats;                // how well the user knows each flag, once loaded
+    private Runnable startWhenStatsLoaded;      // quiz start waiting for flagStats
+    private File statsFile;                     // where flagStats is saved
+    private File guessLogFile;                  // where guessLog appends
+    private GuessLog guessLog;                  // every guess, for analytics
+    private long flagRevealedAt;                // uptime when the current flag appeared
+    private boolean flagShown;                  // the current flag's image is on screen
+    private QuestionScheduler scheduler;        // asks the flags the user needs most
+    private int poolMask = -1;                  // regions scheduler and distractorPicker cover
+    private boolean questionMissed;             // true after a wrong guess on this flag
+    private int[] quizFlags;                    // ids of the flags in current quiz, in order
     private Set<String> regionsSet;             // world regions in current quiz
-    private String correctAnswer;               // correct country for the current flag
+    private int correctFlag;                    // id of the current flag
+    private int[] currentChoices;               // flags on the guess Buttons
+    private int wrongGuesses;                   // bit i set if choice i was guessed wrong
+    private boolean answered;                   // the current flag was guessed
+    private QuizState restoredState;            // quiz to resume instead of a new one
     private int totalGuesses;                   // number of guesses made
     private int correctAnswers;                 // number of correct guesses
-    private int guessRows;                      // number of rows displaying guess Buttons
-    private SecureRandom random;                // used to randomize the quiz
+    private QuizRandom random;                  // used to randomize the quiz
     private Handler handler;                    // used to delay loading next flag
+    // hands decoded flags back on the UI thread
+    private final Executor uiExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            handler.post(command);
+        }
+    };
+    private QuizTransition transition;          // moves from an answered flag to the next
+    private Animator transitionAnimator;        // its running animation, if any
     private Animation shakeAnimation;           // animation for incorrect guess
+    private FlagPrefetcher flagPrefetcher;      // decodes upcoming flags in the background
+    private FrameJankMeter transitionMeter;     // frame times while the next flag comes in
 
     private LinearLayout quizLinearLayout;      // layout that contains the quiz
     private TextView questionNumberTextView;    // shows current question #
     private ImageView flagImageView;            // displays a flag
-    private LinearLayout[] guessLinearLayouts;  // rows of answer Buttons
+    private AnswerGrid answerGrid;              // the guess Buttons
     private TextView answerTextView;            // displays correct answer
 
     public MainActivityFragment() {
@@ -68,11 +108,19 @@ public class MainActivityFragment extends Fragment {
                              Bundle savedInstanceState) {
         // super.onCreateView(inflater, container, savedInstanceState);
         View view = inflater.inflate(R.layout.fragment_main, container, false);
-        fileNameList = new ArrayList<>();
-        quizCountriesList = new ArrayList<>();
-        random = new SecureRandom();
+        random = new QuizRandom();
         handler = new Handler();
 
+        flagSource = openFlagSource();
+        loadFlagStats(statsFile, flagSource.size());
+        guessLog = new GuessLog(guessLogFile);
+        // room for the flag on screen and the ones being prefetched
+        flagPrefetcher = new FlagPrefetcher(flagSource, null, FLAGS_TO_PREFETCH + 1,
+                uiExecutor);
+        transitionMeter = new FrameJankMeter("Next flag transition");
+        // the transition's delay runs on handler
+        transition = new QuizTransition(new HandlerClock(handler), transitionSteps);
+
         // load the shake animation that's used for incorrect answers
         // The first argument indicates the Context containing the resources that will be animated
         shakeAnimation = AnimationUtils.loadAnimation(getActivity(), R.anim.incorrect_shake);
@@ -81,38 +129,239 @@ public class MainActivityFragment extends Fragment {
         quizLinearLayout = (LinearLayout) view.findViewById(R.id.quizLinearLayout);
         questionNumberTextView = (TextView) view.findViewById(R.id.questionNumberTextView);
         flagImageView = (ImageView) view.findViewById(R.id.flagImageView);
-        guessLinearLayouts = new LinearLayout[4];
-        guessLinearLayouts[0] = (LinearLayout) view.findViewById(R.id.row1LinearLayout);
-        guessLinearLayouts[1] = (LinearLayout) view.findViewById(R.id.row2LinearLayout);
-        guessLinearLayouts[2] = (LinearLayout) view.findViewById(R.id.row3LinearLayout);
-        guessLinearLayouts[3] = (LinearLayout) view.findViewById(R.id.row4LinearLayout);
+        // the rows of guess Buttons in the layout, reused for every question
+        LinearLayout[] guessLinearLayouts = {
+                (LinearLayout) view.findViewById(R.id.row1LinearLayout),
+                (LinearLayout) view.findViewById(R.id.row2LinearLayout),
+                (LinearLayout) view.findViewById(R.id.row3LinearLayout),
+                (LinearLayout) view.findViewById(R.id.row4LinearLayout)};
+        answerGrid = new AnswerGrid(guessLinearLayouts, guessListener);
+        answerGrid.disableAll(); // until the first flag is shown
         answerTextView = (TextView) view.findViewById(R.id.answerTextView);
 
-        // configure listeners for the guess Buttons
-        for (LinearLayout row : guessLinearLayouts) {
-            for (int column = 0; column < row.getChildCount(); column++) {
-                Button button = (Button) row.getChildAt(column);
-                button.setOnClickListener(guessButtonListener);
+        // set questionNumberTextView's text
+        questionNumberTextView.setText(getString(R.string.question, 1, flagsInQuiz));
+
+        // after a rotation or after the system killed the app in the background, pick
+        // up the quiz where the user left it; MainActivity resumes it in onStart
+        byte[] savedQuiz = savedInstanceState != null ?
+                savedInstanceState.getByteArray(QUIZ_STATE) : null;
+        if (savedQuiz != null) {
+            try {
+                restoredState = QuizState.decode(savedQuiz);
+            } catch (IOException exception) {
+                Log.e(TAG, "Error restoring the quiz", exception);
             }
         }
 
-        // set questionNumberTextView's text
-        questionNumberTextView.setText(getString(R.string.question, 1, FLAGS_IN_QUIZ));
-
         return view;
     }
 
-    // update guessRows based on value in SharedPreferences
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (quizFlags != null) {
+            // a few hundred bytes of flag ids; no Bitmaps or names are saved
+            outState.putByteArray(QUIZ_STATE, new QuizState(flagSource.size(), poolMask,
+                    quizFlags, correctAnswers, totalGuesses, answered, currentChoices,
+                    wrongGuesses).encode());
+        } else if (restoredState != null) { // still waiting for flagStats to resume it
+            outState.putByteArray(QUIZ_STATE, restoredState.encode());
+        }
+    }
+
+    // reads the statistics on statsWorker and starts the quiz waiting for them, if any
+    private void loadFlagStats(final File file, final int count) {
+        statsWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                final FlagStats stats = FlagStats.load(file, count);
+                uiExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        flagStats = stats;
+                        Runnable start = startWhenStatsLoaded;
+                        startWhenStatsLoaded = null;
+                        if (start != null && isAdded())
+                            start.run();
+                    }
+                });
+            }
+        });
+    }
+
+    // writes a snapshot of the changed records on statsWorker
+    private void saveFlagStats(final FlagStats stats, final File file) {
+        final FlagStats.Snapshot changes = stats.snapshot();
+        statsWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    changes.write(file);
+                } catch (IOException exception) {
+                    Log.e(TAG, "Error saving flag statistics", exception);
+                    uiExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            stats.restore(changes); // try again at the next save
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    // use a flag pack the user downloaded or copied to the app's files if there is one,
+    // otherwise the flags bundled with the app
+    private FlagSource openFlagSource() {
+        File filesDir = getActivity().getExternalFilesDir(null); // null if not mounted
+        File pack = filesDir != null ? new File(filesDir, FlagPack.FILE_NAME) : null;
+        if (pack != null && pack.isFile()) {
+            try {
+                FlagPack flagPack = FlagPack.open(pack);
+                statsFile = new File(getActivity().getFilesDir(), "flagstats-pack.bin");
+                guessLogFile = new File(getActivity().getFilesDir(), "guesses-pack.log");
+                atlasFile = new File(getActivity().getCacheDir(), "flags-pack.atlas");
+                flagSourceFile = pack;
+                return flagPack;
+            } catch (IOException exception) {
+                Log.e(TAG, "Error opening flag pack " + pack, exception);
+            }
+        }
+
+        // read the prebuilt list of flags once instead of listing the asset folders
+        // on every reset
+        statsFile = new File(getActivity().getFilesDir(), "flagstats.bin");
+        guessLogFile = new File(getActivity().getFilesDir(), GuessLog.FILE_NAME);
+        atlasFile = new File(getActivity().getCacheDir(), "flags.atlas");
+        // the assets are in the APK, which changes whenever the app is updated
+        flagSourceFile = new File(getActivity().getApplicationInfo().sourceDir);
+        try {
+            return new AssetFlagSource(getActivity().getAssets());
+        } catch (IOException exception) {
+            throw new IllegalStateException("Error loading the flag index", exception);
+        }
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        transition.pause();
+        // keep what the user learned; only the flags asked since the last save are written
+        if (flagStats != null) // nothing was asked before it loaded
+            saveFlagStats(flagStats, statsFile);
+        guessLog.flush(); // written on the log's own thread
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        transition.resume(); // continue showing the answer for the time that was left
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        transition.cancel(); // no late step may touch the destroyed views
+        flagPrefetcher.shutdown(); // stop the decoding thread
+        guessLog.close();
+    }
+
+    // update the number of guess Buttons based on value in SharedPreferences
     public void updateGuessRows(SharedPreferences sharedPreferences) {
         // get the number of guess buttons that should be displayed
         String choices = sharedPreferences.getString(MainActivity.CHOICES, null);
-        guessRows = Integer.parseInt(choices) / 2;
-        // hide all quess button LinearLayouts
-        for (LinearLayout layout : guessLinearLayouts)
-            layout.setVisibility(View.GONE);
-        // display appropriate guess button LinearLayouts
-        for (int row = 0; row < guessRows; row++)
-            guessLinearLayouts[row].setVisibility(View.VISIBLE);
+        answerGrid.setChoiceCount(Integer.parseInt(choices));
+    }
+
+    // update the number of questions based on the value in SharedPreferences
+    public void updateQuizLength(SharedPreferences sharedPreferences) {
+        String questions = sharedPreferences.getString(MainActivity.QUESTIONS, null);
+        flagsInQuiz = questions != null ? Integer.parseInt(questions) : DEFAULT_FLAGS_IN_QUIZ;
+    }
+
+    // update how similar the wrong answers are based on the value in SharedPreferences
+    public void updateDifficulty(SharedPreferences sharedPreferences) {
+        difficulty = QuizConfig.parseDifficulty(
+                sharedPreferences.getString(MainActivity.DIFFICULTY, null));
+    }
+
+    // use or drop the flag atlas based on the value in SharedPreferences
+    public void updateFlagAtlas(SharedPreferences sharedPreferences) {
+        if (!sharedPreferences.getBoolean(MainActivity.ATLAS, false)) {
+            if (flagAtlas != null)
+                useFlagAtlas(null);
+            atlasFile.delete(); // give the storage back
+            return;
+        }
+        if (flagAtlas != null)
+            return;
+
+        // flags are shown about as wide as the screen, but not enlarged past the PNGs
+        int tileWidth = Math.min(getResources().getDisplayMetrics().widthPixels,
+                FlagAtlas.MAX_TILE_WIDTH);
+        try {
+            FlagAtlas atlas = FlagAtlas.open(atlasFile);
+            if (atlas.size() == flagSource.size() && atlas.getTileWidth() == tileWidth &&
+                    atlas.isBuiltFrom(flagSourceFile)) {
+                useFlagAtlas(atlas);
+                return;
+            }
+        } catch (IOException exception) {
+            // not built yet
+        }
+        new BuildAtlasTask(flagSource, flagSourceFile, tileWidth, atlasFile).execute();
+    }
+
+    // switches the prefetcher to atlas, or back to decoding PNGs if atlas is null
+    private void useFlagAtlas(FlagAtlas atlas) {
+        flagAtlas = atlas;
+        flagPrefetcher.shutdown();
+        flagPrefetcher = new FlagPrefetcher(flagSource, atlas, FLAGS_TO_PREFETCH + 1,
+                uiExecutor);
+        if (quizFlags != null) {
+            if (!flagShown)
+                requestFlag(correctFlag); // the old prefetcher dropped it
+            flagPrefetcher.prefetch(upcomingFlags());
+        }
+    }
+
+    // builds the flag atlas in the background, the first time it's enabled
+    private class BuildAtlasTask extends AsyncTask<Void, Void, FlagAtlas> {
+        private final FlagSource source;
+        private final File sourceFile;
+        private final int tileWidth;
+        private final File file;
+
+        BuildAtlasTask(FlagSource source, File sourceFile, int tileWidth, File file) {
+            this.source = source;
+            this.sourceFile = sourceFile;
+            this.tileWidth = tileWidth;
+            this.file = file;
+        }
+
+        @Override
+        protected FlagAtlas doInBackground(Void... params) {
+            try {
+                long start = System.nanoTime();
+                FlagAtlasBuilder.build(source, sourceFile, tileWidth, file);
+                Log.i(TAG, "Built flag atlas of " + source.size() + " flags in " +
+                        (System.nanoTime() - start) / 1000000 + " ms");
+                return FlagAtlas.open(file);
+            } catch (IOException exception) {
+                Log.e(TAG, "Error building flag atlas", exception);
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(FlagAtlas atlas) {
+            // the user may have turned the atlas off again or left the quiz meanwhile
+            if (atlas != null && isAdded() && source == flagSource && flagAtlas == null &&
+                    PreferenceManager.getDefaultSharedPreferences(getActivity())
+                            .getBoolean(MainActivity.ATLAS, false))
+                useFlagAtlas(atlas);
+        }
     }
 
     // update world regions for quiz based on values in SharedPreferences
@@ -120,114 +369,209 @@ public class MainActivityFragment extends Fragment {
         regionsSet = sharedPreferences.getStringSet(MainActivity.REGIONS, null);
     }
 
-    // set up and start the next quiz
-    public void resetQuiz() {
-        // use AssetManager to get image file names for enabled regions
-        AssetManager assets = getActivity().getAssets();
-        fileNameList.clear();       // empty list of image file names
+    // choose from the flags of the enabled regions; the scheduler is kept while
+    // the regions stay the same
+    private void updatePool() {
+        int mask = flagSource.regionMask(regionsSet);
+        if (scheduler == null || mask != poolMask) {
+            int[] flags = flagSource.select(mask);
+            if (flags.length == 0) // a flag pack with other regions than the settings offer
+                flags = flagSource.select(~0);
+            usePool(mask, flags);
+        }
+    }
 
-        try {
-            // loop through each region
-            for (String region : regionsSet) {
-                // get a list of all flag image files in this region
-                String[] paths = assets.list(region);
+    private void usePool(int mask, int[] flags) {
+        scheduler = new QuestionScheduler(flagStats, flags, random);
+        distractorPicker = new DistractorPicker(flags, flagSource, random);
+        poolMask = mask;
+    }
 
-                for (String path : paths)
-                    fileNameList.add(path.replace(".png", ""));
-            }
-        } catch (IOException exception) {
-            Log.e(TAG, "Error loading image file names", exception);
+    public FlagSource getFlagSource() {
+        return flagSource;
+    }
+
+    // apply settings that MainActivity resolved off the UI thread and start one new quiz
+    public void applyConfig(QuizConfig config) {
+        answerGrid.setChoiceCount(config.choices);
+        flagsInQuiz = config.questions;
+        difficulty = config.difficulty;
+        regionsSet = config.regions;
+        // before flagStats is loaded, resetQuiz waits and picks the pool from regionsSet
+        if (flagStats != null && (scheduler == null || config.regionMask != poolMask))
+            usePool(config.regionMask, config.pool);
+        resetQuiz();
+    }
+
+    /**
+     * continue the quiz saved in onSaveInstanceState, if there is one and it was made
+     * with the current flags and regions
+     * @return false if there was nothing to resume and resetQuiz should be called
+     */
+    public boolean resumeQuiz() {
+        QuizState state = restoredState;
+        transition.cancel();
+        if (state == null || state.sourceSize != flagSource.size() ||
+                state.regionMask != flagSource.regionMask(regionsSet) ||
+                state.choices.length != answerGrid.getChoiceCount()) {
+            restoredState = null;
+            return false;
+        }
+        if (flagStats == null) { // still loading; start once it's there
+            startWhenStatsLoaded = new Runnable() {
+                @Override
+                public void run() {
+                    if (!resumeQuiz()) // the settings changed meanwhile
+                        resetQuiz();
+                }
+            };
+            return true;
+        }
+        restoredState = null;
+
+        updatePool();
+        quizFlags = state.quizFlags;
+        correctAnswers = state.correctAnswers;
+        totalGuesses = state.totalGuesses;
+        // the questions not answered yet still have to be recorded in the statistics
+        scheduler.resume(Arrays.copyOfRange(quizFlags, correctAnswers, quizFlags.length));
+
+        if (state.answered && correctAnswers < quizFlags.length) {
+            loadNextFlag(); // the 2-second delay was cut short; go on to the next flag
+            return true;
+        }
+
+        // show the question as it was: same flag, same choices, same wrong guesses
+        int question = state.answered ? correctAnswers - 1 : correctAnswers;
+        correctFlag = quizFlags[question];
+        currentChoices = state.choices;
+        wrongGuesses = state.wrongGuesses;
+        questionMissed = wrongGuesses != 0;
+        answered = state.answered;
+        questionNumberTextView.setText(getString(R.string.question,
+                (question + 1), quizFlags.length));
+        answerGrid.bind(currentChoices, flagSource);
+        answerGrid.disableAll(); // the guesses left are enabled once the flag is shown
+        requestFlag(correctFlag);
+        if (answered) { // the results dialog is restored by the FragmentManager
+            answerTextView.setText(flagSource.getCountryName(correctFlag) + "!");
+        } else {
+            answerTextView.setText("");
+            flagPrefetcher.prefetch(upcomingFlags());
+        }
+        return true;
+    }
+
+    // set up and start the next quiz
+    public void resetQuiz() {
+        transition.cancel(); // a transition of the previous quiz must not load its flag
+        if (flagStats == null) { // still loading; start once it's there
+            startWhenStatsLoaded = new Runnable() {
+                @Override
+                public void run() {
+                    resetQuiz();
+                }
+            };
+            return;
         }
+        updatePool();
 
         correctAnswers = 0;         // reset the number of correct answers made
         totalGuesses = 0;           // reset the total number of guesses the user made
-        quizCountriesList.clear();  // clear prior list of quiz countries
-
-        int flagCounter = 1;
-        int numberOfFlags = fileNameList.size();
-
-        // add FLAGS_IN_QUIZ random file names to the quizCountriesList
-        while (flagCounter <= FLAGS_IN_QUIZ) {
-            int randomIndex = random.nextInt(numberOfFlags);
-            // get the random file name
-            String filename = fileNameList.get(randomIndex);
-            // if the region is enabled and it hasn't already been chosen
-            if (!quizCountriesList.contains(filename)) {
-                quizCountriesList.add(filename); // add the file to the list
-                ++flagCounter;
-            }
-        }
+
+        // pick the flagsInQuiz flags (all of them if there are fewer) most due for
+        // review: the ones missed recently, then new ones, then well known ones
+        scheduler.beginSession();
+        quizFlags = scheduler.pickQuiz(flagsInQuiz);
 
         loadNextFlag(); // start the quiz by loading the first flag
 
     }
 
     // after the user guesses a correct flag, load the next flag
-    @TargetApi(Build.VERSION_CODES.KITKAT)
     private void loadNextFlag() {
-        // get file name of the next flag and remove it from the list
-        String nextImage = quizCountriesList.remove(0);
-        correctAnswer = nextImage; // update the correct answer
+        // get the next flag and its file name
+        int nextFlag = quizFlags[correctAnswers];
+        correctFlag = nextFlag; // update the correct answer
+        questionMissed = false;
+        wrongGuesses = 0;
+        answered = false;
         answerTextView.setText(""); // clear answerTextView
 
         // display current question number
         questionNumberTextView.setText(getString(R.string.question,
-                (correctAnswers + 1), FLAGS_IN_QUIZ));
-        // extract the region from the next image's name
-        String region = nextImage.substring(0, nextImage.indexOf('-'));
-
-        // use AssetManager to load next image from assets folder
-        AssetManager assets = getActivity().getAssets();
-        // get an InputStream to the asset representing the next flag and
-        // try to use the InputStream
-        try (InputStream stream = assets.open(region + "/" + nextImage + ".png")) {
-            // load the asset as a Drawable and display on the flagImageView
-            Drawable flag = Drawable.createFromStream(stream, nextImage);
-            flagImageView.setImageDrawable(flag);
-
-            animate(false); // animate the flag onto the screen
-        } catch (IOException exception) {
-            Log.e(TAG, "Error loading " + nextImage, exception);
+                (correctAnswers + 1), quizFlags.length));
+        // pick the correct answer and distinct wrong ones, as many from the flag's own
+        // region as the difficulty asks for, in random order, and show them; the Buttons
+        // are enabled once the flag is on screen, so no guess is timed from an older one
+        currentChoices = distractorPicker.pickChoices(nextFlag, answerGrid.getChoiceCount(),
+                difficulty);
+        answerGrid.bind(currentChoices, flagSource);
+        answerGrid.disableAll();
+
+        // display the flag the prefetcher decoded while the user answered the last one
+        requestFlag(nextFlag);
+        // decode the following flags while the user answers this one
+        flagPrefetcher.prefetch(upcomingFlags());
+    }
+
+    // shows flag as soon as it is decoded, at once if it was prefetched; the answer
+    // clock starts when it is on screen
+    private void requestFlag(int flag) {
+        flagShown = false;
+        flagPrefetcher.get(flag, flagCallback);
+    }
+
+    private final FlagPrefetcher.Callback flagCallback = new FlagPrefetcher.Callback() {
+        @Override
+        public void onFlag(int flagId, Bitmap flag) {
+            if (flagId != correctFlag || flagShown || !isAdded())
+                return; // the quiz moved on while it was decoded
+            showFlag(flagId, flag);
+            flagShown = true;
+            flagRevealedAt = SystemClock.uptimeMillis(); // moved to the reveal's end if animated
+            enableGuesses();
         }
+    };
 
-        Collections.shuffle(fileNameList); // shuffle file names
-
-        // put the correct answer at the end of fileNameList
-        int correct = fileNameList.indexOf(correctAnswer);
-        fileNameList.add(fileNameList.remove(correct));
-
-        // add 2, 4, 6 or 8 guess Buttons based on the value of guessRows
-        for (int row = 0; row < guessRows; row++) {
-            // place Buttons in currentTableRow
-            for (int column = 0; column < guessLinearLayouts[row].getChildCount(); column++) {
-                // get reference to Button to configure
-                Button newGuessButton = (Button) guessLinearLayouts[row].getChildAt(column);
-                newGuessButton.setEnabled(true);
-                // get country name and set it as newGuessButton's text
-                String filename = fileNameList.get((row * 2) + column);
-                newGuessButton.setText(getCountryName(filename));
-            }
+    // enables the choices not yet guessed wrong, unless the question was answered;
+    // Buttons beyond the enabled regions' flags stay disabled
+    private void enableGuesses() {
+        if (answered)
+            return;
+        answerGrid.bind(currentChoices, flagSource); // same choices, so only enables them
+        for (int i = 0; i < currentChoices.length; i++) {
+            if ((wrongGuesses & (1 << i)) != 0)
+                answerGrid.disableChoice(i);
         }
+    }
 
-        // randomly replace one Button with the correct answer
-        int row = random.nextInt(guessRows); // pick random row
-        int column = random.nextInt(2); // pick random column
-        LinearLayout randomRow = guessLinearLayouts[row]; // get the row
-        String countryName = getCountryName(correctAnswer);
-        ((Button) randomRow.getChildAt(column)).setText(countryName);
+    // displays flag's decoded image; an atlas Bitmap holds more rows than the flag
+    private void showFlag(int flag, Bitmap image) {
+        if (flagAtlas != null && image != null)
+            flagImageView.setImageDrawable(new FlagTileDrawable(image,
+                    flagAtlas.getTileWidth(), flagAtlas.getHeight(flag)));
+        else
+            flagImageView.setImageBitmap(image);
     }
 
-    // parses the country flag file name and returns the country name
-    private String getCountryName(String name) {
-        return name.substring(name.indexOf('-') + 1).replace('_', ' ');
+    // the flags after the current question that should be decoded in advance
+    private List<Integer> upcomingFlags() {
+        List<Integer> upcoming = new ArrayList<>(FLAGS_TO_PREFETCH);
+        for (int i = correctAnswers + 1;
+             i < quizFlags.length && upcoming.size() < FLAGS_TO_PREFETCH; i++)
+            upcoming.add(quizFlags[i]);
+        return upcoming;
     }
 
-    // animates the entire quizLinearLayout on or off screen
+    // animates the entire quizLinearLayout on or off screen, then runs done
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
-    private void animate(boolean animateOut) {
-        // prevent animation into the the UI for the first flag
-        if (correctAnswers == 0)
+    private void animate(boolean animateOut, final Runnable done) {
+        // circular reveals need Lollipop; earlier versions just switch flags
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            done.run();
             return;
+        }
 
         // calculate center x and center y
         int centerX = (quizLinearLayout.getLeft() + quizLinearLayout.getRight()) / 2;
@@ -235,42 +579,80 @@ public class MainActivityFragment extends Fragment {
         // calculate animation radius
         int radius = Math.max(quizLinearLayout.getWidth(), quizLinearLayout.getHeight());
 
-        Animator animator;
-        // if the quizLinearLayout should animate out rather than in
-        if (animateOut) {
-            // create circular reveal animation
-            animator = ViewAnimationUtils.createCircularReveal(
-                    quizLinearLayout, centerX, centerY, radius, 0);
-            animator.addListener(
-                    new AnimatorListenerAdapter() {
-                        // called when the animation finishes
-                        @Override
-                        public void onAnimationEnd(Animator animation) {
-                            loadNextFlag();
-                        }
+        // create circular reveal animation that hides or reveals quizLinearLayout
+        transitionAnimator = ViewAnimationUtils.createCircularReveal(quizLinearLayout,
+                centerX, centerY, animateOut ? radius : 0, animateOut ? 0 : radius);
+        transitionAnimator.addListener(
+                new AnimatorListenerAdapter() {
+                    // called when the animation finishes or is cancelled
+                    @Override
+                    public void onAnimationEnd(Animator animation) {
+                        transitionAnimator = null;
+                        done.run();
                     }
-            );
-        } else {
-            animator = ViewAnimationUtils.createCircularReveal(
-                    quizLinearLayout, centerX, centerY, 0, radius);
-        }
-        animator.setDuration(500); // set animation duration to 500 ms
-        animator.start(); // start the animation
+                }
+        );
+        transitionAnimator.setDuration(500); // set animation duration to 500 ms
+        transitionAnimator.start(); // start the animation
     }
 
+    // the steps between an answered flag and the next
+    private final QuizTransition.Steps transitionSteps = new QuizTransition.Steps() {
+        @Override
+        public void prefetch(int question) {
+            // usually decoded already while the user answered; if not, it is now,
+            // during the delay rather than after it
+            flagPrefetcher.prefetch(Collections.singletonList(quizFlags[question]));
+        }
+
+        @Override
+        public void animateOut(Runnable done) {
+            animate(true, done); // animate the flag off the screen
+        }
+
+        @Override
+        public void bind(int question) {
+            transitionMeter.start(); // measure until the reveal animation ends
+            loadNextFlag();
+        }
+
+        @Override
+        public void animateIn(final Runnable done) {
+            animate(false, new Runnable() { // animate the flag onto the screen
+                @Override
+                public void run() {
+                    transitionMeter.stop();
+                    if (flagShown) // otherwise the clock starts when the flag arrives
+                        flagRevealedAt = SystemClock.uptimeMillis();
+                    if (Log.isLoggable(TAG, Log.DEBUG))
+                        Log.d(TAG, flagPrefetcher.getStats());
+                    done.run();
+                }
+            });
+        }
+
+        @Override
+        public void cancelAnimation() {
+            if (transitionAnimator != null)
+                transitionAnimator.cancel();
+        }
+    };
+
     // called when a guess Button is touched
-    private View.OnClickListener guessButtonListener = new View.OnClickListener() {
+    private AnswerGrid.Listener guessListener = new AnswerGrid.Listener() {
 
         //@TargetApi(Build.VERSION_CODES.M)
         @Override
-        public void onClick(View v) {
-            Button guessButton = ((Button) v);
-            String guess = guessButton.getText().toString();
-            String answer = getCountryName(correctAnswer);
+        public void onGuess(int flag, Button guessButton) {
             ++totalGuesses; // increment number of guesses the user has made
+            guessLog.record(correctFlag, flag, SystemClock.uptimeMillis() - flagRevealedAt);
 
-            if (guess.equals(answer)) { // if the guess is correct
+            if (flag == correctFlag) { // if the guess is correct
+                // reschedule the flag: soon if it took more than one guess, later if not
+                scheduler.record(correctFlag, questionMissed);
+                String answer = flagSource.getCountryName(correctFlag);
                 ++correctAnswers; // increment the number of correct answers
+                answered = true;
                 // display correct answer in green text
                 answerTextView.setText(answer + "!");
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
@@ -279,39 +661,19 @@ public class MainActivityFragment extends Fragment {
                 } else {
                     answerTextView.setTextColor(Color.parseColor("#00CC00"));
                 }
-                disableButtons(); // disable all guess Buttons
+                answerGrid.disableAll(); // disable all guess Buttons
 
-                // if the user has correctly identified FLAGS_IN_QUIZ flags
-                if (correctAnswers == FLAGS_IN_QUIZ) {
+                // if the user has correctly identified every flag of the quiz
+                if (correctAnswers == quizFlags.length) {
                     // DialogFragment to display quiz stats and start new quiz
                     DialogFragment quizResults =
-                             new DialogFragment() {
-                                @Override
-                                public Dialog onCreateDialog(Bundle bundle) {
-                                    AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
-                                    builder.setMessage(getString(R.string.results, totalGuesses, (1000 / (double) totalGuesses)));
-                                    // "Reset Quiz" Button
-                                    builder.setPositiveButton(R.string.reset_quiz,
-                                            new DialogInterface.OnClickListener() {
-                                                public void onClick(DialogInterface dialog, int id) {
-                                                    resetQuiz();
-                                                }
-                                            }
-                                    );
-                                    return builder.create(); // return the AlertDialog
-                                }
-                            };
+                            QuizResultsFragment.newInstance(totalGuesses, correctAnswers);
                     // use FragmentManager to display the DialogFragment
                     quizResults.setCancelable(false);
                     quizResults.show(getFragmentManager(), "quiz results");
                 } else {// answer is correct but quiz is not over
                     // load the next flag after a 2-second delay
-                    handler.postDelayed(new Runnable() {
-                                @Override
-                                public void run() {
-                                    animate(true); // animate the flag off the screen
-                                }
-                            }, 2000); // 2000 milliseconds for 2-second delay
+                    transition.start(correctAnswers, 2000); // 2000 milliseconds
                 }
             } else {
                 flagImageView.startAnimation(shakeAnimation); // play shake
@@ -324,17 +686,48 @@ public class MainActivityFragment extends Fragment {
                     answerTextView.setTextColor(Color.parseColor("#FF0000"));
                 }
                 guessButton.setEnabled(false); // disable incorrect answer
+                questionMissed = true;
+                for (int i = 0; i < currentChoices.length; i++) {
+                    if (currentChoices[i] == flag)
+                        wrongGuesses |= 1 << i; // so a restored quiz disables it too
+                }
             }
         }
     };
 
-    // utility method that disables all answer Buttons
-    private void disableButtons() {
-        for (int row = 0; row < guessRows; row++) {
-            LinearLayout guessRow = guessLinearLayouts[row];
-            for (int i = 0; i < guessRow.getChildCount(); i++)
-                guessRow.getChildAt(i).setEnabled(false);
+    // displays quiz stats and starts a new quiz; a static class so the FragmentManager
+    // can recreate it after a rotation
+    public static class QuizResultsFragment extends DialogFragment {
+        private static final String TOTAL_GUESSES = "total_guesses";
+        private static final String CORRECT_ANSWERS = "correct_answers";
+
+        public static QuizResultsFragment newInstance(int totalGuesses, int correctAnswers) {
+            Bundle arguments = new Bundle();
+            arguments.putInt(TOTAL_GUESSES, totalGuesses);
+            arguments.putInt(CORRECT_ANSWERS, correctAnswers);
+            QuizResultsFragment fragment = new QuizResultsFragment();
+            fragment.setArguments(arguments);
+            return fragment;
         }
-    }
 
+        @Override
+        public Dialog onCreateDialog(Bundle bundle) {
+            int totalGuesses = getArguments().getInt(TOTAL_GUESSES);
+            int correctAnswers = getArguments().getInt(CORRECT_ANSWERS);
+            AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+            builder.setMessage(getString(R.string.results, totalGuesses,
+                    (correctAnswers * 100 / (double) totalGuesses)));
+            // "Reset Quiz" Button
+            builder.setPositiveButton(R.string.reset_quiz,
+                    new DialogInterface.OnClickListener() {
+                        public void onClick(DialogInterface dialog, int id) {
+                            MainActivityFragment quizFragment = (MainActivityFragment)
+                                    getFragmentManager().findFragmentById(R.id.quizFragment);
+                            quizFragment.resetQuiz();
+                        }
+                    }
+            );
+            return builder.create(); // return the AlertDialog
+        }
+    }
 }
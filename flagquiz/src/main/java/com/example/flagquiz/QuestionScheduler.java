@@ -0,0 +1,188 @@
+package com.example.flagquiz;
+
+/**
+ * Chooses quiz questions by spaced repetition. A flag answered right the first time is
+ * asked again after 1, 2, 4, 8... sessions; a missed flag is due again in the next
+ * session. Flags never asked are introduced a few per session, spread over the sessions
+ * it takes to see them all. The flags are kept in a binary heap ordered by the session
+ * they are due in, then by how often they were missed, so picking a question costs
+ * O(log n) no matter how long the history is.
+ * <p>
+ * A flag picked for a quiz leaves the heap until its result is recorded, so a quiz
+ * never repeats a flag. Flags picked but never answered return at the next session.
+ */
+public class QuestionScheduler {
+    private static final int MAX_INTERVAL_SHIFT = 10; // longest interval: 1024 sessions
+    private static final int NEW_FLAGS_PER_SESSION = 5; // on average
+
+    private final FlagStats stats;
+    private final QuizRandom random;
+    private final int newFlagSessions; // sessions over which unseen flags are introduced
+    private final int[] heapFlags;   // flags in heap order
+    private final long[] heapKeys;   // their priorities; smaller is asked sooner
+    private int heapSize;
+    private final int[] outstanding; // picked flags whose results are not recorded yet
+    private final boolean[] isOutstanding;
+    private int outstandingCount;
+
+    /**
+     * @param stats the user's history, indexed by flag id
+     * @param pool  ids of the flags to ask about
+     */
+    public QuestionScheduler(FlagStats stats, int[] pool, QuizRandom random) {
+        this.stats = stats;
+        this.random = random;
+        newFlagSessions = Math.max(1, pool.length / NEW_FLAGS_PER_SESSION);
+        heapFlags = new int[pool.length];
+        heapKeys = new long[pool.length];
+        outstanding = new int[pool.length];
+        isOutstanding = new boolean[stats.size()];
+        for (int flag : pool) {
+            heapFlags[heapSize] = flag;
+            heapKeys[heapSize] = key(flag);
+            ++heapSize;
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) // heapify in O(n)
+            siftDown(i);
+    }
+
+    // session in which flag should be asked again, or -1 if it was never asked
+    public int dueSession(int flag) {
+        int lastSeen = stats.getLastSeen(flag);
+        if (lastSeen < 0)
+            return -1;
+        return lastSeen + (1 << Math.min(stats.getStreak(flag), MAX_INTERVAL_SHIFT));
+    }
+
+    // orders by due session, then by miss rate (higher first), then randomly
+    private long key(int flag) {
+        int due = dueSession(flag);
+        if (due < 0) // not asked yet: pick a session to introduce it in
+            due = stats.getSession() + random.nextInt(newFlagSessions);
+        int attempts = stats.getAttempts(flag);
+        int missRate = attempts == 0 ? 0 : stats.getMisses(flag) * 255 / attempts;
+        return ((long) due << 32) | ((long) (255 - missRate) << 24) |
+                random.nextInt(1 << 24);
+    }
+
+    public int size() {
+        return heapSize + outstandingCount;
+    }
+
+    // starts a new quiz; flags picked in the last quiz but never answered are due again
+    public void beginSession() {
+        stats.beginSession();
+        for (int i = 0; i < outstandingCount; i++) {
+            isOutstanding[outstanding[i]] = false;
+            push(outstanding[i]);
+        }
+        outstandingCount = 0;
+    }
+
+    /**
+     * pick the count (or fewer, if there aren't that many) flags due soonest
+     */
+    public int[] pickQuiz(int count) {
+        count = Math.min(count, heapSize);
+        int[] flags = new int[count];
+        for (int i = 0; i < count; i++) {
+            flags[i] = pop();
+            isOutstanding[flags[i]] = true;
+            outstanding[outstandingCount++] = flags[i];
+        }
+        return flags;
+    }
+
+    /**
+     * take flags out of the heap as if they had been picked in this session, e.g. the
+     * unanswered questions of a quiz restored after the app was restarted
+     */
+    public void resume(int[] flags) {
+        for (int flag : flags) {
+            for (int i = 0; i < heapSize; i++) {
+                if (heapFlags[i] == flag) {
+                    remove(i);
+                    isOutstanding[flag] = true;
+                    outstanding[outstandingCount++] = flag;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * record the result of a question and reschedule its flag
+     * @param missed true if the user didn't guess the flag right the first time
+     */
+    public void record(int flag, boolean missed) {
+        if (!isOutstanding[flag])
+            return; // not asked in this session
+        stats.record(flag, missed);
+        isOutstanding[flag] = false;
+        for (int i = 0; i < outstandingCount; i++) {
+            if (outstanding[i] == flag) {
+                outstanding[i] = outstanding[--outstandingCount];
+                break;
+            }
+        }
+        push(flag);
+    }
+
+    private void push(int flag) {
+        heapFlags[heapSize] = flag;
+        heapKeys[heapSize] = key(flag);
+        siftUp(heapSize++);
+    }
+
+    private int pop() {
+        int flag = heapFlags[0];
+        remove(0);
+        return flag;
+    }
+
+    // removes the entry at heap position i
+    private void remove(int i) {
+        --heapSize;
+        if (i == heapSize)
+            return;
+        heapFlags[i] = heapFlags[heapSize];
+        heapKeys[i] = heapKeys[heapSize];
+        siftDown(i);
+        siftUp(i);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (heapKeys[parent] <= heapKeys[i])
+                return;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < heapSize && heapKeys[left] < heapKeys[smallest])
+                smallest = left;
+            if (right < heapSize && heapKeys[right] < heapKeys[smallest])
+                smallest = right;
+            if (smallest == i)
+                return;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int flag = heapFlags[i];
+        heapFlags[i] = heapFlags[j];
+        heapFlags[j] = flag;
+        long key = heapKeys[i];
+        heapKeys[i] = heapKeys[j];
+        heapKeys[j] = key;
+    }
+}
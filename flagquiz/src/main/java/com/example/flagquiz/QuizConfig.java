@@ -0,0 +1,50 @@
+package com.example.flagquiz;
+
+import java.util.Set;
+
+/**
+ * The quiz settings, parsed and resolved against a FlagSource: how many choices and
+ * questions, and which flags the enabled regions hold. Computed off the UI thread when
+ * the settings change.
+ */
+public class QuizConfig {
+    public final int choices;        // guess Buttons per question
+    public final int questions;      // flags per quiz
+    public final Set<String> regions;
+    public final int regionMask;     // regions as a FlagSource bit mask
+    public final int[] pool;         // flags of the enabled regions
+    public final DistractorPicker.Difficulty difficulty;
+
+    public QuizConfig(int choices, int questions, Set<String> regions, int regionMask,
+                      int[] pool, DistractorPicker.Difficulty difficulty) {
+        this.choices = choices;
+        this.questions = questions;
+        this.regions = regions;
+        this.regionMask = regionMask;
+        this.pool = pool;
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * @param choices   the number of choices setting
+     * @param questions the number of questions setting, or null for defaultQuestions
+     * @param regions   the enabled regions setting
+     * @param difficulty the difficulty setting, or null for EASY
+     */
+    public static QuizConfig compute(String choices, String questions, int defaultQuestions,
+                                     Set<String> regions, String difficulty,
+                                     FlagSource source) {
+        int mask = source.regionMask(regions);
+        int[] pool = source.select(mask);
+        if (pool.length == 0) // a flag pack with other regions than the settings offer
+            pool = source.select(~0);
+        return new QuizConfig(Integer.parseInt(choices),
+                questions != null ? Integer.parseInt(questions) : defaultQuestions,
+                regions, mask, pool, parseDifficulty(difficulty));
+    }
+
+    public static DistractorPicker.Difficulty parseDifficulty(String difficulty) {
+        return difficulty != null ? DistractorPicker.Difficulty.valueOf(difficulty) :
+                DistractorPicker.Difficulty.EASY;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.flagquiz;
+
+/**
+ * Small, fast pseudo-random number generator (SplitMix64) for picking quiz questions.
+ * A quiz needs no cryptographic strength, and a fixed seed makes a quiz reproducible
+ * in tests.
+ */
+public class QuizRandom {
+    private long state;
+
+    public QuizRandom(long seed) {
+        state = seed;
+    }
+
+    // seeded from the clock, for a different quiz every time
+    public QuizRandom() {
+        this(System.nanoTime() ^ System.currentTimeMillis() << 20);
+    }
+
+    public long nextLong() {
+        long z = (state += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // uniformly distributed int in [0, bound)
+    public int nextInt(int bound) {
+        if (bound <= 0)
+            throw new IllegalArgumentException("bound must be positive");
+        // reject the top values that would make the remainder biased (as java.util.Random)
+        int bits;
+        int value;
+        do {
+            bits = (int) (nextLong() >>> 33);
+            value = bits % bound;
+        } while (bits - value + (bound - 1) < 0);
+        return value;
+    }
+}
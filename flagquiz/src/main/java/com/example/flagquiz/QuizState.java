@@ -0,0 +1,101 @@
+package com.example.flagquiz;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Snapshot of a quiz in progress, small enough to keep in the fragment's saved instance
+ * state. Flags are stored as ids, so a quiz resumes without listing or reading any flags.
+ * <p>
+ * Encoded layout (big-endian):
+ * <pre>
+ * short VERSION
+ * int   flags in the source the ids refer to
+ * int   enabled regions (bit mask)
+ * short number of questions, followed by their flag ids (int each)
+ * short correct answers
+ * int   total guesses
+ * byte  1 if the current flag has been guessed, else 0
+ * short number of choices, followed by their flag ids (int each)
+ * int   choices guessed wrong (bit mask)
+ * </pre>
+ */
+public class QuizState {
+    public static final int VERSION = 1;
+
+    public final int sourceSize;     // FlagSource.size() of the flags the ids refer to
+    public final int regionMask;     // regions the quiz was built from
+    public final int[] quizFlags;    // the questions, in order
+    public final int correctAnswers; // questions answered so far
+    public final int totalGuesses;
+    public final boolean answered;   // the current question was answered
+    public final int[] choices;      // flags on the guess Buttons
+    public final int wrongGuesses;   // bit i is set if choice i was guessed wrong
+
+    public QuizState(int sourceSize, int regionMask, int[] quizFlags, int correctAnswers,
+                     int totalGuesses, boolean answered, int[] choices, int wrongGuesses) {
+        this.sourceSize = sourceSize;
+        this.regionMask = regionMask;
+        this.quizFlags = quizFlags;
+        this.correctAnswers = correctAnswers;
+        this.totalGuesses = totalGuesses;
+        this.answered = answered;
+        this.choices = choices;
+        this.wrongGuesses = wrongGuesses;
+    }
+
+    public byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(25 + 4 * (quizFlags.length + choices.length));
+        buffer.putShort((short) VERSION);
+        buffer.putInt(sourceSize);
+        buffer.putInt(regionMask);
+        buffer.putShort((short) quizFlags.length);
+        for (int flag : quizFlags)
+            buffer.putInt(flag);
+        buffer.putShort((short) correctAnswers);
+        buffer.putInt(totalGuesses);
+        buffer.put((byte) (answered ? 1 : 0));
+        buffer.putShort((short) choices.length);
+        for (int flag : choices)
+            buffer.putInt(flag);
+        buffer.putInt(wrongGuesses);
+        return buffer.array();
+    }
+
+    /**
+     * @throws IOException if bytes is not an encoded quiz state of this version
+     */
+    public static QuizState decode(byte[] bytes) throws IOException {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if (buffer.getShort() != VERSION)
+                throw new IOException("Unsupported quiz state version");
+            int sourceSize = buffer.getInt();
+            int regionMask = buffer.getInt();
+            int[] quizFlags = readFlags(buffer, sourceSize);
+            int correctAnswers = buffer.getShort();
+            int totalGuesses = buffer.getInt();
+            boolean answered = buffer.get() != 0;
+            int[] choices = readFlags(buffer, sourceSize);
+            int wrongGuesses = buffer.getInt();
+            if (correctAnswers < 0 || correctAnswers > quizFlags.length ||
+                    (correctAnswers == quizFlags.length && !answered) || buffer.hasRemaining())
+                throw new IOException("Corrupt quiz state");
+            return new QuizState(sourceSize, regionMask, quizFlags, correctAnswers,
+                    totalGuesses, answered, choices, wrongGuesses);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated quiz state");
+        }
+    }
+
+    private static int[] readFlags(ByteBuffer buffer, int sourceSize) throws IOException {
+        int[] flags = new int[buffer.getShort()];
+        for (int i = 0; i < flags.length; i++) {
+            flags[i] = buffer.getInt();
+            if (flags[i] < 0 || flags[i] >= sourceSize)
+                throw new IOException("Corrupt quiz state");
+        }
+        return flags;
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.flagquiz;
+
+/**
+ * Runs the move from an answered question to the next one as a single pipeline: a
+ * delay that shows the answer, the current flag animating out, the next question being
+ * bound and the new flag animating in. The next flag starts loading when the delay
+ * starts, so its I/O overlaps the delay.
+ * <p>
+ * A transition can be cancelled at any step, e.g. when the quiz is reset, and its
+ * remaining steps never run; animation end callbacks of a cancelled transition are
+ * ignored. While paused, the delay stops counting. All methods must be called on the
+ * UI thread.
+ */
+public class QuizTransition {
+    public static final int IDLE = 0;
+    public static final int DELAYING = 1;       // showing the answer
+    public static final int ANIMATING_OUT = 2;  // the answered flag leaves
+    public static final int ANIMATING_IN = 3;   // the next flag arrives
+
+    // time source and callback queue; a Handler in the app, a fake clock in tests
+    public interface Clock {
+        long uptimeMillis();
+
+        void postDelayed(Runnable runnable, long delayMillis);
+
+        void removeCallbacks(Runnable runnable);
+    }
+
+    // the work done at each step
+    public interface Steps {
+        // start loading the flag of question
+        void prefetch(int question);
+
+        // animate the answered flag off the screen and run done when it's gone
+        void animateOut(Runnable done);
+
+        // show question
+        void bind(int question);
+
+        // animate the new flag onto the screen and run done when it's there
+        void animateIn(Runnable done);
+
+        // stop a running animation; its done Runnable may still be called
+        void cancelAnimation();
+    }
+
+    private final Clock clock;
+    private final Steps steps;
+    private int state = IDLE;
+    private int generation;        // incremented on cancel, to ignore stale callbacks
+    private int question;          // the question being moved to
+    private long delayEnd;         // uptime at which the delay ends
+    private long delayRemaining;   // delay left when paused
+    private boolean paused;
+
+    private final Runnable delayDone = new Runnable() {
+        @Override
+        public void run() {
+            if (state == DELAYING && !paused)
+                animateOut();
+        }
+    };
+
+    public QuizTransition(Clock clock, Steps steps) {
+        this.clock = clock;
+        this.steps = steps;
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    public boolean isRunning() {
+        return state != IDLE;
+    }
+
+    /**
+     * move to question after showing the answer for delayMillis; a transition that
+     * is still running is cancelled first
+     */
+    public void start(int question, long delayMillis) {
+        cancel();
+        this.question = question;
+        state = DELAYING;
+        steps.prefetch(question); // overlaps the flag's I/O with the delay
+        if (paused) {
+            delayRemaining = delayMillis;
+        } else {
+            delayEnd = clock.uptimeMillis() + delayMillis;
+            clock.postDelayed(delayDone, delayMillis);
+        }
+    }
+
+    // stops the transition where it is; none of its remaining steps run
+    public void cancel() {
+        ++generation;
+        clock.removeCallbacks(delayDone);
+        int cancelled = state;
+        state = IDLE;
+        if (cancelled == ANIMATING_OUT || cancelled == ANIMATING_IN)
+            steps.cancelAnimation();
+    }
+
+    // holds the delay, e.g. while the fragment is paused; animations finish normally
+    public void pause() {
+        if (paused)
+            return;
+        paused = true;
+        if (state == DELAYING) {
+            delayRemaining = Math.max(0, delayEnd - clock.uptimeMillis());
+            clock.removeCallbacks(delayDone);
+        }
+    }
+
+    // continues a held delay for the time it had left
+    public void resume() {
+        if (!paused)
+            return;
+        paused = false;
+        if (state == DELAYING) {
+            delayEnd = clock.uptimeMillis() + delayRemaining;
+            clock.postDelayed(delayDone, delayRemaining);
+        }
+    }
+
+    private void animateOut() {
+        state = ANIMATING_OUT;
+        steps.animateOut(whenDone(ANIMATING_OUT));
+    }
+
+    // the done callback of step, which does nothing if the transition moved on
+    private Runnable whenDone(final int step) {
+        final int stepGeneration = generation;
+        return new Runnable() {
+            @Override
+            public void run() {
+                if (stepGeneration != generation || state != step)
+                    return; // cancelled, or called twice
+                if (step == ANIMATING_OUT) {
+                    state = ANIMATING_IN;
+                    steps.bind(question);
+                    steps.animateIn(whenDone(ANIMATING_IN));
+                } else {
+                    state = IDLE;
+                }
+            }
+        };
+    }
+}
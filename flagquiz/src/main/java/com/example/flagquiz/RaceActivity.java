@@ -0,0 +1,212 @@
+package com.example.flagquiz;
+
+import android.content.DialogInterface;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Bundle;
+import android.os.Handler;
+import android.preference.PreferenceManager;
+import android.support.v7.app.AlertDialog;
+import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
+import android.view.View;
+import android.widget.Button;
+import android.widget.ImageView;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local multiplayer: two players race through the same questions on one device, each on
+ * their half of the screen. The questions are picked once per match and each flag is
+ * decoded once for both players.
+ */
+public class RaceActivity extends AppCompatActivity {
+    private static final String TAG = "FlagQuiz Race";
+    private static final int PLAYERS = 2;
+    private static final int CHOICES = 4;       // Buttons in race_player.xml
+    private static final int DEFAULT_QUESTIONS = 10;
+
+    private FlagSource flagSource;              // the bundled flags or a flag pack
+    private FlagSelector flagSelector;          // picks each match's questions
+    private RaceMatch match;                    // the race in progress
+    private SharedFlagCache<Bitmap> flagCache;  // flags decoded for both players
+    private final ExecutorService decoder = Executors.newSingleThreadExecutor();
+    private final Handler handler = new Handler();
+    // hands decoded flags back on the UI thread
+    private final Executor uiExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            handler.post(command);
+        }
+    };
+    private boolean destroyed;                  // drops flags arriving after onDestroy
+
+    private final TextView[] statusTextViews = new TextView[PLAYERS];
+    private final ImageView[] flagImageViews = new ImageView[PLAYERS];
+    private final AnswerGrid[] answerGrids = new AnswerGrid[PLAYERS];
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_race);
+
+        flagSource = openFlagSource();
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(this);
+        Set<String> regions = preferences.getStringSet(MainActivity.REGIONS, null);
+        int[] flags = regions != null ? flagSource.select(flagSource.regionMask(regions)) :
+                new int[0];
+        if (flags.length == 0)
+            flags = flagSource.select(~0);
+        flagSelector = new FlagSelector(flags, flagSource.size(), new QuizRandom());
+
+        int[] playerLayouts = {R.id.player1Layout, R.id.player2Layout};
+        for (int player = 0; player < PLAYERS; player++) {
+            View layout = findViewById(playerLayouts[player]);
+            statusTextViews[player] = (TextView) layout.findViewById(R.id.raceStatusTextView);
+            flagImageViews[player] = (ImageView) layout.findViewById(R.id.raceFlagImageView);
+            LinearLayout[] rows = {
+                    (LinearLayout) layout.findViewById(R.id.raceRow1LinearLayout),
+                    (LinearLayout) layout.findViewById(R.id.raceRow2LinearLayout)};
+            answerGrids[player] = new AnswerGrid(rows, new GuessListener(player));
+            answerGrids[player].setChoiceCount(CHOICES);
+        }
+
+        startMatch();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        destroyed = true;
+        decoder.shutdownNow();
+    }
+
+    // the same flags the quiz uses: a flag pack if there is one, else the bundled flags
+    private FlagSource openFlagSource() {
+        File filesDir = getExternalFilesDir(null);
+        File pack = filesDir != null ? new File(filesDir, FlagPack.FILE_NAME) : null;
+        if (pack != null && pack.isFile()) {
+            try {
+                return FlagPack.open(pack);
+            } catch (IOException exception) {
+                Log.e(TAG, "Error opening flag pack " + pack, exception);
+            }
+        }
+        try {
+            return new AssetFlagSource(getAssets());
+        } catch (IOException exception) {
+            throw new IllegalStateException("Error loading the flag index", exception);
+        }
+    }
+
+    // picks the questions for both players and shows the first one
+    private void startMatch() {
+        String questions = PreferenceManager.getDefaultSharedPreferences(this)
+                .getString(MainActivity.QUESTIONS, null);
+        match = RaceMatch.create(flagSelector,
+                questions != null ? Integer.parseInt(questions) : DEFAULT_QUESTIONS,
+                CHOICES, PLAYERS, RaceMatch.SYSTEM_CLOCK);
+        flagCache = new SharedFlagCache<>(new SharedFlagCache.Decoder<Bitmap>() {
+            @Override
+            public Bitmap decode(int flag) throws IOException {
+                InputStream stream = flagSource.open(flag);
+                try {
+                    return BitmapFactory.decodeStream(stream);
+                } finally {
+                    stream.close();
+                }
+            }
+        }, decoder, uiExecutor, PLAYERS);
+
+        match.start();
+        for (int player = 0; player < PLAYERS; player++)
+            showQuestion(player);
+    }
+
+    // asks for player's current flag and decodes the one after it in the background; the
+    // question is shown, and timed, once its flag arrives
+    private void showQuestion(final int player) {
+        final RaceMatch requested = match;
+        final int question = match.getQuestion(player);
+        statusTextViews[player].setText(getString(R.string.race_question, player + 1,
+                question + 1, match.getQuestionCount()));
+        answerGrids[player].disableAll(); // no guesses before the flag is on screen
+        flagCache.get(match.getFlag(question), new SharedFlagCache.Callback<Bitmap>() {
+            @Override
+            public void onFlag(int flag, Bitmap image) {
+                // ignore a flag for a match or question the player has since left
+                if (destroyed || match != requested || match.getQuestion(player) != question)
+                    return;
+                flagImageViews[player].setImageBitmap(image);
+                answerGrids[player].bind(match.getChoices(question), flagSource);
+                match.startQuestion(player); // time from when the flag is on screen
+            }
+        });
+        if (question + 1 < match.getQuestionCount())
+            flagCache.prefetch(match.getFlag(question + 1));
+    }
+
+    // called when one of player's guess Buttons is touched
+    private class GuessListener implements AnswerGrid.Listener {
+        private final int player;
+
+        GuessListener(int player) {
+            this.player = player;
+        }
+
+        @Override
+        public void onGuess(int flag, Button button) {
+            int question = match.getQuestion(player);
+            int result = match.answer(player, flag);
+            if (result == RaceMatch.WRONG) {
+                button.setEnabled(false); // disable incorrect answer
+                return;
+            }
+
+            flagCache.release(match.getFlag(question)); // this player is done with it
+            if (result == RaceMatch.CORRECT) {
+                showQuestion(player);
+                return;
+            }
+
+            answerGrids[player].disableAll();
+            flagImageViews[player].setImageDrawable(null);
+            statusTextViews[player].setText(getString(R.string.race_finished, player + 1,
+                    match.getScoreMillis(player) / 1000.0));
+            if (match.isOver())
+                showResults();
+        }
+    }
+
+    // ranks the players by time, including the penalties for wrong guesses
+    private void showResults() {
+        StringBuilder results = new StringBuilder();
+        Integer[] ranking = match.getRanking();
+        for (int place = 0; place < ranking.length; place++) {
+            int player = ranking[place];
+            results.append(getString(R.string.race_result, place + 1, player + 1,
+                    match.getScoreMillis(player) / 1000.0, match.getWrongGuesses(player)));
+        }
+        Log.i(TAG, "Flags decoded for the match: " + flagCache.getDecodes());
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.race_results_title)
+                .setMessage(results.toString().trim())
+                .setCancelable(false)
+                .setPositiveButton(R.string.race_again, new DialogInterface.OnClickListener() {
+                    public void onClick(DialogInterface dialog, int id) {
+                        startMatch();
+                    }
+                })
+                .show();
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.flagquiz;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A local race: several players on one device answer the same questions, precomputed
+ * once for the whole match, each at their own pace. Every answer is timed with a
+ * monotonic clock; a player's score is the time they took, plus a penalty for each
+ * wrong guess, so the fastest accurate player wins.
+ */
+public class RaceMatch {
+    public static final long PENALTY_MILLIS = 3000; // added for each wrong guess
+
+    // results of answer
+    public static final int WRONG = 0;
+    public static final int CORRECT = 1;    // the player moves on to the next question
+    public static final int FINISHED = 2;   // that was the player's last question
+
+    // monotonic time source; System.nanoTime in the app, a fake clock in tests
+    public interface Clock {
+        long nanoTime();
+    }
+
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    private final int[] flags;          // the flag of each question
+    private final int[][] choices;      // the choices of each question, the same for all
+    private final Clock clock;
+    private final int[] questions;      // question each player is on
+    private final long[] questionStarts; // when each player's current question appeared
+    private final long[][] answerNanos; // time each player took for each question
+    private final int[] wrongGuesses;
+
+    public RaceMatch(int[] flags, int[][] choices, int players, Clock clock) {
+        this.flags = flags;
+        this.choices = choices;
+        this.clock = clock;
+        this.questions = new int[players];
+        this.questionStarts = new long[players];
+        this.answerNanos = new long[players][flags.length];
+        this.wrongGuesses = new int[players];
+    }
+
+    /**
+     * precompute a match of up to questionCount questions with choiceCount choices each
+     */
+    public static RaceMatch create(FlagSelector selector, int questionCount, int choiceCount,
+                                   int players, Clock clock) {
+        int[] flags = selector.pickQuiz(questionCount);
+        int[][] choices = new int[flags.length][];
+        for (int q = 0; q < flags.length; q++)
+            choices[q] = selector.pickChoices(flags[q], choiceCount);
+        return new RaceMatch(flags, choices, players, clock);
+    }
+
+    // starts every player's clock on the first question
+    public void start() {
+        long now = clock.nanoTime();
+        Arrays.fill(questions, 0);
+        Arrays.fill(questionStarts, now);
+        Arrays.fill(wrongGuesses, 0);
+    }
+
+    // restarts player's clock on their current question, e.g. once its flag is on screen
+    public void startQuestion(int player) {
+        questionStarts[player] = clock.nanoTime();
+    }
+
+    public int getQuestionCount() {
+        return flags.length;
+    }
+
+    public int getPlayerCount() {
+        return questions.length;
+    }
+
+    public int getFlag(int question) {
+        return flags[question];
+    }
+
+    public int[] getChoices(int question) {
+        return choices[question];
+    }
+
+    // the question player is on, or getQuestionCount() once they're done
+    public int getQuestion(int player) {
+        return questions[player];
+    }
+
+    public boolean isFinished(int player) {
+        return questions[player] == flags.length;
+    }
+
+    // true once every player has answered every question
+    public boolean isOver() {
+        for (int player = 0; player < questions.length; player++) {
+            if (!isFinished(player))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * player guessed flag on their current question
+     * @return WRONG, CORRECT or FINISHED
+     */
+    public int answer(int player, int flag) {
+        int question = questions[player];
+        if (question == flags.length)
+            throw new IllegalStateException("player " + player + " has finished");
+        if (flag != flags[question]) {
+            ++wrongGuesses[player];
+            return WRONG;
+        }
+        long now = clock.nanoTime();
+        answerNanos[player][question] = now - questionStarts[player];
+        questionStarts[player] = now;
+        ++questions[player];
+        return questions[player] == flags.length ? FINISHED : CORRECT;
+    }
+
+    // time player took to answer question, in milliseconds
+    public long getAnswerMillis(int player, int question) {
+        return (answerNanos[player][question] + 500000) / 1000000;
+    }
+
+    public int getWrongGuesses(int player) {
+        return wrongGuesses[player];
+    }
+
+    // time for the questions answered so far, plus the penalties, in milliseconds
+    public long getScoreMillis(int player) {
+        long nanos = 0;
+        for (int q = 0; q < questions[player]; q++)
+            nanos += answerNanos[player][q];
+        return (nanos + 500000) / 1000000 + wrongGuesses[player] * PENALTY_MILLIS;
+    }
+
+    // players from first to last: most questions answered, then lowest score
+    public Integer[] getRanking() {
+        Integer[] players = new Integer[questions.length];
+        for (int player = 0; player < players.length; player++)
+            players[player] = player;
+        Arrays.sort(players, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                if (questions[a] != questions[b])
+                    return questions[b] - questions[a];
+                long scoreA = getScoreMillis(a);
+                long scoreB = getScoreMillis(b);
+                return scoreA < scoreB ? -1 : scoreA > scoreB ? 1 : a - b;
+            }
+        });
+        return players;
+    }
+}
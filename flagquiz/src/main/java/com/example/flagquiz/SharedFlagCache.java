@@ -0,0 +1,156 @@
+package com.example.flagquiz;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Decoded flags shared by the players of a RaceMatch. A flag is decoded once, when the
+ * first player needs it (or earlier, when it's prefetched), and kept until every player
+ * has released it, so a second player reaching the same question costs no I/O. Only
+ * the flags between the slowest and the fastest player are held.
+ * <p>
+ * Flags are decoded on an executor that runs one task at a time and handed back through
+ * a callback executor, so asking for a flag never blocks the caller.
+ *
+ * @param <T> the decoded form, a Bitmap in the app
+ */
+public class SharedFlagCache<T> {
+    // turns a flag id into its image
+    public interface Decoder<T> {
+        T decode(int flag) throws IOException;
+    }
+
+    // receives a flag asked for with get; image is null if it could not be decoded
+    public interface Callback<T> {
+        void onFlag(int flag, T image);
+    }
+
+    private final Decoder<T> decoder;
+    private final Executor executor;  // decodes, one at a time and in order
+    private final Executor callbackExecutor; // hands flags back to the caller's thread
+    private final int users;          // players that each release every flag once
+    private final Map<Integer, T> flags = new HashMap<>();
+    private final Map<Integer, Integer> holders = new HashMap<>(); // users still to release
+    private final Set<Integer> pending = new HashSet<>();          // being decoded
+    private int decodes;
+
+    public SharedFlagCache(Decoder<T> decoder, Executor executor, Executor callbackExecutor,
+                           int users) {
+        this.decoder = decoder;
+        this.executor = executor;
+        this.callbackExecutor = callbackExecutor;
+        this.users = users;
+    }
+
+    // starts decoding flag on the executor unless it is cached or on its way
+    public void prefetch(final int flag) {
+        synchronized (flags) {
+            if (flags.containsKey(flag) || !pending.add(flag))
+                return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load(flag);
+            }
+        });
+    }
+
+    /**
+     * get the decoded flag: a cached flag is handed to callback at once; otherwise it is
+     * handed over on the callback thread once the executor has finished the prefetch
+     * already queued for it, or decoded it. Never blocks
+     */
+    public void get(final int flag, final Callback<T> callback) {
+        T cached;
+        synchronized (flags) {
+            cached = flags.get(flag);
+        }
+        if (cached != null) {
+            callback.onFlag(flag, cached);
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final T image = load(flag);
+                callbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onFlag(flag, image);
+                    }
+                });
+            }
+        });
+    }
+
+    // one user is done with flag; it is dropped when every user is
+    public void release(int flag) {
+        synchronized (flags) {
+            Integer remaining = holders.get(flag);
+            if (remaining == null)
+                return;
+            if (remaining > 1) {
+                holders.put(flag, remaining - 1);
+            } else {
+                holders.remove(flag);
+                flags.remove(flag);
+            }
+        }
+    }
+
+    // flags currently held
+    public int size() {
+        synchronized (flags) {
+            return flags.size();
+        }
+    }
+
+    // flags decoded since the cache was created
+    public int getDecodes() {
+        synchronized (flags) {
+            return decodes;
+        }
+    }
+
+    // the cached flag, or decodes and caches it; runs on the executor, so an earlier
+    // request for the same flag has already finished
+    private T load(int flag) {
+        synchronized (flags) {
+            if (flags.containsKey(flag)) {
+                pending.remove(flag);
+                return flags.get(flag);
+            }
+        }
+        T image = decode(flag);
+        synchronized (flags) {
+            pending.remove(flag);
+            store(flag, image);
+        }
+        return image;
+    }
+
+    private T decode(int flag) {
+        try {
+            return decoder.decode(flag);
+        } catch (IOException exception) {
+            return null; // not cached, so the next get tries again
+        } finally {
+            synchronized (flags) {
+                ++decodes;
+            }
+        }
+    }
+
+    // caller holds the lock on flags
+    private void store(int flag, T image) {
+        if (image != null) {
+            flags.put(flag, image);
+            holders.put(flag, users);
+        }
+    }
+}
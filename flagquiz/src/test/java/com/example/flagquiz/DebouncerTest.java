@@ -0,0 +1,186 @@
+package com.example.flagquiz;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for coalescing settings changes into one quiz rebuild, driven by a
+ * fake clock and a worker that runs when the test says so.
+ */
+public class DebouncerTest {
+    private static final long WINDOW = 300;
+    private static final String[] REGIONS = {"Africa", "Asia", "Europe", "Oceania",
+            "South_America"};
+
+    // the UI thread's Handler, with time that only moves when advance is called
+    private static class FakeClock implements QuizTransition.Clock {
+        private long now;
+        private final List<Runnable> runnables = new ArrayList<>();
+        private final List<Long> times = new ArrayList<>();
+
+        @Override
+        public long uptimeMillis() {
+            return now;
+        }
+
+        @Override
+        public void postDelayed(Runnable runnable, long delayMillis) {
+            runnables.add(runnable);
+            times.add(now + delayMillis);
+        }
+
+        @Override
+        public void removeCallbacks(Runnable runnable) {
+            for (int i = runnables.size() - 1; i >= 0; i--) {
+                if (runnables.get(i) == runnable) {
+                    runnables.remove(i);
+                    times.remove(i);
+                }
+            }
+        }
+
+        void advance(long millis) {
+            long end = now + millis;
+            while (true) {
+                int next = -1;
+                for (int i = 0; i < times.size(); i++) {
+                    if (times.get(i) <= end && (next < 0 || times.get(i) < times.get(next)))
+                        next = i;
+                }
+                if (next < 0)
+                    break;
+                now = times.remove(next);
+                runnables.remove(next).run();
+            }
+            now = end;
+        }
+    }
+
+    // a background thread that finishes when runAll is called
+    private static class QueueExecutor implements Executor {
+        final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            queue.add(command);
+        }
+
+        void runAll() {
+            while (!queue.isEmpty())
+                queue.poll().run();
+        }
+    }
+
+    // stands in for MainActivity: computes the enabled regions and "rebuilds" the quiz
+    private class QuizWork implements Debouncer.Work<Set<String>> {
+        int computes;
+        int rebuilds;
+        Set<String> applied;
+        Set<String> appliedKeys;
+
+        @Override
+        public Set<String> compute(Set<String> keys) {
+            ++computes;
+            return new HashSet<>(enabledRegions);
+        }
+
+        @Override
+        public void apply(Set<String> result, Set<String> keys) {
+            ++rebuilds;
+            applied = result;
+            appliedKeys = keys;
+        }
+    }
+
+    private FakeClock clock;
+    private QueueExecutor worker;
+    private QuizWork work;
+    private Debouncer<Set<String>> debouncer;
+    private final Set<String> enabledRegions = new HashSet<>(); // the "settings"
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock();
+        worker = new QueueExecutor();
+        work = new QuizWork();
+        debouncer = new Debouncer<>(clock, worker, WINDOW, work);
+    }
+
+    // the user taps a region in the settings
+    private void toggle(String region) {
+        if (!enabledRegions.remove(region))
+            enabledRegions.add(region);
+        debouncer.changed(MainActivity.REGIONS);
+    }
+
+    @Test
+    public void fiveQuickToggles_rebuildOnce() {
+        for (String region : REGIONS) {
+            toggle(region);
+            clock.advance(120); // quicker than the window
+            worker.runAll();
+        }
+        assertEquals(0, work.rebuilds);
+
+        clock.advance(WINDOW);
+        worker.runAll();
+        clock.advance(0); // the result is handed back to the UI thread
+        assertEquals(1, work.computes);
+        assertEquals(1, work.rebuilds);
+        assertEquals(new HashSet<>(Arrays.asList(REGIONS)), work.applied);
+
+        clock.advance(10000);
+        worker.runAll();
+        assertEquals(1, work.rebuilds);
+    }
+
+    @Test
+    public void differentKeys_areAppliedTogether() {
+        debouncer.changed(MainActivity.CHOICES);
+        clock.advance(100);
+        debouncer.changed(MainActivity.QUESTIONS);
+        clock.advance(WINDOW);
+        worker.runAll();
+        clock.advance(0);
+        assertEquals(1, work.rebuilds);
+        assertEquals(new HashSet<>(Arrays.asList(MainActivity.CHOICES, MainActivity.QUESTIONS)),
+                work.appliedKeys);
+    }
+
+    @Test
+    public void changeDuringCompute_dropsTheStaleResult() {
+        toggle("Asia");
+        clock.advance(WINDOW);         // the worker starts on {Asia}
+        toggle("Europe");              // before it finishes
+        worker.runAll();
+        clock.advance(0);
+        assertEquals(0, work.rebuilds); // the {Asia} result is out of date
+
+        clock.advance(WINDOW);
+        worker.runAll();
+        clock.advance(0);
+        assertEquals(1, work.rebuilds);
+        assertEquals(new HashSet<>(Arrays.asList("Asia", "Europe")), work.applied);
+    }
+
+    @Test
+    public void cancel_dropsPendingChanges() {
+        toggle("Asia");
+        debouncer.cancel(); // the activity was destroyed
+        clock.advance(10000);
+        worker.runAll();
+        clock.advance(0);
+        assertEquals(0, work.computes);
+        assertEquals(0, work.rebuilds);
+    }
+}
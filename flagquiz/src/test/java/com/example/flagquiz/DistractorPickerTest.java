@@ -0,0 +1,239 @@
+package com.example.flagquiz;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for region-aware distractors, and a benchmark of the per-question
+ * cost against the shuffle of every flag that loadNextFlag used to do.
+ */
+public class DistractorPickerTest {
+    private static final DistractorPicker.Difficulty[] DIFFICULTIES =
+            DistractorPicker.Difficulty.values();
+
+    // count flags; flag f is in region f % regions
+    private static FlagSource source(final int count, final int regions) {
+        return new FlagSource() {
+            @Override
+            public int size() {
+                return count;
+            }
+
+            @Override
+            public int regionMask(Collection<String> regionNames) {
+                return (1 << regions) - 1;
+            }
+
+            @Override
+            public int[] select(int mask) {
+                int[] flags = new int[count];
+                for (int i = 0; i < count; i++)
+                    flags[i] = i;
+                return flags;
+            }
+
+            @Override
+            public int getRegionCount() {
+                return regions;
+            }
+
+            @Override
+            public String getRegion(int region) {
+                return "Region" + region;
+            }
+
+            @Override
+            public int getRegionOf(int flag) {
+                return flag % regions;
+            }
+
+            @Override
+            public String getFileName(int flag) {
+                return getRegion(getRegionOf(flag)) + "-Country_" + flag;
+            }
+
+            @Override
+            public String getCountryName(int flag) {
+                return "Country " + flag;
+            }
+
+            @Override
+            public InputStream open(int flag) throws IOException {
+                throw new IOException("no images");
+            }
+        };
+    }
+
+    // the number of choices from the answer's region, the answer included
+    private static int sameRegion(FlagSource source, int answer, int[] choices) {
+        int same = 0;
+        for (int choice : choices) {
+            if (source.getRegionOf(choice) == source.getRegionOf(answer))
+                ++same;
+        }
+        return same;
+    }
+
+    @Test
+    public void buckets_holdEachRegionsFlags() {
+        FlagSource source = source(20, 6);
+        int[] pool = {0, 1, 2, 6, 7, 12, 13, 18, 19};
+        DistractorPicker picker = new DistractorPicker(pool, source, new QuizRandom(1));
+        assertEquals(pool.length, picker.size());
+        assertEquals(4, picker.getBucketSize(0)); // 0, 6, 12, 18
+        assertEquals(4, picker.getBucketSize(1)); // 1, 7, 13, 19
+        assertEquals(1, picker.getBucketSize(2));
+        assertEquals(0, picker.getBucketSize(5));
+    }
+
+    @Test
+    public void pickChoices_distinctChoicesWithAnswerOnce() {
+        FlagSource source = source(60, 6);
+        int[] pool = source.select(~0);
+        DistractorPicker picker = new DistractorPicker(pool, source, new QuizRandom(5));
+        for (int question = 0; question < 30000; question++) {
+            int answer = question % pool.length;
+            DistractorPicker.Difficulty difficulty = DIFFICULTIES[question % DIFFICULTIES.length];
+            int choices = 2 + 2 * (question % 6); // 2 to 12 guess Buttons
+            int[] picked = picker.pickChoices(answer, choices, difficulty);
+
+            Set<Integer> distinct = new HashSet<>();
+            int answers = 0;
+            for (int choice : picked) {
+                assertTrue(choice >= 0 && choice < pool.length);
+                assertTrue("duplicate " + choice, distinct.add(choice));
+                if (choice == answer)
+                    ++answers;
+            }
+            assertEquals(choices, picked.length);
+            assertEquals(1, answers);
+        }
+    }
+
+    @Test
+    public void smallPool_topsUpFromOtherRegions() {
+        FlagSource source = source(18, 6); // 3 flags per region
+        int[] pool = source.select(~0);
+        DistractorPicker picker = new DistractorPicker(pool, source, new QuizRandom(3));
+        for (int question = 0; question < 1000; question++) {
+            int[] picked = picker.pickChoices(4, 12, DistractorPicker.Difficulty.HARD);
+            assertEquals(12, picked.length);
+            assertEquals(3, sameRegion(source, 4, picked)); // the whole region
+            assertEquals(12, new HashSet<>(toList(picked)).size());
+        }
+        assertEquals(18, picker.pickChoices(0, 20, DistractorPicker.Difficulty.MEDIUM).length);
+    }
+
+    @Test
+    public void difficulty_setsShareOfSameRegionDistractors() {
+        FlagSource source = source(240, 6);
+        DistractorPicker picker = new DistractorPicker(source.select(~0), source,
+                new QuizRandom(9));
+        int questions = 20000;
+        for (int question = 0; question < questions; question++) {
+            int answer = question % 240;
+            // all 7 distractors, and at least 4 of them (3.5 rounded up); the others
+            // are drawn from every region, so some may share the answer's as well
+            assertEquals(8, sameRegion(source, answer,
+                    picker.pickChoices(answer, 8, DistractorPicker.Difficulty.HARD)));
+            assertTrue(sameRegion(source, answer,
+                    picker.pickChoices(answer, 8, DistractorPicker.Difficulty.MEDIUM)) >= 5);
+        }
+
+        long easySame = 0;
+        for (int question = 0; question < questions; question++) {
+            int answer = question % 240;
+            easySame += sameRegion(source, answer,
+                    picker.pickChoices(answer, 8, DistractorPicker.Difficulty.EASY)) - 1;
+        }
+        double expected = questions * 7 * 39 / 239.0; // 39 of the 239 others share the region
+        assertEquals(expected, easySame, expected * 0.05);
+    }
+
+    @Test
+    public void answerPosition_isUniform() {
+        FlagSource source = source(60, 6);
+        DistractorPicker picker = new DistractorPicker(source.select(~0), source,
+                new QuizRandom(11));
+        int questions = 80000;
+        long[] positions = new long[8];
+        for (int question = 0; question < questions; question++) {
+            int[] picked = picker.pickChoices(7, 8, DistractorPicker.Difficulty.HARD);
+            for (int i = 0; i < picked.length; i++) {
+                if (picked[i] == 7)
+                    ++positions[i];
+            }
+        }
+        for (long count : positions)
+            assertEquals(questions / 8.0, count, questions / 8.0 * 0.05);
+    }
+
+    private static List<Integer> toList(int[] flags) {
+        List<Integer> list = new ArrayList<>();
+        for (int flag : flags)
+            list.add(flag);
+        return list;
+    }
+
+    // one question the way loadNextFlag used to pick its choices
+    private static int oldQuestion(List<String> fileNameList, Random random, String answer,
+                                   int guesses) {
+        Collections.shuffle(fileNameList, random);
+        int correct = fileNameList.indexOf(answer);
+        fileNameList.add(fileNameList.remove(correct));
+        int checksum = 0;
+        for (int i = 0; i < guesses; i++)
+            checksum += fileNameList.get(i).length();
+        return checksum;
+    }
+
+    @Test
+    public void benchmark_perQuestionCost() {
+        int n = 10000;
+        int questions = 2000;
+        FlagSource source = source(n, 6);
+        List<String> fileNameList = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            fileNameList.add(source.getFileName(i));
+        Random random = new Random(1);
+        DistractorPicker picker = new DistractorPicker(source.select(~0), source,
+                new QuizRandom(1));
+
+        long oldNanos = 0;
+        long[] newNanos = new long[DIFFICULTIES.length];
+        int checksum = 0;
+        for (int run = 0; run < 2; run++) { // first run warms up the JIT
+            long start = System.nanoTime();
+            for (int question = 0; question < questions; question++)
+                checksum += oldQuestion(fileNameList, random, source.getFileName(question), 8);
+            oldNanos = System.nanoTime() - start;
+
+            for (int d = 0; d < DIFFICULTIES.length; d++) {
+                start = System.nanoTime();
+                for (int question = 0; question < questions; question++) {
+                    for (int choice : picker.pickChoices(question, 8, DIFFICULTIES[d]))
+                        checksum += choice;
+                }
+                newNanos[d] = System.nanoTime() - start;
+            }
+        }
+
+        System.out.printf("DistractorPicker (%d flags, 8 choices): %.1f us per question " +
+                        "shuffling every flag vs %.2f / %.2f / %.2f us easy / medium / hard (%d)%n",
+                n, oldNanos / 1e3 / questions, newNanos[0] / 1e3 / questions,
+                newNanos[1] / 1e3 / questions, newNanos[2] / 1e3 / questions, checksum);
+        for (long nanos : newNanos)
+            assertTrue("distractor buckets slower", nanos * 10 < oldNanos);
+    }
+}
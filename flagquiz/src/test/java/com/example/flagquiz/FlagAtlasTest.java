@@ -0,0 +1,200 @@
+package com.example.flagquiz;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the flag atlas, built from the bundled flags with the JDK's
+ * imaging in place of Android's, and a comparison of showing a question's flag from its
+ * PNG and from the atlas.
+ */
+public class FlagAtlasTest {
+    private static final File ASSETS = new File("src/main/assets");
+    private static final int TILE_WIDTH = 360;
+    private static final int QUESTIONS = 500;
+    private static FlagIndex index;
+    private static File atlasFile;
+
+    // the flag scaled to TILE_WIDTH on white, as RGB 565 in native byte order
+    private static ByteBuffer tile(BufferedImage image) {
+        int height = FlagAtlas.tileHeight(image.getWidth(), image.getHeight(), TILE_WIDTH);
+        BufferedImage scaled = new BufferedImage(TILE_WIDTH, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, TILE_WIDTH, height);
+        graphics.drawImage(image, 0, 0, TILE_WIDTH, height, null);
+        graphics.dispose();
+
+        ByteBuffer pixels = ByteBuffer.allocate(TILE_WIDTH * height * 2)
+                .order(ByteOrder.nativeOrder());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < TILE_WIDTH; x++) {
+                int rgb = scaled.getRGB(x, y);
+                pixels.putShort((short) (((rgb >> 8) & 0xF800) | ((rgb >> 5) & 0x07E0) |
+                        ((rgb >> 3) & 0x001F)));
+            }
+        }
+        pixels.flip();
+        return pixels;
+    }
+
+    private static BufferedImage decode(int flag) throws IOException {
+        InputStream input = new FileInputStream(new File(ASSETS, index.getAssetPath(flag)));
+        try {
+            return ImageIO.read(input);
+        } finally {
+            input.close();
+        }
+    }
+
+    @BeforeClass
+    public static void buildAtlas() throws IOException {
+        InputStream input = new FileInputStream(new File(ASSETS, FlagIndex.ASSET));
+        try {
+            index = FlagIndex.read(input);
+        } finally {
+            input.close();
+        }
+        atlasFile = File.createTempFile("flags", ".atlas");
+        FlagAtlas.Writer writer = new FlagAtlas.Writer(atlasFile, index.size(), TILE_WIDTH,
+                new File(ASSETS, FlagIndex.ASSET));
+        try {
+            for (int flag = 0; flag < index.size(); flag++) {
+                ByteBuffer pixels = tile(decode(flag));
+                writer.add(pixels.remaining() / (TILE_WIDTH * 2), pixels);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    @AfterClass
+    public static void deleteAtlas() {
+        atlasFile.delete();
+    }
+
+    @Test
+    public void everyFlag_readsBackItsPixels() throws IOException {
+        FlagAtlas atlas = FlagAtlas.open(atlasFile);
+        assertEquals(index.size(), atlas.size());
+        assertEquals(TILE_WIDTH, atlas.getTileWidth());
+        int top = 0;
+        for (int flag = 0; flag < atlas.size(); flag += 17) {
+            ByteBuffer expected = tile(decode(flag));
+            int height = expected.remaining() / (TILE_WIDTH * 2);
+            assertEquals(height, atlas.getHeight(flag));
+            assertTrue(atlas.getHeight(flag) <= atlas.getMaxHeight());
+            ByteBuffer tile = atlas.getTile(flag);
+            assertEquals(atlas.tileBytes(), tile.remaining()); // a whole Bitmap's worth
+            byte[] actual = new byte[expected.remaining()];
+            tile.get(actual);
+            byte[] expectedBytes = new byte[expected.remaining()];
+            expected.get(expectedBytes);
+            assertArrayEquals(index.getFileName(flag), expectedBytes, actual);
+        }
+        for (int flag = 0; flag < atlas.size(); flag++) {
+            assertEquals(top, atlas.getTop(flag)); // flags are stacked without gaps
+            top += atlas.getHeight(flag);
+        }
+    }
+
+    @Test
+    public void changedSource_isDetected() throws IOException {
+        File source = File.createTempFile("flags", ".pack");
+        File file = File.createTempFile("flags", ".atlas");
+        try {
+            Files.write(source.toPath(), new byte[]{1, 2, 3});
+            assertTrue(source.setLastModified(1500000000000L));
+            FlagAtlas.Writer writer = new FlagAtlas.Writer(file, 1, TILE_WIDTH, source);
+            writer.add(1, ByteBuffer.allocate(TILE_WIDTH * 2));
+            writer.close();
+            assertTrue(FlagAtlas.open(file).isBuiltFrom(source));
+
+            // a pack with the same name and flag count, copied over the old one
+            Files.write(source.toPath(), new byte[]{1, 2, 4});
+            assertTrue(source.setLastModified(1600000000000L));
+            assertEquals(1, FlagAtlas.open(file).size());
+            assertFalse(FlagAtlas.open(file).isBuiltFrom(source));
+
+            // the same length, only newer
+            assertTrue(source.setLastModified(1500000001000L));
+            assertFalse(FlagAtlas.open(file).isBuiltFrom(source));
+        } finally {
+            source.delete();
+            file.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedAtlas_isRejected() throws IOException {
+        byte[] bytes = Files.readAllBytes(atlasFile.toPath());
+        // the padding and part of the last flag are missing
+        int tileBytes = FlagAtlas.open(atlasFile).tileBytes();
+        new FlagAtlas(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - tileBytes - 1)));
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    @Test
+    public void benchmark_atlasVersusPng() throws IOException {
+        FlagAtlas atlas = FlagAtlas.open(atlasFile);
+        int[] questions = new int[QUESTIONS];
+        QuizRandom random = new QuizRandom(39);
+        for (int i = 0; i < questions.length; i++)
+            questions[i] = random.nextInt(index.size());
+        // stands in for the reused Bitmap the atlas path copies into
+        byte[] bitmap = new byte[atlas.tileBytes()];
+
+        for (int i = 0; i < 50; i++) { // warm up both paths
+            decode(questions[i]);
+            atlas.getTile(questions[i]).get(bitmap);
+        }
+
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        int pixels = 0;
+        for (int flag : questions)
+            pixels += decode(flag).getWidth(); // a new image per question
+        double pngMillis = (System.nanoTime() - start) / 1e6 / QUESTIONS;
+        long pngBytes = (allocatedBytes() - allocated) / QUESTIONS;
+
+        allocated = allocatedBytes();
+        start = System.nanoTime();
+        for (int flag : questions)
+            atlas.getTile(flag).get(bitmap);
+        double atlasMillis = (System.nanoTime() - start) / 1e6 / QUESTIONS;
+        long atlasBytes = (allocatedBytes() - allocated) / QUESTIONS;
+
+        System.out.printf("per question: PNG decode %.3f ms, %d KB allocated; " +
+                        "atlas copy %.3f ms, %d bytes allocated (atlas %d KB, %d px wide)%n",
+                pngMillis, pngBytes / 1024, atlasMillis, atlasBytes,
+                atlasFile.length() / 1024, TILE_WIDTH);
+        assertTrue(pixels > 0);
+        assertTrue("atlas slower than decoding", atlasMillis < pngMillis);
+        assertTrue("atlas allocates per question", atlasBytes < 1024);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.flagquiz;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests and reset-latency benchmark for the prebuilt flag index.
+ */
+public class FlagIndexTest {
+    private static final File ASSETS = new File("src/main/assets");
+    private static final List<String> ALL_REGIONS = Arrays.asList("Africa", "Asia", "Europe",
+            "North_America", "Oceania", "South_America");
+
+    private static FlagIndex loadAsset() throws IOException {
+        FileInputStream input = new FileInputStream(new File(ASSETS, FlagIndex.ASSET));
+        try {
+            return FlagIndex.read(input);
+        } finally {
+            input.close();
+        }
+    }
+
+    // what resetQuiz did before: list every selected region's folder
+    private static List<String> listFolders(Set<String> regions) {
+        List<String> fileNames = new ArrayList<>();
+        for (String region : regions) {
+            for (String path : new File(ASSETS, region).list())
+                fileNames.add(path.replace(".png", ""));
+        }
+        return fileNames;
+    }
+
+    @Test
+    public void asset_isUpToDate() throws Exception {
+        ByteArrayOutputStream rebuilt = new ByteArrayOutputStream();
+        FlagIndex.write(ASSETS, rebuilt);
+        FileInputStream input = new FileInputStream(new File(ASSETS, FlagIndex.ASSET));
+        try {
+            ByteArrayOutputStream asset = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int count;
+            while ((count = input.read(chunk)) != -1)
+                asset.write(chunk, 0, count);
+            assertArrayEquals("flags.idx is stale; rebuild it with FlagIndex.main",
+                    rebuilt.toByteArray(), asset.toByteArray());
+        } finally {
+            input.close();
+        }
+    }
+
+    // file names of the flags in regions, from the index
+    private static Set<String> select(FlagIndex index, Set<String> regions) {
+        Set<String> fileNames = new HashSet<>();
+        for (int flag : index.select(index.regionMask(regions)))
+            fileNames.add(index.getFileName(flag));
+        return fileNames;
+    }
+
+    @Test
+    public void select_matchesFolderListing() throws Exception {
+        FlagIndex index = loadAsset();
+        assertEquals(ALL_REGIONS.size(), index.getRegionCount());
+
+        Set<String> someRegions = new HashSet<>(Arrays.asList("Europe", "Oceania"));
+        assertEquals(new HashSet<>(listFolders(someRegions)), select(index, someRegions));
+
+        Set<String> allRegions = new HashSet<>(ALL_REGIONS);
+        assertEquals(new HashSet<>(listFolders(allRegions)), select(index, allRegions));
+        assertEquals(index.size(), index.select(index.regionMask(allRegions)).length);
+    }
+
+    @Test
+    public void assetPath_pointsAtFlag() throws Exception {
+        FlagIndex index = loadAsset();
+        for (int i = 0; i < index.size(); i++) {
+            File png = new File(ASSETS, index.getAssetPath(i));
+            assertTrue(png.getPath(), png.isFile());
+            assertEquals(png.length(), index.getAssetLength(i));
+            assertEquals(index.getRegion(index.getRegionOf(i)),
+                    index.getFileName(i).substring(0, index.getFileName(i).indexOf('-')));
+        }
+    }
+
+    @Test
+    public void decode_rejectsEveryTruncation() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        FlagIndex.write(ASSETS, output);
+        byte[] bytes = output.toByteArray();
+        for (int length = 0; length < bytes.length; length++) {
+            try {
+                FlagIndex.decode(ByteBuffer.wrap(Arrays.copyOf(bytes, length)));
+                fail("truncation to " + length + " bytes not detected");
+            } catch (IOException expected) {
+                // truncation detected
+            }
+        }
+        assertEquals(223, FlagIndex.read(new ByteArrayInputStream(bytes)).size());
+    }
+
+    // resetting with all six regions selected: listing the folders versus scanning the index
+    @Test
+    public void benchmark_resetWithAllRegions() throws Exception {
+        Set<String> regions = new HashSet<>(ALL_REGIONS);
+        int[] flags = new int[0];
+        int iterations = 2000;
+        long listNanos = 0;
+        long indexNanos = 0;
+
+        long start = System.nanoTime();
+        FlagIndex index = loadAsset(); // read once when the quiz fragment is created
+        long loadNanos = System.nanoTime() - start;
+        for (int run = 0; run < 2; run++) { // first run warms up the JIT
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                listFolders(regions);
+            listNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                flags = index.select(index.regionMask(regions));
+            indexNanos = System.nanoTime() - start;
+        }
+
+        System.out.printf("FlagIndex: load %.2f ms once; reset %.2f us listing folders vs " +
+                        "%.2f us scanning the index (%d flags)%n", loadNanos / 1e6,
+                listNanos / 1e3 / iterations, indexNanos / 1e3 / iterations, flags.length);
+        assertTrue("index scan slower than listing", indexNanos < listNanos);
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.flagquiz;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for memory-mapped flag packs, with synthetic packs of 1k and 10k
+ * images to check that opening a pack costs the same whatever its size.
+ */
+public class FlagPackTest {
+    private static final String[] REGIONS = {"Africa", "Asia", "Europe", "North_America",
+            "Oceania", "South_America"};
+    private static File smallPack;  // 1,000 images
+    private static File largePack;  // 10,000 images
+
+    // fake image i: a PNG signature followed by bytes derived from i
+    private static byte[] image(int i) {
+        Random random = new Random(i);
+        byte[] image = new byte[200 + random.nextInt(800)];
+        random.nextBytes(image);
+        byte[] signature = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+        System.arraycopy(signature, 0, image, 0, signature.length);
+        return image;
+    }
+
+    // writes count images spread over the regions and packs them
+    private static File buildPack(int count) throws IOException {
+        File flagsDir = File.createTempFile("flags", "");
+        flagsDir.delete();
+        for (String region : REGIONS)
+            new File(flagsDir, region).mkdirs();
+        for (int i = 0; i < count; i++) {
+            String region = REGIONS[i % REGIONS.length];
+            File file = new File(new File(flagsDir, region),
+                    String.format("%s-Country_%05d.png", region, i));
+            FileOutputStream output = new FileOutputStream(file);
+            try {
+                output.write(image(i));
+            } finally {
+                output.close();
+            }
+        }
+
+        File pack = File.createTempFile("flags", ".pack");
+        FlagPack.write(flagsDir, pack);
+        for (String region : REGIONS) {
+            File regionDir = new File(flagsDir, region);
+            for (File file : regionDir.listFiles())
+                file.delete();
+            regionDir.delete();
+        }
+        flagsDir.delete();
+        return pack;
+    }
+
+    @BeforeClass
+    public static void buildPacks() throws IOException {
+        smallPack = buildPack(1000);
+        largePack = buildPack(10000);
+    }
+
+    @AfterClass
+    public static void deletePacks() {
+        smallPack.delete();
+        largePack.delete();
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[300]; // smaller than most images, to read in pieces
+        int count;
+        while ((count = input.read(chunk)) != -1)
+            bytes.write(chunk, 0, count);
+        return bytes.toByteArray();
+    }
+
+    // number of the synthetic image behind a flag, from its file name
+    private static int imageNumber(String fileName) {
+        return Integer.parseInt(fileName.substring(fileName.indexOf("Country_") + 8));
+    }
+
+    @Test
+    public void everyFlag_readsBackItsImage() throws Exception {
+        FlagPack pack = FlagPack.open(largePack);
+        assertEquals(10000, pack.size());
+        HashSet<Integer> seen = new HashSet<>();
+        for (int flag = 0; flag < pack.size(); flag++) {
+            String fileName = pack.getFileName(flag);
+            int number = imageNumber(fileName);
+            assertTrue(fileName.startsWith(REGIONS[number % REGIONS.length] + "-"));
+            assertTrue(seen.add(number));
+            InputStream input = pack.open(flag);
+            assertArrayEquals(fileName, image(number), readAll(input));
+        }
+    }
+
+    @Test
+    public void select_filtersByRegion() throws Exception {
+        FlagPack pack = FlagPack.open(smallPack);
+        int[] oceania = pack.select(pack.regionMask(Collections.singleton("Oceania")));
+        assertTrue(oceania.length > 0);
+        for (int flag : oceania)
+            assertTrue(pack.getFileName(flag).startsWith("Oceania-"));
+        assertEquals(pack.size(), pack.select(pack.regionMask(Arrays.asList(REGIONS))).length);
+        assertEquals(0, pack.regionMask(Collections.singleton("Antarctica")));
+    }
+
+    @Test
+    public void quiz_runsFromPack() throws Exception {
+        FlagPack pack = FlagPack.open(largePack);
+        FlagSelector selector = new FlagSelector(pack.select(~0), pack.size(), new QuizRandom(1));
+        for (int flag : selector.pickQuiz(50)) {
+            for (int choice : selector.pickChoices(flag, 8))
+                assertTrue(pack.getFileName(choice).contains("-Country_"));
+            assertEquals(image(imageNumber(pack.getFileName(flag))).length,
+                    readAll(pack.open(flag)).length);
+        }
+    }
+
+    @Test
+    public void open_rejectsTruncatedPack() throws Exception {
+        File truncated = File.createTempFile("truncated", ".pack");
+        try {
+            RandomAccessFile input = new RandomAccessFile(smallPack, "r");
+            byte[] head = new byte[1000]; // header and part of the flag entries
+            try {
+                input.readFully(head);
+            } finally {
+                input.close();
+            }
+            FileOutputStream output = new FileOutputStream(truncated);
+            try {
+                output.write(head);
+            } finally {
+                output.close();
+            }
+            FlagPack.open(truncated);
+            fail("truncated pack opened");
+        } catch (IOException expected) {
+            // truncation detected
+        } finally {
+            truncated.delete();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // heap kept per open pack, averaged over many open packs
+    private static long heapPerPack(File file) throws IOException {
+        FlagPack[] packs = new FlagPack[2000];
+        long before = usedHeap();
+        for (int i = 0; i < packs.length; i++)
+            packs[i] = FlagPack.open(file);
+        long after = usedHeap();
+        assertEquals(packs[0].size(), packs[packs.length - 1].size()); // keep packs reachable
+        return Math.max(0, after - before) / packs.length;
+    }
+
+    private static double openMicros(File file) throws IOException {
+        int opens = 2000;
+        long start = System.nanoTime();
+        for (int i = 0; i < opens; i++)
+            FlagPack.open(file).getFileName(0);
+        return (System.nanoTime() - start) / 1e3 / opens;
+    }
+
+    @Test
+    public void benchmark_openCostDoesNotGrowWithPackSize() throws Exception {
+        openMicros(smallPack); // warm up the JIT
+        openMicros(largePack);
+        double smallOpen = openMicros(smallPack);
+        double largeOpen = openMicros(largePack);
+        long smallHeap = heapPerPack(smallPack);
+        long largeHeap = heapPerPack(largePack);
+
+        System.out.printf("FlagPack: open %.1f us / %d bytes of heap with 1k images (%d KB) vs " +
+                        "%.1f us / %d bytes with 10k images (%d KB)%n",
+                smallOpen, smallHeap, smallPack.length() / 1024,
+                largeOpen, largeHeap, largePack.length() / 1024);
+        // ten times the images must not take noticeably longer or more memory to open
+        assertTrue("open time grows with pack size", largeOpen < smallOpen * 3 + 20);
+        assertTrue("heap grows with pack size", largeHeap < smallHeap * 2 + 1024);
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.flagquiz;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the uniformity of quiz and answer selection, and a benchmark
+ * against the rejection loop and full shuffles it replaced.
+ */
+public class FlagSelectorTest {
+    // flag ids 0 .. count - 1
+    private static int[] flags(int count) {
+        int[] flags = new int[count];
+        for (int i = 0; i < count; i++)
+            flags[i] = i;
+        return flags;
+    }
+
+    // upper critical value of the chi-squared distribution at p = 0.001
+    // (Wilson-Hilferty approximation)
+    private static double chiSquaredLimit(int degreesOfFreedom) {
+        double z = 3.09;
+        double k = degreesOfFreedom;
+        double term = 1 - 2 / (9 * k) + z * Math.sqrt(2 / (9 * k));
+        return k * term * term * term;
+    }
+
+    private static double chiSquared(long[] counts, double expected) {
+        double sum = 0;
+        for (long count : counts)
+            sum += (count - expected) * (count - expected) / expected;
+        return sum;
+    }
+
+    @Test
+    public void nextInt_isUniform() {
+        QuizRandom random = new QuizRandom(1);
+        int bound = 37;
+        int draws = 370000;
+        long[] counts = new long[bound];
+        for (int i = 0; i < draws; i++)
+            ++counts[random.nextInt(bound)];
+        assertTrue(chiSquared(counts, draws / (double) bound) < chiSquaredLimit(bound - 1));
+    }
+
+    @Test
+    public void sameSeed_sameQuiz() {
+        FlagSelector first = new FlagSelector(flags(223), 223, new QuizRandom(42));
+        FlagSelector second = new FlagSelector(flags(223), 223, new QuizRandom(42));
+        int[] quiz = first.pickQuiz(10);
+        assertArrayEquals(quiz, second.pickQuiz(10));
+        for (int flag : quiz)
+            assertArrayEquals(first.pickChoices(flag, 8), second.pickChoices(flag, 8));
+    }
+
+    @Test
+    public void pickQuiz_distinctFlagsFromPool() {
+        int[] pool = {3, 17, 42, 99, 100, 150, 151, 152, 153, 154, 155, 156};
+        Set<Integer> allowed = new HashSet<>();
+        for (int flag : pool)
+            allowed.add(flag);
+        FlagSelector selector = new FlagSelector(pool, 200, new QuizRandom(7));
+        for (int quiz = 0; quiz < 1000; quiz++) {
+            Set<Integer> picked = new HashSet<>();
+            for (int flag : selector.pickQuiz(10)) {
+                assertTrue(allowed.contains(flag));
+                assertTrue(picked.add(flag));
+            }
+            assertEquals(10, picked.size());
+        }
+        assertEquals(pool.length, selector.pickQuiz(20).length); // no more than there are
+    }
+
+    @Test
+    public void pickQuiz_everyFlagEquallyLikely() {
+        int n = 50;
+        int quizzes = 100000;
+        FlagSelector selector = new FlagSelector(flags(n), n, new QuizRandom(3));
+        long[] counts = new long[n];
+        long[] firstQuestion = new long[n];
+        for (int quiz = 0; quiz < quizzes; quiz++) {
+            int[] picked = selector.pickQuiz(10);
+            ++firstQuestion[picked[0]];
+            for (int flag : picked)
+                ++counts[flag];
+        }
+        assertTrue(chiSquared(counts, quizzes * 10.0 / n) < chiSquaredLimit(n - 1));
+        assertTrue(chiSquared(firstQuestion, quizzes / (double) n) < chiSquaredLimit(n - 1));
+    }
+
+    @Test
+    public void pickChoices_includeAnswerOnceAmongDistinctChoices() {
+        FlagSelector selector = new FlagSelector(flags(16), 16, new QuizRandom(5));
+        for (int question = 0; question < 10000; question++) {
+            int answer = question % 16;
+            int[] choices = selector.pickChoices(answer, 8);
+            Set<Integer> distinct = new HashSet<>();
+            int answers = 0;
+            for (int choice : choices) {
+                assertTrue(distinct.add(choice));
+                if (choice == answer)
+                    ++answers;
+            }
+            assertEquals(8, choices.length);
+            assertEquals(1, answers);
+        }
+        assertEquals(16, selector.pickChoices(0, 20).length); // no more than there are
+    }
+
+    @Test
+    public void pickChoices_uniformAnswerPositionAndDistractors() {
+        int n = 30;
+        int choices = 8;
+        int questions = 200000;
+        int answer = 11;
+        FlagSelector selector = new FlagSelector(flags(n), n, new QuizRandom(9));
+        long[] positions = new long[choices];
+        long[] distractors = new long[n];
+        for (int question = 0; question < questions; question++) {
+            int[] picked = selector.pickChoices(answer, choices);
+            for (int i = 0; i < choices; i++) {
+                if (picked[i] == answer)
+                    ++positions[i];
+                else
+                    ++distractors[picked[i]];
+            }
+        }
+        assertTrue(chiSquared(positions, questions / (double) choices) < chiSquaredLimit(choices - 1));
+
+        // every other flag is an equally likely distractor; the answer never is one
+        assertEquals(0, distractors[answer]);
+        long[] others = new long[n - 1];
+        for (int flag = 0, i = 0; flag < n; flag++) {
+            if (flag != answer)
+                others[i++] = distractors[flag];
+        }
+        double expected = questions * (choices - 1) / (double) (n - 1);
+        assertTrue(chiSquared(others, expected) < chiSquaredLimit(n - 2));
+    }
+
+    // one quiz the way resetQuiz and loadNextFlag used to pick it
+    private static int oldQuiz(List<String> fileNameList, Random random, int guesses) {
+        List<String> quizCountriesList = new ArrayList<>();
+        while (quizCountriesList.size() < 10) {
+            String filename = fileNameList.get(random.nextInt(fileNameList.size()));
+            if (!quizCountriesList.contains(filename))
+                quizCountriesList.add(filename);
+        }
+        int checksum = 0;
+        while (!quizCountriesList.isEmpty()) {
+            String correctAnswer = quizCountriesList.remove(0);
+            Collections.shuffle(fileNameList, random);
+            int correct = fileNameList.indexOf(correctAnswer);
+            fileNameList.add(fileNameList.remove(correct));
+            for (int i = 0; i < guesses; i++)
+                checksum += fileNameList.get(i).length();
+        }
+        return checksum;
+    }
+
+    // one quiz with FlagSelector
+    private static int newQuiz(FlagSelector selector, int guesses) {
+        int checksum = 0;
+        for (int flag : selector.pickQuiz(10)) {
+            for (int choice : selector.pickChoices(flag, guesses))
+                checksum += choice;
+        }
+        return checksum;
+    }
+
+    @Test
+    public void benchmark_tenThousandFlags() {
+        int n = 10000;
+        int quizzes = 500;
+        List<String> fileNameList = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            fileNameList.add("Region-Country_" + i);
+        Random random = new Random(1);
+        FlagSelector selector = new FlagSelector(flags(n), n, new QuizRandom(1));
+
+        long oldNanos = 0;
+        long newNanos = 0;
+        int checksum = 0;
+        for (int run = 0; run < 2; run++) { // first run warms up the JIT
+            long start = System.nanoTime();
+            for (int quiz = 0; quiz < quizzes; quiz++)
+                checksum += oldQuiz(fileNameList, random, 8);
+            oldNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int quiz = 0; quiz < quizzes; quiz++)
+                checksum += newQuiz(selector, 8);
+            newNanos = System.nanoTime() - start;
+        }
+
+        System.out.printf("FlagSelector (%d flags, 10 questions, 8 choices): %.1f us per quiz " +
+                        "with rejection and shuffles vs %.2f us with partial Fisher-Yates (%d)%n",
+                n, oldNanos / 1e3 / quizzes, newNanos / 1e3 / quizzes, checksum);
+        assertTrue("partial Fisher-Yates slower", newNanos * 10 < oldNanos);
+    }
+}
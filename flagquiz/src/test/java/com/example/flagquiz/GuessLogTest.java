@@ -0,0 +1,185 @@
+package com.example.flagquiz;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the guess log: batched appends, aggregation and the cost of
+ * recording a guess on the caller's thread.
+ */
+public class GuessLogTest {
+    private static final int REGIONS = 3;
+    private File file;
+
+    // 30 flags; flag f is in region f % REGIONS
+    private static final FlagSource SOURCE = new FlagSource() {
+        @Override
+        public int size() {
+            return 30;
+        }
+
+        @Override
+        public int regionMask(Collection<String> regionNames) {
+            return (1 << REGIONS) - 1;
+        }
+
+        @Override
+        public int[] select(int mask) {
+            return new int[0];
+        }
+
+        @Override
+        public int getRegionCount() {
+            return REGIONS;
+        }
+
+        @Override
+        public String getRegion(int region) {
+            return "Region" + region;
+        }
+
+        @Override
+        public int getRegionOf(int flag) {
+            return flag % REGIONS;
+        }
+
+        @Override
+        public String getFileName(int flag) {
+            return getRegion(getRegionOf(flag)) + "-Country" + flag;
+        }
+
+        @Override
+        public String getCountryName(int flag) {
+            return "Country " + flag;
+        }
+
+        @Override
+        public InputStream open(int flag) throws IOException {
+            throw new IOException("no images");
+        }
+    };
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("guesses", ".log");
+        file.delete(); // the log creates it
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    private static void closeAndWait(GuessLog log) throws InterruptedException {
+        log.close();
+        assertTrue(log.awaitClosed(10000));
+        assertNull(log.getError());
+    }
+
+    @Test
+    public void guesses_areAppendedAndAggregated() throws Exception {
+        GuessLog log = new GuessLog(file);
+        // region 0: 100 guesses, latency 1..100 ms, every fourth one wrong
+        for (int i = 1; i <= 100; i++)
+            log.record(0, i % 4 == 0 ? 3 : 0, i);
+        // region 1: 10 correct guesses of 500 ms
+        for (int i = 0; i < 10; i++)
+            log.record(1, 1, 500);
+        closeAndWait(log);
+        assertEquals(GuessLog.HEADER_SIZE + 110 * GuessLog.RECORD_SIZE, file.length());
+
+        GuessStats stats = GuessLog.aggregate(file, SOURCE);
+        assertEquals(100, stats.getGuesses(0));
+        assertEquals(0.75, stats.getAccuracy(0), 1e-9);
+        assertEquals(50, stats.getLatencyPercentile(0, 50));
+        assertEquals(90, stats.getLatencyPercentile(0, 90));
+        assertEquals(100, stats.getLatencyPercentile(0, 100));
+        assertEquals(1.0, stats.getAccuracy(1), 1e-9);
+        assertEquals(500, stats.getLatencyPercentile(1, 99));
+        assertEquals(0, stats.getGuesses(2));
+        assertEquals(-1, stats.getLatencyPercentile(2, 50));
+        assertEquals(110, stats.getGuesses(GuessStats.ALL_REGIONS));
+        assertEquals(85 / 110.0, stats.getAccuracy(GuessStats.ALL_REGIONS), 1e-9);
+    }
+
+    @Test
+    public void laterSessions_appendToTheSameLog() throws Exception {
+        for (int session = 0; session < 3; session++) {
+            GuessLog log = new GuessLog(file);
+            for (int i = 0; i < 7; i++)
+                log.record(2, 2, 100);
+            closeAndWait(log);
+        }
+        assertEquals(21, GuessLog.aggregate(file, SOURCE).getGuesses(2));
+    }
+
+    @Test
+    public void tornLastGuess_isIgnored() throws Exception {
+        GuessLog log = new GuessLog(file);
+        for (int i = 0; i < 5; i++)
+            log.record(4, 4, 10);
+        closeAndWait(log);
+        FileOutputStream output = new FileOutputStream(file, true);
+        try {
+            output.write(new byte[GuessLog.RECORD_SIZE / 2]); // killed mid-write
+        } finally {
+            output.close();
+        }
+        assertEquals(5, GuessLog.aggregate(file, SOURCE).getGuesses(GuessStats.ALL_REGIONS));
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFile_isRejected() throws IOException {
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(new byte[64]);
+        } finally {
+            output.close();
+        }
+        GuessLog.aggregate(file, SOURCE);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    @Test
+    public void benchmark_recordCostsNoMeasurableLatency() throws Exception {
+        int guesses = 200000;
+        GuessLog log = new GuessLog(file);
+        for (int i = 0; i < 20000; i++) // warm up
+            log.record(i % 30, i % 30, i);
+
+        long allocated = allocatedBytes();
+        long slowest = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < guesses; i++) {
+            long before = System.nanoTime();
+            log.record(i % 30, (i * 7) % 30, i % 5000);
+            slowest = Math.max(slowest, System.nanoTime() - before);
+        }
+        double nanosPerGuess = (System.nanoTime() - start) / (double) guesses;
+        double bytesPerGuess = (allocatedBytes() - allocated) / (double) guesses;
+        closeAndWait(log);
+
+        long written = (file.length() - GuessLog.HEADER_SIZE) / GuessLog.RECORD_SIZE;
+        System.out.printf("GuessLog.record: %.0f ns per guess (slowest %.3f ms), " +
+                        "%.2f bytes allocated per guess; %d written, %d dropped%n",
+                nanosPerGuess, slowest / 1e6, bytesPerGuess, written, log.getDropped());
+        assertEquals(20000 + guesses, written + log.getDropped());
+        // a real user guesses a few times a second; this is a million times faster
+        assertTrue("record took " + nanosPerGuess + " ns", nanosPerGuess < 5000);
+        assertTrue("record allocates " + bytesPerGuess + " bytes", bytesPerGuess < 8);
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.flagquiz;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the spaced-repetition scheduler and its statistics file, with a
+ * simulation of 100k quizzes.
+ */
+public class QuestionSchedulerTest {
+    // flag ids 0 .. count - 1
+    private static int[] flags(int count) {
+        int[] flags = new int[count];
+        for (int i = 0; i < count; i++)
+            flags[i] = i;
+        return flags;
+    }
+
+    @Test
+    public void quiz_neverRepeatsAFlag() {
+        FlagStats stats = new FlagStats(50);
+        QuestionScheduler scheduler = new QuestionScheduler(stats, flags(50), new QuizRandom(1));
+        for (int session = 0; session < 200; session++) {
+            scheduler.beginSession();
+            Set<Integer> asked = new HashSet<>();
+            for (int flag : scheduler.pickQuiz(10)) {
+                assertTrue(asked.add(flag));
+                scheduler.record(flag, flag % 7 == 0);
+            }
+            assertEquals(10, asked.size());
+            assertEquals(50, scheduler.size());
+        }
+    }
+
+    @Test
+    public void missedFlag_isAskedNextSession() {
+        FlagStats stats = new FlagStats(200);
+        QuestionScheduler scheduler = new QuestionScheduler(stats, flags(200), new QuizRandom(2));
+        scheduler.beginSession();
+        int[] quiz = scheduler.pickQuiz(10);
+        for (int flag : quiz)
+            scheduler.record(flag, flag == quiz[3]);
+
+        scheduler.beginSession();
+        int[] next = scheduler.pickQuiz(10);
+        boolean asked = false;
+        for (int flag : next)
+            asked |= flag == quiz[3];
+        assertTrue("missed flag not asked again", asked);
+        assertEquals(stats.getSession(), scheduler.dueSession(quiz[3]));
+    }
+
+    @Test
+    public void unansweredFlags_returnNextSession() {
+        QuestionScheduler scheduler = new QuestionScheduler(new FlagStats(20), flags(20),
+                new QuizRandom(3));
+        scheduler.beginSession();
+        scheduler.pickQuiz(15); // the user resets the quiz without answering
+        assertEquals(5, scheduler.pickQuiz(10).length);
+        scheduler.beginSession();
+        assertEquals(10, scheduler.pickQuiz(10).length);
+    }
+
+    @Test
+    public void save_writesOnlyChangedRecords() throws Exception {
+        File file = File.createTempFile("flagstats", ".bin");
+        file.delete();
+        try {
+            FlagStats stats = new FlagStats(1000);
+            assertEquals(16 + 1000 * 12, stats.save(file)); // first save writes everything
+            stats.beginSession();
+            stats.record(5, true);
+            stats.record(900, false);
+            assertEquals(16 + 2 * 12, stats.save(file));
+            assertEquals(0, stats.save(file));
+
+            FlagStats loaded = FlagStats.load(file, 1000);
+            assertEquals(1, loaded.getSession());
+            assertEquals(1, loaded.getMisses(5));
+            assertEquals(1, loaded.getStreak(900));
+            assertEquals(1, loaded.getLastSeen(900));
+            assertEquals(-1, loaded.getLastSeen(6));
+            // statistics of another set of flags are not used
+            assertEquals(0, FlagStats.load(file, 999).getSession());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void snapshot_writesTheRecordsAsTheyWereWhenTaken() throws Exception {
+        File file = File.createTempFile("flagstats", ".bin");
+        file.delete();
+        try {
+            FlagStats stats = new FlagStats(100);
+            stats.save(file);
+            stats.beginSession();
+            stats.record(5, true);
+            FlagStats.Snapshot changes = stats.snapshot();
+            stats.record(5, false); // the quiz goes on while the snapshot is written
+            stats.record(6, false);
+            assertEquals(16 + 12, changes.write(file));
+            FlagStats loaded = FlagStats.load(file, 100);
+            assertEquals(1, loaded.getAttempts(5));
+            assertEquals(-1, loaded.getLastSeen(6));
+
+            // the later records are still changed, the snapshot's are not
+            assertEquals(2 * 12, stats.save(file));
+            assertEquals(2, FlagStats.load(file, 100).getAttempts(5));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void snapshot_failedWrite_isSavedAgainAfterRestore() throws Exception {
+        File dir = File.createTempFile("flagstats", "");
+        dir.delete();
+        dir.mkdir();
+        File file = new File(dir, "flagstats.bin");
+        try {
+            FlagStats stats = new FlagStats(100);
+            stats.save(file);
+            stats.beginSession();
+            stats.record(7, true);
+            FlagStats.Snapshot changes = stats.snapshot();
+            try {
+                changes.write(dir); // not a file
+                fail();
+            } catch (IOException expected) {
+                stats.restore(changes);
+            }
+            assertEquals(16 + 12, stats.save(file));
+            assertEquals(1, FlagStats.load(file, 100).getMisses(7));
+        } finally {
+            file.delete();
+            dir.delete();
+        }
+    }
+
+    // 100k quizzes of 10 questions from 2,000 flags, some of which the user finds hard
+    @Test
+    public void simulation_hundredThousandSessions() throws Exception {
+        int flagCount = 2000;
+        int sessions = 100000;
+        int window = 10000; // sessions per timing window
+        File file = File.createTempFile("flagstats", ".bin");
+        file.delete();
+        Random user = new Random(4);
+        double[] missChance = new double[flagCount];
+        for (int flag = 0; flag < flagCount; flag++)
+            missChance[flag] = flag % 10 == 0 ? 0.6 : 0.05; // every tenth flag is hard
+
+        try {
+            FlagStats stats = new FlagStats(flagCount);
+            QuestionScheduler scheduler = new QuestionScheduler(stats, flags(flagCount),
+                    new QuizRandom(4));
+            long firstWindowNanos = 0;
+            long lastWindowNanos = 0;
+            long saveNanos = 0;
+            long bytesWritten = stats.save(file);
+            int maxSaveBytes = 0;
+            for (int session = 0; session < sessions; session++) {
+                long start = System.nanoTime();
+                scheduler.beginSession();
+                int[] quiz = scheduler.pickQuiz(10);
+                boolean[] missed = new boolean[quiz.length];
+                for (int i = 0; i < quiz.length; i++)
+                    missed[i] = user.nextDouble() < missChance[quiz[i]];
+                for (int i = 0; i < quiz.length; i++)
+                    scheduler.record(quiz[i], missed[i]);
+                long nanos = System.nanoTime() - start;
+                if (session >= window && session < 2 * window) // after JIT warm-up
+                    firstWindowNanos += nanos;
+                else if (session >= sessions - window)
+                    lastWindowNanos += nanos;
+
+                start = System.nanoTime();
+                int bytes = stats.save(file);
+                saveNanos += System.nanoTime() - start;
+                bytesWritten += bytes;
+                maxSaveBytes = Math.max(maxSaveBytes, bytes);
+            }
+
+            // hard flags come up more often than easy ones
+            long hardAttempts = 0;
+            long easyAttempts = 0;
+            for (int flag = 0; flag < flagCount; flag++) {
+                if (flag % 10 == 0)
+                    hardAttempts += stats.getAttempts(flag);
+                else
+                    easyAttempts += stats.getAttempts(flag);
+            }
+            double hardPerFlag = hardAttempts / (flagCount / 10.0);
+            double easyPerFlag = easyAttempts / (flagCount * 0.9);
+
+            System.out.printf("QuestionScheduler: %d sessions; %.2f us per session in sessions " +
+                            "10k-20k vs %.2f us in the last 10k; save %.2f us and at most %d bytes " +
+                            "per session (%d KB in total); hard flags asked %.0f times vs %.0f%n",
+                    sessions, firstWindowNanos / 1e3 / window, lastWindowNanos / 1e3 / window,
+                    saveNanos / 1e3 / sessions, maxSaveBytes, bytesWritten / 1024,
+                    hardPerFlag, easyPerFlag);
+            assertTrue("selection cost grows with history", lastWindowNanos < firstWindowNanos * 2);
+            assertEquals(16 + 10 * 12, maxSaveBytes);
+            assertTrue("hard flags not repeated more", hardPerFlag > easyPerFlag * 2);
+
+            // the file holds exactly the history built up in memory
+            FlagStats loaded = FlagStats.load(file, flagCount);
+            assertEquals(stats.getSession(), loaded.getSession());
+            for (int flag = 0; flag < flagCount; flag++) {
+                assertEquals(stats.getAttempts(flag), loaded.getAttempts(flag));
+                assertEquals(stats.getMisses(flag), loaded.getMisses(flag));
+                assertEquals(stats.getLastSeen(flag), loaded.getLastSeen(flag));
+                assertEquals(stats.getStreak(flag), loaded.getStreak(flag));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
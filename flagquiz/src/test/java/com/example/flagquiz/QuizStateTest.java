@@ -0,0 +1,104 @@
+package com.example.flagquiz;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for saving a quiz in progress and resuming it.
+ */
+public class QuizStateTest {
+    private static final int RESTORES = 10000;
+
+    private static QuizState sampleState() {
+        FlagStats stats = new FlagStats(223);
+        int[] pool = new int[223];
+        for (int i = 0; i < pool.length; i++)
+            pool[i] = i;
+        QuizRandom random = new QuizRandom(38);
+        QuestionScheduler scheduler = new QuestionScheduler(stats, pool, random);
+        scheduler.beginSession();
+        int[] quizFlags = scheduler.pickQuiz(50);
+        int[] choices = new FlagSelector(pool, pool.length, random).pickChoices(quizFlags[17], 12);
+        return new QuizState(223, 0x2B, quizFlags, 17, 23, false, choices, 0x421);
+    }
+
+    private static void assertSameState(QuizState expected, QuizState actual) {
+        assertEquals(expected.sourceSize, actual.sourceSize);
+        assertEquals(expected.regionMask, actual.regionMask);
+        assertArrayEquals(expected.quizFlags, actual.quizFlags);
+        assertEquals(expected.correctAnswers, actual.correctAnswers);
+        assertEquals(expected.totalGuesses, actual.totalGuesses);
+        assertEquals(expected.answered, actual.answered);
+        assertArrayEquals(expected.choices, actual.choices);
+        assertEquals(expected.wrongGuesses, actual.wrongGuesses);
+    }
+
+    @Test
+    public void restoredState_isIdenticalAndFast() throws IOException {
+        QuizState state = sampleState();
+        byte[] saved = state.encode();
+        // 50 questions and 12 choices fit in well under a kilobyte of the Bundle
+        assertEquals(25 + 4 * (50 + 12), saved.length);
+
+        QuizState restored = null;
+        for (int i = 0; i < RESTORES; i++) // warm up
+            restored = QuizState.decode(saved);
+        long start = System.nanoTime();
+        for (int i = 0; i < RESTORES; i++)
+            restored = QuizState.decode(saved);
+        double microsPerRestore = (System.nanoTime() - start) / 1000.0 / RESTORES;
+        System.out.printf("restore: %d bytes, %.2f us%n", saved.length, microsPerRestore);
+
+        assertSameState(state, restored);
+        assertArrayEquals(saved, restored.encode());
+        assertTrue("restore took " + microsPerRestore + " us", microsPerRestore < 1000);
+    }
+
+    @Test
+    public void answeredLastQuestion_roundTrips() throws IOException {
+        QuizState state = new QuizState(223, 1, new int[]{5, 9, 200}, 3, 4, true,
+                new int[]{200, 7, 3}, 0);
+        assertSameState(state, QuizState.decode(state.encode()));
+    }
+
+    @Test
+    public void resumedScheduler_recordsTheRemainingQuestions() {
+        QuizState state = sampleState();
+        FlagStats stats = new FlagStats(223);
+        int[] pool = new int[223];
+        for (int i = 0; i < pool.length; i++)
+            pool[i] = i;
+        // a new process: the scheduler is built again and takes back the open questions
+        QuestionScheduler scheduler = new QuestionScheduler(stats, pool, new QuizRandom(1));
+        int[] open = Arrays.copyOfRange(state.quizFlags, state.correctAnswers,
+                state.quizFlags.length);
+        scheduler.resume(open);
+        assertEquals(223, scheduler.size());
+        // none of them is handed out again while they are open
+        boolean[] isOpen = new boolean[223];
+        for (int flag : open)
+            isOpen[flag] = true;
+        for (int flag : scheduler.pickQuiz(223))
+            assertFalse(isOpen[flag]);
+        for (int flag : open)
+            scheduler.record(flag, false);
+        for (int flag : open)
+            assertEquals(1, stats.getAttempts(flag));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedState_isRejected() throws IOException {
+        byte[] saved = sampleState().encode();
+        QuizState.decode(Arrays.copyOf(saved, saved.length - 3));
+    }
+
+    @Test(expected = IOException.class)
+    public void flagOutsideSource_isRejected() throws IOException {
+        QuizState.decode(new QuizState(10, 1, new int[]{3, 12}, 0, 0, false,
+                new int[]{3}, 0).encode());
+    }
+}
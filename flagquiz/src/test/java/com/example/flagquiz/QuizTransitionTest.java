@@ -0,0 +1,217 @@
+package com.example.flagquiz;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests that drive QuizTransition with a fake clock and animations that end
+ * when the test says so.
+ */
+public class QuizTransitionTest {
+    // a Handler whose time only moves when advance is called
+    private static class FakeClock implements QuizTransition.Clock {
+        private long now;
+        private final List<Runnable> runnables = new ArrayList<>();
+        private final List<Long> times = new ArrayList<>();
+
+        @Override
+        public long uptimeMillis() {
+            return now;
+        }
+
+        @Override
+        public void postDelayed(Runnable runnable, long delayMillis) {
+            runnables.add(runnable);
+            times.add(now + delayMillis);
+        }
+
+        @Override
+        public void removeCallbacks(Runnable runnable) {
+            for (int i = runnables.size() - 1; i >= 0; i--) {
+                if (runnables.get(i) == runnable) {
+                    runnables.remove(i);
+                    times.remove(i);
+                }
+            }
+        }
+
+        // moves time forward, running what becomes due in order
+        void advance(long millis) {
+            long end = now + millis;
+            while (true) {
+                int next = -1;
+                for (int i = 0; i < times.size(); i++) {
+                    if (times.get(i) <= end && (next < 0 || times.get(i) < times.get(next)))
+                        next = i;
+                }
+                if (next < 0)
+                    break;
+                now = times.remove(next);
+                runnables.remove(next).run();
+            }
+            now = end;
+        }
+    }
+
+    // records each step with the time it happened; animations end on finish...()
+    private class FakeSteps implements QuizTransition.Steps {
+        final List<String> log = new ArrayList<>();
+        Runnable outDone;
+        Runnable inDone;
+
+        @Override
+        public void prefetch(int question) {
+            log.add(clock.now + " prefetch " + question);
+        }
+
+        @Override
+        public void animateOut(Runnable done) {
+            log.add(clock.now + " out");
+            outDone = done;
+        }
+
+        @Override
+        public void bind(int question) {
+            log.add(clock.now + " bind " + question);
+        }
+
+        @Override
+        public void animateIn(Runnable done) {
+            log.add(clock.now + " in");
+            inDone = done;
+        }
+
+        @Override
+        public void cancelAnimation() {
+            log.add(clock.now + " cancel animation");
+        }
+
+        void finishOut() {
+            Runnable done = outDone;
+            outDone = null;
+            done.run();
+        }
+
+        void finishIn() {
+            Runnable done = inDone;
+            inDone = null;
+            done.run();
+        }
+    }
+
+    private FakeClock clock;
+    private FakeSteps steps;
+    private QuizTransition transition;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock();
+        steps = new FakeSteps();
+        transition = new QuizTransition(clock, steps);
+    }
+
+    @Test
+    public void steps_runInOrder_withPrefetchDuringTheDelay() {
+        transition.start(3, 2000);
+        assertEquals(QuizTransition.DELAYING, transition.getState());
+        // the next flag's I/O starts with the delay, not after it
+        assertEquals(Arrays.asList("0 prefetch 3"), steps.log);
+
+        clock.advance(1999);
+        assertEquals(1, steps.log.size());
+        clock.advance(1);
+        assertEquals(QuizTransition.ANIMATING_OUT, transition.getState());
+
+        clock.advance(500);
+        steps.finishOut();
+        assertEquals(QuizTransition.ANIMATING_IN, transition.getState());
+        clock.advance(500);
+        steps.finishIn();
+        assertFalse(transition.isRunning());
+        assertEquals(Arrays.asList("0 prefetch 3", "2000 out", "2500 bind 3", "2500 in"),
+                steps.log);
+    }
+
+    @Test
+    public void cancelDuringDelay_runsNothingLater() {
+        transition.start(1, 2000);
+        clock.advance(1000);
+        transition.cancel(); // e.g. the user changed the number of choices
+        clock.advance(10000);
+        assertEquals(Arrays.asList("0 prefetch 1"), steps.log);
+        assertFalse(transition.isRunning());
+    }
+
+    @Test
+    public void cancelDuringAnimation_ignoresItsEnd() {
+        transition.start(1, 2000);
+        clock.advance(2000);
+        transition.cancel();
+        steps.finishOut(); // a cancelled Animator still reports its end
+        assertEquals(Arrays.asList("0 prefetch 1", "2000 out", "2000 cancel animation"),
+                steps.log);
+        assertFalse(transition.isRunning());
+    }
+
+    @Test
+    public void restart_bindsOnlyTheLatestQuestion() {
+        transition.start(1, 2000);
+        clock.advance(2000);
+        Runnable staleOut = steps.outDone;
+        transition.start(4, 2000); // reset while the old flag animated out
+        staleOut.run();
+        clock.advance(2000);
+        steps.finishOut();
+        steps.finishIn();
+        staleOut.run(); // late again
+
+        int binds = 0;
+        for (String step : steps.log) {
+            if (step.contains("bind"))
+                ++binds;
+        }
+        assertEquals(1, binds);
+        assertTrue(steps.log.contains("4000 bind 4"));
+    }
+
+    @Test
+    public void doneCalledTwice_bindsOnce() {
+        transition.start(2, 0);
+        clock.advance(0);
+        Runnable out = steps.outDone;
+        out.run();
+        out.run();
+        assertEquals(Arrays.asList("0 prefetch 2", "0 out", "0 bind 2", "0 in"), steps.log);
+    }
+
+    @Test
+    public void pause_holdsTheRestOfTheDelay() {
+        transition.start(1, 2000);
+        clock.advance(500);
+        transition.pause(); // e.g. another app's dialog covers the quiz
+        clock.advance(10000);
+        assertEquals(QuizTransition.DELAYING, transition.getState());
+        transition.resume();
+        clock.advance(1499);
+        assertEquals(QuizTransition.DELAYING, transition.getState());
+        clock.advance(1);
+        assertEquals(Arrays.asList("0 prefetch 1", "12000 out"), steps.log);
+    }
+
+    @Test
+    public void startWhilePaused_waitsForResume() {
+        transition.pause();
+        transition.start(1, 2000);
+        clock.advance(5000);
+        assertEquals(QuizTransition.DELAYING, transition.getState());
+        transition.resume();
+        clock.advance(2000);
+        assertEquals(QuizTransition.ANIMATING_OUT, transition.getState());
+    }
+}
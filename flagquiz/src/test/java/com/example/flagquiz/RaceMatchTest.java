@@ -0,0 +1,258 @@
+package com.example.flagquiz;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for race mode: a shared question stream, per-answer timing on a fake
+ * monotonic clock and flags decoded once per match however many players there are.
+ */
+public class RaceMatchTest {
+    private static final int FLAGS = 223;
+
+    // time moves only when the test says so
+    private static class FakeClock implements RaceMatch.Clock {
+        long nanos = 5000000000L;
+
+        @Override
+        public long nanoTime() {
+            return nanos;
+        }
+    }
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    // runs queued work only when the test says so, like a Handler's message queue
+    private static class QueueExecutor implements Executor {
+        final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            queue.add(command);
+        }
+
+        void runAll() {
+            Runnable command;
+            while ((command = queue.poll()) != null)
+                command.run();
+        }
+    }
+
+    // remembers the last flag handed back by SharedFlagCache.get
+    private static class FlagHolder implements SharedFlagCache.Callback<Integer> {
+        int flag = -1;
+        Integer image;
+
+        @Override
+        public void onFlag(int flag, Integer image) {
+            this.flag = flag;
+            this.image = image;
+        }
+    }
+
+    // counts how often each flag is decoded; the "image" is the flag id
+    private static class CountingDecoder implements SharedFlagCache.Decoder<Integer> {
+        final int[] decodes = new int[FLAGS];
+
+        @Override
+        public Integer decode(int flag) throws IOException {
+            ++decodes[flag];
+            return flag;
+        }
+    }
+
+    private static RaceMatch match(int players, RaceMatch.Clock clock) {
+        int[] flags = new int[FLAGS];
+        for (int i = 0; i < FLAGS; i++)
+            flags[i] = i;
+        return RaceMatch.create(new FlagSelector(flags, FLAGS, new QuizRandom(41)), 20, 4,
+                players, clock);
+    }
+
+    @Test
+    public void everyPlayer_getsTheSameQuestions() {
+        RaceMatch match = match(3, new FakeClock());
+        assertEquals(20, match.getQuestionCount());
+        for (int q = 0; q < match.getQuestionCount(); q++) {
+            int[] choices = match.getChoices(q);
+            assertSame(choices, match.getChoices(q)); // computed once, not per player
+            boolean hasAnswer = false;
+            for (int choice : choices)
+                hasAnswer |= choice == match.getFlag(q);
+            assertTrue(hasAnswer);
+        }
+    }
+
+    @Test
+    public void answers_areTimedToTheMillisecond() {
+        FakeClock clock = new FakeClock();
+        RaceMatch match = match(2, clock);
+        match.start();
+
+        clock.nanos += 1234400000L; // 1234.4 ms
+        assertEquals(RaceMatch.CORRECT, match.answer(0, match.getFlag(0)));
+        clock.nanos += 1000000L;    // player 1 answers 1 ms after player 0
+        assertEquals(RaceMatch.WRONG, match.answer(1, match.getChoices(0)[0] == match.getFlag(0) ?
+                match.getChoices(0)[1] : match.getChoices(0)[0]));
+        assertEquals(RaceMatch.CORRECT, match.answer(1, match.getFlag(0)));
+        clock.nanos += 2500600L;    // 2.5006 ms after player 1's answer
+        assertEquals(RaceMatch.CORRECT, match.answer(1, match.getFlag(1)));
+
+        assertEquals(1234, match.getAnswerMillis(0, 0));
+        assertEquals(1235, match.getAnswerMillis(1, 0));
+        assertEquals(3, match.getAnswerMillis(1, 1)); // rounded
+        assertEquals(1234, match.getScoreMillis(0));
+        assertEquals(1238 + RaceMatch.PENALTY_MILLIS, match.getScoreMillis(1));
+        assertEquals(1, match.getWrongGuesses(1));
+        // player 1 answered more questions, so leads despite the penalty
+        assertArrayEquals(new Integer[]{1, 0}, match.getRanking());
+    }
+
+    @Test
+    public void fasterFinisher_winsOnTime() {
+        FakeClock clock = new FakeClock();
+        RaceMatch match = match(2, clock);
+        match.start();
+        for (int q = 0; q < match.getQuestionCount(); q++) {
+            clock.nanos += 900000000L;
+            match.answer(1, match.getFlag(q));
+            clock.nanos += 200000000L;
+            int result = match.answer(0, match.getFlag(q));
+            assertEquals(q + 1 == match.getQuestionCount() ? RaceMatch.FINISHED :
+                    RaceMatch.CORRECT, result);
+        }
+        assertTrue(match.isOver());
+        assertEquals(900 + 19 * 1100, match.getScoreMillis(1)); // each answer times from the last
+        assertEquals(20 * 1100, match.getScoreMillis(0));
+        assertArrayEquals(new Integer[]{1, 0}, match.getRanking());
+    }
+
+    @Test
+    public void questionClock_startsWhenTheFlagIsShown() {
+        FakeClock clock = new FakeClock();
+        RaceMatch match = match(2, clock);
+        match.start();
+        clock.nanos += 400000000L; // player 0's flag took 400 ms to decode
+        match.startQuestion(0);
+        clock.nanos += 1000000000L;
+        assertEquals(RaceMatch.CORRECT, match.answer(0, match.getFlag(0)));
+        clock.nanos += 250000000L; // and the next one 250 ms
+        match.startQuestion(0);
+        clock.nanos += 2000000000L;
+        assertEquals(RaceMatch.CORRECT, match.answer(0, match.getFlag(1)));
+        assertEquals(RaceMatch.CORRECT, match.answer(1, match.getFlag(0)));
+
+        assertEquals(1000, match.getAnswerMillis(0, 0)); // decode time is not counted
+        assertEquals(2000, match.getAnswerMillis(0, 1));
+        assertEquals(3650, match.getAnswerMillis(1, 0)); // never shown, so timed from start
+    }
+
+    @Test
+    public void get_neverBlocksTheCaller() {
+        CountingDecoder decoder = new CountingDecoder();
+        QueueExecutor background = new QueueExecutor();
+        QueueExecutor ui = new QueueExecutor();
+        SharedFlagCache<Integer> cache = new SharedFlagCache<>(decoder, background, ui, 2);
+        FlagHolder holder = new FlagHolder();
+
+        cache.prefetch(7);
+        cache.get(7, holder);
+        cache.get(9, holder);
+        assertEquals(-1, holder.flag); // nothing decoded on the caller's thread
+        assertEquals(0, decoder.decodes[7] + decoder.decodes[9]);
+
+        background.runAll();
+        assertEquals(-1, holder.flag); // handed back only through the callback executor
+        ui.runAll();
+        assertEquals(9, holder.flag);
+        assertEquals(9, (int) holder.image);
+        assertEquals(1, decoder.decodes[7]); // the get waited for the prefetch, not decoded
+        assertEquals(1, decoder.decodes[9]);
+
+        cache.get(7, holder); // cached: handed over at once
+        assertEquals(7, holder.flag);
+        assertTrue(background.queue.isEmpty());
+    }
+
+    // plays a match the way RaceActivity does, with players at different paces
+    private static void playMatch(int players, CountingDecoder decoder, int[] maxHeld) {
+        RaceMatch match = match(players, new FakeClock());
+        SharedFlagCache<Integer> cache = new SharedFlagCache<>(decoder, DIRECT, DIRECT,
+                players);
+        FlagHolder holder = new FlagHolder();
+        match.start();
+        for (int player = 0; player < players; player++) {
+            cache.get(match.getFlag(0), holder);
+            assertEquals(match.getFlag(0), (int) holder.image);
+            cache.prefetch(match.getFlag(1));
+        }
+        QuizRandom random = new QuizRandom(players);
+        while (!match.isOver()) {
+            int player = random.nextInt(players); // whoever answers next
+            if (match.isFinished(player))
+                continue;
+            int question = match.getQuestion(player);
+            int result = match.answer(player, match.getFlag(question));
+            cache.release(match.getFlag(question));
+            if (result == RaceMatch.CORRECT) {
+                int next = match.getFlag(question + 1);
+                cache.get(next, holder);
+                assertEquals(next, (int) holder.image);
+                if (question + 2 < match.getQuestionCount())
+                    cache.prefetch(match.getFlag(question + 2));
+            }
+            maxHeld[0] = Math.max(maxHeld[0], cache.size());
+        }
+        assertEquals(0, cache.size()); // everything is released at the end
+        assertEquals(match.getQuestionCount(), cache.getDecodes());
+    }
+
+    @Test
+    public void eachFlag_isDecodedOncePerMatch() {
+        for (int players : new int[]{1, 2, 4, 8}) {
+            CountingDecoder decoder = new CountingDecoder();
+            int[] maxHeld = new int[1];
+            playMatch(players, decoder, maxHeld);
+            int decoded = 0;
+            for (int count : decoder.decodes) {
+                assertTrue("flag decoded " + count + " times with " + players + " players",
+                        count <= 1);
+                decoded += count;
+            }
+            assertEquals(20, decoded); // the same I/O as a single player
+            assertTrue(maxHeld[0] <= 20);
+        }
+    }
+
+    @Test
+    public void failedDecode_isRetried() {
+        final boolean[] fail = {true};
+        SharedFlagCache<Integer> cache = new SharedFlagCache<>(
+                new SharedFlagCache.Decoder<Integer>() {
+                    @Override
+                    public Integer decode(int flag) throws IOException {
+                        if (fail[0])
+                            throw new IOException("unreadable");
+                        return flag;
+                    }
+                }, DIRECT, DIRECT, 2);
+        FlagHolder holder = new FlagHolder();
+        cache.get(7, holder);
+        assertEquals(7, holder.flag);
+        assertNull(holder.image);
+        fail[0] = false;
+        cache.get(7, holder);
+        assertEquals(7, (int) holder.image);
+        assertEquals(2, cache.getDecodes());
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.twittersearches;
+
+import android.app.Activity;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.Choreographer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Scroll frame time of a long saved-search list with and without ItemDivider, measured
+ * on the device with Choreographer while the list is flung, the way flagquiz's
+ * FrameJankMeter measures question transitions.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemDividerInstrumentedTest {
+    private static final String TAG = "ItemDividerTest";
+    private static final int ROWS = 20000;
+    private static final int FLINGS = 6;                // per list, alternating direction
+    private static final long FRAME_NANOS = 16666667;   // one frame at 60 fps
+
+    @Rule
+    public final ActivityTestRule<MainActivity> rule = new ActivityTestRule<>(MainActivity.class);
+
+    private RecyclerView recyclerView;
+
+    // records the time between consecutive frames until the fling comes to rest
+    private static class FrameRecorder extends RecyclerView.OnScrollListener
+            implements Choreographer.FrameCallback {
+        final List<Long> frameNanos = new ArrayList<>();
+        final CountDownLatch idle = new CountDownLatch(1);
+        private long lastFrameNanos;
+        private boolean running = true;
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!running)
+                return;
+            if (lastFrameNanos != 0)
+                frameNanos.add(frameTimeNanos - lastFrameNanos);
+            lastFrameNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+            if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                running = false;
+                recyclerView.removeOnScrollListener(this);
+                idle.countDown();
+            }
+        }
+    }
+
+    // replaces the activity's content with a list of ROWS tags, with or without dividers
+    private void showList(final boolean dividers) {
+        final Activity activity = rule.getActivity();
+        final List<String> sortedTags = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++)
+            sortedTags.add(String.format("Tag %05d", i));
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                recyclerView = new RecyclerView(activity);
+                recyclerView.setLayoutManager(new LinearLayoutManager(activity));
+                recyclerView.setAdapter(new SearchesAdapter(new SortedTags(sortedTags),
+                        null, null));
+                if (dividers)
+                    recyclerView.addItemDecoration(new ItemDivider(activity));
+                activity.setContentView(recyclerView);
+            }
+        });
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+    }
+
+    // flings the list FLINGS times and returns every frame's duration, sorted
+    private long[] flingFrames() throws InterruptedException {
+        List<Long> frames = new ArrayList<>();
+        for (int fling = 0; fling < FLINGS; fling++) {
+            final FrameRecorder recorder = new FrameRecorder();
+            final int velocity = (fling % 2 == 0 ? 1 : -1) *
+                    recyclerView.getMaxFlingVelocity();
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    recyclerView.addOnScrollListener(recorder);
+                    Choreographer.getInstance().postFrameCallback(recorder);
+                    recyclerView.fling(0, velocity);
+                }
+            });
+            assertTrue("fling never ended", recorder.idle.await(30, TimeUnit.SECONDS));
+            InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+            frames.addAll(recorder.frameNanos);
+        }
+        long[] sorted = new long[frames.size()];
+        for (int i = 0; i < sorted.length; i++)
+            sorted[i] = frames.get(i);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)];
+    }
+
+    private static int janky(long[] frames) {
+        int janky = 0;
+        for (long frame : frames) {
+            if (frame > FRAME_NANOS * 3 / 2)
+                ++janky;
+        }
+        return janky;
+    }
+
+    @Test
+    public void flingWithDividers_keepsFrameTime() throws Exception {
+        showList(false);
+        flingFrames(); // warm up: inflate the ViewHolders and compile the scroll path
+        long[] plain = flingFrames();
+        showList(true);
+        flingFrames();
+        long[] divided = flingFrames();
+
+        Log.i(TAG, String.format("Fling of %d rows: without dividers %d frames, median " +
+                        "%.1f ms, 90th percentile %.1f ms, %d janky; with ItemDivider %d " +
+                        "frames, median %.1f ms, 90th percentile %.1f ms, %d janky", ROWS,
+                plain.length, percentile(plain, 50) / 1e6, percentile(plain, 90) / 1e6,
+                janky(plain), divided.length, percentile(divided, 50) / 1e6,
+                percentile(divided, 90) / 1e6, janky(divided)));
+        assertTrue(plain.length > FLINGS && divided.length > FLINGS);
+        // drawing the dividers must not push frames past their deadline
+        assertTrue("dividers slow the fling down",
+                percentile(divided, 90) <= percentile(plain, 90) + FRAME_NANOS / 2);
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.twittersearches;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.widget.TextView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Adding or deleting a saved search must bind only the row it affects in a real
+ * RecyclerView, not every row on screen.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchesAdapterInstrumentedTest {
+    private static final int TAGS = 40;
+
+    private RecyclerView recyclerView;
+    private SortedTags tags;
+    private SearchesAdapter adapter;
+
+    // measures and lays out recyclerView, as the next frame would, on the UI thread
+    private void layout() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                int height = recyclerView.getContext().getResources()
+                        .getDisplayMetrics().heightPixels / 2;
+                recyclerView.measure(
+                        View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+                recyclerView.layout(0, 0, 1080, height);
+            }
+        });
+    }
+
+    // runs an edit on the UI thread and lays the list out again
+    private void edit(Runnable edit) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(edit);
+        layout();
+    }
+
+    // the tags of the rows on screen, top to bottom
+    private List<String> shownTags() {
+        List<String> shown = new ArrayList<>();
+        for (int i = 0; i < recyclerView.getChildCount(); i++)
+            shown.add(((TextView) recyclerView.getChildAt(i)).getText().toString());
+        return shown;
+    }
+
+    @Test
+    public void addingOrDeletingOneTag_bindsOneRow() throws Exception {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        final List<String> sortedTags = new ArrayList<>();
+        for (int i = 0; i < TAGS; i++)
+            sortedTags.add(String.format("Tag %02d", 2 * i)); // even numbers only
+
+        // the list as MainActivity sets it up, too short to show every tag
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                tags = new SortedTags(sortedTags);
+                recyclerView = new RecyclerView(context);
+                recyclerView.setLayoutManager(new LinearLayoutManager(context));
+                // no animations, so a row pushed off screen is not kept as a child
+                recyclerView.setItemAnimator(null);
+                adapter = new SearchesAdapter(tags, null, null);
+                recyclerView.setAdapter(adapter);
+            }
+        });
+        layout();
+        final int visibleRows = recyclerView.getChildCount();
+        assertTrue(visibleRows > 2 && visibleRows < TAGS);
+        assertEquals(visibleRows, adapter.getRowsBound());
+
+        final int[] position = new int[1];
+        int bound = adapter.getRowsBound();
+        edit(new Runnable() {
+            @Override
+            public void run() {
+                position[0] = tags.insert("Tag 01");
+            }
+        });
+        assertEquals(1, position[0]);
+        assertEquals(1, adapter.getRowsBound() - bound); // just the new row
+        assertEquals(tags.subList(0, visibleRows), shownTags());
+
+        bound = adapter.getRowsBound();
+        edit(new Runnable() {
+            @Override
+            public void run() {
+                position[0] = tags.insert("Tag 01"); // an edited query
+            }
+        });
+        assertEquals(-1, position[0]);
+        assertEquals(0, adapter.getRowsBound() - bound);
+
+        bound = adapter.getRowsBound();
+        edit(new Runnable() {
+            @Override
+            public void run() {
+                position[0] = tags.delete("Tag 02");
+            }
+        });
+        assertEquals(2, position[0]);
+        // just the row scrolling in at the bottom
+        assertEquals(1, adapter.getRowsBound() - bound);
+        assertEquals(tags.subList(0, visibleRows), shownTags());
+
+        bound = adapter.getRowsBound();
+        edit(new Runnable() {
+            @Override
+            public void run() {
+                adapter.notifyDataSetChanged(); // what every edit used to call
+            }
+        });
+        assertEquals(visibleRows, adapter.getRowsBound() - bound);
+    }
+}
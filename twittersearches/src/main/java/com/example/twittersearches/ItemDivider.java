@@ -19,7 +19,6 @@ public class ItemDivider extends RecyclerView.ItemDecoration {
     }
 
     // draws the list item dividers onto the RecyclerView
-
     @Override
     public void onDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
         super.onDraw(c, parent, state);
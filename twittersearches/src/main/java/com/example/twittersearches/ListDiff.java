@@ -0,0 +1,90 @@
+package com.example.twittersearches;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The inserts and removes that turn one list of tags into another, both in
+ * SearchStore.TAG_ORDER, found in one merge pass over the two lists. Runs of adjacent
+ * inserts or removes are reported as one range, so RecyclerView animates just the rows
+ * that came or went.
+ */
+public class ListDiff {
+    private static final int INSERT = 1;
+    private static final int REMOVE = 2;
+
+    private int[] changes = new int[12]; // type, position, count of each range
+    private int size;                    // used entries of changes
+
+    private ListDiff() {
+    }
+
+    public static ListDiff between(List<String> from, List<String> to) {
+        ListDiff diff = new ListDiff();
+        int i = 0;
+        int j = 0;
+        int position = 0; // in the list as changed so far
+        while (i < from.size() || j < to.size()) {
+            int order;
+            if (i == from.size())
+                order = 1;
+            else if (j == to.size())
+                order = -1;
+            else if (from.get(i) == to.get(j)) // usually the same String
+                order = 0;
+            else
+                order = SearchStore.TAG_ORDER.compare(from.get(i), to.get(j));
+
+            if (order == 0) { // in both
+                ++i;
+                ++j;
+                ++position;
+            } else if (order < 0) { // only in from
+                diff.add(REMOVE, position);
+                ++i;
+            } else { // only in to
+                diff.add(INSERT, position);
+                ++j;
+                ++position;
+            }
+        }
+        return diff;
+    }
+
+    // records one insert or remove, extending the last range if it continues it
+    private void add(int type, int position) {
+        if (size > 0 && changes[size - 3] == type) {
+            int start = changes[size - 2];
+            int count = changes[size - 1];
+            if ((type == REMOVE && position == start) ||
+                    (type == INSERT && position == start + count)) {
+                ++changes[size - 1];
+                return;
+            }
+        }
+        if (size == changes.length)
+            changes = Arrays.copyOf(changes, size * 2);
+        changes[size++] = type;
+        changes[size++] = position;
+        changes[size++] = 1;
+    }
+
+    // number of ranges inserted or removed
+    public int getRangeCount() {
+        return size / 3;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // reports the ranges in order; each position is valid once the earlier ones are applied
+    public void dispatch(SortedTags.Listener listener) {
+        for (int i = 0; i < size; i += 3) {
+            if (changes[i] == INSERT)
+                listener.onInserted(changes[i + 1], changes[i + 2]);
+            else
+                listener.onRemoved(changes[i + 1], changes[i + 2]);
+        }
+    }
+}
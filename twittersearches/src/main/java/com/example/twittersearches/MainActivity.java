@@ -6,7 +6,9 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.design.widget.FloatingActionButton;
+import android.support.design.widget.Snackbar;
 import android.support.design.widget.TextInputLayout;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
@@ -15,26 +17,57 @@ import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.Toolbar;
 import android.text.Editable;
 import android.text.TextWatcher;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.EditText;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
-    // name of SharedPreferences XML file that stores the saved searches
+    private static final String TAG = "TwitterSearches";
+    // name of SharedPreferences XML file that stored the saved searches before SearchStore
     private static final String SEARCHES = "searches";
+    private static final String SEARCHES_FILE = "searches.log"; // SearchStore's file
+    private static final int FIRST_PAGE_SIZE = 50; // tags bound first, a screen or more
+    private static final int PAGE_SIZE = 1000;     // tags added per later callback
+    // the saved searches and the thread writing them, shared by every MainActivity of
+    // the process so the log is read once and written by one thread
+    private static final ExecutorService searchWriter = Executors.newSingleThreadExecutor();
+    private static SearchStore searchStore; // used on searchWriter until it is loaded
+    // what went wrong reading the saved searches, shown once they are loaded; or null
+    private static String searchesNotice;
+    // filters the saved searches as the user types
+    private static final ExecutorService filterThread = Executors.newSingleThreadExecutor();
     private EditText queryEditText;                        // where user enters a query
     private EditText tagEditText;                          // where user enters a query's tag
     private FloatingActionButton saveFloatingActionButton; // save search
-    private SharedPreferences savedSearches;               // user's favorite searches
-    private List<String> tags;                             // list of tags for saved searches
+    private SearchStore savedSearches;                     // user's favorite searches
+    private SortedTags tags;                               // list of tags for saved searches
     private SearchesAdapter adapter;                       // for binding data to RecyclerVie
+    private SearchFilter searchFilter;                     // finds tags as the user types
+    private EditText filterEditText;                       // where user filters the tags
+    private ProgressBar loadingProgressBar;                // shown until the tags load
+    private SearchLoader searchLoader;                     // loads the saved searches
+    private boolean loaded;                                // true once every tag is in tags
+    private final Handler handler = new Handler();
+    // delivers filter results and loaded searches on the UI thread
+    private final Executor uiExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            handler.post(command);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -48,12 +81,9 @@ public class MainActivity extends AppCompatActivity {
         tagEditText = ((TextInputLayout) findViewById(R.id.tagTextInputLayout)).getEditText();
         tagEditText.addTextChangedListener(textWatcher);
 
-        // get the SharedPreferences containing the user's saved searches
-        savedSearches = getSharedPreferences(SEARCHES, MODE_PRIVATE);
-
-        // store the saved tags in an ArrayList then sort them
-        tags = new ArrayList<>(savedSearches.getAll().keySet());
-        Collections.sort(tags, String.CASE_INSENSITIVE_ORDER);
+        // the saved tags; filled in by searchLoader once the store is read
+        tags = new SortedTags(Collections.<String>emptyList());
+        loadingProgressBar = (ProgressBar) findViewById(R.id.loadingProgressBar);
 
         RecyclerView recyclerView = (RecyclerView) findViewById(R.id.recyclerView);
         // use a LinearLayoutManager to display items in a vertical list
@@ -65,10 +95,111 @@ public class MainActivity extends AppCompatActivity {
         // specify a custom ItemDecorator to draw lines between list items
         recyclerView.addItemDecoration(new ItemDivider(this));
 
+        // filter the searches as the user types, once they are loaded
+        searchFilter = new SearchFilter(filterThread, uiExecutor, filterListener);
+        filterEditText = (EditText) findViewById(R.id.filterEditText);
+        filterEditText.addTextChangedListener(filterWatcher);
+
         // register listener to save a new or edited search
         saveFloatingActionButton = (FloatingActionButton) findViewById(R.id.fab);
         saveFloatingActionButton.setOnClickListener(saveButtonListener);
         updateSaveFAB(); // hides button because EditTexts initially empt
+
+        // read the saved searches on searchWriter; the list appears page by page
+        searchLoader = new SearchLoader(searchSource, FIRST_PAGE_SIZE, PAGE_SIZE,
+                searchWriter, uiExecutor);
+        searchLoader.setListener(loadListener);
+        searchLoader.start();
+    }
+
+    @Override
+    protected void onDestroy() {
+        searchLoader.close(); // drop pages still on their way
+        super.onDestroy();
+    }
+
+    // gets the SearchStore containing the user's saved searches; runs on searchWriter
+    private final SearchLoader.Source searchSource = new SearchLoader.Source() {
+        @Override
+        public SearchStore open() {
+            return openSearches();
+        }
+    };
+
+    // adds the saved searches as they arrive on the UI thread
+    private final SearchLoader.Listener loadListener = new SearchLoader.Listener() {
+        @Override
+        public void onOpened(SearchStore store, List<String> sortedTags,
+                             List<String> queries) {
+            savedSearches = store;
+            searchFilter.load(sortedTags, queries); // index them in the background
+            if (searchesNotice != null) {
+                // tell the user once, not again when the activity is recreated
+                Snackbar.make(findViewById(R.id.content_main), searchesNotice,
+                        Snackbar.LENGTH_INDEFINITE)
+                        .setAction(android.R.string.ok, new View.OnClickListener() {
+                            @Override
+                            public void onClick(View v) {
+                            }
+                        }).show();
+                searchesNotice = null;
+            }
+        }
+
+        @Override
+        public void onPage(List<String> sortedPage, boolean last) {
+            // tags tells adapter, which binds the rows that are on screen
+            tags.append(sortedPage);
+            loadingProgressBar.setVisibility(View.GONE);
+            if (last) {
+                // new tags can be inserted in order now that every tag is in tags
+                loaded = true;
+                filterEditText.setEnabled(true);
+                updateSaveFAB();
+            }
+        }
+    };
+
+    // opens the saved searches once per process; the first time, the searches saved in
+    // SharedPreferences by earlier versions of the app are moved into the store.
+    // Called on searchWriter, so it never blocks the UI thread
+    private SearchStore openSearches() {
+        if (searchStore != null)
+            return searchStore;
+
+        File file = new File(getFilesDir(), SEARCHES_FILE);
+        try {
+            if (file.exists()) {
+                searchStore = SearchStore.open(file, searchWriter);
+                if (searchStore.getBackup() != null) {
+                    Log.w(TAG, searchStore.getDamagedRegions() + " damaged parts of " + file +
+                            " skipped; kept as " + searchStore.getBackup());
+                    searchesNotice = getString(R.string.searches_damaged,
+                            searchStore.getBackup().getName());
+                }
+            } else {
+                SharedPreferences preferences = getSharedPreferences(SEARCHES, MODE_PRIVATE);
+                searchStore = SearchStore.create(file, preferences.getAll(), searchWriter);
+                preferences.edit().clear().commit(); // the searches are in file now
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to read saved searches", e);
+            // keep the unreadable file, and any earlier one, for inspection and start over
+            try {
+                if (file.exists()) // open may have moved it aside already
+                    searchesNotice = getString(R.string.searches_unreadable,
+                            SearchStore.moveAside(file).getName());
+            } catch (IOException move) {
+                throw new IllegalStateException("Unable to keep " + file, move);
+            }
+            try {
+                searchStore = SearchStore.create(file,
+                        Collections.<String, String>emptyMap(), searchWriter);
+            } catch (IOException retry) {
+                throw new IllegalStateException("Unable to create " + file, retry);
+            }
+        }
+        return searchStore;
     }
 
     // hide/show saveFloatingActionButton based on EditTexts' contents
@@ -90,10 +221,39 @@ public class MainActivity extends AppCompatActivity {
         }
     };
 
+    // filters the list after every keystroke in filterEditText
+    private final TextWatcher filterWatcher = new TextWatcher() {
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+            searchFilter.setFilter(s.toString());
+            if (!searchFilter.isActive())
+                adapter.showAll(); // the filter was cleared
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+
+        }
+    };
+
+    // shows the searches matching the filter, animating just the rows that changed
+    private final SearchFilter.Listener filterListener = new SearchFilter.Listener() {
+        @Override
+        public void onFiltered(SearchIndex.Result result, ListDiff diff) {
+            adapter.showFiltered(result, diff);
+        }
+    };
+
     // shows or hides the saveFloatingActionButton
     private void updateSaveFAB() {
-        // check if there is input in both EditTexts
-        if (queryEditText.getText().toString().isEmpty() || tagEditText.getText().toString().isEmpty()) {
+        // check if there is input in both EditTexts and the searches are loaded
+        if (!loaded || queryEditText.getText().toString().isEmpty() ||
+                tagEditText.getText().toString().isEmpty()) {
             saveFloatingActionButton.hide();
         } else {
             saveFloatingActionButton.show();
@@ -126,7 +286,7 @@ public class MainActivity extends AppCompatActivity {
             // get query string and create a URL representing the search
             String tag = ((TextView) v).getText().toString();
             String urlString = getString(R.string.search_URL) +
-                    Uri.encode(savedSearches.getString(tag, ""), "UTF-8");
+                    Uri.encode(query(tag), "UTF-8");
             // create an Intent to launch a web browser
             Intent webIntent = new Intent(Intent.ACTION_VIEW, Uri.parse(urlString));
             startActivity(webIntent); // show results in web browser
@@ -153,7 +313,7 @@ public class MainActivity extends AppCompatActivity {
                         case 1:
                             // set EditTexts to match chosen tag and query
                             tagEditText.setText(tag);
-                            queryEditText.setText(savedSearches.getString(tag, ""));
+                            queryEditText.setText(query(tag));
                             break;
                         case 2:
                             deleteSearch(tag);
@@ -175,22 +335,26 @@ public class MainActivity extends AppCompatActivity {
         confirmBuilder.setPositiveButton(getString(R.string.delete), new DialogInterface.OnClickListener() {
             @Override
             public void onClick(DialogInterface dialog, int which) {
-                tags.remove(tag); // remove tag from tags
-                SharedPreferences.Editor preferencesEditor = savedSearches.edit();
-                preferencesEditor.remove(tag); // remove search
-                preferencesEditor.apply(); // save the changes
-                // rebind tags to RecyclerView to show updated list
-                adapter.notifyDataSetChanged();
+                tags.delete(tag); // remove tag from tags
+                savedSearches.remove(tag); // remove search; appends one record to the log
+                searchFilter.remove(tag);  // and from the filter's index
+                // tags tells adapter, which animates just the deleted row away
             }
         });
         confirmBuilder.create().show();
     }
 
+    // the query saved under tag, or "" if it was deleted meanwhile
+    private String query(String tag) {
+        String query = savedSearches.get(tag);
+        return query != null ? query : "";
+    }
+
     // allow user to choose an app for sharing URL of a saved search
     private void shareSearch(String tag) {
         // create the URL representing the search
         String urlString = getString(R.string.search_URL) +
-                Uri.encode(savedSearches.getString(tag, ""), "UTF-8");
+                Uri.encode(query(tag), "UTF-8");
 
         // create Intent to share urlString
         Intent shareIntent = new Intent();
@@ -205,17 +369,14 @@ public class MainActivity extends AppCompatActivity {
 
     // add new search to file, then refresh all buttons
     private void addTaggedSearch(String tag, String query) {
-        // get a SharedPreferences.Editor to store new tag/query pair
-        SharedPreferences.Editor preferencesEditor = savedSearches.edit();
-        preferencesEditor.putString(tag, query);    // store current search
-        preferencesEditor.apply();                  // store the updated preferences
+        // store current search; appends one record to the log
+        boolean newTag = savedSearches.put(tag, query);
+        searchFilter.put(tag, query); // the query may match the filter now
 
-        // if tag is new, add to and sort tags, then display updated list
-        if (!tags.contains(tag)) {
-            tags.add(tag); // add new tag
-            Collections.sort(tags, String.CASE_INSENSITIVE_ORDER);
-            adapter.notifyDataSetChanged();         // update tags in RecyclerView
-        }
+        // if tag is new, insert it in sorted position; tags tells adapter, which
+        // binds and animates in just the new row
+        if (newTag)
+            tags.insert(tag); // add new tag
     }
 
     @Override
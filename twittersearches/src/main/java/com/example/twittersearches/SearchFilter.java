@@ -0,0 +1,141 @@
+package com.example.twittersearches;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Filters the saved searches as the user types. The SearchIndex lives on
+ * filterExecutor; each keystroke queues a filter there, and keystrokes that a newer
+ * one overtook while queued are skipped. Each result is diffed against the one before,
+ * so the list only animates the rows that came or went.
+ * <p>
+ * All methods must be called on one thread (the UI thread in the app); results are
+ * handed back through callbackExecutor.
+ */
+public class SearchFilter {
+    // notified on the callback thread with the matches of the current filter
+    public interface Listener {
+        /**
+         * @param result the matches, in tag order
+         * @param diff   the changes from the previous result, or null if the whole list
+         *               changed (the first result since the filter was empty, or the
+         *               index renumbered its ids)
+         */
+        void onFiltered(SearchIndex.Result result, ListDiff diff);
+    }
+
+    private final Executor filterExecutor;   // runs the SearchIndex
+    private final Executor callbackExecutor; // delivers results to the caller's thread
+    private final Listener listener;
+    private String filter = "";          // what the user typed
+    private int session;                 // incremented whenever filter stops being empty
+    private final AtomicInteger latest = new AtomicInteger(); // newest filter request
+
+    // used only on filterExecutor
+    private SearchIndex index;           // null until load's index is built
+    private SearchIndex.Result previous; // the last result delivered
+    private int previousSession = -1;
+    private int previousRebuilds;
+
+    public SearchFilter(Executor filterExecutor, Executor callbackExecutor, Listener listener) {
+        this.filterExecutor = filterExecutor;
+        this.callbackExecutor = callbackExecutor;
+        this.listener = listener;
+    }
+
+    /**
+     * builds the index on filterExecutor, then applies a filter typed meanwhile (e.g.
+     * restored with the activity's state); filters requested before are skipped
+     * @param sortedTags the tags in SearchStore.TAG_ORDER
+     * @param queries    queries.get(i) is the query of sortedTags.get(i)
+     */
+    public void load(final List<String> sortedTags, final List<String> queries) {
+        filterExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                index = new SearchIndex(sortedTags, queries);
+            }
+        });
+        refilter();
+    }
+
+    // adds a search or changes its query, then filters again
+    public void put(final String tag, final String query) {
+        filterExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (index != null) // else load's tags already include it
+                    index.put(tag, query);
+            }
+        });
+        refilter();
+    }
+
+    // deletes a search, then filters again
+    public void remove(final String tag) {
+        filterExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (index != null)
+                    index.remove(tag);
+            }
+        });
+        refilter();
+    }
+
+    // true while the user has typed something, so the list shows the matches
+    public boolean isActive() {
+        return !filter.isEmpty();
+    }
+
+    // called for every keystroke; an empty filter stops filtering
+    public void setFilter(String text) {
+        if (text.equals(filter))
+            return;
+        if (filter.isEmpty())
+            ++session; // the list shows every tag now; the next result replaces it
+        filter = text;
+        refilter();
+    }
+
+    private void refilter() {
+        if (filter.isEmpty())
+            return;
+        final int request = latest.incrementAndGet();
+        final int requestSession = session;
+        final String text = filter;
+        filterExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (request != latest.get())
+                    return; // the user typed on while this was queued
+                if (index == null)
+                    return; // not loaded yet; load filters again once it is
+
+                SearchIndex.Result result = index.filter(text);
+                ListDiff diff = null;
+                if (requestSession == previousSession && index.getRebuilds() == previousRebuilds)
+                    diff = ListDiff.between(previous.tags, result.tags);
+                previous = result;
+                previousSession = requestSession;
+                previousRebuilds = index.getRebuilds();
+                deliver(requestSession, result, diff);
+            }
+        });
+    }
+
+    // hands a result back to the caller's thread
+    private void deliver(final int resultSession, final SearchIndex.Result result,
+                         final ListDiff diff) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // results of a filter the user has since cleared are dropped; every
+                // other one is delivered, so each diff applies to the list shown
+                if (resultSession == session && isActive())
+                    listener.onFiltered(result, diff);
+            }
+        });
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.twittersearches;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Finds the saved searches whose tag or query contains a piece of text, ignoring case.
+ * <p>
+ * Every trigram (three consecutive case-folded characters) of a search's tag and query
+ * maps to a posting list of the ids of the searches containing it. A filter of three or
+ * more characters only checks the searches in the shortest posting list among its
+ * trigrams. When the user types on, the previous filter's matches are narrowed down
+ * instead, if there are fewer of them. Shorter filters scan every search.
+ * <p>
+ * Ids come from a SortedTags of the tags, so the matches can be put back in tag order.
+ * Deleted searches stay in the posting lists, marked by a null text, until more ids
+ * are spent than there are searches; then the index is rebuilt, which costs O(1) per
+ * edit on average.
+ * <p>
+ * Not thread safe; the app uses it from one background thread.
+ */
+public class SearchIndex {
+    private static final int MIN_REBUILD = 1024; // ids spent on deleted searches tolerated
+    private static final int SCAN_FRACTION = 16; // walk the tags if over 1/16th match
+
+    // the matches of a filter, in tag order
+    public static class Result {
+        public final String filter;
+        public final List<String> tags;
+        public final long[] ids; // the stable id of each tag, for RecyclerView
+
+        Result(String filter, List<String> tags, long[] ids) {
+            this.filter = filter;
+            this.tags = tags;
+            this.ids = ids;
+        }
+    }
+
+    // a growable list of ids, in increasing order
+    private static class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id)
+                return; // the trigram occurs twice in the search
+            if (size == ids.length)
+                ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+    }
+
+    private SortedTags sorted;       // the tags in order; their ids index the arrays below
+    private String[] tags;           // tags[id] is the tag with the id
+    private String[] texts;          // case-folded "tag\0query", or null once deleted
+    private HashMap<Long, Postings> postings;
+    private int idLimit;             // every id given out so far is below this
+    private int[] stamps;            // stamps[id] == stamp marks a match of this filter
+    private int stamp;
+    private int version;             // incremented by every edit and rebuild
+    private int rebuilds;            // times the ids were renumbered
+
+    // the last filter's matches, for narrowing them down as the user types on
+    private String lastKey;
+    private int[] lastIds;
+    private int lastVersion = -1;
+
+    /**
+     * @param sortedTags the tags in SearchStore.TAG_ORDER
+     * @param queries    queries[i] is the query of sortedTags.get(i)
+     */
+    public SearchIndex(List<String> sortedTags, List<String> queries) {
+        String[] texts = new String[sortedTags.size()];
+        for (int i = 0; i < texts.length; i++)
+            texts[i] = text(sortedTags.get(i), queries.get(i));
+        build(sortedTags, texts);
+    }
+
+    // what filters are matched against
+    private static String text(String tag, String query) {
+        return SortedTags.collationKey(tag) + '\0' + SortedTags.collationKey(query);
+    }
+
+    // texts[i] is the text of sortedTags.get(i)
+    private void build(List<String> sortedTags, String[] texts) {
+        sorted = new SortedTags(sortedTags); // ids 0 .. n - 1 in order
+        idLimit = sortedTags.size();
+        int capacity = Math.max(16, idLimit);
+        tags = Arrays.copyOf(sortedTags.toArray(new String[idLimit]), capacity);
+        this.texts = Arrays.copyOf(texts, capacity);
+        stamps = new int[capacity];
+        postings = new HashMap<>();
+        for (int id = 0; id < idLimit; id++)
+            index(id, texts[id]);
+        ++version;
+    }
+
+    private void index(int id, String text) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            long trigram = trigram(text, i);
+            Postings list = postings.get(trigram);
+            if (list == null) {
+                list = new Postings();
+                postings.put(trigram, list);
+            }
+            list.add(id);
+        }
+    }
+
+    private static long trigram(String text, int i) {
+        return (long) text.charAt(i) << 32 | (long) text.charAt(i + 1) << 16 | text.charAt(i + 2);
+    }
+
+    public int size() {
+        return sorted.size();
+    }
+
+    // adds a search or changes the query of an existing tag
+    public void put(String tag, String query) {
+        remove(tag);
+        int position = sorted.insert(tag);
+        int id = (int) sorted.getId(position);
+        if (id >= texts.length) {
+            tags = Arrays.copyOf(tags, texts.length * 2);
+            texts = Arrays.copyOf(texts, texts.length * 2);
+            stamps = Arrays.copyOf(stamps, texts.length);
+        }
+        idLimit = id + 1;
+        tags[id] = tag;
+        texts[id] = text(tag, query);
+        index(id, texts[id]);
+        ++version;
+        rebuildIfSparse();
+    }
+
+    public void remove(String tag) {
+        int position = sorted.indexOf(tag);
+        if (position < 0)
+            return;
+        texts[(int) sorted.getId(position)] = null; // its postings are skipped from now on
+        sorted.delete(tag);
+        ++version;
+    }
+
+    // renumbers the searches once more ids went to deleted ones than there are searches
+    private void rebuildIfSparse() {
+        if (idLimit < 2 * sorted.size() + MIN_REBUILD)
+            return;
+        List<String> liveTags = new ArrayList<>(sorted);
+        String[] liveTexts = new String[liveTags.size()];
+        for (int position = 0; position < liveTexts.length; position++)
+            liveTexts[position] = texts[(int) sorted.getId(position)];
+        build(liveTags, liveTexts);
+        ++rebuilds;
+    }
+
+    // the number of times the searches were renumbered; the ids in earlier Results
+    // are meaningless after that
+    public int getRebuilds() {
+        return rebuilds;
+    }
+
+    // the searches whose tag or query contains filter, ignoring case
+    public Result filter(String filter) {
+        String key = SortedTags.collationKey(filter);
+        if (++stamp == 0) { // wrapped around; old stamps could look like this filter's
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+
+        int[] candidates = null; // in tag order if ordered
+        int count;
+        boolean ordered = false;
+        if (lastVersion == version && key.contains(lastKey)) {
+            // the user typed on: only the last matches can still match
+            candidates = lastIds;
+            count = lastIds.length;
+            ordered = true;
+        } else {
+            count = idLimit;
+        }
+        if (key.length() >= 3) {
+            Postings shortest = shortestPostings(key);
+            if (shortest == null)
+                return remember(filter, key, new int[0]);
+            if (shortest.size < count) {
+                candidates = shortest.ids;
+                count = shortest.size;
+                ordered = false;
+            }
+        }
+
+        // check the candidates
+        int[] matches = new int[Math.min(count, sorted.size())];
+        int found = 0;
+        if (candidates == null) { // scan every search, in tag order
+            for (int position = 0; position < sorted.size(); position++) {
+                int id = (int) sorted.getId(position);
+                if (texts[id].contains(key))
+                    matches[found++] = id;
+            }
+            return remember(filter, key, Arrays.copyOf(matches, found));
+        }
+        for (int i = 0; i < count; i++) {
+            int id = candidates[i];
+            if (texts[id] != null && texts[id].contains(key)) {
+                matches[found++] = id;
+                stamps[id] = stamp;
+            }
+        }
+        if (ordered)
+            return remember(filter, key, Arrays.copyOf(matches, found));
+        return remember(filter, key, inTagOrder(matches, found));
+    }
+
+    // the posting list of key's rarest trigram, or null if some trigram occurs nowhere
+    private Postings shortestPostings(String key) {
+        Postings shortest = null;
+        for (int i = 0; i + 3 <= key.length(); i++) {
+            Postings list = postings.get(trigram(key, i));
+            if (list == null)
+                return null;
+            if (shortest == null || list.size < shortest.size)
+                shortest = list;
+        }
+        return shortest;
+    }
+
+    // sorts the stamped matches by their tag's position
+    private int[] inTagOrder(int[] matches, int found) {
+        int[] ordered = new int[found];
+        if (found * SCAN_FRACTION > sorted.size()) {
+            // many matches: walk the tags and pick out the stamped ones
+            int next = 0;
+            for (int position = 0; position < sorted.size() && next < found; position++) {
+                int id = (int) sorted.getId(position);
+                if (stamps[id] == stamp)
+                    ordered[next++] = id;
+            }
+        } else {
+            // few matches: look up each one's position and sort the positions
+            for (int i = 0; i < found; i++)
+                ordered[i] = sorted.indexOf(tags[matches[i]]);
+            Arrays.sort(ordered);
+            for (int i = 0; i < found; i++)
+                ordered[i] = (int) sorted.getId(ordered[i]);
+        }
+        return ordered;
+    }
+
+    private Result remember(String filter, String key, int[] ids) {
+        lastKey = key;
+        lastIds = ids;
+        lastVersion = version;
+        List<String> matches = new ArrayList<>(ids.length);
+        long[] stableIds = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            matches.add(tags[ids[i]]);
+            stableIds[i] = ids[i];
+        }
+        return new Result(filter, Collections.unmodifiableList(matches), stableIds);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.twittersearches;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Opens the saved searches off the UI thread and hands their tags back in pages, so
+ * the activity draws its first frame at once and binds the first screen of tags
+ * before the rest are added. The first page is small (about a screen of rows); the
+ * remaining pages are larger and each is delivered as a separate callback, so frames
+ * are drawn between them.
+ * <p>
+ * All methods must be called on one thread (the UI thread in the app); the store is
+ * opened on loadExecutor and pages are handed back through callbackExecutor.
+ */
+public class SearchLoader {
+    // opens the store, e.g. reading its log; called on loadExecutor
+    public interface Source {
+        SearchStore open();
+    }
+
+    // notified on the callback thread as the searches arrive
+    public interface Listener {
+        /**
+         * called once, before the first page
+         * @param sortedTags every tag in SearchStore.TAG_ORDER
+         * @param queries    queries.get(i) is the query of sortedTags.get(i)
+         */
+        void onOpened(SearchStore store, List<String> sortedTags, List<String> queries);
+
+        /**
+         * @param sortedPage the next tags in order, after those of the earlier pages
+         * @param last       true for the final page; it may be empty
+         */
+        void onPage(List<String> sortedPage, boolean last);
+    }
+
+    private final Source source;
+    private final int firstPageSize;         // tags in the first page
+    private final int pageSize;              // tags in each later page
+    private final Executor loadExecutor;     // runs Source.open
+    private final Executor callbackExecutor; // delivers results to the caller's thread
+    private Listener listener;
+    private boolean closed;                  // true once the caller went away
+
+    public SearchLoader(Source source, int firstPageSize, int pageSize,
+                        Executor loadExecutor, Executor callbackExecutor) {
+        if (firstPageSize < 1 || pageSize < 1)
+            throw new IllegalArgumentException("Pages must hold at least one tag");
+        this.source = source;
+        this.firstPageSize = firstPageSize;
+        this.pageSize = pageSize;
+        this.loadExecutor = loadExecutor;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // opens the store and starts delivering pages
+    public void start() {
+        loadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                SearchStore store = source.open();
+                // copied here, while only this thread uses the store
+                List<String> tags = store.getTags();
+                List<String> queries = store.getQueries();
+                deliverOpened(store, tags, queries);
+
+                int start = 0;
+                int size = firstPageSize;
+                do {
+                    int end = Math.min(tags.size(), start + size);
+                    deliverPage(tags.subList(start, end), end == tags.size());
+                    start = end;
+                    size = pageSize;
+                } while (start < tags.size());
+            }
+        });
+    }
+
+    // stops delivering pages, e.g. when the activity is destroyed
+    public void close() {
+        closed = true;
+    }
+
+    private void deliverOpened(final SearchStore store, final List<String> tags,
+                               final List<String> queries) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!closed && listener != null)
+                    listener.onOpened(store, tags, queries);
+            }
+        });
+    }
+
+    private void deliverPage(final List<String> page, final boolean last) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!closed && listener != null)
+                    listener.onPage(page, last);
+            }
+        });
+    }
+}
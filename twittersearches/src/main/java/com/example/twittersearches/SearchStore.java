@@ -0,0 +1,395 @@
+package com.example.twittersearches;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+
+/**
+ * The user's saved searches (tag to query), held in memory sorted by tag and stored as
+ * an append-only log. Adding, editing or deleting a search appends one small record
+ * instead of rewriting every search, as SharedPreferences does. Once the log holds more
+ * replaced and deleted records than live ones, it is rewritten with just the live
+ * searches, so compaction costs O(1) per edit on average.
+ * <p>
+ * File layout (big-endian):
+ * <pre>
+ * header (8 bytes)
+ *   int   MAGIC
+ *   int   VERSION
+ * records, appended in the order the edits were made
+ *   byte  PUT or DELETE
+ *   short length, followed by that many UTF-8 bytes of the tag
+ *   short length, followed by that many UTF-8 bytes of the query (PUT only)
+ *   int   CRC32 of the record's bytes before it
+ * </pre>
+ * A record cut off by the app being killed mid-write is dropped when the log is opened.
+ * A damaged record with readable ones after it is skipped instead, so the edits after
+ * it are kept; the damaged log is moved aside for inspection and replaced by the
+ * searches that could be read.
+ * <p>
+ * All methods must be called on one thread (the UI thread in the app); the file is
+ * written on writeExecutor, in the order of the edits.
+ */
+public class SearchStore {
+    public static final int MAGIC = 0x54575353; // "TWSS"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 8;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int MIN_COMPACT = 1024; // dead records tolerated in any log
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // tags in the order the list shows them: case-insensitive, ties broken by case so
+    // tags that differ only in case stay distinct searches
+    public static final Comparator<String> TAG_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(String first, String second) {
+            int order = String.CASE_INSENSITIVE_ORDER.compare(first, second);
+            return order != 0 ? order : first.compareTo(second);
+        }
+    };
+
+    private final File file;
+    private final Executor writeExecutor;
+    private final TreeMap<String, String> searches = new TreeMap<>(TAG_ORDER);
+    private int deadRecords;            // records in the log that a later one replaced
+    private int damagedRegions;         // unreadable stretches skipped by load
+    private File backup;                // where load moved a damaged log, or null
+    // used only on writeExecutor
+    private FileOutputStream output;
+    private volatile IOException error; // the last write failure, if any
+
+    private SearchStore(File file, Executor writeExecutor) {
+        this.file = file;
+        this.writeExecutor = writeExecutor;
+    }
+
+    /**
+     * read the searches from file, creating it if it doesn't exist
+     * @throws IOException if the file is not a search log or has another version
+     */
+    public static SearchStore open(File file, Executor writeExecutor) throws IOException {
+        if (!file.exists())
+            return create(file, new TreeMap<String, String>(), writeExecutor);
+        SearchStore store = new SearchStore(file, writeExecutor);
+        store.load();
+        return store;
+    }
+
+    /**
+     * create file holding searches, e.g. the ones saved in SharedPreferences before
+     * this store existed; the file is complete when this returns
+     * @param searches tags and their queries; values that aren't Strings are skipped
+     */
+    public static SearchStore create(File file, Map<String, ?> searches,
+                                     Executor writeExecutor) throws IOException {
+        SearchStore store = new SearchStore(file, writeExecutor);
+        for (Map.Entry<String, ?> search : searches.entrySet()) {
+            if (search.getValue() instanceof String)
+                store.searches.put(search.getKey(), (String) search.getValue());
+        }
+        store.rewrite(store.searches.keySet().toArray(new String[store.size()]),
+                store.searches.values().toArray(new String[store.size()]));
+        return store;
+    }
+
+    // replays the log into searches, skipping damaged records, and cuts off a partly
+    // written last record
+    private void load() throws IOException {
+        byte[] log = readFully(file);
+        ByteBuffer buffer = ByteBuffer.wrap(log);
+        if (log.length < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a search log");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported search log version " + buffer.getInt(4));
+
+        int records = 0;
+        int position = HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        while (position < log.length) {
+            if (!isRecord(log, buffer, position, crc)) {
+                int next = nextRecord(log, buffer, position + 1, crc);
+                if (next < 0)
+                    break; // nothing readable follows: the app was killed while appending
+                ++damagedRegions; // readable records follow, so keep going from there
+                position = next;
+                continue;
+            }
+
+            int end = recordEnd(buffer, position);
+            int tagLength = buffer.getShort(position + 1) & 0xFFFF;
+            String tag = new String(log, position + 3, tagLength, UTF8);
+            if (log[position] == PUT) {
+                int queryStart = position + 5 + tagLength;
+                int queryLength = buffer.getShort(queryStart - 2) & 0xFFFF;
+                searches.put(tag, new String(log, queryStart, queryLength, UTF8));
+            } else {
+                searches.remove(tag);
+            }
+            ++records;
+            position = end + 4;
+        }
+        deadRecords = records - searches.size();
+
+        if (damagedRegions > 0) {
+            // keep the damaged log as it is and start a clean one with what was read
+            backup = moveAside(file);
+            rewrite(searches.keySet().toArray(new String[searches.size()]),
+                    searches.values().toArray(new String[searches.size()]));
+            deadRecords = 0;
+        } else if (position < log.length) { // the app was killed while appending
+            RandomAccessFile truncate = new RandomAccessFile(file, "rw");
+            try {
+                truncate.setLength(position);
+            } finally {
+                truncate.close();
+            }
+        }
+    }
+
+    // true if a complete record with a matching CRC starts at position
+    private static boolean isRecord(byte[] log, ByteBuffer buffer, int position, CRC32 crc) {
+        int end = recordEnd(buffer, position);
+        if (end < 0)
+            return false;
+        crc.reset();
+        crc.update(log, position, end - position);
+        return (int) crc.getValue() == buffer.getInt(end);
+    }
+
+    // the first position from start on where a readable record starts, or -1
+    private static int nextRecord(byte[] log, ByteBuffer buffer, int start, CRC32 crc) {
+        for (int position = start; position < log.length; position++) {
+            if (isRecord(log, buffer, position, crc))
+                return position;
+        }
+        return -1;
+    }
+
+    // end of the record at position, not counting its CRC, or -1 if it's incomplete or
+    // not a record
+    private static int recordEnd(ByteBuffer buffer, int position) {
+        int limit = buffer.limit();
+        if (position + 3 > limit)
+            return -1;
+        byte type = buffer.get(position);
+        int end = position + 3 + (buffer.getShort(position + 1) & 0xFFFF);
+        if (type == PUT) {
+            if (end + 2 > limit)
+                return -1;
+            end += 2 + (buffer.getShort(end) & 0xFFFF);
+        } else if (type != DELETE) {
+            return -1;
+        }
+        return end + 4 <= limit ? end : -1;
+    }
+
+    /**
+     * renames file to the first of file.bad, file.bad2, file.bad3 ... that doesn't exist,
+     * so an earlier unreadable file is never overwritten
+     * @return the new name
+     */
+    public static File moveAside(File file) throws IOException {
+        File backup = new File(file.getPath() + ".bad");
+        for (int i = 2; backup.exists(); i++)
+            backup = new File(file.getPath() + ".bad" + i);
+        if (!file.renameTo(backup))
+            throw new IOException("Unable to move " + file + " to " + backup);
+        return backup;
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            int count = 0;
+            int read;
+            while (count < bytes.length &&
+                    (read = input.read(bytes, count, bytes.length - count)) != -1)
+                count += read;
+            return count == bytes.length ? bytes : Arrays.copyOf(bytes, count);
+        } finally {
+            input.close();
+        }
+    }
+
+    public int size() {
+        return searches.size();
+    }
+
+    public boolean contains(String tag) {
+        return searches.containsKey(tag);
+    }
+
+    // the query saved under tag, or null
+    public String get(String tag) {
+        return searches.get(tag);
+    }
+
+    // every tag, in TAG_ORDER
+    public List<String> getTags() {
+        return new ArrayList<>(searches.keySet());
+    }
+
+    // every query, in the order of their tags
+    public List<String> getQueries() {
+        return new ArrayList<>(searches.values());
+    }
+
+    /**
+     * add a search or change the query of an existing tag
+     * @return true if tag is new
+     */
+    public boolean put(String tag, String query) {
+        byte[] record = encode(PUT, tag, query);
+        String old = searches.put(tag, query);
+        if (old != null)
+            ++deadRecords;
+        append(record);
+        return old == null;
+    }
+
+    /**
+     * delete the search saved under tag
+     * @return true if there was one
+     */
+    public boolean remove(String tag) {
+        if (!searches.containsKey(tag))
+            return false;
+        searches.remove(tag);
+        deadRecords += 2; // the PUT and the DELETE record
+        append(encode(DELETE, tag, null));
+        return true;
+    }
+
+    // rewrite the log with just the live searches
+    public void compact() {
+        // snapshot the searches here; the writer encodes them while the caller goes on
+        final String[] tags = searches.keySet().toArray(new String[searches.size()]);
+        final String[] queries = searches.values().toArray(new String[searches.size()]);
+        deadRecords = 0;
+        writeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    rewrite(tags, queries);
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+        });
+    }
+
+    // number of records in the log that a later one replaced or deleted
+    public int getDeadRecords() {
+        return deadRecords;
+    }
+
+    // unreadable stretches of the log that open skipped; each held one or more records
+    public int getDamagedRegions() {
+        return damagedRegions;
+    }
+
+    // where open kept the damaged log, or null if it was read whole
+    public File getBackup() {
+        return backup;
+    }
+
+    // the last write failure, or null
+    public IOException getError() {
+        return error;
+    }
+
+    // closes the file once the pending writes are done
+    public void close() {
+        writeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (output != null)
+                        output.close();
+                    output = null;
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+        });
+    }
+
+    private void append(final byte[] record) {
+        final boolean compact = deadRecords >= MIN_COMPACT && deadRecords > searches.size();
+        writeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (output == null)
+                        output = new FileOutputStream(file, true);
+                    output.write(record);
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+        });
+        if (compact)
+            compact();
+    }
+
+    // replaces the log with one holding just these searches; readers never see a
+    // partially written file (runs on writeExecutor, or before the store is returned)
+    private void rewrite(String[] tags, String[] queries) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temporary), 65536));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (int i = 0; i < tags.length; i++)
+                out.write(encode(PUT, tags[i], queries[i]));
+        } finally {
+            out.close();
+        }
+
+        if (output != null) {
+            output.close();
+            output = null;
+        }
+        if (!temporary.renameTo(file))
+            throw new IOException("Unable to replace " + file);
+    }
+
+    // one record in the format described above
+    private static byte[] encode(byte type, String tag, String query) {
+        byte[] tagBytes = tag.getBytes(UTF8);
+        byte[] queryBytes = query != null ? query.getBytes(UTF8) : null;
+        if (tagBytes.length > 0xFFFF || (queryBytes != null && queryBytes.length > 0xFFFF))
+            throw new IllegalArgumentException("Search too long to store");
+
+        ByteBuffer record = ByteBuffer.allocate(
+                7 + tagBytes.length + (queryBytes != null ? 2 + queryBytes.length : 0));
+        record.put(type);
+        record.putShort((short) tagBytes.length);
+        record.put(tagBytes);
+        if (queryBytes != null) {
+            record.putShort((short) queryBytes.length);
+            record.put(queryBytes);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        return record.array();
+    }
+}
@@ -15,14 +15,78 @@ public class SearchesAdapter extends RecyclerView.Adapter<SearchesAdapter.ViewHo
     // listeners from MainActivity that are registered for each list item
     private final View.OnClickListener clickListener;
     private final View.OnLongClickListener longClickListener;
-    // List<String> used to obtain RecyclerView items' data
-    private final List<String> tags; // search tags
+    // SortedTags used to obtain RecyclerView items' data
+    private final SortedTags tags; // search tags
+    private List<String> shown;    // tags, or the ones matching the filter
+    private long[] shownIds;       // ids of the matching tags; null while showing all
+    private int rowsBound; // onBindViewHolder calls, for tests
 
-    public SearchesAdapter(List<String> tags, View.OnClickListener clickListener,
+    public SearchesAdapter(SortedTags tags, View.OnClickListener clickListener,
                            View.OnLongClickListener longClickListener) {
         this.tags = tags;
+        this.shown = tags;
         this.clickListener = clickListener;
         this.longClickListener = longClickListener;
+        // a tag keeps its ViewHolder when tags before it are added or deleted
+        setHasStableIds(true);
+        // update just the row an added or deleted tag affects
+        tags.setListener(tagsListener);
+    }
+
+    // updates the rows of added or deleted tags while all tags are shown
+    private final SortedTags.Listener tagsListener = new SortedTags.Listener() {
+        @Override
+        public void onInserted(int position, int count) {
+            if (shownIds == null)
+                notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            if (shownIds == null)
+                notifyItemRangeRemoved(position, count);
+        }
+    };
+
+    // updates the rows that one filter result adds to or removes from the last
+    private final SortedTags.Listener resultListener = new SortedTags.Listener() {
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(position, count);
+        }
+    };
+
+    // show every tag again, e.g. when the user clears the filter
+    public void showAll() {
+        if (shownIds == null)
+            return;
+        shown = tags;
+        shownIds = null;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * show the tags matching a filter
+     * @param diff the changes from the last result shown, or null to replace the list
+     */
+    public void showFiltered(SearchIndex.Result result, ListDiff diff) {
+        boolean showingAll = shownIds == null;
+        shown = result.tags;
+        shownIds = result.ids;
+        if (showingAll || diff == null)
+            notifyDataSetChanged();
+        else
+            diff.dispatch(resultListener);
+    }
+
+    // number of times onBindViewHolder was called since the adapter was created
+    public int getRowsBound() {
+        return rowsBound;
     }
 
     // sets up new list item and its ViewHolder
@@ -36,13 +100,19 @@ public class SearchesAdapter extends RecyclerView.Adapter<SearchesAdapter.ViewHo
     // sets the text of the list item to display the search tag
     @Override
     public void onBindViewHolder(SearchesAdapter.ViewHolder holder, int position) {
-        holder.textView.setText(tags.get(position));
+        ++rowsBound;
+        holder.textView.setText(shown.get(position));
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return shownIds == null ? tags.getId(position) : shownIds[position];
     }
 
     // returns the number of items that adapter binds
     @Override
     public int getItemCount() {
-        return tags.size();
+        return shown.size();
     }
 
     // nested subclass of RecyclerView.ViewHolder used to implement
@@ -0,0 +1,168 @@
+package com.example.twittersearches;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The saved tags in SearchStore.TAG_ORDER, as the RecyclerView shows them. Tags are
+ * found, inserted and removed with a binary search, so an edit costs O(log n)
+ * comparisons instead of a linear contains plus a sort of the whole list.
+ * <p>
+ * Each tag's collation key (the tag with every character case-folded the way
+ * String.CASE_INSENSITIVE_ORDER folds it) is computed once when the tag is added;
+ * comparing two keys with String.compareTo then gives the same order as
+ * CASE_INSENSITIVE_ORDER without folding each character on every comparison.
+ * <p>
+ * Every tag gets an id that stays the same while the tag is in the list, however its
+ * position changes, so a RecyclerView can keep each tag's ViewHolder.
+ */
+public class SortedTags extends AbstractList<String> implements RandomAccess {
+    // told which rows each edit affected, e.g. to update just those rows
+    public interface Listener {
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+    }
+
+    private final ArrayList<String> tags;
+    private final ArrayList<String> keys; // keys.get(i) is the collation key of tags.get(i)
+    private long[] ids;                   // ids[i] is the stable id of tags.get(i)
+    private long nextId;
+    private Listener listener;
+
+    // sortedTags must already be in TAG_ORDER, e.g. from SearchStore.getTags
+    public SortedTags(List<String> sortedTags) {
+        tags = new ArrayList<>(sortedTags);
+        keys = new ArrayList<>(sortedTags.size());
+        ids = new long[Math.max(16, sortedTags.size())];
+        for (String tag : sortedTags) {
+            ids[keys.size()] = nextId++;
+            keys.add(collationKey(tag));
+        }
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public static String collationKey(String tag) {
+        char[] chars = null; // only copied if a character changes
+        for (int i = 0; i < tag.length(); i++) {
+            char c = tag.charAt(i);
+            char folded = Character.toLowerCase(Character.toUpperCase(c));
+            if (folded != c) {
+                if (chars == null)
+                    chars = tag.toCharArray();
+                chars[i] = folded;
+            }
+        }
+        return chars != null ? new String(chars) : tag;
+    }
+
+    @Override
+    public String get(int position) {
+        return tags.get(position);
+    }
+
+    // the tag's id, unique among the tags added to this list
+    public long getId(int position) {
+        if (position >= tags.size())
+            throw new IndexOutOfBoundsException("position " + position);
+        return ids[position];
+    }
+
+    @Override
+    public int size() {
+        return tags.size();
+    }
+
+    // position of tag, or -(insertion point) - 1 if it isn't in the list
+    private int search(String tag, String key) {
+        int low = 0;
+        int high = tags.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int order = keys.get(middle).compareTo(key);
+            if (order == 0) // the same but for case
+                order = tags.get(middle).compareTo(tag);
+            if (order < 0)
+                low = middle + 1;
+            else if (order > 0)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -(low + 1);
+    }
+
+    @Override
+    public int indexOf(Object tag) {
+        if (!(tag instanceof String))
+            return -1;
+        int position = search((String) tag, collationKey((String) tag));
+        return position >= 0 ? position : -1;
+    }
+
+    @Override
+    public boolean contains(Object tag) {
+        return indexOf(tag) >= 0;
+    }
+
+    /**
+     * add tag in its sorted position
+     * @return the position, or -1 if tag was already in the list
+     */
+    public int insert(String tag) {
+        String key = collationKey(tag);
+        int position = search(tag, key);
+        if (position >= 0)
+            return -1;
+        position = -(position + 1);
+        if (tags.size() == ids.length)
+            ids = Arrays.copyOf(ids, ids.length * 2);
+        System.arraycopy(ids, position, ids, position + 1, tags.size() - position);
+        ids[position] = nextId++;
+        tags.add(position, tag);
+        keys.add(position, key);
+        if (listener != null)
+            listener.onInserted(position, 1);
+        return position;
+    }
+
+    /**
+     * add a page of tags after the last one, e.g. while the saved searches load
+     * @param sortedPage tags in TAG_ORDER that all sort after the tags in the list
+     */
+    public void append(List<String> sortedPage) {
+        int position = tags.size();
+        if (position + sortedPage.size() > ids.length)
+            ids = Arrays.copyOf(ids, Math.max(ids.length * 2, position + sortedPage.size()));
+        tags.addAll(sortedPage);
+        keys.ensureCapacity(tags.size());
+        for (String tag : sortedPage) {
+            ids[keys.size()] = nextId++;
+            keys.add(collationKey(tag));
+        }
+        if (listener != null && !sortedPage.isEmpty())
+            listener.onInserted(position, sortedPage.size());
+    }
+
+    /**
+     * remove tag
+     * @return the position it had, or -1 if it wasn't in the list
+     */
+    public int delete(String tag) {
+        int position = indexOf(tag);
+        if (position >= 0) {
+            System.arraycopy(ids, position + 1, ids, position, tags.size() - position - 1);
+            tags.remove(position);
+            keys.remove(position);
+            if (listener != null)
+                listener.onRemoved(position, 1);
+        }
+        return position;
+    }
+}
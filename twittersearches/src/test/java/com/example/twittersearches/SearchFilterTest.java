@@ -0,0 +1,305 @@
+package com.example.twittersearches;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for filtering saved searches as the user types, and a benchmark of
+ * keystroke-to-result time with 100,000 searches.
+ */
+public class SearchFilterTest {
+    private static final int SEARCHES = 100000;
+    private static final long FRAME_NANOS = 16000000; // one frame at 60 fps
+
+    // runs queued work only when the test says so, like a background thread finishing later
+    private static class QueueExecutor implements Executor {
+        final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            queue.add(command);
+        }
+
+        void runAll() {
+            while (!queue.isEmpty())
+                queue.poll().run();
+        }
+    }
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    // a list that applies diffs the way RecyclerView applies notifications
+    private static class ShownList implements SortedTags.Listener, SearchFilter.Listener {
+        final List<String> rows = new ArrayList<>();
+        List<String> target; // the rows the last diff inserts come from
+        int results;
+        int replaced;        // results that replaced the whole list
+
+        @Override
+        public void onInserted(int position, int count) {
+            for (int i = position; i < position + count; i++)
+                rows.add(i, target.get(i));
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            for (int i = 0; i < count; i++)
+                rows.remove(position);
+        }
+
+        @Override
+        public void onFiltered(SearchIndex.Result result, ListDiff diff) {
+            ++results;
+            target = result.tags;
+            if (diff == null) {
+                ++replaced;
+                rows.clear();
+                rows.addAll(result.tags);
+            } else {
+                diff.dispatch(this);
+            }
+            assertEquals(result.tags, rows);
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        String letters = "abcdeABC #:_";
+        StringBuilder text = new StringBuilder();
+        for (int k = 0; k < length; k++)
+            text.append(letters.charAt(random.nextInt(letters.length())));
+        return text.toString();
+    }
+
+    // the tags of searches whose tag or query contains filter, ignoring case
+    private static List<String> bruteForce(TreeMap<String, String> searches, String filter) {
+        String key = SortedTags.collationKey(filter);
+        List<String> matches = new ArrayList<>();
+        for (String tag : searches.keySet()) {
+            if (SortedTags.collationKey(tag).contains(key) ||
+                    SortedTags.collationKey(searches.get(tag)).contains(key))
+                matches.add(tag);
+        }
+        return matches;
+    }
+
+    private static SearchIndex index(TreeMap<String, String> searches) {
+        return new SearchIndex(new ArrayList<>(searches.keySet()),
+                new ArrayList<>(searches.values()));
+    }
+
+    @Test
+    public void filter_matchesTagsAndQueriesIgnoringCase() {
+        TreeMap<String, String> searches = new TreeMap<>(SearchStore.TAG_ORDER);
+        searches.put("Deitel", "from:deitel");
+        searches.put("Google", "from:google #android");
+        searches.put("android", "#AndroidDev");
+        searches.put("Java", "#java");
+        SearchIndex index = index(searches);
+
+        assertEquals(Arrays.asList("android", "Google"), index.filter("ANDROID").tags);
+        assertEquals(Arrays.asList("Deitel", "Google"), index.filter("from:").tags);
+        assertEquals(Arrays.asList("android", "Deitel", "Google", "Java"),
+                index.filter("").tags);
+        assertEquals(Arrays.asList("Java"), index.filter("av").tags);
+        assertTrue(index.filter("kotlin").tags.isEmpty());
+        assertTrue(index.filter("deitelfrom").tags.isEmpty()); // not across tag and query
+    }
+
+    @Test
+    public void filter_agreesWithBruteForceThroughEdits() {
+        Random random = new Random(4);
+        TreeMap<String, String> searches = new TreeMap<>(SearchStore.TAG_ORDER);
+        for (int i = 0; i < 500; i++)
+            searches.put(randomText(random, 1 + random.nextInt(6)), randomText(random, 8));
+        SearchIndex index = index(searches);
+
+        for (int step = 0; step < 10000; step++) {
+            int action = random.nextInt(10);
+            if (action < 3) {
+                String tag = randomText(random, 1 + random.nextInt(6));
+                String query = randomText(random, random.nextInt(10));
+                searches.put(tag, query);
+                index.put(tag, query);
+            } else if (action < 5 && !searches.isEmpty()) {
+                String tag = new ArrayList<>(searches.keySet()).get(random.nextInt(searches.size()));
+                searches.remove(tag);
+                index.remove(tag);
+            } else {
+                // type a filter one character at a time, as narrowing reuses the last result
+                String filter = randomText(random, 1 + random.nextInt(5));
+                for (int end = 1; end <= filter.length(); end++) {
+                    String typed = filter.substring(0, end);
+                    assertEquals(typed, bruteForce(searches, typed), index.filter(typed).tags);
+                }
+            }
+            assertEquals(searches.size(), index.size());
+        }
+        assertTrue("never rebuilt", index.getRebuilds() > 0);
+    }
+
+    @Test
+    public void listDiff_turnsOneListIntoTheOther() {
+        Random random = new Random(6);
+        List<String> all = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+            all.add(randomText(random, 6));
+        Collections.sort(all, SearchStore.TAG_ORDER);
+
+        for (int trial = 0; trial < 500; trial++) {
+            List<String> from = new ArrayList<>();
+            List<String> to = new ArrayList<>();
+            for (String tag : all) {
+                if (random.nextInt(3) > 0)
+                    from.add(tag);
+                if (random.nextInt(3) > 0)
+                    to.add(tag);
+            }
+            ShownList shown = new ShownList();
+            shown.rows.addAll(from);
+            shown.target = to;
+            ListDiff diff = ListDiff.between(from, to);
+            diff.dispatch(shown);
+            assertEquals(to, shown.rows);
+        }
+
+        // one run of adjacent rows is one range
+        List<String> from = all.subList(0, 10);
+        assertEquals(1, ListDiff.between(from, all.subList(0, 4)).getRangeCount());
+        assertEquals(1, ListDiff.between(from, all.subList(0, 16)).getRangeCount());
+        assertTrue(ListDiff.between(from, new ArrayList<>(from)).isEmpty());
+    }
+
+    @Test
+    public void keystrokes_areCoalescedAndDiffedIntoTheList() {
+        TreeMap<String, String> searches = new TreeMap<>(SearchStore.TAG_ORDER);
+        for (int i = 0; i < 300; i++)
+            searches.put("Tag " + i, i % 2 == 0 ? "#android " + i : "#java " + i);
+        QueueExecutor background = new QueueExecutor();
+        QueueExecutor ui = new QueueExecutor();
+        ShownList shown = new ShownList();
+        SearchFilter filter = new SearchFilter(background, ui, shown);
+        filter.load(new ArrayList<>(searches.keySet()), new ArrayList<>(searches.values()));
+
+        // three quick keystrokes: only the last one is filtered
+        filter.setFilter("t");
+        filter.setFilter("ta");
+        filter.setFilter("tag 1");
+        background.runAll();
+        ui.runAll();
+        assertEquals(1, shown.results);
+        assertEquals(1, shown.replaced); // the first result replaces the full list
+        assertEquals(bruteForce(searches, "tag 1"), shown.rows);
+
+        // typing on and adding a search are diffed into the shown rows
+        filter.setFilter("tag 12");
+        background.runAll();
+        ui.runAll();
+        searches.put("Tag 1299", "#kotlin");
+        filter.put("Tag 1299", "#kotlin");
+        filter.remove("Tag 12");
+        searches.remove("Tag 12");
+        background.runAll();
+        ui.runAll();
+        assertEquals(1, shown.replaced);
+        assertEquals(bruteForce(searches, "tag 12"), shown.rows);
+
+        // a result that arrives after the filter was cleared is dropped
+        filter.setFilter("java");
+        filter.setFilter("");
+        background.runAll();
+        ui.runAll();
+        assertFalse(filter.isActive());
+        int results = shown.results;
+
+        // filtering again starts over with a full replacement
+        filter.setFilter("android");
+        background.runAll();
+        ui.runAll();
+        assertEquals(results + 1, shown.results);
+        assertEquals(2, shown.replaced);
+        assertEquals(bruteForce(searches, "android"), shown.rows);
+    }
+
+    @Test
+    public void filterSetBeforeLoad_isAppliedOnceLoaded() {
+        TreeMap<String, String> searches = new TreeMap<>(SearchStore.TAG_ORDER);
+        for (int i = 0; i < 30; i++)
+            searches.put("Tag " + i, "#android " + i);
+        ShownList shown = new ShownList();
+        SearchFilter filter = new SearchFilter(DIRECT, DIRECT, shown);
+
+        // the text restored with the activity's state, before the store has loaded
+        filter.setFilter("tag 2");
+        assertTrue(filter.isActive());
+        assertEquals(0, shown.results);
+
+        filter.load(new ArrayList<>(searches.keySet()), new ArrayList<>(searches.values()));
+        assertEquals(1, shown.results);
+        assertEquals(bruteForce(searches, "tag 2"), shown.rows);
+    }
+
+    @Test
+    public void benchmark_keystrokesWith100kSearches() {
+        Random random = new Random(8);
+        String[] words = {"android", "java", "kotlin", "deitel", "google", "news", "sports",
+                "music", "science", "weather"};
+        TreeMap<String, String> searches = new TreeMap<>(SearchStore.TAG_ORDER);
+        for (int i = 0; searches.size() < SEARCHES; i++) {
+            String word = words[random.nextInt(words.length)];
+            searches.put(word + " " + i, "from:user" + random.nextInt(SEARCHES) + " #" +
+                    words[random.nextInt(words.length)]);
+        }
+        List<String> tags = new ArrayList<>(searches.keySet());
+        List<String> queries = new ArrayList<>(searches.values());
+
+        long start = System.nanoTime();
+        SearchIndex index = new SearchIndex(tags, queries);
+        long buildNanos = System.nanoTime() - start;
+
+        // type, correct a typo and type on, then clear and type something else
+        String[] keystrokes = {"s", "sp", "spo", "spor", "sport", "sports", "sports ",
+                "sports 1", "sports 12", "sports 1", "sports 13", "sports 137",
+                "f", "fr", "fro", "from", "from:", "from:u", "from:us", "from:use", "from:user",
+                "from:user4", "from:user42", "from:user421",
+                "#", "#k", "#ko", "#kot", "#kotl"};
+        long worstNanos = 0;
+        long totalNanos = 0;
+        int measured = 0;
+        for (int run = 0; run < 3; run++) { // the first runs warm up the JIT
+            SearchIndex.Result previous = index.filter("");
+            for (String keystroke : keystrokes) {
+                start = System.nanoTime();
+                SearchIndex.Result result = index.filter(keystroke);
+                ListDiff.between(previous.tags, result.tags);
+                long nanos = System.nanoTime() - start;
+                previous = result;
+                if (run == 2) {
+                    worstNanos = Math.max(worstNanos, nanos);
+                    totalNanos += nanos;
+                    ++measured;
+                }
+            }
+        }
+        assertEquals(bruteForce(searches, "from:user421"), index.filter("from:user421").tags);
+
+        System.out.printf("SearchIndex (%d searches): built in %.0f ms; keystroke to diffed " +
+                        "result %.2f ms on average, %.2f ms at worst%n",
+                SEARCHES, buildNanos / 1e6, totalNanos / 1e6 / measured, worstNanos / 1e6);
+        assertTrue("slower than a frame: " + worstNanos / 1e6 + " ms", worstNanos < FRAME_NANOS);
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.twittersearches;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for loading the saved searches off the UI thread, and a cold-start
+ * benchmark with 20,000 searches against reading and sorting them in onCreate.
+ */
+public class SearchLoaderTest {
+    private static final int SEARCHES = 20000;
+    private static final int VISIBLE_ROWS = 12;
+    private static final long FRAME_NANOS = 16000000; // one frame at 60 fps
+    private File file;
+
+    // runs queued work only when the test says so, like a Handler's message queue
+    private static class QueueExecutor implements Executor {
+        final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            queue.add(command);
+        }
+
+        boolean runOne() {
+            Runnable command = queue.poll();
+            if (command == null)
+                return false;
+            command.run();
+            return true;
+        }
+
+        void runAll() {
+            while (runOne()) {
+            }
+        }
+    }
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    // what MainActivity does with the callbacks, with a list that binds the rows on screen
+    private static class FakeActivity implements SearchLoader.Listener, SortedTags.Listener {
+        final SortedTags tags = new SortedTags(Collections.<String>emptyList());
+        SearchStore store;
+        List<String> indexedTags;
+        int pages;
+        int rowsBound;
+        long firstRowBoundNanos; // System.nanoTime() when a row was first bound
+        boolean loaded;
+
+        FakeActivity() {
+            tags.setListener(this);
+        }
+
+        @Override
+        public void onOpened(SearchStore store, List<String> sortedTags,
+                             List<String> queries) {
+            assertEquals(0, pages);
+            this.store = store;
+            indexedTags = sortedTags;
+            assertEquals(sortedTags.size(), queries.size());
+        }
+
+        @Override
+        public void onPage(List<String> sortedPage, boolean last) {
+            assertNotNull("pages before onOpened", store);
+            assertFalse("pages after the last", loaded);
+            ++pages;
+            tags.append(sortedPage);
+            loaded = last;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            for (int i = position; i < position + count && i < VISIBLE_ROWS; i++) {
+                if (rowsBound++ == 0)
+                    firstRowBoundNanos = System.nanoTime();
+            }
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+        }
+    }
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("searches", ".log");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    private SearchLoader.Source source(final int searches) throws IOException {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < searches; i++)
+            map.put("Tag " + i, "from:user" + i + " #android");
+        SearchStore.create(file, map, DIRECT).close();
+        return new SearchLoader.Source() {
+            @Override
+            public SearchStore open() {
+                try {
+                    return SearchStore.open(file, DIRECT);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    @Test
+    public void pages_arriveInOrderFirstPageFirst() throws IOException {
+        QueueExecutor background = new QueueExecutor();
+        QueueExecutor ui = new QueueExecutor();
+        SearchLoader loader = new SearchLoader(source(1050), 50, 400, background, ui);
+        FakeActivity activity = new FakeActivity();
+        loader.setListener(activity);
+        loader.start();
+        assertTrue(ui.queue.isEmpty()); // nothing is read on the UI thread
+
+        background.runAll();
+        ui.runOne(); // onOpened
+        ui.runOne(); // the first page, before any other
+        assertEquals(50, activity.tags.size());
+        assertEquals(VISIBLE_ROWS, activity.rowsBound);
+        assertFalse(activity.loaded);
+
+        ui.runAll();
+        assertTrue(activity.loaded);
+        assertEquals(4, activity.pages); // 50 + 400 + 400 + 200
+        assertEquals(activity.store.getTags(), activity.tags);
+        assertEquals(activity.store.getTags(), activity.indexedTags);
+        assertEquals(VISIBLE_ROWS, activity.rowsBound); // later pages are off screen
+    }
+
+    @Test
+    public void noSearches_giveOneEmptyLastPage() throws IOException {
+        SearchLoader loader = new SearchLoader(source(0), 50, 400, DIRECT, DIRECT);
+        FakeActivity activity = new FakeActivity();
+        loader.setListener(activity);
+        loader.start();
+        assertTrue(activity.loaded);
+        assertEquals(1, activity.pages);
+        assertTrue(activity.tags.isEmpty());
+    }
+
+    @Test
+    public void close_dropsPagesOnTheirWay() throws IOException {
+        QueueExecutor ui = new QueueExecutor();
+        SearchLoader loader = new SearchLoader(source(1000), 50, 100, DIRECT, ui);
+        FakeActivity activity = new FakeActivity();
+        loader.setListener(activity);
+        loader.start();
+        ui.runOne();
+        ui.runOne();
+        loader.close(); // the activity was destroyed
+        ui.runAll();
+        assertEquals(1, activity.pages);
+        assertEquals(50, activity.tags.size());
+    }
+
+    // what onCreate did on the UI thread: read every search, then copy and sort the tags
+    private static long synchronousStartNanos(SearchLoader.Source source) {
+        long start = System.nanoTime();
+        SearchStore store = source.open();
+        List<String> sortedTags = new ArrayList<>(store.getTags());
+        Collections.sort(sortedTags, String.CASE_INSENSITIVE_ORDER);
+        SortedTags tags = new SortedTags(sortedTags);
+        store.getQueries(); // for the filter's index
+        assertEquals(SEARCHES, tags.size());
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void benchmark_coldStartWith20kSearches() throws Exception {
+        SearchLoader.Source source = source(SEARCHES);
+        long baselineNanos = synchronousStartNanos(source); // the first, coldest start
+
+        ExecutorService background = Executors.newSingleThreadExecutor();
+        try {
+            // the UI thread's message queue, drained by this thread
+            final LinkedBlockingQueue<Runnable> messages = new LinkedBlockingQueue<>();
+            Executor ui = new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    messages.add(command);
+                }
+            };
+
+            long createNanos = 0;     // onCreate's share: starting the loader
+            long firstRowNanos = 0;   // until the first screen of rows was bound
+            long longestNanos = 0;    // the longest any callback held the UI thread
+            long loadedNanos = 0;     // until every tag was in the list
+            for (int run = 0; run < 3; run++) { // later runs are warm, like a second launch
+                FakeActivity activity = new FakeActivity();
+                long start = System.nanoTime();
+                SearchLoader loader = new SearchLoader(source, 50, 1000, background, ui);
+                loader.setListener(activity);
+                loader.start();
+                long created = System.nanoTime() - start;
+
+                long longest = 0;
+                while (!activity.loaded) {
+                    Runnable message = messages.poll(10, TimeUnit.SECONDS);
+                    assertNotNull("no page arrived", message);
+                    long begin = System.nanoTime();
+                    message.run();
+                    longest = Math.max(longest, System.nanoTime() - begin);
+                }
+                long loaded = System.nanoTime() - start;
+                assertEquals(SEARCHES, activity.tags.size());
+                assertEquals(VISIBLE_ROWS, activity.rowsBound);
+                assertTrue(activity.pages > 2);
+
+                if (run == 0) { // cold, like the baseline
+                    createNanos = created;
+                    firstRowNanos = activity.firstRowBoundNanos - start;
+                    longestNanos = longest;
+                    loadedNanos = loaded;
+                }
+            }
+
+            System.out.printf("SearchLoader (%d searches, cold): onCreate blocked %.2f ms " +
+                            "vs %.1f ms reading and sorting in onCreate; first rows bound " +
+                            "after %.1f ms, all loaded after %.1f ms; longest UI callback " +
+                            "%.2f ms%n",
+                    SEARCHES, createNanos / 1e6, baselineNanos / 1e6, firstRowNanos / 1e6,
+                    loadedNanos / 1e6, longestNanos / 1e6);
+            assertTrue("first rows bound after the last page", firstRowNanos < loadedNanos);
+            assertTrue("onCreate still blocks", createNanos * 10 < baselineNanos);
+            assertTrue("a page held the UI thread over a frame", longestNanos < FRAME_NANOS);
+        } finally {
+            background.shutdown();
+        }
+    }
+}
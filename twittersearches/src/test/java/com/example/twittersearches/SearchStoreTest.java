@@ -0,0 +1,320 @@
+package com.example.twittersearches;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the saved-search log, and a benchmark of edits with 100,000
+ * searches against rewriting them all, as SharedPreferences does on every apply.
+ */
+public class SearchStoreTest {
+    private static final int SEARCHES = 100000;
+    private File file;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("searches", ".log");
+        file.delete(); // the store creates it
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+        new File(file.getPath() + ".tmp").delete();
+    }
+
+    private static Map<String, String> searches(int count) {
+        Map<String, String> searches = new HashMap<>();
+        for (int i = 0; i < count; i++)
+            searches.put("Tag " + i, "from:user" + i + " #android");
+        return searches;
+    }
+
+    @Test
+    public void edits_surviveReopening() throws IOException {
+        SearchStore store = SearchStore.open(file, DIRECT);
+        assertTrue(store.put("deitel", "from:deitel"));
+        assertTrue(store.put("Android", "#android"));
+        assertTrue(store.put("apple", "#apple"));
+        assertFalse(store.put("deitel", "from:deitel #java")); // edited, not new
+        assertTrue(store.put("zeta", "zeta"));
+        assertTrue(store.remove("zeta"));
+        assertFalse(store.remove("zeta"));
+        store.close();
+        assertNull(store.getError());
+
+        SearchStore reopened = SearchStore.open(file, DIRECT);
+        assertEquals(Arrays.asList("Android", "apple", "deitel"), reopened.getTags());
+        assertEquals("from:deitel #java", reopened.get("deitel"));
+        assertNull(reopened.get("zeta"));
+        assertEquals(3, reopened.getDeadRecords()); // deitel's first PUT, zeta's PUT and DELETE
+    }
+
+    @Test
+    public void tagOrder_ignoresCaseButKeepsTagsDistinct() throws IOException {
+        SearchStore store = SearchStore.open(file, DIRECT);
+        store.put("b", "2");
+        store.put("A", "1");
+        store.put("a", "one");
+        store.put("B", "two");
+        assertEquals(Arrays.asList("A", "a", "B", "b"), store.getTags());
+        assertEquals("1", store.get("A"));
+        assertEquals("one", store.get("a"));
+    }
+
+    @Test
+    public void create_migratesStringsOnly() throws IOException {
+        Map<String, Object> preferences = new HashMap<>();
+        preferences.put("Deitel", "from:deitel");
+        preferences.put("Google", "from:google");
+        preferences.put("count", 3); // not a search
+        SearchStore store = SearchStore.create(file, preferences, DIRECT);
+        assertEquals(Arrays.asList("Deitel", "Google"), store.getTags());
+        store.close();
+
+        SearchStore reopened = SearchStore.open(file, DIRECT);
+        assertEquals("from:google", reopened.get("Google"));
+        assertEquals(0, reopened.getDeadRecords());
+    }
+
+    @Test
+    public void editsWith100kSearches_growFileByOneRecord() throws IOException {
+        SearchStore store = SearchStore.create(file, searches(SEARCHES), DIRECT);
+        long length = file.length();
+        store.put("new tag", "new query");
+        long putRecord = file.length() - length;
+        assertEquals(1 + 2 + 7 + 2 + 9 + 4, putRecord);
+        store.remove("Tag 5");
+        assertEquals(1 + 2 + 5 + 4, file.length() - length - putRecord);
+        store.close();
+    }
+
+    @Test
+    public void partlyWrittenRecord_isDropped() throws IOException {
+        SearchStore store = SearchStore.open(file, DIRECT);
+        store.put("kept", "query");
+        long complete = file.length();
+        store.put("torn", "query");
+        store.close();
+
+        // the app was killed in the middle of the last record
+        RandomAccessFile log = new RandomAccessFile(file, "rw");
+        log.setLength(file.length() - 3);
+        log.close();
+
+        SearchStore reopened = SearchStore.open(file, DIRECT);
+        assertEquals(Arrays.asList("kept"), reopened.getTags());
+        assertEquals(complete, file.length()); // the torn record is cut off
+        reopened.put("next", "query");          // and later records are readable
+        reopened.close();
+        assertEquals(Arrays.asList("kept", "next"), SearchStore.open(file, DIRECT).getTags());
+    }
+
+    @Test
+    public void corruptRecord_endsTheLog() throws IOException {
+        SearchStore store = SearchStore.open(file, DIRECT);
+        store.put("first", "query");
+        long second = file.length();
+        store.put("second", "query");
+        store.close();
+
+        RandomAccessFile log = new RandomAccessFile(file, "rw");
+        log.seek(second + 4);
+        log.write('X'); // flip a byte of the second tag
+        log.close();
+
+        assertEquals(Arrays.asList("first"), SearchStore.open(file, DIRECT).getTags());
+    }
+
+    @Test
+    public void corruptMiddleRecord_keepsTheLaterEdits() throws IOException {
+        SearchStore store = SearchStore.open(file, DIRECT);
+        store.put("first", "query");
+        long second = file.length();
+        store.put("second", "query");
+        store.put("third", "query");
+        store.remove("first");
+        store.close();
+
+        RandomAccessFile log = new RandomAccessFile(file, "rw");
+        log.seek(second + 1);
+        log.write(0x7F); // break the second record's tag length, with later edits after it
+        log.close();
+        byte[] damaged = Files.readAllBytes(file.toPath());
+
+        SearchStore reopened = SearchStore.open(file, DIRECT);
+        // the second search is lost; the edits after it are not
+        assertEquals(Arrays.asList("third"), reopened.getTags());
+        assertEquals(1, reopened.getDamagedRegions());
+        assertEquals(new File(file.getPath() + ".bad"), reopened.getBackup());
+        try {
+            assertArrayEquals(damaged, Files.readAllBytes(reopened.getBackup().toPath()));
+
+            // the log was replaced by the searches that could be read
+            reopened.put("fourth", "query");
+            reopened.close();
+            SearchStore again = SearchStore.open(file, DIRECT);
+            assertEquals(Arrays.asList("fourth", "third"), again.getTags());
+            assertEquals(0, again.getDamagedRegions());
+            assertNull(again.getBackup());
+        } finally {
+            reopened.getBackup().delete();
+        }
+    }
+
+    @Test
+    public void moveAside_neverOverwritesAnEarlierBackup() throws IOException {
+        File first = new File(file.getPath() + ".bad");
+        File second = new File(file.getPath() + ".bad2");
+        try {
+            Files.write(file.toPath(), new byte[]{1});
+            assertEquals(first, SearchStore.moveAside(file));
+            Files.write(file.toPath(), new byte[]{2});
+            assertEquals(second, SearchStore.moveAside(file));
+            assertFalse(file.exists());
+            assertArrayEquals(new byte[]{1}, Files.readAllBytes(first.toPath()));
+            assertArrayEquals(new byte[]{2}, Files.readAllBytes(second.toPath()));
+        } finally {
+            first.delete();
+            second.delete();
+        }
+    }
+
+    @Test
+    public void zerosAfterTheLastRecord_areDropped() throws IOException {
+        SearchStore store = SearchStore.open(file, DIRECT);
+        store.put("kept", "query");
+        long complete = file.length();
+        store.close();
+
+        // the file grew but the appended record never reached the disk
+        RandomAccessFile log = new RandomAccessFile(file, "rw");
+        log.setLength(complete + 20);
+        log.close();
+
+        assertEquals(Arrays.asList("kept"), SearchStore.open(file, DIRECT).getTags());
+        assertEquals(complete, file.length());
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFile_isRejected() throws IOException {
+        FileOutputStream output = new FileOutputStream(file);
+        output.write("<?xml version='1.0' encoding='utf-8'?>".getBytes("UTF-8"));
+        output.close();
+        SearchStore.open(file, DIRECT);
+    }
+
+    @Test
+    public void deadRecords_triggerCompaction() throws IOException {
+        SearchStore store = SearchStore.open(file, DIRECT);
+        for (int i = 0; i < 10; i++)
+            store.put("tag " + i, "query");
+        long compacted = file.length();
+        for (int i = 0; i < 5000; i++)
+            store.put("tag " + (i % 10), "query " + i);
+        // rewritten whenever the replaced records outnumbered the live ones
+        assertTrue(store.getDeadRecords() <= 1024);
+        assertTrue("log length " + file.length(), file.length() < compacted + 1100 * 30);
+        store.close();
+
+        SearchStore reopened = SearchStore.open(file, DIRECT);
+        assertEquals(10, reopened.size());
+        assertEquals("query 4999", reopened.get("tag 9"));
+        assertEquals("query 4990", reopened.get("tag 0"));
+    }
+
+    // what SharedPreferencesImpl does on every apply: write the whole map as XML
+    private static void writePreferences(File file, Map<String, String> searches)
+            throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), "UTF-8"), 8192);
+        try {
+            out.write("<?xml version='1.0' encoding='utf-8' standalone='yes' ?>\n<map>\n");
+            for (Map.Entry<String, String> search : searches.entrySet()) {
+                out.write("    <string name=\"");
+                out.write(search.getKey());
+                out.write("\">");
+                out.write(search.getValue());
+                out.write("</string>\n");
+            }
+            out.write("</map>\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    @Test
+    public void benchmark_editsWith100kSearches() throws IOException {
+        Map<String, String> searches = searches(SEARCHES);
+        File preferences = File.createTempFile("searches", ".xml");
+        try {
+            // baseline: a few edits, each rewriting every search
+            int baselineEdits = 10;
+            TreeMap<String, String> map = new TreeMap<>(searches);
+            writePreferences(preferences, map); // warm up
+            long start = System.nanoTime();
+            for (int i = 0; i < baselineEdits; i++) {
+                map.put("new " + i, "query " + i);
+                writePreferences(preferences, map);
+            }
+            long baselineNanos = (System.nanoTime() - start) / baselineEdits;
+            long xmlLength = preferences.length();
+
+            SearchStore store = SearchStore.create(file, searches, DIRECT);
+            start = System.nanoTime();
+            SearchStore.open(file, DIRECT); // what app startup pays
+            long openNanos = System.nanoTime() - start;
+
+            int edits = 20000;
+            long length = file.length();
+            for (int run = 0; run < 2; run++) { // first run warms up the JIT
+                length = file.length();
+                start = System.nanoTime();
+                for (int i = 0; i < edits; i++) {
+                    if (i % 2 == 0)
+                        store.put("new " + i, "from:user" + i);
+                    else
+                        store.remove("new " + (i - 1));
+                }
+            }
+            long storeNanos = (System.nanoTime() - start) / edits;
+            long growth = (file.length() - length) / edits;
+            store.close();
+            assertNull(store.getError());
+
+            System.out.printf("SearchStore (%d searches): %.1f us per edit appending " +
+                            "%d bytes vs %.1f ms rewriting %d KB of XML; log read in %.0f ms%n",
+                    SEARCHES, storeNanos / 1e3, growth, baselineNanos / 1e6, xmlLength / 1024,
+                    openNanos / 1e6);
+            assertTrue("edits not sub-millisecond", storeNanos < 1000000);
+            assertTrue("log slower than rewriting", storeNanos * 100 < baselineNanos);
+            assertTrue("log grows too much", growth < 64);
+        } finally {
+            preferences.delete();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.twittersearches;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the sorted tag list and the row updates it reports, and a
+ * benchmark that adds 50,000 tags one by one against the contains and sort
+ * addTaggedSearch used to do.
+ */
+public class SortedTagsTest {
+    private static final int TAGS = 50000;
+
+    // the rows a RecyclerView shows, bound the way it binds them for each notification
+    private static class FakeRecyclerView implements SortedTags.Listener {
+        final SortedTags tags;
+        final int visibleRows;
+        final List<Long> rowIds = new ArrayList<>(); // ids of the ViewHolders on screen
+        int rowsBound;
+
+        FakeRecyclerView(SortedTags tags, int visibleRows) {
+            this.tags = tags;
+            this.visibleRows = visibleRows;
+            tags.setListener(this);
+            notifyDataSetChanged();
+        }
+
+        // what addTaggedSearch and deleteSearch used to call: every row is bound again
+        void notifyDataSetChanged() {
+            rowIds.clear();
+            for (int position = 0; position < Math.min(visibleRows, tags.size()); position++)
+                bind(position);
+        }
+
+        private void bind(int position) {
+            ++rowsBound;
+            rowIds.add(position, tags.getId(position));
+        }
+
+        // new rows are bound; the rows below them move down without being bound
+        @Override
+        public void onInserted(int position, int count) {
+            for (int i = position; i < position + count && i < visibleRows; i++) {
+                bind(i);
+                if (rowIds.size() > visibleRows)
+                    rowIds.remove(visibleRows); // scrolled off the bottom
+            }
+        }
+
+        // the rows below move up; the ones scrolling in at the bottom are bound
+        @Override
+        public void onRemoved(int position, int count) {
+            for (int i = 0; i < count && position < rowIds.size(); i++) {
+                rowIds.remove(position);
+                if (tags.size() >= visibleRows)
+                    bind(visibleRows - 1);
+            }
+        }
+    }
+
+    @Test
+    public void addingOneTag_notifiesOneRow() {
+        SortedTags tags = new SortedTags(Arrays.asList("apple", "cherry", "date", "fig",
+                "grape", "kiwi", "lemon", "mango"));
+        FakeRecyclerView list = new FakeRecyclerView(tags, 6);
+        List<Long> before = new ArrayList<>(list.rowIds);
+        list.rowsBound = 0;
+
+        assertEquals(1, tags.insert("banana"));
+        assertEquals(1, list.rowsBound);
+        // the other rows kept their ids, so RecyclerView just moves their ViewHolders
+        assertEquals(before.subList(0, 1), list.rowIds.subList(0, 1));
+        assertEquals(before.subList(1, 5), list.rowIds.subList(2, 6));
+        for (int position = 0; position < 6; position++)
+            assertEquals(tags.getId(position), (long) list.rowIds.get(position));
+
+        list.rowsBound = 0;
+        assertEquals(-1, tags.insert("banana")); // an edited query changes no row
+        assertEquals(0, list.rowsBound);
+
+        assertEquals(3, tags.delete("date"));
+        assertEquals(1, list.rowsBound); // just the row scrolling in at the bottom
+        for (int position = 0; position < 6; position++)
+            assertEquals(tags.getId(position), (long) list.rowIds.get(position));
+
+        list.rowsBound = 0;
+        list.notifyDataSetChanged();
+        assertEquals(6, list.rowsBound); // what every edit cost before
+    }
+
+    @Test
+    public void ids_areStableAndUnique() {
+        SortedTags tags = new SortedTags(Arrays.asList("b", "d"));
+        long b = tags.getId(0);
+        long d = tags.getId(1);
+        tags.insert("a");
+        tags.insert("c");
+        tags.insert("e");
+        assertEquals(b, tags.getId(tags.indexOf("b")));
+        assertEquals(d, tags.getId(tags.indexOf("d")));
+        tags.delete("b");
+        assertEquals(d, tags.getId(tags.indexOf("d")));
+        tags.insert("b"); // added again: a new row
+        assertNotEquals(b, tags.getId(tags.indexOf("b")));
+
+        Set<Long> ids = new HashSet<>();
+        for (int position = 0; position < tags.size(); position++)
+            assertTrue(ids.add(tags.getId(position)));
+    }
+
+    // tags in random order, with mixed case, accents and case-only duplicates
+    private static List<String> randomTags(int count, long seed) {
+        Random random = new Random(seed);
+        String letters = "abcXYZéÉıIß_ 0";
+        List<String> tags = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder tag = new StringBuilder();
+            int length = 1 + random.nextInt(8);
+            for (int k = 0; k < length; k++)
+                tag.append(letters.charAt(random.nextInt(letters.length())));
+            tags.add(tag.toString());
+        }
+        return tags;
+    }
+
+    @Test
+    public void collationKeys_orderLikeCaseInsensitiveOrder() {
+        List<String> tags = randomTags(2000, 1);
+        for (int i = 1; i < tags.size(); i++) {
+            String first = tags.get(i - 1);
+            String second = tags.get(i);
+            assertEquals(first + " / " + second,
+                    Integer.signum(String.CASE_INSENSITIVE_ORDER.compare(first, second)),
+                    Integer.signum(SortedTags.collationKey(first).compareTo(
+                            SortedTags.collationKey(second))));
+        }
+        String lower = "deitel";
+        assertSame(lower, SortedTags.collationKey(lower)); // not copied
+    }
+
+    @Test
+    public void insertAndDelete_keepTagOrder() {
+        List<String> expected = new ArrayList<>();
+        SortedTags tags = new SortedTags(Collections.<String>emptyList());
+        for (String tag : randomTags(3000, 2)) {
+            int position = tags.insert(tag);
+            if (expected.contains(tag)) {
+                assertEquals(-1, position);
+            } else {
+                expected.add(tag);
+                Collections.sort(expected, SearchStore.TAG_ORDER);
+                assertEquals(expected.indexOf(tag), position);
+            }
+        }
+        assertEquals(expected, tags);
+
+        for (String tag : randomTags(1000, 2)) {
+            int position = expected.indexOf(tag);
+            assertEquals(position, tags.delete(tag));
+            if (position >= 0)
+                expected.remove(position);
+        }
+        assertEquals(expected, tags);
+        assertEquals(-1, tags.delete("not a tag"));
+    }
+
+    @Test
+    public void caseOnlyDifferences_areDistinctTags() {
+        SortedTags tags = new SortedTags(Arrays.asList("A", "b"));
+        assertEquals(1, tags.insert("a"));
+        assertEquals(2, tags.insert("B"));
+        assertEquals(Arrays.asList("A", "a", "B", "b"), tags);
+        assertEquals(-1, tags.insert("B"));
+        assertEquals(2, tags.indexOf("B"));
+        assertFalse(tags.contains("c"));
+    }
+
+    @Test
+    public void benchmark_insert50kTags() {
+        List<String> newTags = new ArrayList<>();
+        for (int i = 0; i < TAGS; i++)
+            newTags.add((i % 2 == 0 ? "Tag " : "tag ") + (i * 7919L % TAGS));
+
+        // as addTaggedSearch used to: linear contains, then sort the whole list; this
+        // takes close to a minute for all the tags, so only the first fifth are added
+        List<String> old = new ArrayList<>();
+        long start = System.nanoTime();
+        for (String tag : newTags.subList(0, TAGS / 5)) {
+            if (!old.contains(tag)) {
+                old.add(tag);
+                Collections.sort(old, SearchStore.TAG_ORDER);
+            }
+        }
+        long oldNanos = System.nanoTime() - start;
+
+        SortedTags tags = null;
+        long newNanos = 0;
+        for (int run = 0; run < 2; run++) { // first run warms up the JIT
+            tags = new SortedTags(Collections.<String>emptyList());
+            start = System.nanoTime();
+            for (String tag : newTags)
+                tags.insert(tag);
+            newNanos = System.nanoTime() - start;
+        }
+
+        assertEquals(TAGS, tags.size());
+        for (int i = 1; i < TAGS; i++)
+            assertTrue(SearchStore.TAG_ORDER.compare(tags.get(i - 1), tags.get(i)) < 0);
+        assertTrue(tags.containsAll(old));
+        System.out.printf("SortedTags: %d tags added one by one with contains and sort in " +
+                "%.0f ms vs %d with binary search in %.1f ms (%.2f us per tag)%n",
+                old.size(), oldNanos / 1e6, TAGS, newNanos / 1e6, newNanos / 1e3 / TAGS);
+        // all the tags with binary search beat a fifth of them the old way
+        assertTrue("binary search slower", newNanos * 5 < oldNanos);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.weatherviewer;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Switching the temperature unit must re-render the stored forecast without any
+ * network traffic and touch only the rows on screen.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UnitToggleInstrumentedTest {
+    private static final int DAYS = 16;
+
+    private ListView listView;
+    private WeatherArrayAdapter adapter;
+
+    // waits until the icon downloads started by earlier getView calls have finished
+    private static void drainIconTasks() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void unitToggle_rebindsVisibleRowsWithoutNetwork() throws Exception {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        final List<Weather> forecast = new ArrayList<>();
+        for (int i = 0; i < DAYS; i++)
+            forecast.add(new Weather(1486137600L + i * 86400L, 273.15 + i, 283.15 + i, 50,
+                    "sky is clear", "01d"));
+
+        // lay out a ListView too short to show the whole forecast
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                listView = new ListView(context);
+                adapter = new WeatherArrayAdapter(context, forecast);
+                adapter.setTemperatureUnit(TemperatureUnit.FAHRENHEIT, null);
+                listView.setAdapter(adapter);
+                int height = context.getResources().getDimensionPixelSize(
+                        R.dimen.image_side_length) * 4;
+                listView.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+                listView.layout(0, 0, 1080, height);
+            }
+        });
+        drainIconTasks();
+
+        final int viewsBefore = adapter.getViewsCreated();
+        final String metricsBefore = WeatherMetrics.getInstance().toText();
+        final int[] rebound = new int[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                rebound[0] = adapter.setTemperatureUnit(TemperatureUnit.CELSIUS, listView);
+            }
+        });
+        drainIconTasks();
+
+        int visibleRows = listView.getChildCount();
+        assertTrue(visibleRows > 0 && visibleRows < DAYS);
+        assertEquals(visibleRows, rebound[0]);              // only the rows on screen
+        assertEquals(viewsBefore, adapter.getViewsCreated()); // no getView, so no icon loads
+        // no forecast or icon was requested or counted
+        assertEquals(metricsBefore, WeatherMetrics.getInstance().toText());
+
+        TextView low = (TextView) listView.getChildAt(0).findViewById(R.id.lowTextView);
+        assertEquals(context.getString(R.string.low_temp, "0°C"), low.getText().toString());
+    }
+}
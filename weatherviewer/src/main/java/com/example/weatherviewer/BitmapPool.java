@@ -0,0 +1,51 @@
+package com.example.weatherviewer;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * Keeps a few spare Bitmaps per size and config so that equally sized weather
+ * condition icons can be decoded into existing memory (BitmapFactory.Options.inBitmap)
+ * instead of allocating a new Bitmap for every download.
+ */
+public class BitmapPool {
+    private final int maxPerSize; // spare Bitmaps kept for each width/height/config
+    // spare Bitmaps keyed by width, height and config
+    private final HashMap<String, ArrayDeque<Bitmap>> pool = new HashMap<>();
+
+    public BitmapPool(int maxPerSize) {
+        this.maxPerSize = maxPerSize;
+    }
+
+    // returns a reusable Bitmap of exactly this size and config or null if none is available
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        ArrayDeque<Bitmap> spares = pool.get(key(width, height, config));
+        return (spares == null) ? null : spares.poll();
+    }
+
+    // offers a Bitmap that is no longer displayed for later reuse
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable())
+            return; // only mutable Bitmaps can be decoded into
+
+        String key = key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        ArrayDeque<Bitmap> spares = pool.get(key);
+        if (spares == null) {
+            spares = new ArrayDeque<>();
+            pool.put(key, spares);
+        }
+        if (spares.size() < maxPerSize)
+            spares.offer(bitmap);
+    }
+
+    // empties the pool, e.g. when the system is low on memory
+    public synchronized void clear() {
+        pool.clear();
+    }
+
+    private static String key(int width, int height, Bitmap.Config config) {
+        return width + "x" + height + ":" + config;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.weatherviewer;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Prefix index over a sorted list of city names, read directly from a (memory-mapped)
+ * ByteBuffer so that the list never has to be decoded into Strings up front.
+ * <p>
+ * File layout (big-endian):
+ * <pre>
+ * int    MAGIC
+ * int    VERSION
+ * int    count                  number of cities
+ * int[]  offsets[count + 1]     start of each name in the name block; the last
+ *                               entry is the end of the block
+ * byte[] names                  UTF-8 names sorted by {@link #compareFolded}
+ * </pre>
+ * The asset is built from weatherviewer/cities.txt (one city per line) with
+ * {@code java com.example.weatherviewer.CityIndex cities.txt src/main/assets/cities.idx}.
+ */
+public class CityIndex {
+    public static final int MAGIC = 0x43495459; // "CITY"
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer; // the whole index file
+    private final int count;         // number of cities
+    private final int namesStart;    // position of the name block within buffer
+
+    public CityIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a city index");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported city index version " + buffer.getInt(4));
+        count = buffer.getInt(8);
+        namesStart = HEADER_SIZE + (count + 1) * 4;
+        if (count < 0 || namesStart > buffer.limit() || nameEnd(count - 1) > buffer.limit())
+            throw new IOException("Truncated city index");
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * find the cities whose names start with prefix, ignoring ASCII case
+     * @param prefix what the user typed so far
+     * @param limit  maximum number of suggestions to return
+     * @return matching names in index order
+     */
+    public List<String> lookup(String prefix, int limit) {
+        List<String> matches = new ArrayList<>();
+        byte[] key = prefix.trim().getBytes(UTF8);
+        if (key.length == 0)
+            return matches;
+
+        // binary search for the first name that is not less than the prefix
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparePrefix(middle, key) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        // all names starting with the prefix follow it contiguously
+        for (int i = low; i < count && matches.size() < limit && comparePrefix(i, key) == 0; i++)
+            matches.add(name(i));
+        return matches;
+    }
+
+    // decodes the ith name
+    public String name(int i) {
+        int start = nameStart(i);
+        byte[] bytes = new byte[nameEnd(i) - start];
+        for (int k = 0; k < bytes.length; k++)
+            bytes[k] = buffer.get(start + k);
+        return new String(bytes, UTF8);
+    }
+
+    // compares the ith name, cut to the prefix's length, with the prefix
+    private int comparePrefix(int i, byte[] key) {
+        int start = nameStart(i);
+        int length = nameEnd(i) - start;
+        for (int k = 0; k < key.length; k++) {
+            if (k == length)
+                return -1; // name is a proper prefix of key
+            int difference = fold(buffer.get(start + k)) - fold(key[k]);
+            if (difference != 0)
+                return difference;
+        }
+        return 0;
+    }
+
+    private int nameStart(int i) {
+        return namesStart + buffer.getInt(HEADER_SIZE + i * 4);
+    }
+
+    private int nameEnd(int i) {
+        return namesStart + buffer.getInt(HEADER_SIZE + (i + 1) * 4);
+    }
+
+    // unsigned byte value with ASCII letters folded to lower case
+    private static int fold(byte b) {
+        int value = b & 0xFF;
+        return (value >= 'A' && value <= 'Z') ? value + ('a' - 'A') : value;
+    }
+
+    // the order the index is sorted in: UTF-8 bytes compared with ASCII case folded
+    public static int compareFolded(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int k = 0; k < length; k++) {
+            int difference = fold(a[k]) - fold(b[k]);
+            if (difference != 0)
+                return difference;
+        }
+        return a.length - b.length;
+    }
+
+    // writes names (duplicates removed) as a city index
+    public static void write(Collection<String> names, OutputStream outputStream) throws IOException {
+        List<byte[]> encoded = new ArrayList<>(names.size());
+        for (String name : new TreeSet<>(names)) {
+            String trimmed = name.trim();
+            if (!trimmed.isEmpty())
+                encoded.add(trimmed.getBytes(UTF8));
+        }
+        Collections.sort(encoded, new Comparator<byte[]>() {
+            @Override
+            public int compare(byte[] a, byte[] b) {
+                return compareFolded(a, b);
+            }
+        });
+
+        DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(encoded.size());
+        int offset = 0;
+        for (byte[] name : encoded) {
+            output.writeInt(offset);
+            offset += name.length;
+        }
+        output.writeInt(offset); // end of the last name
+        for (byte[] name : encoded)
+            output.write(name);
+        output.flush();
+    }
+
+    // builds the bundled asset: args[0] is a text file with one city per line, args[1] the index
+    public static void main(String[] args) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(args[0]), UTF8))) {
+            String line;
+            while ((line = reader.readLine()) != null)
+                names.add(line);
+        }
+        try (OutputStream output = new FileOutputStream(args[1])) {
+            write(names, output);
+        }
+    }
+}
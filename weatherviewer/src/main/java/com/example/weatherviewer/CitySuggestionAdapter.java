@@ -0,0 +1,101 @@
+package com.example.weatherviewer;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.support.annotation.NonNull;
+import android.util.Log;
+import android.widget.ArrayAdapter;
+import android.widget.Filter;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Supplies locationEditText's suggestions from the bundled city index. The index is
+ * memory-mapped the first time the user types and every lookup runs on the Filter's
+ * worker thread; a keystroke cancels any lookup that has not started yet, so a
+ * burst of typing costs one lookup for the latest text.
+ */
+public class CitySuggestionAdapter extends ArrayAdapter<String> {
+    // String used when logging error messages
+    private static final String TAG = "CitySuggestionAdapter";
+    private static final String INDEX_ASSET = "cities.idx"; // stored uncompressed, see build.gradle
+    private static final int MAX_SUGGESTIONS = 8;
+
+    private final List<String> suggestions = new ArrayList<>(); // currently displayed cities
+    private CityIndex cityIndex;   // loaded lazily on the Filter's worker thread
+    private boolean indexMissing;  // true if the index could not be loaded
+
+    public CitySuggestionAdapter(Context context) {
+        super(context, android.R.layout.simple_dropdown_item_1line);
+    }
+
+    @Override
+    public int getCount() {
+        return suggestions.size();
+    }
+
+    @Override
+    public String getItem(int position) {
+        return suggestions.get(position);
+    }
+
+    @NonNull
+    @Override
+    public Filter getFilter() {
+        return cityFilter;
+    }
+
+    // memory-maps the bundled index; called only from the Filter's worker thread
+    private CityIndex getCityIndex() {
+        if (cityIndex == null && !indexMissing) {
+            try {
+                AssetFileDescriptor descriptor = getContext().getAssets().openFd(INDEX_ASSET);
+                FileInputStream stream = new FileInputStream(descriptor.getFileDescriptor());
+                try {
+                    MappedByteBuffer buffer = stream.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                            descriptor.getStartOffset(), descriptor.getLength());
+                    cityIndex = new CityIndex(buffer); // mapping stays valid after close
+                } finally {
+                    stream.close();
+                    descriptor.close();
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Error loading " + INDEX_ASSET, e);
+                indexMissing = true; // fall back to free text entry
+            }
+        }
+        return cityIndex;
+    }
+
+    // looks up cities on a worker thread and publishes them on the UI thread
+    private final Filter cityFilter = new Filter() {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            FilterResults results = new FilterResults();
+            CityIndex index = getCityIndex();
+            List<String> matches = (constraint == null || index == null) ?
+                    new ArrayList<String>() : index.lookup(constraint.toString(), MAX_SUGGESTIONS);
+            results.values = matches;
+            results.count = matches.size();
+            return results;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            suggestions.clear();
+            if (results.values != null)
+                suggestions.addAll((List<String>) results.values);
+
+            if (results.count > 0)
+                notifyDataSetChanged();
+            else
+                notifyDataSetInvalidated();
+        }
+    };
+}
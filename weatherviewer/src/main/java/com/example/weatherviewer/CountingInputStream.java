@@ -0,0 +1,44 @@
+package com.example.weatherviewer;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * InputStream that counts the bytes read through it, used to measure how much
+ * data a forecast or icon download transferred.
+ */
+public class CountingInputStream extends FilterInputStream {
+    private long count; // bytes read so far
+
+    public CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int result = super.read();
+        if (result != -1)
+            ++count;
+        return result;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int result = super.read(buffer, offset, length);
+        if (result > 0)
+            count += result;
+        return result;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count += skipped;
+        return skipped;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
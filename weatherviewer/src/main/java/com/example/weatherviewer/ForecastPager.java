@@ -0,0 +1,226 @@
+package com.example.weatherviewer;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads a long forecast (e.g. 3-hour steps over several days) in fixed-size pages as
+ * the user scrolls. Only maxPages pages are kept; the ones farthest from the visible
+ * rows are dropped first and reloaded if the user scrolls back. This bounds memory
+ * only for a source whose pages are separate downloads; pages that are views of one
+ * download (see HourlyPageSource) keep that download in memory whatever is evicted. The page after the
+ * visible rows is requested before the user reaches it.
+ * <p>
+ * All methods must be called on one thread (the UI thread in the app); pages are
+ * downloaded on loadExecutor and handed back through callbackExecutor.
+ */
+public class ForecastPager {
+    // supplies one page of forecast entries
+    public interface PageSource {
+        /**
+         * @param page     zero-based page number
+         * @param pageSize entries per page
+         * @return the page's entries; fewer than pageSize entries marks the last page
+         */
+        Page loadPage(int page, int pageSize) throws IOException;
+    }
+
+    // a page's entries: size entries of record from start on. The record may hold
+    // other pages' entries too, so a source can hand out views of one download
+    public static class Page {
+        public final ForecastRecord record;
+        public final int start;
+        public final int size;
+
+        public Page(ForecastRecord record, int start, int size) {
+            this.record = record;
+            this.start = start;
+            this.size = size;
+        }
+    }
+
+    // notified on the callback thread when pages arrive or fail
+    public interface Listener {
+        void onPageLoaded(int page);
+
+        void onPageFailed(int page, IOException exception);
+    }
+
+    private final PageSource source;
+    private final int pageSize;          // entries per page
+    private final int maxPages;          // pages kept in memory at most
+    private final int prefetchDistance;  // entries below the last visible row to have ready
+    private final Executor loadExecutor;     // runs PageSource.loadPage
+    private final Executor callbackExecutor; // delivers results to the caller's thread
+    private Listener listener;
+
+    private final Map<Integer, Page> pages = new HashMap<>(); // pages in memory
+    private final Set<Integer> loading = new HashSet<>(); // pages being downloaded
+    // pages whose download failed; not requested again until retry, so rows binding
+    // their placeholders don't start a download each
+    private final Set<Integer> failed = new HashSet<>();
+    private int count;              // entries known to exist so far
+    private boolean endReached;     // true once a short page has been loaded
+    private int firstVisible;       // visible range reported by the list
+    private int lastVisible;
+    private boolean closed;         // true once the pager has been replaced
+    private int pagesLoaded;        // total page loads, including reloads of evicted pages
+
+    public ForecastPager(PageSource source, int pageSize, int maxPages, int prefetchDistance,
+                         Executor loadExecutor, Executor callbackExecutor) {
+        if (maxPages < 2)
+            throw new IllegalArgumentException("Need room for the visible and the next page");
+        this.source = source;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.prefetchDistance = prefetchDistance;
+        this.loadExecutor = loadExecutor;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // loads the first page
+    public void start() {
+        onVisibleRangeChanged(0, 0);
+    }
+
+    // requests the pages that failed again, e.g. when the user asks to retry
+    public void retry() {
+        failed.clear();
+        onVisibleRangeChanged(firstVisible, lastVisible);
+    }
+
+    // stops delivering results, e.g. when the user asks for another location
+    public void close() {
+        closed = true;
+        pages.clear();
+    }
+
+    // number of entries the list should show
+    public int getCount() {
+        return count;
+    }
+
+    public boolean isEndReached() {
+        return endReached;
+    }
+
+    // the record holding position, or null if its page is not in memory (it is
+    // requested then, unless its download failed; see retry)
+    public ForecastRecord getPage(int position) {
+        int page = position / pageSize;
+        Page loaded = pages.get(page);
+        if (loaded == null) {
+            load(page);
+            return null;
+        }
+        return loaded.record;
+    }
+
+    // index of position within the record getPage returned for it
+    public int getOffset(int position) {
+        Page loaded = pages.get(position / pageSize);
+        return (loaded != null ? loaded.start : 0) + position % pageSize;
+    }
+
+    public int getPagesInMemory() {
+        return pages.size();
+    }
+
+    public int getPagesLoaded() {
+        return pagesLoaded;
+    }
+
+    /**
+     * called by the list whenever it scrolls; loads the visible pages and the next page
+     * ahead of the scroll position and drops the pages farthest away
+     */
+    public void onVisibleRangeChanged(int first, int last) {
+        firstVisible = first;
+        lastVisible = Math.max(first, last);
+
+        for (int page = firstVisible / pageSize; page <= lastVisible / pageSize; page++)
+            load(page);
+        // prefetch so the rows below the visible ones are ready before they scroll in
+        load((lastVisible + prefetchDistance) / pageSize);
+        evict();
+    }
+
+    // starts downloading page unless it is in memory, on its way, failed or past the end
+    private void load(final int page) {
+        if (closed || pages.containsKey(page) || loading.contains(page) ||
+                failed.contains(page) || (endReached && page * pageSize >= count))
+            return;
+
+        loading.add(page);
+        loadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Page loaded = null;
+                IOException error = null;
+                try {
+                    loaded = source.loadPage(page, pageSize);
+                } catch (IOException e) {
+                    error = e;
+                }
+                deliver(page, loaded, error);
+            }
+        });
+    }
+
+    // hands a finished download back to the caller's thread
+    private void deliver(final int page, final Page loaded, final IOException error) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                loading.remove(page);
+                if (closed)
+                    return; // the user has moved on to another forecast
+
+                if (error != null) {
+                    failed.add(page);
+                    if (listener != null)
+                        listener.onPageFailed(page, error);
+                    return;
+                }
+
+                ++pagesLoaded;
+                pages.put(page, loaded);
+                count = Math.max(count, page * pageSize + loaded.size);
+                if (loaded.size < pageSize) {
+                    endReached = true;
+                    count = page * pageSize + loaded.size;
+                }
+                evict();
+                if (listener != null)
+                    listener.onPageLoaded(page);
+            }
+        });
+    }
+
+    // drops the pages farthest from the visible rows until at most maxPages remain
+    private void evict() {
+        int firstPage = firstVisible / pageSize;
+        int lastPage = (lastVisible + prefetchDistance) / pageSize;
+        while (pages.size() > maxPages) {
+            int farthest = -1;
+            int farthestDistance = -1;
+            for (int page : pages.keySet()) {
+                int distance = page < firstPage ? firstPage - page :
+                        page > lastPage ? page - lastPage : 0;
+                if (distance > farthestDistance) {
+                    farthest = page;
+                    farthestDistance = distance;
+                }
+            }
+            pages.remove(farthest);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.weatherviewer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A downloaded forecast kept as primitive arrays, plus its compact binary on-disk form.
+ * <p>
+ * File layout (big-endian):
+ * <pre>
+ * header (24 bytes)
+ *   int   MAGIC
+ *   short VERSION
+ *   short day count
+ *   long  time the forecast was downloaded (ms since the epoch)
+ *   short string count
+ *   short reserved (0)
+ *   int   CRC32 of the rest of the header and everything after it
+ * days (24 bytes each)
+ *   long  timestamp (s since the epoch)
+ *   float minimum temperature (Kelvin)
+ *   float maximum temperature (Kelvin)
+ *   float humidity (percent)
+ *   short description (index into the string table)
+ *   short icon name (index into the string table)
+ * string table
+ *   short length, followed by that many UTF-8 bytes; entry 0 is the location
+ * </pre>
+ * Descriptions and icon names repeat from day to day, so each distinct string is
+ * stored once in the table and the days refer to it by index.
+ */
+public class ForecastRecord {
+    public static final int MAGIC = 0x57544852; // "WTHR"
+    // 2: temperatures in Kelvin instead of Fahrenheit; 3: the CRC covers the header too
+    public static final int VERSION = 3;
+    private static final int HEADER_SIZE = 24;
+    private static final int CRC_OFFSET = 20; // the header fields before it are checked
+    private static final int DAY_SIZE = 24;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    public final String location;    // what the user asked for
+    public final long fetchedAt;     // when the forecast was downloaded
+    public final long[] timeStamps;  // seconds since January 1, 1970 GMT
+    public final float[] minTemps;   // Kelvin
+    public final float[] maxTemps;   // Kelvin
+    public final float[] humidities; // percent humidity
+    public final String[] descriptions;
+    public final String[] iconNames;
+
+    public ForecastRecord(String location, long fetchedAt, long[] timeStamps, float[] minTemps,
+                          float[] maxTemps, float[] humidities, String[] descriptions,
+                          String[] iconNames) {
+        this.location = location;
+        this.fetchedAt = fetchedAt;
+        this.timeStamps = timeStamps;
+        this.minTemps = minTemps;
+        this.maxTemps = maxTemps;
+        this.humidities = humidities;
+        this.descriptions = descriptions;
+        this.iconNames = iconNames;
+    }
+
+    public int size() {
+        return timeStamps.length;
+    }
+
+    // create a record from the JSONObject containing OpenWeatherMap's daily forecast
+    public static ForecastRecord fromJSON(String location, long fetchedAt, JSONObject forecast)
+            throws JSONException {
+        JSONArray list = forecast.getJSONArray("list"); // get forecast's "list" JSONArray
+        int days = list.length();
+        long[] timeStamps = new long[days];
+        float[] minTemps = new float[days];
+        float[] maxTemps = new float[days];
+        float[] humidities = new float[days];
+        String[] descriptions = new String[days];
+        String[] iconNames = new String[days];
+
+        for (int i = 0; i < days; i++) {
+            JSONObject day = list.getJSONObject(i); // get one day's data
+            // get the day's temperatures ("temp") JSONObject
+            JSONObject temperatures = day.getJSONObject("temp");
+            // get day's "weather" JSONObject for the description and icon
+            JSONObject weather = day.getJSONArray("weather").getJSONObject(0);
+
+            timeStamps[i] = day.getLong("dt");
+            minTemps[i] = (float) temperatures.getDouble("min");
+            maxTemps[i] = (float) temperatures.getDouble("max");
+            humidities[i] = (float) day.getDouble("humidity");
+            descriptions[i] = weather.getString("description");
+            iconNames[i] = weather.getString("icon");
+        }
+        return new ForecastRecord(location, fetchedAt, timeStamps, minTemps, maxTemps,
+                humidities, descriptions, iconNames);
+    }
+
+    // creates Weather objects for the adapter
+    public List<Weather> toWeatherList() {
+        List<Weather> weatherList = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            weatherList.add(new Weather(timeStamps[i], minTemps[i], maxTemps[i], humidities[i],
+                    descriptions[i], iconNames[i]));
+        }
+        return weatherList;
+    }
+
+    // serializes this record in the binary format described above
+    public byte[] encode() {
+        // intern the location, descriptions and icon names into one string table
+        List<byte[]> strings = new ArrayList<>();
+        HashMap<String, Short> table = new HashMap<>();
+        intern(location, strings, table);
+        short[] descriptionIds = new short[size()];
+        short[] iconIds = new short[size()];
+        for (int i = 0; i < size(); i++) {
+            descriptionIds[i] = intern(descriptions[i], strings, table);
+            iconIds[i] = intern(iconNames[i], strings, table);
+        }
+
+        int length = HEADER_SIZE + size() * DAY_SIZE;
+        for (byte[] string : strings)
+            length += 2 + string.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.position(HEADER_SIZE);
+        for (int i = 0; i < size(); i++) {
+            buffer.putLong(timeStamps[i]);
+            buffer.putFloat(minTemps[i]);
+            buffer.putFloat(maxTemps[i]);
+            buffer.putFloat(humidities[i]);
+            buffer.putShort(descriptionIds[i]);
+            buffer.putShort(iconIds[i]);
+        }
+        for (byte[] string : strings) {
+            buffer.putShort((short) string.length);
+            buffer.put(string);
+        }
+
+        buffer.putInt(0, MAGIC);
+        buffer.putShort(4, (short) VERSION);
+        buffer.putShort(6, (short) size());
+        buffer.putLong(8, fetchedAt);
+        buffer.putShort(16, (short) strings.size());
+        buffer.putShort(18, (short) 0);
+        buffer.putInt(CRC_OFFSET, checksum(buffer.array(), 0, buffer.array(), HEADER_SIZE,
+                length - HEADER_SIZE));
+        return buffer.array();
+    }
+
+    // adds string to the table if it's not there yet and returns its index
+    private static short intern(String string, List<byte[]> strings, HashMap<String, Short> table) {
+        Short id = table.get(string);
+        if (id == null) {
+            byte[] bytes = string.getBytes(UTF8);
+            if (bytes.length > Short.MAX_VALUE || strings.size() == Short.MAX_VALUE)
+                throw new IllegalArgumentException("Forecast too large to store");
+            id = (short) strings.size();
+            strings.add(bytes);
+            table.put(string, id);
+        }
+        return id;
+    }
+
+    /**
+     * read a record in the binary format described above
+     * @param buffer the encoded record, e.g. a memory-mapped cache file
+     * @throws IOException if the data is not a record, has another version or is corrupt
+     */
+    public static ForecastRecord decode(ByteBuffer buffer) throws IOException {
+        int length = buffer.limit();
+        if (length < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a forecast record");
+        if (buffer.getShort(4) != VERSION)
+            throw new IOException("Unsupported forecast record version " + buffer.getShort(4));
+        int days = buffer.getShort(6) & 0xFFFF;
+        int stringCount = buffer.getShort(16) & 0xFFFF;
+        if (HEADER_SIZE + days * DAY_SIZE > length || stringCount == 0)
+            throw new IOException("Truncated forecast record");
+        if (buffer.getShort(18) != 0)
+            throw new IOException("Corrupt forecast record");
+
+        // copy the header fields and the body once; the checksum and the string table
+        // both read from the arrays. A corrupt download time could make a stale
+        // forecast look fresh, so the header is checked along with the days
+        byte[] header = new byte[CRC_OFFSET];
+        buffer.position(0);
+        buffer.get(header);
+        byte[] body = new byte[length - HEADER_SIZE];
+        buffer.position(HEADER_SIZE);
+        buffer.get(body);
+        if (checksum(header, 0, body, 0, body.length) != buffer.getInt(CRC_OFFSET))
+            throw new IOException("Corrupt forecast record");
+
+        ByteBuffer bodyBuffer = ByteBuffer.wrap(body);
+        String[] strings = new String[stringCount];
+        int position = days * DAY_SIZE;
+        for (int i = 0; i < stringCount; i++) {
+            if (position + 2 > body.length)
+                throw new IOException("Truncated forecast record");
+            int stringLength = bodyBuffer.getShort(position) & 0xFFFF;
+            if (position + 2 + stringLength > body.length)
+                throw new IOException("Truncated forecast record");
+            strings[i] = new String(body, position + 2, stringLength, UTF8);
+            position += 2 + stringLength;
+        }
+
+        long[] timeStamps = new long[days];
+        float[] minTemps = new float[days];
+        float[] maxTemps = new float[days];
+        float[] humidities = new float[days];
+        String[] descriptions = new String[days];
+        String[] iconNames = new String[days];
+        for (int i = 0; i < days; i++) {
+            int day = i * DAY_SIZE;
+            timeStamps[i] = bodyBuffer.getLong(day);
+            minTemps[i] = bodyBuffer.getFloat(day + 8);
+            maxTemps[i] = bodyBuffer.getFloat(day + 12);
+            humidities[i] = bodyBuffer.getFloat(day + 16);
+            int descriptionId = bodyBuffer.getShort(day + 20);
+            int iconId = bodyBuffer.getShort(day + 22);
+            if (descriptionId < 0 || descriptionId >= stringCount || iconId < 0 || iconId >= stringCount)
+                throw new IOException("Corrupt forecast record");
+            descriptions[i] = strings[descriptionId];
+            iconNames[i] = strings[iconId];
+        }
+        return new ForecastRecord(strings[0], buffer.getLong(8), timeStamps, minTemps, maxTemps,
+                humidities, descriptions, iconNames);
+    }
+
+    // reads a record from a cache file through a memory mapping
+    public static ForecastRecord read(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            input.close();
+        }
+    }
+
+    // writes this record to a cache file; readers never see a partially written file
+    public void write(File file) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        FileOutputStream output = new FileOutputStream(temporary);
+        try {
+            output.write(encode());
+        } finally {
+            output.close();
+        }
+        if (!temporary.renameTo(file))
+            throw new IOException("Unable to replace " + file);
+    }
+
+    // CRC32 of the header fields before the CRC, then of the body
+    private static int checksum(byte[] header, int headerOffset, byte[] body, int bodyOffset,
+                                int bodyLength) {
+        CRC32 crc = new CRC32();
+        crc.update(header, headerOffset, CRC_OFFSET);
+        crc.update(body, bodyOffset, bodyLength);
+        return (int) crc.getValue();
+    }
+}
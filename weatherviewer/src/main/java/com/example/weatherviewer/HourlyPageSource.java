@@ -0,0 +1,118 @@
+package com.example.weatherviewer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Supplies pages of the 3-hour forecast. The web service has no paging parameters (it
+ * ignores start), so the whole forecast (5 days, 40 entries) is downloaded once, on
+ * the first page request, and each page is a window of it: page n holds the entries
+ * from n * pageSize on, counting from the first entry at or after the source's start
+ * time. A page past the end of the forecast is short or empty, which ends paging.
+ * <p>
+ * Pages are views of the one download, not copies, so memory is bounded by that
+ * download (40 entries) rather than by the pages ForecastPager keeps; evicting a page
+ * frees nothing and reloading it costs no I/O.
+ */
+public class HourlyPageSource implements ForecastPager.PageSource {
+    public static final long STEP_SECONDS = 3 * 60 * 60; // one forecast entry every 3 hours
+
+    private final String location;
+    private final String baseUrl;   // everything up to the paging parameters
+    private final long startTime;   // seconds since the epoch of the first entry
+    private ForecastRecord forecast; // the whole download, once it has been made
+    private int first;               // index in forecast of the first entry at startTime
+
+    /**
+     * @param location  the city the forecast is for
+     * @param baseUrl   web service URL including the city and API key
+     * @param startTime time of the first entry in seconds since January 1, 1970 GMT
+     */
+    public HourlyPageSource(String location, String baseUrl, long startTime) {
+        this.location = location;
+        this.baseUrl = baseUrl;
+        this.startTime = startTime;
+    }
+
+    @Override
+    public ForecastPager.Page loadPage(int page, int pageSize) throws IOException {
+        ForecastRecord forecast = getForecast();
+        int from = Math.min(forecast.size(), first + page * pageSize);
+        int to = Math.min(forecast.size(), from + pageSize);
+        return new ForecastPager.Page(forecast, from, to - from);
+    }
+
+    // downloads the forecast on the first call; pages may be requested from several
+    // threads at once, and they share the one download. A failed download is retried
+    // by the next page request
+    private synchronized ForecastRecord getForecast() throws IOException {
+        if (forecast == null) {
+            ForecastRecord downloaded = download();
+            // skip the entries before startTime
+            while (first < downloaded.size() && downloaded.timeStamps[first] < startTime)
+                ++first;
+            forecast = downloaded;
+        }
+        return forecast;
+    }
+
+    private ForecastRecord download() throws IOException {
+        URL url = new URL(baseUrl);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK)
+                throw new IOException("HTTP " + connection.getResponseCode());
+
+            StringBuilder builder = new StringBuilder();
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null)
+                    builder.append(line);
+            } finally {
+                reader.close();
+            }
+            return fromJSON(location, new JSONObject(builder.toString()));
+        } catch (JSONException e) {
+            throw new IOException("Malformed forecast", e);
+        } finally {
+            connection.disconnect(); // close the HttpURLConnection
+        }
+    }
+
+    // create a record from OpenWeatherMap's 3-hour forecast
+    public static ForecastRecord fromJSON(String location, JSONObject forecast) throws JSONException {
+        JSONArray list = forecast.getJSONArray("list");
+        int entries = list.length();
+        long[] timeStamps = new long[entries];
+        float[] minTemps = new float[entries];
+        float[] maxTemps = new float[entries];
+        float[] humidities = new float[entries];
+        String[] descriptions = new String[entries];
+        String[] iconNames = new String[entries];
+
+        for (int i = 0; i < entries; i++) {
+            JSONObject entry = list.getJSONObject(i);
+            // 3-hour entries keep temperatures and humidity in "main"
+            JSONObject main = entry.getJSONObject("main");
+            JSONObject weather = entry.getJSONArray("weather").getJSONObject(0);
+
+            timeStamps[i] = entry.getLong("dt");
+            minTemps[i] = (float) main.getDouble("temp_min");
+            maxTemps[i] = (float) main.getDouble("temp_max");
+            humidities[i] = (float) main.getDouble("humidity");
+            descriptions[i] = weather.getString("description");
+            iconNames[i] = weather.getString("icon");
+        }
+        return new ForecastRecord(location, System.currentTimeMillis(), timeStamps, minTemps,
+                maxTemps, humidities, descriptions, iconNames);
+    }
+}
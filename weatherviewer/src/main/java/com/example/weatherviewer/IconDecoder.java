@@ -0,0 +1,101 @@
+package com.example.weatherviewer;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes weather condition icons at the size of the ImageView that displays them,
+ * in the cheapest Bitmap config that keeps the image intact, and into recycled
+ * Bitmaps from a BitmapPool whenever one of the right size is available.
+ */
+public class IconDecoder {
+    // String used when logging decode statistics
+    private static final String TAG = "IconDecoder";
+
+    private final BitmapPool pool; // spare Bitmaps for equally sized icons
+
+    public IconDecoder(BitmapPool pool) {
+        this.pool = pool;
+    }
+
+    // reads the whole icon so it can be inspected before it is decoded
+    public static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1)
+            bytes.write(buffer, 0, count);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * decode an icon so that it is no larger than necessary for the target view
+     * @param data      the encoded image (PNG, JPEG, ...)
+     * @param reqWidth  width of the target ImageView in pixels
+     * @param reqHeight height of the target ImageView in pixels
+     * @return the decoded Bitmap or null if data is not an image
+     */
+    public Bitmap decode(byte[] data, int reqWidth, int reqHeight) {
+        long start = SystemClock.elapsedRealtime();
+
+        // first pass: read only the image's dimensions and type
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0)
+            return null; // not a decodable image
+
+        // second pass: decode downsampled, in a cheaper config where possible
+        int fullWidth = options.outWidth;
+        int fullHeight = options.outHeight;
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = calculateInSampleSize(fullWidth, fullHeight, reqWidth, reqHeight);
+        // JPEGs have no alpha channel, so 16 bits per pixel lose nothing visible;
+        // PNG icons are drawn over the list background and need their transparency
+        options.inPreferredConfig = "image/jpeg".equals(options.outMimeType) ?
+                Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        options.inMutable = true; // so the Bitmap can be reused once it is evicted
+
+        // before KitKat inBitmap only works for same-size decodes without sampling
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT || options.inSampleSize == 1) {
+            options.inBitmap = pool.get(fullWidth / options.inSampleSize,
+                    fullHeight / options.inSampleSize, options.inPreferredConfig);
+        }
+
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } catch (IllegalArgumentException e) {
+            // the pooled Bitmap was not compatible; decode into new memory instead
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+
+        if (bitmap != null && Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, String.format("decoded %dx%d icon in %d ms: %d bytes (full-size ARGB_8888 " +
+                            "would be %d bytes), sample size %d, %s, reused: %b",
+                    bitmap.getWidth(), bitmap.getHeight(), SystemClock.elapsedRealtime() - start,
+                    bitmap.getByteCount(), fullWidth * fullHeight * 4, options.inSampleSize,
+                    bitmap.getConfig(), options.inBitmap != null));
+        }
+        return bitmap;
+    }
+
+    // largest power of two that keeps the decoded image at least as large as the target
+    public static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0)
+            return inSampleSize; // target size unknown; decode at full size
+
+        while (width / (inSampleSize * 2) >= reqWidth && height / (inSampleSize * 2) >= reqHeight)
+            inSampleSize *= 2;
+        return inSampleSize;
+    }
+}
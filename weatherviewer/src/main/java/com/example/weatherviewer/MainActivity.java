@@ -2,36 +2,73 @@ package com.example.weatherviewer;
 
 import android.annotation.TargetApi;
 import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.design.widget.FloatingActionButton;
 import android.support.design.widget.Snackbar;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.view.inputmethod.InputMethodManager;
+import android.widget.AbsListView;
+import android.widget.AutoCompleteTextView;
 import android.widget.EditText;
 import android.widget.ListView;
 
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
 
 public class MainActivity extends AppCompatActivity {
+    // String used when logging error messages
+    private static final String TAG = "WeatherViewer";
+    // key for the last location shown, kept in the activity's SharedPreferences
+    private static final String LAST_LOCATION = "last_location";
+    // key for the temperature unit the user picked
+    private static final String TEMPERATURE_UNIT = "temperature_unit";
+    // cached forecasts younger than this are shown without contacting the web service
+    private static final long CACHE_LIFETIME = 30 * 60 * 1000; // 30 minutes
+    // the 3-hour forecast is paged one day (8 entries) at a time
+    private static final int HOURLY_PAGE_SIZE = 8;
+    private static final int HOURLY_PAGES_IN_MEMORY = 4;
+    private static final int HOURLY_PREFETCH = HOURLY_PAGE_SIZE / 2; // rows below the screen
+
     private List<Weather> weatherList = new ArrayList<>();  // List of Weather objects representing the forecast
     private WeatherArrayAdapter weatherArrayAdapter;        // ArrayAdapter for binding Weather objects to a ListView
     private ListView weatherListView;                       // displays weather info
+    private final WeatherMetrics metrics = WeatherMetrics.getInstance(); // request timings
+
+    private boolean hourlyMode;                  // showing the 3-hour instead of the daily forecast
+    private PagedWeatherList hourlyList;         // pages of the 3-hour forecast
+    private WeatherArrayAdapter hourlyAdapter;   // binds hourlyList to the weatherListView
+    private ForecastPager hourlyPager;           // loads hourlyList's pages as the user scrolls
+    private final Handler handler = new Handler();
+    // delivers downloaded pages on the UI thread
+    private final Executor uiExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            handler.post(command);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -45,26 +82,122 @@ public class MainActivity extends AppCompatActivity {
         weatherArrayAdapter = new WeatherArrayAdapter(this, weatherList);
         weatherListView.setAdapter(weatherArrayAdapter);
 
+        // the 3-hour forecast tells its pager which rows are on screen
+        hourlyList = new PagedWeatherList(getString(R.string.loading));
+        hourlyAdapter = new WeatherArrayAdapter(this, hourlyList);
+
+        // show temperatures in the unit picked earlier, or the one usual in the user's country
+        String unit = getPreferences(MODE_PRIVATE).getString(TEMPERATURE_UNIT, null);
+        TemperatureUnit temperatureUnit = unit != null ? TemperatureUnit.valueOf(unit) :
+                TemperatureUnit.forLocale(Locale.getDefault());
+        weatherArrayAdapter.setTemperatureUnit(temperatureUnit, null);
+        hourlyAdapter.setTemperatureUnit(temperatureUnit, null);
+        weatherListView.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                                 int totalItemCount) {
+                if (hourlyMode && hourlyPager != null && visibleItemCount > 0)
+                    hourlyPager.onVisibleRangeChanged(firstVisibleItem,
+                            firstVisibleItem + visibleItemCount - 1);
+            }
+        });
+
+        // restore the last location shown before suggestions are attached, so
+        // that setting the text does not open the suggestion list
+        AutoCompleteTextView locationEditText =
+                (AutoCompleteTextView) findViewById(R.id.locationEditText);
+        String lastLocation = getPreferences(MODE_PRIVATE).getString(LAST_LOCATION, null);
+        if (savedInstanceState == null && lastLocation != null)
+            locationEditText.setText(lastLocation);
+
+        // suggest cities from the bundled index as the user types
+        locationEditText.setAdapter(new CitySuggestionAdapter(this));
+
         // configure FAB to hide keyboard and initiate web service request
         FloatingActionButton fab = (FloatingActionButton) findViewById(R.id.fab);
         fab.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
                 EditText locationEditText = (EditText) findViewById(R.id.locationEditText);
-                URL url = createURL(locationEditText.getText().toString());
-                // hide keyboard and initiate a GetWeatherTask to download
-                // weather data from OpenWeatherMap.org in a separate thread
-                if (url != null) {
-                    dismissKeyboard(locationEditText);
-                    GetWeatherTask getLocalWeatherTask = new GetWeatherTask();
-                    getLocalWeatherTask.execute(url);
-                } else {
-                    Snackbar.make(findViewById(R.id.coordinatorLayout),
-                            R.string.invalid_url, Snackbar.LENGTH_LONG).show();
-                }
+                dismissKeyboard(locationEditText);
+                loadForecast(locationEditText.getText().toString());
             }
         });
 
+        // show the last location's forecast right away, from the cache if possible
+        if (savedInstanceState == null && lastLocation != null)
+            loadForecast(lastLocation);
+    }
+
+    // initiate a GetWeatherTask to read the forecast from the cache or to download
+    // weather data from OpenWeatherMap.org in a separate thread
+    private void loadForecast(String location) {
+        if (hourlyMode) {
+            loadHourlyForecast(location);
+            return;
+        }
+
+        URL url = createURL(location);
+        if (url != null) {
+            GetWeatherTask getLocalWeatherTask = new GetWeatherTask(location,
+                    getCacheFile(location), metrics.newTrace(location));
+            getLocalWeatherTask.execute(url);
+        } else {
+            Snackbar.make(findViewById(R.id.coordinatorLayout),
+                    R.string.invalid_url, Snackbar.LENGTH_LONG).show();
+        }
+    }
+
+    // start paging in the 3-hour forecast for location, beginning with the current period
+    private void loadHourlyForecast(String location) {
+        String baseUrl = createHourlyURL(location);
+        if (baseUrl == null) {
+            Snackbar.make(findViewById(R.id.coordinatorLayout),
+                    R.string.invalid_url, Snackbar.LENGTH_LONG).show();
+            return;
+        }
+
+        long now = System.currentTimeMillis() / 1000;
+        long startTime = now - now % HourlyPageSource.STEP_SECONDS;
+        final ForecastPager pager = new ForecastPager(
+                new HourlyPageSource(location.trim(), baseUrl, startTime),
+                HOURLY_PAGE_SIZE, HOURLY_PAGES_IN_MEMORY, HOURLY_PREFETCH,
+                AsyncTask.THREAD_POOL_EXECUTOR, uiExecutor);
+        hourlyPager = pager;
+        hourlyPager.setListener(new ForecastPager.Listener() {
+            @Override
+            public void onPageLoaded(int page) {
+                hourlyAdapter.notifyDataSetChanged(); // rebind the rows that were loading
+            }
+
+            @Override
+            public void onPageFailed(int page, IOException exception) {
+                Log.e(TAG, "Error loading page " + page + " of the 3-hour forecast", exception);
+                // the page isn't requested again until the user asks
+                Snackbar.make(findViewById(R.id.coordinatorLayout),
+                        R.string.connect_error, Snackbar.LENGTH_INDEFINITE)
+                        .setAction(R.string.retry, new View.OnClickListener() {
+                            @Override
+                            public void onClick(View v) {
+                                pager.retry();
+                            }
+                        }).show();
+            }
+        });
+        hourlyList.setPager(hourlyPager); // stops the previous location's pager
+        hourlyAdapter.notifyDataSetChanged();
+        weatherListView.setSelection(0);
+        hourlyPager.start();
+    }
+
+    // each location's forecast is cached in its own file in the app's cache directory
+    private File getCacheFile(String location) {
+        String key = location.trim().toLowerCase(Locale.US);
+        return new File(getCacheDir(), "forecast-" + Integer.toHexString(key.hashCode()) + ".bin");
     }
 
     // create openweathermap.org web service URL using city
@@ -72,9 +205,10 @@ public class MainActivity extends AppCompatActivity {
         String apiKey = getString(R.string.api_key);
         String baseUrl = getString(R.string.web_service_url);
         try {
-            // create URL for specified city and imperial units (Fahrenheit)
+            // create URL for specified city in standard units (Kelvin); the
+            // adapter converts to the unit the user chose when it binds the rows
             String urlString = baseUrl + URLEncoder.encode(city, "UTF-8") +
-                    "&units=imperial&cnt=16&APPID=" + apiKey;   // 281
+                    "&cnt=16&APPID=" + apiKey;   // 281
             return new URL(urlString);
         } catch (Exception e) {
             e.printStackTrace();
@@ -82,6 +216,17 @@ public class MainActivity extends AppCompatActivity {
         return null; // URL was malformed
     }
 
+    // create the 3-hour forecast URL for city; the pager appends the paging parameters
+    private String createHourlyURL(String city) {
+        try {
+            return getString(R.string.hourly_service_url) + URLEncoder.encode(city, "UTF-8") +
+                    "&APPID=" + getString(R.string.api_key);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
     // programmatically dismiss keyboard when user touches FAB
     private void dismissKeyboard(View view) {
         InputMethodManager imm = (InputMethodManager)
@@ -97,22 +242,47 @@ public class MainActivity extends AppCompatActivity {
      * argument to the GetWeatherTask’s execute method.
      * Void       for the variable-length parameter-list type for the onProgressUpdate
      *            method ——— we do not use this method
-     * JSONObject for the type of the task’s result, which is passed to onPostExecute
+     * ForecastRecord for the type of the task’s result, which is passed to onPostExecute
      *            in the UI thread to display the results.
      */
-    private class GetWeatherTask extends AsyncTask<URL, Void, JSONObject> {
+    private class GetWeatherTask extends AsyncTask<URL, Void, ForecastRecord> {
+        private final String location;                    // the city the user asked for
+        private final File cacheFile;                     // where this city's forecast is cached
+        private final WeatherMetrics.ForecastTrace trace; // timings of this request
+
+        public GetWeatherTask(String location, File cacheFile, WeatherMetrics.ForecastTrace trace) {
+            this.location = location.trim();
+            this.cacheFile = cacheFile;
+            this.trace = trace;
+        }
+
         @TargetApi(Build.VERSION_CODES.KITKAT)
         @Override
-        protected JSONObject doInBackground(URL... params) {
+        protected ForecastRecord doInBackground(URL... params) {
+            trace.begin();
+            // a recently downloaded forecast is shown without a network round trip
+            ForecastRecord cached = readCache();
+            trace.lap(WeatherMetrics.PARSE);
+            if (cached != null && System.currentTimeMillis() - cached.fetchedAt < CACHE_LIFETIME)
+                return cached;
+
             HttpURLConnection connection = null;
             try {
+                // resolve the host up front so the lookup is timed separately from
+                // the connect; HttpURLConnection then reuses the cached address
+                InetAddress.getByName(params[0].getHost());
+                trace.lap(WeatherMetrics.DNS);
                 connection = (HttpURLConnection) params[0].openConnection();
+                connection.connect();
+                trace.lap(WeatherMetrics.CONNECT);
                 int response = connection.getResponseCode();
+                trace.lap(WeatherMetrics.FIRST_BYTE);
                 // the REST web service was invoked properly and there is a response to process
                 if (response == HttpURLConnection.HTTP_OK) {
                     StringBuilder builder = new StringBuilder();
+                    CountingInputStream counter = new CountingInputStream(connection.getInputStream());
                     try (BufferedReader reader = new BufferedReader(
-                            new InputStreamReader(connection.getInputStream()))) {
+                            new InputStreamReader(counter))) {
                         String line;
                         while ((line = reader.readLine()) != null) {
                             builder.append(line);
@@ -122,9 +292,15 @@ public class MainActivity extends AppCompatActivity {
                                 R.string.read_error, Snackbar.LENGTH_LONG).show();
                         e.printStackTrace();
                     }
-                    // converts the JSON String in the StringBuilder to a JSONObject
-                    // and return it to the UI thread
-                    return new JSONObject(builder.toString());
+                    trace.addBytes(counter.getCount());
+                    trace.lap(WeatherMetrics.DOWNLOAD);
+                    // converts the JSON String in the StringBuilder to a ForecastRecord,
+                    // caches it and returns it to the UI thread
+                    ForecastRecord forecast = ForecastRecord.fromJSON(location,
+                            System.currentTimeMillis(), new JSONObject(builder.toString()));
+                    trace.lap(WeatherMetrics.PARSE);
+                    writeCache(forecast);
+                    return forecast;
                 } else { // If there’s an error reading the weather data or connecting to the web service
                     Snackbar.make(findViewById(R.id.coordinatorLayout),
                             R.string.connect_error, Snackbar.LENGTH_LONG).show();
@@ -134,56 +310,102 @@ public class MainActivity extends AppCompatActivity {
                         R.string.connect_error, Snackbar.LENGTH_LONG).show();
                 e.printStackTrace();
             } finally {
-                connection.disconnect(); // close the HttpURLConnection
+                if (connection != null)
+                    connection.disconnect(); // close the HttpURLConnection
             }
-            return null;
+            return cached; // an outdated forecast is better than none
         }
 
-        // process JSON response and update ListView
+        // reads the cached forecast for location or returns null if there is none
+        private ForecastRecord readCache() {
+            if (!cacheFile.exists())
+                return null;
+            try {
+                ForecastRecord cached = ForecastRecord.read(cacheFile);
+                // guard against two locations whose file names collide
+                return cached.location.equalsIgnoreCase(location) ? cached : null;
+            } catch (IOException e) {
+                Log.w(TAG, "Discarding unreadable cache file " + cacheFile, e);
+                cacheFile.delete();
+                return null;
+            }
+        }
+
+        private void writeCache(ForecastRecord forecast) {
+            try {
+                forecast.write(cacheFile);
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to cache forecast for " + location, e);
+            }
+        }
+
+        // process the forecast and update ListView
         @Override
-        protected void onPostExecute(JSONObject weather) {
-            convertJSONtoArrayList(weather);            // repopulate weatherList
+        protected void onPostExecute(ForecastRecord forecast) {
+            if (forecast == null) { // nothing to display; the error was already reported
+                trace.fail();
+                metrics.record(trace);
+                return;
+            }
+
+            // remember the location so its forecast is shown on the next launch
+            SharedPreferences.Editor editor = getPreferences(MODE_PRIVATE).edit();
+            editor.putString(LAST_LOCATION, forecast.location);
+            editor.apply();
+
+            trace.begin();
+            weatherList.clear();                        // clear old weather data
+            weatherList.addAll(forecast.toWeatherList()); // repopulate weatherList
+            trace.lap(WeatherMetrics.PARSE);
             weatherArrayAdapter.notifyDataSetChanged(); // rebind to ListView
+            // binding is complete when the ListView is about to draw the new rows
+            weatherListView.getViewTreeObserver().addOnPreDrawListener(
+                    new ViewTreeObserver.OnPreDrawListener() {
+                        @Override
+                        public boolean onPreDraw() {
+                            weatherListView.getViewTreeObserver().removeOnPreDrawListener(this);
+                            trace.lap(WeatherMetrics.BIND);
+                            metrics.record(trace);
+                            return true;
+                        }
+                    });
             // reposition the ListView's first item to the top of the ListView
             // this ensures that the new weather forecast's first day is shown at the top
             weatherListView.smoothScrollToPosition(0);  // scroll to top
         }
     }
 
-    // create Weather objects from JSONObject containing the forecast
-    private void convertJSONtoArrayList(JSONObject forecast) {
-        weatherList.clear(); // clear old weather data
-        try {
-            JSONArray list = forecast.getJSONArray("list"); // get forecast's "list" JSONArray
-            // convert each element of list to a Weather object
-            for (int i = 0; i < list.length(); i++) {
-                JSONObject day = list.getJSONObject(i); // get one day's data
-                // get the day's temperatures ("temp") JSONObject
-                JSONObject temperatures = day.getJSONObject("temp");
-                // get day's "weather" JSONObject for the description and icon
-                JSONObject weather = day.getJSONArray("weather").getJSONObject(0);
-
-                // add new Weather object to weatherList
-                weatherList.add(new Weather(
-                        day.getLong("dt"),                // date/time timestamp
-                        temperatures.getDouble("min"),    // minimum temperature
-                        temperatures.getDouble("max"),    // maximum temperature
-                        day.getDouble("humidity"),        // percent humidity
-                        weather.getString("description"), // weather conditions
-                        weather.getString("icon")));      // icon name
-            }
-        } catch (JSONException e) {
-            e.printStackTrace();
-        }
-    }
-
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
         getMenuInflater().inflate(R.menu.menu_main, menu);
+
+        // check the unit temperatures are currently shown in
+        switch (weatherArrayAdapter.getTemperatureUnit()) {
+            case CELSIUS:
+                menu.findItem(R.id.unit_celsius).setChecked(true);
+                break;
+            case KELVIN:
+                menu.findItem(R.id.unit_kelvin).setChecked(true);
+                break;
+            default:
+                menu.findItem(R.id.unit_fahrenheit).setChecked(true);
+        }
         return true;
     }
 
+    // re-render the forecast in unit; the stored forecast is converted, not downloaded again
+    private void setTemperatureUnit(TemperatureUnit unit) {
+        WeatherArrayAdapter visible = hourlyMode ? hourlyAdapter : weatherArrayAdapter;
+        WeatherArrayAdapter hidden = hourlyMode ? weatherArrayAdapter : hourlyAdapter;
+        visible.setTemperatureUnit(unit, weatherListView);
+        hidden.setTemperatureUnit(unit, null); // rebinds when it's shown again
+
+        SharedPreferences.Editor editor = getPreferences(MODE_PRIVATE).edit();
+        editor.putString(TEMPERATURE_UNIT, unit.name());
+        editor.apply();
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         // Handle action bar item clicks here. The action bar will
@@ -194,6 +416,23 @@ public class MainActivity extends AppCompatActivity {
         //noinspection SimplifiableIfStatement
         if (id == R.id.action_settings) {
             return true;
+        } else if (id == R.id.action_hourly) { // switch between daily and 3-hour forecast
+            hourlyMode = !hourlyMode;
+            item.setChecked(hourlyMode);
+            weatherListView.setAdapter(hourlyMode ? hourlyAdapter : weatherArrayAdapter);
+            String location = ((EditText) findViewById(R.id.locationEditText)).getText().toString();
+            if (hourlyMode && !location.trim().isEmpty())
+                loadHourlyForecast(location);
+            return true;
+        } else if (id == R.id.unit_fahrenheit || id == R.id.unit_celsius ||
+                id == R.id.unit_kelvin) { // show temperatures in another unit
+            item.setChecked(true);
+            setTemperatureUnit(id == R.id.unit_celsius ? TemperatureUnit.CELSIUS :
+                    id == R.id.unit_kelvin ? TemperatureUnit.KELVIN : TemperatureUnit.FAHRENHEIT);
+            return true;
+        } else if (id == R.id.action_metrics) { // show request timings
+            startActivity(new Intent(this, MetricsActivity.class));
+            return true;
         }
 
         return super.onOptionsItemSelected(item);
@@ -0,0 +1,72 @@
+package com.example.weatherviewer;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.Toolbar;
+import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+
+import org.json.JSONException;
+
+/**
+ * Displays the forecast timings, icon cache statistics and transferred bytes
+ * recorded by WeatherMetrics, and lets the user share them as JSON.
+ */
+public class MetricsActivity extends AppCompatActivity {
+    // String used when logging error messages
+    private static final String TAG = "MetricsActivity";
+
+    private final WeatherMetrics metrics = WeatherMetrics.getInstance();
+    private TextView metricsTextView; // displays the text snapshot
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics);
+        Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+
+        metricsTextView = (TextView) findViewById(R.id.metricsTextView);
+    }
+
+    // refresh the snapshot every time the screen is shown
+    @Override
+    protected void onResume() {
+        super.onResume();
+        metricsTextView.setText(metrics.toText());
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_metrics, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        int id = item.getItemId();
+
+        if (id == R.id.action_share_metrics) { // dump the snapshot as JSON
+            try {
+                Intent shareIntent = new Intent(Intent.ACTION_SEND);
+                shareIntent.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.metrics_subject));
+                shareIntent.putExtra(Intent.EXTRA_TEXT, metrics.toJSON().toString(2));
+                shareIntent.setType("text/plain");
+                startActivity(Intent.createChooser(shareIntent, getString(R.string.share_metrics)));
+            } catch (JSONException e) {
+                Log.e(TAG, "Error creating metrics snapshot", e);
+            }
+            return true;
+        } else if (id == R.id.action_reset_metrics) { // start measuring from scratch
+            metrics.reset();
+            metricsTextView.setText(metrics.toText());
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.weatherviewer;
+
+import java.util.AbstractList;
+
+/**
+ * Read-only List view of a ForecastPager for WeatherArrayAdapter. Rows whose page
+ * is not in memory show a placeholder (and request the page); Weather objects are
+ * created only for the rows the ListView actually binds.
+ */
+public class PagedWeatherList extends AbstractList<Weather> {
+    private final Weather loading; // placeholder for rows still downloading
+    private ForecastPager pager;   // null until a location has been chosen
+
+    public PagedWeatherList(String loadingText) {
+        loading = Weather.placeholder(loadingText);
+    }
+
+    // shows another forecast; the previous pager stops delivering pages
+    public void setPager(ForecastPager pager) {
+        if (this.pager != null)
+            this.pager.close();
+        this.pager = pager;
+    }
+
+    @Override
+    public Weather get(int position) {
+        ForecastRecord page = pager.getPage(position);
+        if (page == null)
+            return loading;
+
+        int i = pager.getOffset(position);
+        return new Weather(page.timeStamps[i], page.minTemps[i], page.maxTemps[i],
+                page.humidities[i], page.descriptions[i], page.iconNames[i], Weather.HOUR_PATTERN);
+    }
+
+    @Override
+    public int size() {
+        return (pager == null) ? 0 : pager.getCount();
+    }
+}
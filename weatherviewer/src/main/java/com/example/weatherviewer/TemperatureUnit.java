@@ -0,0 +1,51 @@
+package com.example.weatherviewer;
+
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * Temperature units the forecast can be displayed in. Forecasts are downloaded and
+ * stored in Kelvin (the web service's standard units), so switching units only
+ * changes how the stored values are formatted.
+ */
+public enum TemperatureUnit {
+    CELSIUS("°C"),
+    FAHRENHEIT("°F"),
+    KELVIN("K");
+
+    private final String symbol;
+
+    TemperatureUnit(String symbol) {
+        this.symbol = symbol;
+    }
+
+    // converts a temperature in Kelvin to this unit
+    public double fromKelvin(double kelvin) {
+        switch (this) {
+            case CELSIUS:
+                return kelvin - 273.15;
+            case FAHRENHEIT:
+                return kelvin * 9 / 5 - 459.67;
+            default:
+                return kelvin;
+        }
+    }
+
+    /**
+     * format a temperature rounded to an integer, e.g. "72°F"
+     * @param kelvin       the stored temperature
+     * @param numberFormat NumberFormat with no fraction digits for the user's locale
+     */
+    public String format(double kelvin, NumberFormat numberFormat) {
+        return numberFormat.format(fromKelvin(kelvin)) + symbol;
+    }
+
+    // the unit people in locale's country expect by default
+    public static TemperatureUnit forLocale(Locale locale) {
+        String country = locale.getCountry();
+        // the United States, Liberia and Myanmar still use Fahrenheit
+        if ("US".equals(country) || "LR".equals(country) || "MM".equals(country))
+            return FAHRENHEIT;
+        return CELSIUS;
+    }
+}
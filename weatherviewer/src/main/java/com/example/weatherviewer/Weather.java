@@ -1,50 +1,64 @@
 package com.example.weatherviewer;
 
-import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.TimeZone;
+import java.util.Date;
 
 /**
  * Created by HP on 2017/2/3.
  */
 
 public class Weather {
+    // date patterns for the daily and the 3-hour forecast
+    public static final String DAY_PATTERN = "EEEE";
+    public static final String HOUR_PATTERN = "EEE HH:mm";
+
     public final String dayOfWeek;
-    public final String minTemp;
-    public final String maxTemp;
-    public final String humidity;
+    // raw values; WeatherArrayAdapter formats them in the unit the user chose
+    public final double minTemp;    // Kelvin
+    public final double maxTemp;    // Kelvin
+    public final double humidity;   // percent
     public final String description;
     public final String iconURL;
 
     public Weather(long timeStamp, double minTemp, double maxTemp,
                   double humidity, String description, String iconName) {
-        // NumberFormat to format double temperatures rounded to integers
-        NumberFormat numberFormat = NumberFormat.getInstance();
-        numberFormat.setMaximumFractionDigits(0);
-
-        this.dayOfWeek = convertTimeStampToDay(timeStamp);
-        this.minTemp = numberFormat.format(minTemp) + "\u00B0F";
-        this.maxTemp = numberFormat.format(maxTemp) + "\u00B0F";
-        this.humidity = NumberFormat.getPercentInstance().format(humidity / 100.0);
+        this(timeStamp, minTemp, maxTemp, humidity, description, iconName, DAY_PATTERN);
+    }
+
+    public Weather(long timeStamp, double minTemp, double maxTemp, double humidity,
+                   String description, String iconName, String datePattern) {
+        this.dayOfWeek = convertTimeStampToDay(timeStamp, datePattern);
+        this.minTemp = minTemp;
+        this.maxTemp = maxTemp;
+        this.humidity = humidity;
         this.description = description;
         this.iconURL = "http://openweathermap.org/img/w/" + iconName + ".png";
     }
 
+    // a row whose data is still being downloaded
+    private Weather(String description) {
+        this.dayOfWeek = "";
+        this.minTemp = Double.NaN;
+        this.maxTemp = Double.NaN;
+        this.humidity = Double.NaN;
+        this.description = description;
+        this.iconURL = null; // no icon to display
+    }
+
+    public static Weather placeholder(String description) {
+        return new Weather(description);
+    }
+
     /**
-     * convert timestamp to a day's name (e.g., Monday, Tuesday, ...)
+     * convert timestamp to a day's name (e.g., Monday, Tuesday, ...) or day and time
      * @param timeStamp represent the number of seconds since January 1, 1970 GMT———the standard way
      *                  time is represented on Linux systems
+     * @param pattern   SimpleDateFormat pattern, e.g. DAY_PATTERN or HOUR_PATTERN
      * @return
      */
-    private String convertTimeStampToDay(long timeStamp) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTimeInMillis(timeStamp * 1000);
-        TimeZone tz = TimeZone.getDefault(); // get device's time zone
-        // adjust time for device's time zone
-        calendar.add(Calendar.MILLISECOND, tz.getOffset(calendar.getTimeInMillis()));
-        // SimpleDateFormat that returns the day's name
-        SimpleDateFormat dateFormatter = new SimpleDateFormat("EEEE");
-        return dateFormatter.format(calendar.getTime());
+    private String convertTimeStampToDay(long timeStamp, String pattern) {
+        // SimpleDateFormat formats in the device's time zone
+        SimpleDateFormat dateFormatter = new SimpleDateFormat(pattern);
+        return dateFormatter.format(new Date(timeStamp * 1000));
     }
 }
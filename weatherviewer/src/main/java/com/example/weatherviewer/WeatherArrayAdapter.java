@@ -3,13 +3,14 @@ package com.example.weatherviewer;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.AsyncTask;
 import android.os.Build;
 import android.support.annotation.NonNull;
+import android.util.LruCache;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.ArrayAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
@@ -18,7 +19,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.HashMap;
+import java.text.NumberFormat;
+import java.util.IdentityHashMap;
 import java.util.List;
 
 /**
@@ -26,17 +28,134 @@ import java.util.List;
  */
 
 public class WeatherArrayAdapter extends ArrayAdapter<Weather> {
-    // stores already downloaded Bitmaps for reuse
-    private HashMap<String, Bitmap> bitmaps = new HashMap<>();
+    // OpenWeatherMap has 18 condition icons, so this holds every icon a forecast can show
+    private static final int MAX_CACHED_ICONS = 24;
+
+    // the icon caches below are shared by the daily and the 3-hour forecast adapters
+    // spare Bitmaps of evicted icons, reused when an equally sized icon is decoded
+    private static final BitmapPool bitmapPool = new BitmapPool(4);
+    // decodes icons at the ImageView's size into pooled Bitmaps
+    private static final IconDecoder iconDecoder = new IconDecoder(bitmapPool);
+    // how many rows (and downloads about to show one) hold each icon; decoding into an
+    // icon a row still shows would overwrite the image on screen. Guarded by itself
+    private static final IdentityHashMap<Bitmap, Integer> iconUsers = new IdentityHashMap<>();
+    // evicted icons still held by a row; pooled when the last row lets go. Guarded by
+    // iconUsers
+    private static final IdentityHashMap<Bitmap, Boolean> evictedInUse = new IdentityHashMap<>();
+    // stores already downloaded Bitmaps for reuse; evicted Bitmaps go back to the pool
+    // once no row shows them
+    private static final LruCache<String, Bitmap> bitmaps = new LruCache<String, Bitmap>(MAX_CACHED_ICONS) {
+        @Override
+        protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+            if (!evicted)
+                return;
+            synchronized (iconUsers) {
+                if (iconUsers.containsKey(oldValue))
+                    evictedInUse.put(oldValue, Boolean.TRUE);
+                else
+                    bitmapPool.put(oldValue);
+            }
+        }
+    };
+    private final int iconSize; // target size in pixels of conditionImageView
+    private final WeatherMetrics metrics = WeatherMetrics.getInstance(); // icon cache statistics
+    // formats for the user's locale, created once rather than for every row
+    private final NumberFormat temperatureFormat = NumberFormat.getInstance();
+    private final NumberFormat percentFormat = NumberFormat.getPercentInstance();
+    private TemperatureUnit temperatureUnit = TemperatureUnit.FAHRENHEIT; // unit rows show
+    private int viewsCreated; // getView calls, for tests
 
     public WeatherArrayAdapter(Context context, List<Weather> forecast) {
         super(context, -1, forecast);
+        iconSize = context.getResources().getDimensionPixelSize(R.dimen.image_side_length);
+        temperatureFormat.setMaximumFractionDigits(0); // rounded to integers
+    }
+
+    public TemperatureUnit getTemperatureUnit() {
+        return temperatureUnit;
+    }
+
+    /**
+     * switch the unit temperatures are shown in. The forecast is stored in Kelvin, so
+     * nothing is downloaded again; only the temperatures of the rows on screen are
+     * rewritten, and the other rows pick up the unit when they scroll into view.
+     * @param listView the ListView this adapter is attached to, or null
+     * @return the number of rows rebound
+     */
+    public int setTemperatureUnit(TemperatureUnit unit, AbsListView listView) {
+        if (unit == temperatureUnit)
+            return 0;
+        temperatureUnit = unit;
+        if (listView == null)
+            return 0;
+
+        int rebound = 0;
+        int first = listView.getFirstVisiblePosition();
+        for (int i = 0; i < listView.getChildCount(); i++) {
+            int position = first + i;
+            Object tag = listView.getChildAt(i).getTag();
+            if (!(tag instanceof ViewHolder) || position >= getCount())
+                continue; // e.g. a header or footer
+            Weather day = getItem(position);
+            if (day.iconURL != null) { // placeholder rows show no temperatures
+                bindTemperatures((ViewHolder) tag, day);
+                ++rebound;
+            }
+        }
+        return rebound;
+    }
+
+    // number of times getView was called since the adapter was created
+    public int getViewsCreated() {
+        return viewsCreated;
+    }
+
+    // counts one more holder of icon
+    private static void retainIcon(Bitmap icon) {
+        synchronized (iconUsers) {
+            Integer users = iconUsers.get(icon);
+            iconUsers.put(icon, users == null ? 1 : users + 1);
+        }
+    }
+
+    // counts one holder less; an evicted icon nobody holds any more goes to the pool
+    private static void releaseIcon(Bitmap icon) {
+        synchronized (iconUsers) {
+            int users = iconUsers.get(icon) - 1;
+            if (users > 0) {
+                iconUsers.put(icon, users);
+                return;
+            }
+            iconUsers.remove(icon);
+            if (evictedInUse.remove(icon) != null)
+                bitmapPool.put(icon);
+        }
+    }
+
+    // the cached icon for url, already retained for the caller, or null
+    private static Bitmap getRetainedIcon(String url) {
+        synchronized (iconUsers) { // so it can't be evicted and pooled in between
+            Bitmap icon = bitmaps.get(url);
+            if (icon != null)
+                retainIcon(icon);
+            return icon;
+        }
+    }
+
+    // shows icon (already retained for the row, or null) in the row, letting go of the
+    // icon the row showed before
+    private static void showIcon(ViewHolder viewHolder, Bitmap icon) {
+        if (viewHolder.icon != null)
+            releaseIcon(viewHolder.icon);
+        viewHolder.icon = icon;
+        viewHolder.conditionImageView.setImageBitmap(icon);
     }
 
     // creates the custom views for the ListView's items
     @NonNull
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
+        ++viewsCreated;
         ViewHolder viewHolder; // object that reference's list item's views
         // get Weather object for this specified ListView position
         Weather day = getItem(position);
@@ -59,25 +178,47 @@ public class WeatherArrayAdapter extends ArrayAdapter<Weather> {
             viewHolder = (ViewHolder) convertView.getTag();
         }
 
+        // a row of the 3-hour forecast whose page is still downloading
+        if (day.iconURL == null) {
+            showIcon(viewHolder, null);
+            viewHolder.dayTextView.setText(day.description);
+            viewHolder.lowTextView.setText("");
+            viewHolder.hiTextView.setText("");
+            viewHolder.humidityTextView.setText("");
+            return convertView;
+        }
+
         // if weather condition icon already downloaded, use it;
         // otherwise, download icon in a separate thread
-        if (bitmaps.containsKey(day.iconURL)) {
-            viewHolder.conditionImageView.setImageBitmap(bitmaps.get(day.iconURL));
+        Bitmap icon = getRetainedIcon(day.iconURL);
+        if (icon != null) {
+            metrics.iconHit();
+            showIcon(viewHolder, icon);
         } else {// download and display weather condition image
-            new LoadImageTask(viewHolder.conditionImageView).execute(day.iconURL);
+            metrics.iconMiss();
+            new LoadImageTask(viewHolder).execute(day.iconURL);
         }
 
         // get other data from Weather object and place into views
         Context context = getContext(); // for loading String resources
         viewHolder.dayTextView.setText(context.getString(R.string.day_description,
                 day.dayOfWeek, day.description));
-        viewHolder.lowTextView.setText(context.getString(R.string.low_temp, day.minTemp));
-        viewHolder.hiTextView.setText(context.getString(R.string.high_temp, day.maxTemp));
-        viewHolder.humidityTextView.setText(context.getString(R.string.humidity, day.humidity));
+        bindTemperatures(viewHolder, day);
+        viewHolder.humidityTextView.setText(context.getString(R.string.humidity,
+                percentFormat.format(day.humidity / 100.0)));
 
         return convertView;
     }
 
+    // show day's low and high in the current unit
+    private void bindTemperatures(ViewHolder viewHolder, Weather day) {
+        Context context = getContext(); // for loading String resources
+        viewHolder.lowTextView.setText(context.getString(R.string.low_temp,
+                temperatureUnit.format(day.minTemp, temperatureFormat)));
+        viewHolder.hiTextView.setText(context.getString(R.string.high_temp,
+                temperatureUnit.format(day.maxTemp, temperatureFormat)));
+    }
+
     // class for reusing views as list items scroll off and onto the screen
     private static class ViewHolder {
         ImageView conditionImageView;
@@ -85,15 +226,16 @@ public class WeatherArrayAdapter extends ArrayAdapter<Weather> {
         TextView lowTextView;
         TextView hiTextView;
         TextView humidityTextView;
+        Bitmap icon; // shown in conditionImageView and retained for it, or null
     }
 
     // AsyncTask to load weather condition icons in a separate thread
     private class LoadImageTask extends AsyncTask<String, Void, Bitmap> {
-        private ImageView imageView; // displays the thumbnail
+        private ViewHolder viewHolder; // its conditionImageView displays the thumbnail
 
-        // store ImageView on which to set the downloaded Bitmap
-        public LoadImageTask(ImageView imageView) {
-            this.imageView = imageView;
+        // store the row on which to set the downloaded Bitmap
+        public LoadImageTask(ViewHolder viewHolder) {
+            this.viewHolder = viewHolder;
         }
 
         // load image; params[0] is the String URL representing the image
@@ -107,15 +249,23 @@ public class WeatherArrayAdapter extends ArrayAdapter<Weather> {
                 // open an HttpURLConnection, get its InputStream and download the image
                 connection = (HttpURLConnection) url.openConnection();
                 try (InputStream inputStream = connection.getInputStream()) {
-                    bitmap = BitmapFactory.decodeStream(inputStream);
-                    bitmaps.put(params[0], bitmap); // cache for later use
+                    // decode at the size conditionImageView displays rather than full size
+                    byte[] data = IconDecoder.readFully(inputStream);
+                    long start = System.nanoTime();
+                    bitmap = iconDecoder.decode(data, iconSize, iconSize);
+                    metrics.iconDownloaded(data.length, System.nanoTime() - start);
+                    if (bitmap != null) {
+                        retainIcon(bitmap); // for the row, so eviction can't pool it
+                        bitmaps.put(params[0], bitmap); // cache for later use
+                    }
                 } catch (Exception e) {
                     e.printStackTrace();
                 }
             } catch (IOException e) {
                 e.printStackTrace();
             } finally {
-                connection.disconnect(); // close the HttpURLConnection
+                if (connection != null)
+                    connection.disconnect(); // close the HttpURLConnection
             }
 
             return bitmap;
@@ -123,7 +273,7 @@ public class WeatherArrayAdapter extends ArrayAdapter<Weather> {
 
         @Override
         protected void onPostExecute(Bitmap bitmap) {
-            imageView.setImageBitmap(bitmap);
+            showIcon(viewHolder, bitmap);
         }
     }
 }
@@ -0,0 +1,194 @@
+package com.example.weatherviewer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * Records where the time goes for each forecast request (DNS lookup, connect,
+ * time to first byte, download, parse and bind), icon cache hits and misses and
+ * the number of bytes transferred. A snapshot can be shown in MetricsActivity or
+ * dumped as text or JSON.
+ */
+public class WeatherMetrics {
+    // phases of a forecast request, in the order they happen
+    public static final int DNS = 0;
+    public static final int CONNECT = 1;
+    public static final int FIRST_BYTE = 2;
+    public static final int DOWNLOAD = 3;
+    public static final int PARSE = 4;
+    public static final int BIND = 5;
+    private static final String[] PHASE_NAMES =
+            {"dns", "connect", "ttfb", "download", "parse", "bind"};
+
+    private static final int MAX_TRACES = 20; // most recent forecasts kept for the snapshot
+    private static final WeatherMetrics instance = new WeatherMetrics();
+
+    private final ArrayDeque<ForecastTrace> traces = new ArrayDeque<>();
+    private int forecasts;          // forecasts completed
+    private int failures;           // forecasts that failed to load
+    private long forecastBytes;     // bytes of forecast JSON downloaded
+    private int iconHits;           // icons found in the adapter's cache
+    private int iconMisses;         // icons that had to be downloaded
+    private long iconBytes;         // bytes of icon images downloaded
+    private long iconDecodeNanos;   // total time spent decoding icons
+
+    // the process-wide metrics shared by MainActivity, the adapter and MetricsActivity
+    public static WeatherMetrics getInstance() {
+        return instance;
+    }
+
+    // starts timing a new forecast request for the given location
+    public ForecastTrace newTrace(String location) {
+        return new ForecastTrace(location);
+    }
+
+    // stores a finished forecast request
+    public synchronized void record(ForecastTrace trace) {
+        if (trace.failed)
+            ++failures;
+        else
+            ++forecasts;
+        forecastBytes += trace.bytes;
+
+        if (traces.size() == MAX_TRACES)
+            traces.removeFirst(); // forget the oldest forecast
+        traces.addLast(trace);
+    }
+
+    public synchronized void iconHit() {
+        ++iconHits;
+    }
+
+    public synchronized void iconMiss() {
+        ++iconMisses;
+    }
+
+    // stores the size and decode time of a downloaded icon
+    public synchronized void iconDownloaded(long bytes, long decodeNanos) {
+        iconBytes += bytes;
+        iconDecodeNanos += decodeNanos;
+    }
+
+    // forgets everything recorded so far
+    public synchronized void reset() {
+        traces.clear();
+        forecasts = failures = iconHits = iconMisses = 0;
+        forecastBytes = iconBytes = iconDecodeNanos = 0;
+    }
+
+    // human-readable snapshot for the metrics screen
+    public synchronized String toText() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.US, "forecasts: %d ok, %d failed, %d bytes%n",
+                forecasts, failures, forecastBytes));
+        builder.append(String.format(Locale.US, "icons: %d hits, %d misses, %d bytes, %.1f ms decoding%n",
+                iconHits, iconMisses, iconBytes, iconDecodeNanos / 1e6));
+
+        if (!traces.isEmpty()) {
+            // average and worst time of each phase over the recent forecasts
+            builder.append(String.format(Locale.US, "%nlast %d forecasts (avg / max ms)%n", traces.size()));
+            for (int phase = DNS; phase <= BIND; phase++) {
+                long total = 0;
+                long max = 0;
+                for (ForecastTrace trace : traces) {
+                    total += trace.phaseNanos[phase];
+                    max = Math.max(max, trace.phaseNanos[phase]);
+                }
+                builder.append(String.format(Locale.US, "%-9s %8.1f %8.1f%n", PHASE_NAMES[phase],
+                        total / 1e6 / traces.size(), max / 1e6));
+            }
+
+            builder.append(String.format(Locale.US, "%nmost recent first%n"));
+            for (ForecastTrace trace : reversed())
+                builder.append(trace).append('\n');
+        }
+        return builder.toString();
+    }
+
+    // machine-readable snapshot for sharing or attaching to bug reports
+    public synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("forecasts", forecasts);
+        json.put("failures", failures);
+        json.put("forecastBytes", forecastBytes);
+        json.put("iconHits", iconHits);
+        json.put("iconMisses", iconMisses);
+        json.put("iconBytes", iconBytes);
+        json.put("iconDecodeMs", iconDecodeNanos / 1e6);
+
+        JSONArray recent = new JSONArray();
+        for (ForecastTrace trace : traces) {
+            JSONObject item = new JSONObject();
+            item.put("location", trace.location);
+            item.put("failed", trace.failed);
+            item.put("bytes", trace.bytes);
+            for (int phase = DNS; phase <= BIND; phase++)
+                item.put(PHASE_NAMES[phase] + "Ms", trace.phaseNanos[phase] / 1e6);
+            recent.put(item);
+        }
+        json.put("recent", recent);
+        return json;
+    }
+
+    private ArrayDeque<ForecastTrace> reversed() {
+        ArrayDeque<ForecastTrace> reversed = new ArrayDeque<>(traces.size());
+        for (ForecastTrace trace : traces)
+            reversed.addFirst(trace);
+        return reversed;
+    }
+
+    /**
+     * timings of one forecast request; phases may be measured on different threads
+     * (download in doInBackground, bind in onPostExecute) but never concurrently
+     */
+    public static class ForecastTrace {
+        private final String location;
+        private final long[] phaseNanos = new long[PHASE_NAMES.length];
+        private long mark;      // System.nanoTime() at the start of the current phase
+        private long bytes;     // bytes downloaded for this forecast
+        private boolean failed; // true if no forecast could be displayed
+
+        private ForecastTrace(String location) {
+            this.location = location;
+        }
+
+        // starts (or restarts after a thread hop) timing the next phase
+        public void begin() {
+            mark = System.nanoTime();
+        }
+
+        // adds the time since the last mark to phase and starts timing the next one
+        public void lap(int phase) {
+            long now = System.nanoTime();
+            phaseNanos[phase] += now - mark;
+            mark = now;
+        }
+
+        public void addBytes(long count) {
+            bytes += count;
+        }
+
+        public void fail() {
+            failed = true;
+        }
+
+        public long getPhaseNanos(int phase) {
+            return phaseNanos[phase];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(location);
+            if (failed)
+                builder.append(" (failed)");
+            for (int phase = DNS; phase <= BIND; phase++)
+                builder.append(String.format(Locale.US, " %s=%.1f", PHASE_NAMES[phase],
+                        phaseNanos[phase] / 1e6));
+            return builder.append(" bytes=").append(bytes).toString();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.weatherviewer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests and lookup benchmark for the city prefix index.
+ */
+public class CityIndexTest {
+    private static final int BENCHMARK_CITIES = 200000;
+
+    private static CityIndex index(String... names) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CityIndex.write(Arrays.asList(names), output);
+        return new CityIndex(ByteBuffer.wrap(output.toByteArray()));
+    }
+
+    @Test
+    public void lookup_matchesPrefixIgnoringCase() throws Exception {
+        CityIndex index = index("Boston, MA, US", "boise, ID, US", "Berlin, DE", "Bogota, CO", "Paris, FR");
+
+        assertEquals(Arrays.asList("Bogota, CO", "boise, ID, US", "Boston, MA, US"),
+                index.lookup("bo", 10));
+        assertEquals(Arrays.asList("Boston, MA, US"), index.lookup("BOST", 10));
+        assertEquals(Arrays.asList("Paris, FR"), index.lookup("  paris", 10));
+        assertTrue(index.lookup("Tokyo", 10).isEmpty());
+        assertTrue(index.lookup("", 10).isEmpty());
+    }
+
+    @Test
+    public void lookup_respectsLimitAndRemovesDuplicates() throws Exception {
+        CityIndex index = index("San Jose, CA, US", "San Jose, CR", "San Diego, CA, US",
+                "San Diego, CA, US", "Santiago, CL");
+
+        assertEquals(4, index.size());
+        assertEquals(2, index.lookup("san", 2).size());
+        assertEquals(Arrays.asList("San Jose, CA, US", "San Jose, CR"), index.lookup("san jose", 10));
+    }
+
+    @Test
+    public void lookup_prefixLongerThanName() throws Exception {
+        CityIndex index = index("Rome, IT", "Rom");
+        assertEquals(Arrays.asList("Rom", "Rome, IT"), index.lookup("rom", 10));
+        assertTrue(index.lookup("rome, italy", 10).isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsOtherFiles() throws Exception {
+        new CityIndex(ByteBuffer.wrap("not an index at all".getBytes("UTF-8")));
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsTruncatedIndex() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CityIndex.write(Arrays.asList("Boston, MA, US", "Paris, FR"), output);
+        byte[] bytes = output.toByteArray();
+        new CityIndex(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 4)));
+    }
+
+    // every keystroke of typing a city must produce suggestions in under 5 ms
+    @Test
+    public void benchmark_keystrokeLookupOn200kCities() throws Exception {
+        Random random = new Random(42);
+        List<String> names = new ArrayList<>(BENCHMARK_CITIES);
+        for (int i = 0; i < BENCHMARK_CITIES; i++)
+            names.add(randomCity(random));
+
+        // memory-map the index from a file as the app does with its asset
+        File file = File.createTempFile("cities", ".idx");
+        file.deleteOnExit();
+        try (OutputStream output = new FileOutputStream(file)) {
+            CityIndex.write(names, output);
+        }
+        CityIndex index;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            index = new CityIndex(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length()));
+        }
+
+        // type 200 cities character by character (warm-up run first)
+        long[] latencies = new long[0];
+        for (int run = 0; run < 2; run++) {
+            List<Long> measured = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String city = names.get(random.nextInt(names.size()));
+                for (int length = 1; length <= city.length(); length++) {
+                    long start = System.nanoTime();
+                    List<String> suggestions = index.lookup(city.substring(0, length), 8);
+                    measured.add(System.nanoTime() - start);
+                    assertFalse(suggestions.isEmpty());
+                }
+            }
+            latencies = new long[measured.size()];
+            for (int i = 0; i < latencies.length; i++)
+                latencies[i] = measured.get(i);
+        }
+
+        Arrays.sort(latencies);
+        long total = 0;
+        for (long latency : latencies)
+            total += latency;
+        long p99 = latencies[latencies.length * 99 / 100];
+        System.out.printf("CityIndex: %d cities, %d keystrokes, avg %.3f ms, p99 %.3f ms, worst %.3f ms%n",
+                index.size(), latencies.length, total / 1e6 / latencies.length, p99 / 1e6,
+                latencies[latencies.length - 1] / 1e6);
+        assertTrue("average lookup too slow", total / latencies.length < 5000000L);
+        assertTrue("99th percentile lookup too slow", p99 < 5000000L);
+    }
+
+    private static String randomCity(Random random) {
+        StringBuilder builder = new StringBuilder();
+        int length = 4 + random.nextInt(10);
+        builder.append((char) ('A' + random.nextInt(26)));
+        for (int i = 1; i < length; i++)
+            builder.append((char) ('a' + random.nextInt(26)));
+        return builder.append(", ").append((char) ('A' + random.nextInt(26)))
+                .append((char) ('A' + random.nextInt(26))).toString();
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.weatherviewer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives ForecastPager and HourlyPageSource against a local stub server that serves
+ * a 3-hour forecast the way OpenWeatherMap does: the whole 5 days in one response,
+ * whatever paging parameters are sent.
+ */
+public class ForecastPagerTest {
+    private static final long START = 1486137600L;  // the pager's first entry
+    private static final int ENTRIES = 5 * 8;       // 5 days of 3-hour entries
+    private static final int PAGE_SIZE = 8;
+    private static final int MAX_PAGES = 3;
+    private static final int PREFETCH = 4;
+    private static final int VISIBLE_ROWS = 6;
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger(); // forecasts served
+    private String baseUrl;
+
+    // runs queued work only when the test says so, like a background thread finishing later
+    private static class QueueExecutor implements Executor {
+        final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            queue.add(command);
+        }
+
+        void runAll() {
+            while (!queue.isEmpty())
+                queue.poll().run();
+        }
+    }
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/forecast", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                byte[] body = forecast().getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream output = exchange.getResponseBody();
+                output.write(body);
+                output.close();
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() +
+                "/forecast?q=Boston&APPID=test";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    // OpenWeatherMap-style 3-hour entries: one that is already past, then ENTRIES from START
+    private static String forecast() {
+        StringBuilder builder = new StringBuilder("{\"list\":[");
+        for (long i = -1; i < ENTRIES; i++) {
+            if (i > -1)
+                builder.append(',');
+            builder.append("{\"dt\":").append(START + i * HourlyPageSource.STEP_SECONDS)
+                    .append(",\"main\":{\"temp\":50,\"temp_min\":").append(i)
+                    .append(",\"temp_max\":").append(i + 10)
+                    .append(",\"humidity\":60},\"weather\":[{\"description\":\"entry ")
+                    .append(i).append("\",\"icon\":\"01d\"}]}");
+        }
+        return builder.append("]}").toString();
+    }
+
+    private ForecastPager pager(Executor loadExecutor, Executor callbackExecutor) {
+        return new ForecastPager(new HourlyPageSource("Boston", baseUrl, START),
+                PAGE_SIZE, MAX_PAGES, PREFETCH, loadExecutor, callbackExecutor);
+    }
+
+    @Test
+    public void pageSource_windowsOneDownload() throws Exception {
+        HourlyPageSource source = new HourlyPageSource("Boston", baseUrl, START);
+        ForecastPager.Page page = source.loadPage(2, PAGE_SIZE);
+        assertEquals(PAGE_SIZE, page.size);
+        assertEquals(START + 16 * HourlyPageSource.STEP_SECONDS,
+                page.record.timeStamps[page.start]);
+        assertEquals("entry 16", page.record.descriptions[page.start]);
+        assertEquals(26f, page.record.maxTemps[page.start], 0);
+
+        // the entry before START is skipped, and every page is a view of the same
+        // download rather than a copy
+        ForecastPager.Page first = source.loadPage(0, PAGE_SIZE);
+        assertEquals(START, first.record.timeStamps[first.start]);
+        assertSame(page.record, first.record);
+        assertEquals(0, source.loadPage(ENTRIES / PAGE_SIZE, PAGE_SIZE).size);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void scrolling_keepsAPageWindowAndPrefetchesAhead() throws Exception {
+        QueueExecutor background = new QueueExecutor();
+        ForecastPager pager = pager(background, DIRECT);
+        pager.start();
+        background.runAll();
+
+        int maxPagesInMemory = 0;
+        int rowsNotReady = 0;
+        ForecastRecord download = pager.getPage(0);
+        // scroll one row at a time through all 5 days
+        for (int first = 0; first + VISIBLE_ROWS <= ENTRIES; first++) {
+            int last = first + VISIBLE_ROWS - 1;
+            // the rows scrolling into view were prefetched during the previous step
+            for (int position = first; position <= last && position < pager.getCount(); position++) {
+                if (pager.getPage(position) == null)
+                    ++rowsNotReady;
+            }
+            pager.onVisibleRangeChanged(first, last);
+            background.runAll(); // downloads finish before the next frame
+            maxPagesInMemory = Math.max(maxPagesInMemory, pager.getPagesInMemory());
+
+            ForecastRecord page = pager.getPage(last);
+            assertSame(download, page); // every page is a view of the one download
+            assertEquals("entry " + last, page.descriptions[pager.getOffset(last)]);
+        }
+
+        assertEquals(0, rowsNotReady);
+        // the pager keeps a bounded window of pages, but with HourlyPageSource they
+        // share one record, so memory is bounded by that download, not by MAX_PAGES
+        assertTrue("pages in memory: " + maxPagesInMemory, maxPagesInMemory <= MAX_PAGES);
+        assertEquals(ENTRIES, pager.getCount());
+        assertTrue(pager.isEndReached());
+        // the forecast was downloaded once and every page windowed from it
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void scrollingBack_reloadsEvictedPages() throws Exception {
+        ForecastPager pager = pager(DIRECT, DIRECT);
+        pager.start();
+        for (int first = 0; first < 5 * PAGE_SIZE; first += PAGE_SIZE)
+            pager.onVisibleRangeChanged(first, first + VISIBLE_ROWS - 1);
+        assertTrue(pager.getPagesInMemory() <= MAX_PAGES);
+        int loadsBefore = pager.getPagesLoaded();
+
+        pager.onVisibleRangeChanged(0, VISIBLE_ROWS - 1);
+        assertNotNull(pager.getPage(0));
+        assertEquals("entry 0", pager.getPage(0).descriptions[pager.getOffset(0)]);
+        assertTrue(pager.getPagesLoaded() > loadsBefore);
+        assertTrue(pager.getPagesInMemory() <= MAX_PAGES);
+    }
+
+    @Test
+    public void closedPager_ignoresLatePages() throws Exception {
+        QueueExecutor background = new QueueExecutor();
+        final List<Integer> loaded = new ArrayList<>();
+        ForecastPager pager = pager(background, DIRECT);
+        pager.setListener(new ForecastPager.Listener() {
+            @Override
+            public void onPageLoaded(int page) {
+                loaded.add(page);
+            }
+
+            @Override
+            public void onPageFailed(int page, IOException exception) {
+                fail("page " + page + " failed");
+            }
+        });
+        pager.start();
+        pager.close(); // the user picked another city before the page arrived
+        background.runAll();
+
+        assertTrue(loaded.isEmpty());
+        assertEquals(0, pager.getPagesInMemory());
+    }
+
+    @Test
+    public void failedPage_isReportedAndRetriedOnlyOnRequest() throws Exception {
+        server.removeContext("/forecast");
+        final List<Integer> failed = new ArrayList<>();
+        ForecastPager pager = pager(DIRECT, DIRECT);
+        pager.setListener(new ForecastPager.Listener() {
+            @Override
+            public void onPageLoaded(int page) {
+                fail("page " + page + " loaded");
+            }
+
+            @Override
+            public void onPageFailed(int page, IOException exception) {
+                failed.add(page);
+            }
+        });
+        pager.start();
+        pager.onVisibleRangeChanged(0, VISIBLE_ROWS - 1); // and the page to prefetch
+
+        assertFalse(failed.isEmpty());
+        assertEquals(0, pager.getCount());
+
+        // rows binding their placeholders, and scrolling, don't download it again
+        int failures = failed.size();
+        for (int i = 0; i < 10; i++) {
+            assertNull(pager.getPage(0));
+            pager.onVisibleRangeChanged(0, VISIBLE_ROWS - 1);
+        }
+        assertEquals(failures, failed.size());
+
+        pager.retry(); // the user asked
+        assertTrue(failed.size() > failures);
+    }
+}
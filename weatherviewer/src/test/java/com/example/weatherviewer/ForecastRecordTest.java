@@ -0,0 +1,185 @@
+package com.example.weatherviewer;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests and read-latency benchmark for the binary forecast cache format.
+ */
+public class ForecastRecordTest {
+    private static final String[] DESCRIPTIONS = {"sky is clear", "light rain", "few clouds"};
+    private static final String[] ICONS = {"01d", "10d", "02d"};
+
+    // a 16 day forecast like the one the app downloads
+    private static ForecastRecord sampleRecord() {
+        int days = 16;
+        long[] timeStamps = new long[days];
+        float[] minTemps = new float[days];
+        float[] maxTemps = new float[days];
+        float[] humidities = new float[days];
+        String[] descriptions = new String[days];
+        String[] iconNames = new String[days];
+        for (int i = 0; i < days; i++) {
+            timeStamps[i] = 1486137600L + i * 86400L;
+            minTemps[i] = 20.5f + i;
+            maxTemps[i] = 35.25f + i;
+            humidities[i] = 40 + i;
+            descriptions[i] = DESCRIPTIONS[i % DESCRIPTIONS.length];
+            iconNames[i] = ICONS[i % ICONS.length];
+        }
+        return new ForecastRecord("Boston, MA, US", 1486140000000L, timeStamps, minTemps,
+                maxTemps, humidities, descriptions, iconNames);
+    }
+
+    // the same forecast as OpenWeatherMap's JSON response
+    private static String sampleJSON(ForecastRecord record) {
+        StringBuilder builder = new StringBuilder("{\"cnt\":16,\"list\":[");
+        for (int i = 0; i < record.size(); i++) {
+            if (i > 0)
+                builder.append(',');
+            builder.append("{\"dt\":").append(record.timeStamps[i])
+                    .append(",\"temp\":{\"day\":30,\"min\":").append(record.minTemps[i])
+                    .append(",\"max\":").append(record.maxTemps[i])
+                    .append(",\"night\":25,\"eve\":28,\"morn\":22},\"pressure\":1015.5,\"humidity\":")
+                    .append(record.humidities[i])
+                    .append(",\"weather\":[{\"id\":800,\"main\":\"Clear\",\"description\":\"")
+                    .append(record.descriptions[i]).append("\",\"icon\":\"")
+                    .append(record.iconNames[i]).append("\"}],\"speed\":3.1,\"deg\":200,\"clouds\":0}");
+        }
+        return builder.append("]}").toString();
+    }
+
+    private static void assertSameForecast(ForecastRecord expected, ForecastRecord actual) {
+        assertEquals(expected.location, actual.location);
+        assertEquals(expected.fetchedAt, actual.fetchedAt);
+        assertArrayEquals(expected.timeStamps, actual.timeStamps);
+        assertTrue(Arrays.equals(expected.minTemps, actual.minTemps));
+        assertTrue(Arrays.equals(expected.maxTemps, actual.maxTemps));
+        assertTrue(Arrays.equals(expected.humidities, actual.humidities));
+        assertArrayEquals(expected.descriptions, actual.descriptions);
+        assertArrayEquals(expected.iconNames, actual.iconNames);
+    }
+
+    @Test
+    public void encode_roundTrips() throws Exception {
+        ForecastRecord record = sampleRecord();
+        assertSameForecast(record, ForecastRecord.decode(ByteBuffer.wrap(record.encode())));
+    }
+
+    @Test
+    public void encode_internsRepeatedStrings() throws Exception {
+        ForecastRecord record = sampleRecord();
+        // header + 16 fixed-width days + location and 3 descriptions and 3 icons stored once
+        int strings = 2 + "Boston, MA, US".length();
+        for (int i = 0; i < DESCRIPTIONS.length; i++)
+            strings += 2 + DESCRIPTIONS[i].length() + 2 + ICONS[i].length();
+        assertEquals(24 + 16 * 24 + strings, record.encode().length);
+    }
+
+    @Test
+    public void write_roundTripsThroughMemoryMappedFile() throws Exception {
+        File file = File.createTempFile("forecast", ".bin");
+        file.deleteOnExit();
+        ForecastRecord record = sampleRecord();
+        record.write(file);
+        assertSameForecast(record, ForecastRecord.read(file));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void decode_emptyForecast() throws Exception {
+        ForecastRecord empty = new ForecastRecord("Nowhere", 0, new long[0], new float[0],
+                new float[0], new float[0], new String[0], new String[0]);
+        assertEquals(0, ForecastRecord.decode(ByteBuffer.wrap(empty.encode())).size());
+    }
+
+    @Test
+    public void decode_rejectsEveryFlippedByte() throws Exception {
+        byte[] bytes = sampleRecord().encode();
+        for (int i = 0; i < bytes.length; i++) {
+            byte[] corrupt = bytes.clone();
+            corrupt[i] ^= 0x40;
+            try {
+                // the header, including the download time, is checked along with the days
+                ForecastRecord.decode(ByteBuffer.wrap(corrupt));
+                fail("corruption at " + i + " not detected");
+            } catch (IOException expected) {
+                // corruption detected
+            }
+        }
+    }
+
+    @Test
+    public void decode_rejectsEveryTruncation() throws Exception {
+        byte[] bytes = sampleRecord().encode();
+        for (int length = 0; length < bytes.length; length++) {
+            try {
+                ForecastRecord.decode(ByteBuffer.wrap(Arrays.copyOf(bytes, length)));
+                fail("truncation to " + length + " bytes not detected");
+            } catch (IOException expected) {
+                // truncation detected
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsOtherVersions() throws Exception {
+        byte[] bytes = sampleRecord().encode();
+        bytes[5] = (byte) (ForecastRecord.VERSION + 1);
+        ForecastRecord.decode(ByteBuffer.wrap(bytes));
+    }
+
+    @Test
+    public void fromJSON_matchesBinaryRecord() throws Exception {
+        ForecastRecord record = sampleRecord();
+        ForecastRecord parsed = ForecastRecord.fromJSON(record.location, record.fetchedAt,
+                new JSONObject(sampleJSON(record)));
+        assertSameForecast(record, parsed);
+    }
+
+    // reading the memory-mapped cache file must be much cheaper than re-parsing the JSON
+    @Test
+    public void benchmark_readCacheVersusParseJSON() throws Exception {
+        ForecastRecord record = sampleRecord();
+        String json = sampleJSON(record);
+        File file = File.createTempFile("forecast", ".bin");
+        file.deleteOnExit();
+        record.write(file);
+
+        int iterations = 20000;
+        long binaryNanos = 0;
+        long jsonNanos = 0;
+        for (int run = 0; run < 2; run++) { // first run warms up the JIT
+            RandomAccessFile input = new RandomAccessFile(file, "r");
+            try {
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    ForecastRecord.decode(input.getChannel().map(
+                            FileChannel.MapMode.READ_ONLY, 0, input.length()));
+                }
+                binaryNanos = System.nanoTime() - start;
+            } finally {
+                input.close();
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                ForecastRecord.fromJSON(record.location, record.fetchedAt, new JSONObject(json));
+            jsonNanos = System.nanoTime() - start;
+        }
+
+        System.out.printf("ForecastRecord: %d bytes binary vs %d chars JSON; read %.2f us mapped " +
+                        "vs %.2f us JSON per forecast%n", record.encode().length, json.length(),
+                binaryNanos / 1e3 / iterations, jsonNanos / 1e3 / iterations);
+        assertTrue("binary read slower than JSON parse", binaryNanos < jsonNanos);
+    }
+}
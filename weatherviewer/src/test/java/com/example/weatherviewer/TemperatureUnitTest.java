@@ -0,0 +1,45 @@
+package com.example.weatherviewer;
+
+import org.junit.Test;
+
+import java.text.NumberFormat;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for converting the stored Kelvin temperatures.
+ */
+public class TemperatureUnitTest {
+    private static NumberFormat integerFormat() {
+        NumberFormat numberFormat = NumberFormat.getInstance(Locale.US);
+        numberFormat.setMaximumFractionDigits(0);
+        return numberFormat;
+    }
+
+    @Test
+    public void fromKelvin_convertsFixedPoints() {
+        assertEquals(0, TemperatureUnit.CELSIUS.fromKelvin(273.15), 1e-9);
+        assertEquals(100, TemperatureUnit.CELSIUS.fromKelvin(373.15), 1e-9);
+        assertEquals(32, TemperatureUnit.FAHRENHEIT.fromKelvin(273.15), 1e-9);
+        assertEquals(212, TemperatureUnit.FAHRENHEIT.fromKelvin(373.15), 1e-9);
+        assertEquals(-40, TemperatureUnit.FAHRENHEIT.fromKelvin(233.15), 1e-9);
+        assertEquals(300, TemperatureUnit.KELVIN.fromKelvin(300), 0);
+    }
+
+    @Test
+    public void format_roundsAndAppendsSymbol() {
+        NumberFormat numberFormat = integerFormat();
+        assertEquals("22°C", TemperatureUnit.CELSIUS.format(295.4, numberFormat));
+        assertEquals("72°F", TemperatureUnit.FAHRENHEIT.format(295.4, numberFormat));
+        assertEquals("295K", TemperatureUnit.KELVIN.format(295.4, numberFormat));
+    }
+
+    @Test
+    public void forLocale_picksCountrysUnit() {
+        assertEquals(TemperatureUnit.FAHRENHEIT, TemperatureUnit.forLocale(Locale.US));
+        assertEquals(TemperatureUnit.CELSIUS, TemperatureUnit.forLocale(Locale.UK));
+        assertEquals(TemperatureUnit.CELSIUS, TemperatureUnit.forLocale(Locale.GERMANY));
+        assertEquals(TemperatureUnit.CELSIUS, TemperatureUnit.forLocale(Locale.ENGLISH));
+    }
+}